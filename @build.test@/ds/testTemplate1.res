@@ -0,0 +1 @@
+I am a test through the data loader
\ No newline at end of file
@@ -0,0 +1 @@
+And the result is: 42
\ No newline at end of file
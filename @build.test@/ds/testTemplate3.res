@@ -0,0 +1 @@
+This is a template with a null timestamp
\ No newline at end of file
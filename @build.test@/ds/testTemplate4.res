@@ -0,0 +1 @@
+ I am a macro using foo 
\ No newline at end of file
@@ -0,0 +1,8 @@
+
+basic string
+
+embedded reference zz
+zz
+
+reference zz changes to xx
+test1: zz
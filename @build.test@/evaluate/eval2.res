@@ -0,0 +1,7 @@
+test 1: a: 12
+basic string
+test 2: a: 22
+
+test 3: inner eval: 33
+basic string
+test 4: inner eval: 44
@@ -0,0 +1,3 @@
+
+
+value is : val1;value is : val2;
\ No newline at end of file
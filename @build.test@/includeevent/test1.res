@@ -0,0 +1,3 @@
+Test File 1
+include file a
+parse file a
\ No newline at end of file
@@ -0,0 +1,5 @@
+Test File 2
+Good include file b
+Good parse file b
+Good include file c
+Good parse file c
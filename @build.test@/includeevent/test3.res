@@ -0,0 +1,2 @@
+Test File 3
+
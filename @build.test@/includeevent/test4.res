@@ -0,0 +1,2 @@
+Test File 4
+page not found (subdir)
\ No newline at end of file
@@ -0,0 +1,2 @@
+Test File 5
+page not found
\ No newline at end of file
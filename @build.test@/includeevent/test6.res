@@ -0,0 +1,2 @@
+Bad include follows
+page not foundAfter the bad include
@@ -0,0 +1,3 @@
+Test File 7
+
+#sample("boo")
\ No newline at end of file
@@ -0,0 +1 @@
+b
\ No newline at end of file
@@ -0,0 +1 @@
+beforeafter
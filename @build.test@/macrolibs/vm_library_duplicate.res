@@ -0,0 +1,6 @@
+This is a test file for loading macro libs programatically
+
+call foo
+86
+no macro definition
+#abc(2)
@@ -0,0 +1,11 @@
+This is a test file for loading macro libs programatically
+
+call foo
+24
+no macro definition
+#abc(2) This is a test file for loading macro libs programatically
+
+call foo
+86
+no macro definition
+#abc(2) 
\ No newline at end of file
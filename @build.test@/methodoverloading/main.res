@@ -0,0 +1,3 @@
+$test.overloadedMethod2( $param )
+String
+Integer
@@ -0,0 +1,5 @@
+$test.overloadedMethod($nullValue)
+
+$test.overloadedMethod2( $nullValue )
+String
+Integer
\ No newline at end of file
@@ -0,0 +1,3 @@
+
+
+I am path1.vm
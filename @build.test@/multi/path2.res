@@ -0,0 +1,3 @@
+
+
+I am path2.vm
@@ -0,0 +1,3 @@
+
+2 4
+
@@ -0,0 +1,3 @@
+
+8 6
+
@@ -0,0 +1,4 @@
+
+
+8 6
+
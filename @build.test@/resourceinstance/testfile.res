@@ -0,0 +1,3 @@
+
+
+I am testfile.vm
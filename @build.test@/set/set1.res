@@ -0,0 +1,9 @@
+set1
+
+123
+123
+
+foo
+bar
+foo
+bar
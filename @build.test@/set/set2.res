@@ -0,0 +1,13 @@
+set2
+
+123
+$abc
+
+foo
+bar
+foo
+$map.bar
+
+
+test 
+$test 
@@ -0,0 +1 @@
+I am the two template.
\ No newline at end of file
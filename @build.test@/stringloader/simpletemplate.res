@@ -0,0 +1 @@
+This is a test for a foo object
\ No newline at end of file
@@ -0,0 +1,38 @@
+
+
+6
+
+5
+
+10
+
+5
+
+Check the decimal literals
+4500.0
+
+4500.0
+
+0.0045
+
+4.5E55
+
+4.5
+
+5.5
+
+11.0
+
+Check that the system can handle integers greater than Integer.MAX_INT
+100000000000
+
+100000000001
+
+2
+
+
+This is a very long string that we are breaking up into multiple lines for testing.
+
+This is a string. The number 2 = 2
+
+This is a string. The value = 3
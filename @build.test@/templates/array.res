@@ -0,0 +1,22 @@
+
+
+
+a b c 
+
+1 2 
+a b 
+1 2 
+a 
+a 
+a 
+
+
+    > a <
+    > a <   > b <
+    > 1 <   > 2 <
+    > 1 <   > 2 <
+
+
+$p.m( [ $A.g(1), $title ])
+$pp.messageFormat( [ $Abc.get($sti), $title, $ti, $sti, 'bodytext' ], $subtopicTemplate)
+
@@ -0,0 +1,11 @@
+
+	a: 1
+	b: 2
+	a: 1
+	b: 2
+	a: 1
+	b: 2
+	a2: 1
+	b2: 2
+	c2: 3
+	d2: 4
@@ -0,0 +1,30 @@
+
+
+
+
+
+
+
+this is some text.
+
+The following is a 'Christoph Comment' ;)
+foo
+
+We can now comment after the inline set :
+
+ 
+
+
+$barfoo!
+
+
+
+$there is a dollar before me
+
+
+Test of multiline/singleline combo
+
+
+
+with some closing text
+
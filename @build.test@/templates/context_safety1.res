@@ -0,0 +1,3 @@
+ vector hello 1
+ vector hello 2
+ vector hello 3
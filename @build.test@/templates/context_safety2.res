@@ -0,0 +1,3 @@
+ array hello 1
+ array hello 2
+ array hello 3
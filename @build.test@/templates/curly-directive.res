@@ -0,0 +1,16 @@
+
+
+    this is a test
+
+sometextand yet more
+
+
+
+    hello
+
+xxx
+
+#if
+#else
+#elseif
+#set
@@ -0,0 +1,50 @@
+
+
+$f.
+$f
+$f. $f
+foo.
+foo
+foo. foo
+$thingy.dingy
+"#FFFFFF"
+"$ow"
+
+"$row","var"
+#333333
+#FFFFFF
+"#FFFFF
+#FFFFF"
+"#000000">
+"#ffffff"
+
+$strings.getVillageType($col.Type)
+$strings.getVillageType( $col.Type)
+$strings.getVillageType($col.Type )
+
+
+-#-# Inline loops #-#-
+
+blargh><first element><second element><blargh
+blargh> <first element> <second element><blargh
+blargh><first element> <second element> <blargh
+blargh> <first element>  <second element> <blargh
+
+#"FFFF
+-#-#-#-#-#
+#-#-#-#
+$-$-$-$-
+#FF00FF00
+#'FF
+
+$tstrings.chop($generator.parse("sql/mysql/columns", "", "table", $tbl),1)
+string
+
+foobar
+
+#0F
+
+$nullToString
+$nullToString.toString()
+
+
@@ -0,0 +1,4 @@
+Thanks to Kent Johnson for this example and the nudge.
+
+<p>Chinese: 网站登录</p>
+<p>Spanish: niño</p>
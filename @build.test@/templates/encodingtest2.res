@@ -0,0 +1,3 @@
+This is an example of chinese code encoding:
+
+The chinese string is 上网, its length is 2
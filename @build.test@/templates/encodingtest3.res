@@ -0,0 +1,19 @@
+<table>
+<tr>
+<td>
+<strong>
+Chinese/GBK
+</strong>
+</td>
+<td>
+<p>
+50ǰĽ죬й־ԸǧｭɽϿʼԮǶοɸУйΪǰ־Ըʿľ裬ڼףԸͬʱҲԮƵƵΪԼճŮ50ԮǴⳡսʷۼһ˽ٵ䣬죬ǹΣǶʷڽһ󣿱ͷ׷٣ѰϾСеġԮ
+<p>
+׷ʼȺϾйֵĻȡϵϣͨǲ鵽Ͼеж١ԮϾ250˿ڣس500˿ڣһķʱ䡣Ǵ֧֣ڹмΪǰϻѯȴӡԮ𣬾СʱĵԲѯϾ鵽233λкСԮ顰ǲ١ɧš˷ѯ˳ѯϾСſ68￹32ԮҲ
+<p>
+ڲѯԮĹУû趨ѯߵģ233ԮУж19501954ʱڳģЩ˵ĳ1944ꡢ1945꣬йֻƵͬ־˵Щ˺ܿСѧʱȡĵʱֵսڼ䣬ĸŵʱҲȡ()
+<p>
+ѯʾԮ50ļƵһλŮͬ־˵ǻСԮһʱĳǵõʱھӼ4СξͽСԮҡһԼҺӵ֣֡ĸоļ䡣
+<td>
+</tr>
+</table>
\ No newline at end of file
@@ -0,0 +1,11 @@
+
+
+
+    the user jason is logged in!
+
+
+    the count is 5!
+
+    the user isn't logged in.
+
+    $count is not equal to 3
@@ -0,0 +1,31 @@
+
+
+--Foreach with an array. 2 blank lines follow
+
+
+<table>
+    <tr>
+        <td>This is first element and it is the 1 item</td>
+    </tr>        
+    <tr>
+        <td>This is second element and it is the 2 item</td>
+    </tr>        
+</table>
+
+--Foreach with a null array.  1 blank line follows
+
+<table>
+</table>
+
+-- And when we declare the array in-template :
+
+Choose among :
+	red
+	blue
+	green
+
+ $foo : a
+
+ $foo2 : bar
+
+
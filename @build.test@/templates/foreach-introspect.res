@@ -0,0 +1,14 @@
+
+
+   21 1
+   22 2
+   23 3
+   24 4
+   25 5
+   26 6
+   27 7
+   28 8
+   29 9
+   30 10
+
+
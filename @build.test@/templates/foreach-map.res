@@ -0,0 +1,5 @@
+
+
+    value2
+    value1
+    value0
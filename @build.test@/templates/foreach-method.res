@@ -0,0 +1,8 @@
+
+
+Foreach with a method.
+
+    This is ArrayList element 1.
+    This is ArrayList element 2.
+    This is ArrayList element 3.
+    This is ArrayList element 4.
@@ -0,0 +1,12 @@
+
+
+Foreach with a list that contains null.
+
+    This is a.
+    1
+    This is b.
+    2
+    This is $element.
+    3
+    This is d.
+    4
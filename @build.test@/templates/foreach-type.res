@@ -0,0 +1,38 @@
+
+
+Using a Object []
+
+  a
+  b
+  c
+  d
+
+Using a Map
+
+  this is from a hashtable!
+  this is from a hashtable too!
+
+Using a Collection
+
+  string1
+  string2
+
+Using an Iterator
+
+  string1 
+  string2 
+
+
+Using an Enumeration
+
+  string1
+  string2
+
+
+Using an array of primitives
+
+  10
+  20
+  30
+  40
+  50
@@ -0,0 +1,89 @@
+
+
+Foreach with a variable.
+
+    This is ArrayList element 1.
+    1
+    This is ArrayList element 2.
+    2
+    This is ArrayList element 3.
+    3
+    This is ArrayList element 4.
+    4
+
+    -- inner foreach --
+            This is ArrayList element 1.
+        1
+            This is ArrayList element 2.
+        2
+            This is ArrayList element 3.
+        3
+            This is ArrayList element 4.
+        4
+        -- inner foreach --
+
+    -- outer foreach --
+    This is ArrayList element 1.
+    1
+    -- outer foreach --
+    -- inner foreach --
+            This is ArrayList element 1.
+        1
+            This is ArrayList element 2.
+        2
+            This is ArrayList element 3.
+        3
+            This is ArrayList element 4.
+        4
+        -- inner foreach --
+
+    -- outer foreach --
+    This is ArrayList element 2.
+    2
+    -- outer foreach --
+    -- inner foreach --
+            This is ArrayList element 1.
+        1
+            This is ArrayList element 2.
+        2
+            This is ArrayList element 3.
+        3
+            This is ArrayList element 4.
+        4
+        -- inner foreach --
+
+    -- outer foreach --
+    This is ArrayList element 3.
+    3
+    -- outer foreach --
+    -- inner foreach --
+            This is ArrayList element 1.
+        1
+            This is ArrayList element 2.
+        2
+            This is ArrayList element 3.
+        3
+            This is ArrayList element 4.
+        4
+        -- inner foreach --
+
+    -- outer foreach --
+    This is ArrayList element 4.
+    4
+    -- outer foreach --
+
+ArrayList element 1 ArrayList element 1
+ArrayList element 2 ArrayList element 2
+ArrayList element 3 ArrayList element 3
+ArrayList element 4 ArrayList element 4
+
+ArrayList element 1 ArrayList element 1
+ArrayList element 2 ArrayList element 2
+ArrayList element 3 ArrayList element 3
+ArrayList element 4 ArrayList element 4
+
+ArrayList element 1 ArrayList element 1
+ArrayList element 2 ArrayList element 2
+ArrayList element 3 ArrayList element 3
+ArrayList element 4 ArrayList element 4
+
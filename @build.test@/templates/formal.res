@@ -0,0 +1,34 @@
+
+
+1. lunatic
+
+2. lunatic
+
+3. lunatic
+
+4. lunatic
+
+lunaticlunatic
+
+lunaticMapBuilder
+
+lunatic.map.lunaticMapBuilder
+
+
+thisthat
+
+lunatic
+
+value0
+value1
+value2
+$provider.getHashtable().get("floogie!")
+
+
+{lunatic
+lunatic}
+{lunatic}
+test provider}.Title
+test provider.Title
+test provider{.Title
+
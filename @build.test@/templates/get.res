@@ -0,0 +1,7 @@
+
+
+
+Muck
+Duck
+Truck
+
@@ -0,0 +1,5 @@
+
+
+    this is true
+
+
@@ -0,0 +1,29 @@
+
+
+
+start :
+
+ right
+
+  right
+
+  right
+
+  right
+
+  right
+
+
+ right
+
+ right
+
+ right
+
+  right
+
+  right
+
+ right
+
+done
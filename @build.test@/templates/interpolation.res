@@ -0,0 +1,51 @@
+
+
+Start with simple string interpolation :
+
+it will cost you $10.00
+
+dog.jpg
+
+foobar.jpg
+
+foobar.jpg
+
+123
+1 2 3
+
+How about a directive?  Sure :
+
+
+ >a<  >b<  >c< 
+
+For our next trick, lets interpolate a.... VelociMacro!
+
+
+
+  Hi, I'm a VM!
+
+
+And now, for something completely different :
+
+
+ False 
+
+Now, non interpolated stringlits :
+
+
+ False 
+$code
+$!$\!code
+
+Now, check comments within strings.  double quotes they should be removed.
+Single quotes, they should be kept literal.
+
+
+test
+test 
+
+testtest
+test##test
+test#* hello *#test
+
+-- end --
@@ -0,0 +1,12 @@
+
+
+
+#foreach ($woogie in $boogie)
+  nothing will happen to $woogie
+#end  
+
+#if($skin)
+    $!data.setLayoutTemplate($!skin.getLayout())
+    $!page.setCss($!skin.getCss())
+#end
+
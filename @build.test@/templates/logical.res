@@ -0,0 +1,197 @@
+
+
+
+    $foo is greater then 1
+
+    $foo is less than 10
+
+    $foo is great than or equal to 5
+
+    $foo is less than or equal to 5
+
+
+    foo is false
+
+--
+
+    $foo is greater than $bar
+
+    $foo is greater than or equal to $bar
+
+    $bar is less than $foo
+
+    $bar is less than or equal to $foo
+
+--
+
+    $foo is greater than $bar
+
+    $foo is greater than or equal to $bar
+
+    $bar is less than $foo
+
+    $bar is less than or equal to $foo
+
+--
+
+    $foo is equal to $foo
+
+    $foo is not equal to $bar
+
+--
+
+    $templatenumber1 is greater than $foo
+
+    $templatenumber1 is greater than or equal to $foo
+
+    $foo is less than $templatenumber1
+
+    $foo is less than or equal to $templatenumber1
+
+--
+
+    $bar is greater than $templatenumber1
+
+    $bar is greater than or equal to $templatenumber1
+
+    $templatenumber1 is less than $bar
+
+    $templatenumber1 is less than or equal to $bar
+
+--
+
+    $abc is equal to $templatenumber1
+
+    $templatenumber1 is equal to $abc
+
+    $bar is not equal to $templatenumber1
+
+    $templatenumber1 is not equal to $bar
+
+--
+
+Logical OR :
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+Logical AND :
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+----------
+equivalence
+-----------
+
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+-----------
+comparisons
+-----------
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+----------------------
+goofy but legal stuff
+----------------------
+Should equal true : true
+
+Should equal true : true
+
+Should equal true : true
+
+Should equal true : true
+
+----------------------
+Compare String and StringBuffer
+----------------------
+This should be true: true
+
+This should be false: false
+
+This should be true: true
+
+
+right
+
+
+right
+
+Test to see if we can do logical assignment from any expression
+
+right
+
+right
+
+
+right
+
+
+right
+
+right
+
+right
+
@@ -0,0 +1,133 @@
+
+
+
+    $foo is greater then 1
+
+    $foo is less than 10
+
+    $foo is great than or equal to 5
+
+    $foo is less than or equal to 5
+
+
+    foo is false
+
+--
+
+
+Logical OR :
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+Logical AND :
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+ right
+
+----------
+equivalence
+-----------
+
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+-----------
+comparisons
+-----------
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+right
+
+----------------------
+goofy but legal stuff
+----------------------
+Should equal true : true
+
+Should equal true : true
+
+Should equal true : true
+
+Should equal true : true
+
+
+
+right
+
+
+right
+
+Test to see if we can do logical assignment from any expression
+
+right
+
+right
+
+
+right
+
+
+right
+
+right
+
+right
@@ -0,0 +1,6 @@
+
+
+    hello< ArrayList element 1 > 
+    hello< ArrayList element 2 > 
+    hello< ArrayList element 3 > 
+    hello< ArrayList element 4 > 
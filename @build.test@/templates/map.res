@@ -0,0 +1,36 @@
+
+
+
+this is from a hashtable!
+
+
+foovalue
+foovalue
+
+foovalue
+foovalue
+
+
+
+booboo
+aval
+aval
+bval
+bval
+2
+value
+foovalue
+$mymap.map.foo
+{aa=aaa}
+
+
+0
+
+0
+
+
+aa
+bb
+bb
+aa
+aa
@@ -0,0 +1,4 @@
+
+
+I am a running man  
+
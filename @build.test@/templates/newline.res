@@ -0,0 +1,20 @@
+
+This is a string
+
+
+Call woog
+
+
+hello there
+
+
+1
+2
+3
+4
+5
+6
+7
+8
+9
+10
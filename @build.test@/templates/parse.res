@@ -0,0 +1,22 @@
+
+
+Test the #parse pluggable directive 
+
+Now calling parse1.vm :
+---
+
+This is content from parse1.vm
+
+	Hello first element.
+	Hello second element.
+
+Now using a reference to get the next one :
+   --
+
+This is parse2.vm.
+
+	This is from a true #if.
+   --
+done with parse1.vm
+---
+all done!
@@ -0,0 +1,9 @@
+
+
+
+    "what is that"
+
+<input type="checkbox" name="jason" />
+ 
+<input type="checkbox" name="this is from a hashtable!" />
+
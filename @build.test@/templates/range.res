@@ -0,0 +1,54 @@
+
+[1..5]
+ 1  2  3  4  5 
+-----
+[0..0]
+ 0 
+-----
+[-4..-5]
+ -4  -5 
+-----
+[ 1 .. 5 ]
+ 1  2  3  4  5 
+-----
+[5..1]
+ 5  4  3  2  1 
+-----
+[-5..5]
+ -5  -4  -3  -2  -1  0  1  2  3  4  5 
+-----
+[5..-5]
+ 5  4  3  2  1  0  -1  -2  -3  -4  -5 
+-----
+refs $a=1 $b=5 [$a..$b]
+ 1  2  3  4  5 
+-----
+[$a.. 7]
+ 1  2  3  4  5  6  7 
+-----
+[-7 ..$a]
+ -7  -6  -5  -4  -3  -2  -1  0  1 
+-----
+[ -7 ..$a]
+ -7  -6  -5  -4  -3  -2  -1  0  1 
+------
+setting in $foo -> [0..5] :
+0 1 2 3 4 5 
+----
+
+Now some use-case examples.  Suppose we want a table to have 10 rows
+
+
+<table>
+<tr><td>a</td></tr>
+<tr><td>b</td></tr>
+<tr><td>c</td></tr>
+<tr><td>&nbsp;</td></tr>
+<tr><td>&nbsp;</td></tr>
+<tr><td>&nbsp;</td></tr>
+<tr><td>&nbsp;</td></tr>
+<tr><td>&nbsp;</td></tr>
+<tr><td>&nbsp;</td></tr>
+<tr><td>&nbsp;</td></tr>
+</table>
+=done=
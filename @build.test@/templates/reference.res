@@ -0,0 +1,75 @@
+
+
+bar
+   $_foo equals "bar" : bar
+
+Late introspection :
+
+7
+
+
+More stupid reference escaping ...
+
+When it does exist in the context :
+
+foo
+$foo
+$!foo
+$!foo
+$\!foo
+\$!foo
+
+And when it doesn't :
+
+$bar
+\$bar
+
+\$!bar  (because it's just text...)
+
+$!foo
+$\!foo
+$\\!foo
+$\\\!foo
+\\$!foo
+
+Misc tests :
+
+[$foo.bar]
+
+
+Test lower case property names 
+
+lunatic
+lunatic
+
+ vector element 1
+ vector element 2
+ vector element 1
+ vector element 2
+
+Now test if we can use lowercase for propertes in set
+Was : lunatic
+Now : geir
+Back : lunatic
+
+Test what was a bug :
+
+boycat.java
+boycat.java
+
+
+More tests :
+
+lunatic
+$lunatic
+#lunatic
+
+$foo.bar ($bar) 
+
+Test boolean introspection isFoo()
+
+  Correct
+
+
+   Correct
+
@@ -0,0 +1,30 @@
+
+
+<html>
+<head><title>Sample velocity page</title></head>
+<body bgcolor="#ffffff">
+<center>
+
+<h2>Hello from velocity!</h2>
+<i>Here's the list of people</i>
+<table cellspacing="0" cellpadding="5" widht="100%">
+    <tr>
+        <td bgcolor="#eeeeee" align="center">
+            Names
+        </td>
+    </tr>
+        <tr>
+        <td bgcolor="#eeeeee">ArrayList element 1</td>
+    </tr>
+        <tr>
+        <td bgcolor="#eeeeee">ArrayList element 2</td>
+    </tr>
+        <tr>
+        <td bgcolor="#eeeeee">ArrayList element 3</td>
+    </tr>
+        <tr>
+        <td bgcolor="#eeeeee">ArrayList element 4</td>
+    </tr>
+    </table>
+</center>
+</html>
@@ -0,0 +1,17 @@
+*
+
+@test settest.vm
+
+This template is used for Velocity regression testing.
+If you alter this template make sure you change the
+corresponding comparison file so that the regression 
+test doesn't fail incorrectly.
+
+Tests #set parsing funkyness
+*#
+
+
+
+  I am setthing : bar
+
+SessionBean#setSessionContext
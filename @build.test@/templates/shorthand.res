@@ -0,0 +1 @@
+<input type="text" name="email" value="">
@@ -0,0 +1,2 @@
+This page checks the stop directive in the main body
+
@@ -0,0 +1,6 @@
+This page checks the stop directive inside an if statement
+
+
+this should render
+
+
@@ -0,0 +1,162 @@
+
+
+<html>
+<body>
+
+jason
+
+
+
+
+
+
+this is testing for wild loose commas , ,
+
+$100
+
+
+
+This is the bar way.
+
+    This is $bar.
+
+    This is the if.
+
+
+#set $foo = "bar"
+
+$foo   => bar
+$foo;  => bar;
+$foo.  => bar.
+$foo.. => bar..
+$foo/  => bar/
+$foo"  => bar"
+$foo\  => bar\
+$foo<  => bar<
+\$foo-  => $foo-
+\$fooo+ => $fooo+
+\$foo-x => $foo-x
+$foo$  => bar$
+
+
+
+jon
+ nothing here
+
+function preload(imgObj,imgSrc)
+{
+    if (document.images) 
+    {
+        eval(imgObj+' = new Image()')
+        eval(imgObj+'.src = "'+imgSrc+'"')
+    }
+}
+
+function changeImage(layer,imgName,imgObj)
+{
+    if (document.images)
+    {
+        if (document.layers && layer!=null) eval('document.'+layer+'.document.images["'+imgName+'"].src = '+imgObj+'.src')
+        else document.images[imgName].src = eval(imgObj+".src")
+    }
+}
+
+
+<!-- This is an HTML comment -->
+
+
+$provider2.Title
+
+x
+
+x
+
+<input type="text" name="email" value="">
+<input type="text" name="email" value="">
+
+
+lunatic
+
+
+lunatic
+
+
+
+
+
+crocodile hunter!
+
+
+
+<!-- look here -->
+
+lunatic
+
+
+
+jason
+
+
+jason
+
+
+
+
+
+
+
+
+
+    This is a property that returns a boolean
+    value of true.
+
+    This expression is always (true).
+
+
+Foreach with a variable.
+
+    This is ArrayList element 1.
+    This is ArrayList element 2.
+    This is ArrayList element 3.
+    This is ArrayList element 4.
+
+Foreach with an array.
+
+<table>
+    <tr>
+        <td>This is first element</td>
+    </tr>        
+    <tr>
+        <td>This is second element</td>
+    </tr>        
+</table>
+
+
+    This is the vector element 1.
+    This is the vector element 2.
+
+
+Foreach with a method.
+
+    This is ArrayList element 1.
+    This is ArrayList element 2.
+    This is ArrayList element 3.
+    This is ArrayList element 4.
+
+$10.00
+
+"this is great"
+
+(this is also great)
+
+This is the \#stuff and this
+is the way \#to \#go.
+
+this = that
+
+I am a jason.
+
+    Yes the APL rules!
+
+</body>
+</html>
@@ -0,0 +1,43 @@
+
+
+
+
+  Hello from foo : hi
+  Hello from foo2 : hi
+  Hello from foo_two : hi
+
+
+  Hello from foo : $notincontext
+  Hello from foo : $notincontext.getThing()
+
+
+
+      $notincontext :  no
+        $notincontext.woogie() :  no
+  
+
+      bar :  yes
+  
+  Hello from foo2 : bar
+
+
+      <td align=center class=v10><b>#</b></td>
+    <td align=center class=v10><b> # </b></td>
+    <td align=center class=v10><b>\#</b></td>
+  
+
+
+ hi victor  
+
+
+
+
+>1<
+>true<
+>false<
+>hello<
+>hello<
+>1<
+>[1, 2, 3, 4, 5, 6, 7, 8, 9, 10]<
+>[a, b, 1]<
+
@@ -0,0 +1,8 @@
+
+
+     global recurse 5
+          global recurse 4
+          global recurse 3
+          global recurse 2
+          global recurse 1
+            
\ No newline at end of file
@@ -0,0 +1,9 @@
+
+
+
+     local recurse 5
+          local recurse 4
+          local recurse 3
+          local recurse 2
+          local recurse 1
+            
\ No newline at end of file
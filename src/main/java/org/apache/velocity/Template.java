@@ -20,27 +20,41 @@ package org.apache.velocity;
  */
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.List;
 import org.apache.velocity.context.Context;
 import org.apache.velocity.context.ContextHolder;
 import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.context.SlotTable;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.TemplateInitException;
 import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.io.EncodingWriter;
 import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.compiler.CompiledTemplate;
+import org.apache.velocity.runtime.compiler.TemplateCompiler;
 import org.apache.velocity.runtime.directive.Scope;
 import org.apache.velocity.runtime.directive.StopCommand;
 import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.ASTprocess;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
+import org.apache.velocity.runtime.resource.ParsedTemplateStore;
 import org.apache.velocity.runtime.resource.Resource;
 import org.apache.velocity.runtime.resource.ResourceManager;
+import org.apache.velocity.runtime.resource.loader.FileResourceLoader;
+import org.apache.velocity.runtime.visitor.TemplateOptimizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -79,6 +93,8 @@ public class Template extends Resource
 
     private VelocityException errorCondition = null;
 
+    private ParsedTemplateStore parsedStore = null;
+
     /** Default constructor */
     public Template()
     {
@@ -87,6 +103,18 @@ public class Template extends Resource
         setType(ResourceManager.RESOURCE_TEMPLATE);
     }
 
+    /**
+     * Sets the store of parsed templates this template is looked up in
+     * before being parsed, and written to once parsed.
+     *
+     * @param parsedStore store of parsed templates, or null
+     * @since 1.8
+     */
+    public void setParsedTemplateStore(ParsedTemplateStore parsedStore)
+    {
+        this.parsedStore = parsedStore;
+    }
+
     /**
      *  gets the named resource as a stream, parses and inits
      *
@@ -101,101 +129,173 @@ public class Template extends Resource
         throws ResourceNotFoundException, ParseErrorException
     {
         data = null;
+        Reader reader = null;
         InputStream is = null;
         errorCondition = null;
 
         /*
-         *  first, try to get the stream from the loader
+         *  first, look for a tree stored for the current version of the
+         *  source; the file loader can locate the source without reading it
          */
-        try
+        long sourceModified = 0;
+        if (parsedStore != null && resourceLoader instanceof FileResourceLoader)
         {
-            is = resourceLoader.getResourceStream(name);
-        }
-        catch( ResourceNotFoundException rnfe )
-        {
-            /*
-             *  remember and re-throw
-             */
-
-            errorCondition = rnfe;
-            throw rnfe;
+            sourceModified = getSourceModified();
+            data = parsedStore.load(this, sourceModified);
         }
 
-        /*
-         *  if that worked, lets protect in case a loader impl
-         *  forgets to throw a proper exception
-         */
-
-        if (is != null)
+        if (data == null)
         {
             /*
-             *  now parse the template
+             *  then, try to get the text or the stream from the loader
              */
-
             try
             {
-                BufferedReader br = new BufferedReader( new InputStreamReader( is, encoding ) );
-                data = rsvc.parse( br, name);
-                initDocument();
+                reader = resourceLoader.getResourceReader(name, encoding);
+                if (reader == null)
+                {
+                    is = resourceLoader.getResourceStream(name);
+                }
             }
-            catch( UnsupportedEncodingException  uce )
+            catch( ResourceNotFoundException rnfe )
             {
-                String msg = "Template.process : Unsupported input encoding : " + encoding
-                + " for template " + name;
+                /*
+                 *  remember and re-throw
+                 */
 
-                errorCondition  = new ParseErrorException( msg );
-                throw errorCondition;
+                errorCondition = rnfe;
+                throw rnfe;
             }
-            catch ( ParseException pex )
+
+            /*
+             *  if that worked, lets protect in case a loader impl
+             *  forgets to throw a proper exception
+             */
+
+            if (reader == null && is == null)
             {
                 /*
-                 *  remember the error and convert
+                 *  is == null, therefore we have some kind of file issue
                  */
-                errorCondition =  new ParseErrorException(pex, name);
+                errorCondition = new ResourceNotFoundException("Unknown resource error for resource " + name );
                 throw errorCondition;
             }
-            catch ( TemplateInitException pex )
+
+            /*
+             *  other loaders only know the source once it is open, which
+             *  still spares parsing it
+             */
+            if (parsedStore != null && !(resourceLoader instanceof FileResourceLoader))
             {
-                errorCondition = new ParseErrorException( pex, name);
-                throw errorCondition;
+                sourceModified = getSourceModified();
+                data = parsedStore.load(this, sourceModified);
             }
-            /**
-             * pass through runtime exceptions
-             */
-            catch( RuntimeException e )
+        }
+
+        /*
+         *  now parse the template
+         */
+
+        try
+        {
+            if (data != null)
             {
-                errorCondition = new VelocityException("Exception thrown processing Template "
-                    +getName(), e);
-                throw errorCondition;
+                /* same as parsing it again */
+                rsvc.dumpVMNamespace(name);
+                initDocument();
             }
-            finally
+            else
             {
-                /*
-                 *  Make sure to close the inputstream when we are done.
-                 */
-                try
+                if (reader == null)
                 {
-                    is.close();
+                    reader = new BufferedReader( new InputStreamReader( is, encoding ) );
                 }
-                catch(IOException e)
+                data = rsvc.parse( reader, name);
+
+                /* the store holds trees before their initialization */
+                byte[] parsed = parsedStore != null && sourceModified > 0
+                    ? parsedStore.serialize((SimpleNode)data) : null;
+                initDocument();
+                if (parsed != null)
                 {
-                    // If we are already throwing an exception then we want the original
-                    // exception to be continued to be thrown, otherwise, throw a new Exception.
-                    if (errorCondition == null)
-                    {
-                         throw new VelocityException(e);
-                    }                    
+                    parsedStore.store(this, sourceModified, parsed);
                 }
             }
         }
-        else
+        catch( UnsupportedEncodingException  uce )
+        {
+            String msg = "Template.process : Unsupported input encoding : " + encoding
+            + " for template " + name;
+
+            errorCondition  = new ParseErrorException( msg );
+            throw errorCondition;
+        }
+        catch ( ParseException pex )
         {
             /*
-             *  is == null, therefore we have some kind of file issue
+             *  remember the error and convert
              */
-            errorCondition = new ResourceNotFoundException("Unknown resource error for resource " + name );
+            errorCondition =  new ParseErrorException(pex, name);
+            throw errorCondition;
+        }
+        catch ( TemplateInitException pex )
+        {
+            errorCondition = new ParseErrorException( pex, name);
+            throw errorCondition;
+        }
+        /**
+         * pass through runtime exceptions
+         */
+        catch( RuntimeException e )
+        {
+            errorCondition = new VelocityException("Exception thrown processing Template "
+                +getName(), e);
             throw errorCondition;
         }
+        finally
+        {
+            /*
+             *  Make sure to close the inputstream when we are done.
+             */
+            try
+            {
+                if (reader != null)
+                {
+                    reader.close();
+                }
+                else if (is != null)
+                {
+                    is.close();
+                }
+            }
+            catch(IOException e)
+            {
+                // If we are already throwing an exception then we want the original
+                // exception to be continued to be thrown, otherwise, throw a new Exception.
+                if (errorCondition == null)
+                {
+                     throw new VelocityException(e);
+                }                    
+            }
+        }
+    }
+
+    /**
+     * Gets the modification time of the source for the parsed store, or 0
+     * if the loader cannot tell, in which case the template is parsed.
+     */
+    private long getSourceModified()
+    {
+        try
+        {
+            return resourceLoader.getLastModified(this);
+        }
+        catch (RuntimeException e)
+        {
+            logger.debug("Template : cannot get the modification time of '" + name
+                + "', parsing it", e);
+            return 0;
+        }
     }
 
     /**
@@ -229,6 +329,25 @@ public class Template extends Resource
 
             ((SimpleNode)data).init( ica, rsvc);
 
+            if (rsvc.getBoolean(RuntimeConstants.RUNTIME_TEMPLATE_OPTIMIZE, false))
+            {
+                TemplateOptimizer optimizer = new TemplateOptimizer();
+                optimizer.setContext(ica);
+                ((SimpleNode)data).jjtAccept(optimizer, null);
+            }
+
+            if (rsvc.getBoolean(RuntimeConstants.RUNTIME_TEMPLATE_COMPILE, false)
+                && data instanceof ASTprocess)
+            {
+                CompiledTemplate compiled = TemplateCompiler.compile((ASTprocess)data, name);
+                ((ASTprocess)data).setCompiled(compiled);
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("Template '" + name + "' is "
+                                 + (compiled != null ? "compiled" : "interpreted"));
+                }
+            }
+
             String property = scopeName+'.'+RuntimeConstants.PROVIDE_SCOPE_CONTROL;
             provideScope = rsvc.getBoolean(property, provideScope);
         }
@@ -245,6 +364,19 @@ public class Template extends Resource
 
     }
 
+    /**
+     * Tells whether this template is rendered by compiled code or by
+     * walking the AST. Templates are only compiled when the
+     * {@link RuntimeConstants#RUNTIME_TEMPLATE_COMPILE} switch is on.
+     *
+     * @return true if this template has been compiled
+     * @since 1.8
+     */
+    public boolean isCompiled()
+    {
+        return data instanceof ASTprocess && ((ASTprocess)data).isCompiled();
+    }
+
     /**
      * The AST node structure is merged with the
      * context to produce the final output.
@@ -263,6 +395,60 @@ public class Template extends Resource
         merge(context, writer, null);
     }
 
+    /**
+     * The AST node structure is merged with the context, and the output
+     * written to the given stream in the given charset. In UTF-8 and
+     * single-byte charsets, static text is only encoded the first time it
+     * is written; only the dynamic parts are encoded on each merge. Other
+     * charsets, such as UTF-16, are written through an OutputStreamWriter.
+     *
+     *  @param context Conext with data elements accessed by template
+     *  @param out output stream for rendered template; the encoding is
+     *         completed and the stream flushed, but not closed
+     *  @param charset output charset
+     *  @throws ResourceNotFoundException if template not found
+     *          from any available source.
+     *  @throws ParseErrorException if template cannot be parsed due
+     *          to syntax (or other) error.
+     *  @throws MethodInvocationException When a method on a referenced object in the context could not invoked.
+     *  @since 1.8
+     */
+    public void merge( Context context, OutputStream out, Charset charset)
+        throws ResourceNotFoundException, ParseErrorException, MethodInvocationException
+    {
+        try
+        {
+            if (EncodingWriter.supports(charset))
+            {
+                EncodingWriter writer = new EncodingWriter(out, charset);
+                merge(context, writer, null);
+                writer.finish();
+            }
+            else
+            {
+                /* closing the writer completes the encoding, but the stream stays open */
+                Writer writer = new BufferedWriter(new OutputStreamWriter(new FilterOutputStream(out)
+                {
+                    public void write(byte[] b, int off, int len) throws IOException
+                    {
+                        out.write(b, off, len);
+                    }
+
+                    public void close() throws IOException
+                    {
+                        flush();
+                    }
+                }, charset));
+                merge(context, writer, null);
+                writer.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new VelocityException("IO Error rendering template '"+ name + "'", e);
+        }
+    }
+
     
     /**
      * The AST node structure is merged with the
@@ -305,6 +491,13 @@ public class Template extends Resource
 
                 InternalContextAdapterImpl ica = new InternalContextAdapterImpl( context );
 
+                SlotTable slots = data instanceof ASTprocess
+                    ? ((ASTprocess) data).getSlotTable() : null;
+                if (slots != null)
+                {
+                    ica.enableSlots(slots);
+                }
+
                 /**
                  * Set the macro libraries
                  */
@@ -403,6 +596,8 @@ public class Template extends Resource
                             }
                         }
                     }
+
+                    ica.flushSlots();
                 }
             }
             else
@@ -25,6 +25,7 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.Map;
 import java.util.Properties;
 import org.apache.commons.collections.ExtendedProperties;
 import org.apache.velocity.Template;
@@ -280,6 +281,53 @@ public class Velocity implements RuntimeConstants
             .invokeVelocimacro(vmName, logTag, params, context, writer);
     }
 
+    /**
+     * Invokes a currently registered Velocimacro with the given argument
+     * values and places the rendered stream into the writer. Unlike
+     * invokeVelocimacro(), no VTL is built nor parsed: the values are bound
+     * directly to the macro arguments and the macro tree is rendered.
+     *
+     * @param vmName name of Velocimacro to call
+     * @param logTag string to be used for template name in case of error. if null,
+     *               the vmName will be used
+     * @param args values of the macro arguments, in declaration order
+     * @param context Context object containing data/objects used for rendering.
+     * @param writer  Writer for output stream
+     * @return true if Velocimacro exists and successfully invoked, false otherwise.
+     * @since 1.8
+     */
+    public static boolean renderVelocimacro( String vmName, String logTag,
+                                             Object[] args, Context context,
+                                             Writer writer )
+    {
+        return RuntimeSingleton.getRuntimeServices()
+            .renderVelocimacro(vmName, logTag, args, context, writer);
+    }
+
+    /**
+     * Invokes a currently registered Velocimacro with the given argument
+     * values and places the rendered stream into the writer. Unlike
+     * invokeVelocimacro(), no VTL is built nor parsed: the values are bound
+     * directly to the macro arguments and the macro tree is rendered.
+     *
+     * @param vmName name of Velocimacro to call
+     * @param logTag string to be used for template name in case of error. if null,
+     *               the vmName will be used
+     * @param args values of the macro arguments, keyed by argument name
+     *               (eg "foo" rather than "$foo")
+     * @param context Context object containing data/objects used for rendering.
+     * @param writer  Writer for output stream
+     * @return true if Velocimacro exists and successfully invoked, false otherwise.
+     * @since 1.8
+     */
+    public static boolean renderVelocimacro( String vmName, String logTag,
+                                             Map args, Context context,
+                                             Writer writer )
+    {
+        return RuntimeSingleton.getRuntimeServices()
+            .renderVelocimacro(vmName, logTag, args, context, writer);
+    }
+
     /**
      *  Merges a template and puts the rendered stream into the writer.
      *  The default encoding that Velocity uses to read template files is defined in
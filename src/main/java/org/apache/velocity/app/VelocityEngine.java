@@ -26,6 +26,7 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.Map;
 import java.util.Properties;
 import org.apache.commons.collections.ExtendedProperties;
 import org.apache.velocity.Template;
@@ -34,6 +35,7 @@ import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.ParseCache;
 import org.apache.velocity.runtime.RuntimeInstance;
 import org.apache.velocity.runtime.VelocityListener;
 import org.slf4j.Logger;
@@ -97,6 +99,17 @@ public class VelocityEngine implements RuntimeConstants
         ri.init();
     }
 
+    /**
+     * Releases the threads and file system watches of the engine. It must
+     * not be used afterwards.
+     * @see RuntimeInstance#shutdown()
+     * @since 1.8
+     */
+    public void shutdown()
+    {
+        ri.shutdown();
+    }
+
     /**
      *  initialize the Velocity runtime engine, using default properties
      *  plus the properties in the properties file passed in as the arg
@@ -212,6 +225,30 @@ public class VelocityEngine implements RuntimeConstants
         return ri.evaluate(context, out, logTag, instring);
     }
 
+    /**
+     * Returns the cache of the parsed strings of {@link #evaluate(Context, Writer, String, String)},
+     * with its hit and miss counters.
+     *
+     * @return the cache, or null if <code>runtime.evaluate.cache.size</code> is not set
+     * @since 1.8
+     */
+    public ParseCache getEvaluateCache()
+    {
+        return ri.getEvaluateCache();
+    }
+
+    /**
+     * Returns the cache of the parsed strings of the #evaluate() directive,
+     * with its hit and miss counters.
+     *
+     * @return the cache, or null if <code>directive.evaluate.cache.size</code> is 0
+     * @since 1.8
+     */
+    public ParseCache getEvaluateDirectiveCache()
+    {
+        return ri.getEvaluateDirectiveCache();
+    }
+
     /**
      *  Renders the input stream using the context into the output writer.
      *  To be used when a template is dynamically constructed, or want to
@@ -308,6 +345,51 @@ public class VelocityEngine implements RuntimeConstants
         return ri.invokeVelocimacro(vmName, logTag, params, context, writer);
     }
 
+    /**
+     * Invokes a currently registered Velocimacro with the given argument
+     * values and places the rendered stream into the writer. Unlike
+     * invokeVelocimacro(), no VTL is built nor parsed: the values are bound
+     * directly to the macro arguments and the macro tree is rendered.
+     *
+     * @param vmName name of Velocimacro to call
+     * @param logTag string to be used for template name in case of error. if null,
+     *               the vmName will be used
+     * @param args values of the macro arguments, in declaration order
+     * @param context Context object containing data/objects used for rendering.
+     * @param writer  Writer for output stream
+     * @return true if Velocimacro exists and successfully invoked, false otherwise.
+     * @since 1.8
+     */
+    public boolean renderVelocimacro( String vmName, String logTag,
+                                      Object[] args, Context context,
+                                      Writer writer )
+    {
+        return ri.renderVelocimacro(vmName, logTag, args, context, writer);
+    }
+
+    /**
+     * Invokes a currently registered Velocimacro with the given argument
+     * values and places the rendered stream into the writer. Unlike
+     * invokeVelocimacro(), no VTL is built nor parsed: the values are bound
+     * directly to the macro arguments and the macro tree is rendered.
+     *
+     * @param vmName name of Velocimacro to call
+     * @param logTag string to be used for template name in case of error. if null,
+     *               the vmName will be used
+     * @param args values of the macro arguments, keyed by argument name
+     *               (eg "foo" rather than "$foo")
+     * @param context Context object containing data/objects used for rendering.
+     * @param writer  Writer for output stream
+     * @return true if Velocimacro exists and successfully invoked, false otherwise.
+     * @since 1.8
+     */
+    public boolean renderVelocimacro( String vmName, String logTag,
+                                      Map args, Context context,
+                                      Writer writer )
+    {
+        return ri.renderVelocimacro(vmName, logTag, args, context, writer);
+    }
+
     /**
      *  Merges a template and puts the rendered stream into the writer.
      *  The default encoding that Velocity uses to read template files is defined in
@@ -59,11 +59,39 @@ public class EventCartridge
     private List includeHandlers = new ArrayList();
     private List invalidReferenceHandlers = new ArrayList();
 
+    private static final ReferenceInsertionEventHandler[] NO_REFERENCE_HANDLERS =
+        new ReferenceInsertionEventHandler[0];
+    private static final NullSetEventHandler[] NO_NULL_SET_HANDLERS =
+        new NullSetEventHandler[0];
+    private static final MethodExceptionEventHandler[] NO_METHOD_EXCEPTION_HANDLERS =
+        new MethodExceptionEventHandler[0];
+    private static final IncludeEventHandler[] NO_INCLUDE_HANDLERS =
+        new IncludeEventHandler[0];
+    private static final InvalidReferenceEventHandler[] NO_INVALID_REFERENCE_HANDLERS =
+        new InvalidReferenceEventHandler[0];
+
+    /*
+     * Snapshots of the handler lists, rebuilt whenever a handler is added or
+     * removed, so that EventHandlerUtil can dispatch without allocating an
+     * Iterator for every rendered reference.
+     */
+    private ReferenceInsertionEventHandler[] referenceHandlerArray = NO_REFERENCE_HANDLERS;
+    private NullSetEventHandler[] nullSetHandlerArray = NO_NULL_SET_HANDLERS;
+    private MethodExceptionEventHandler[] methodExceptionHandlerArray = NO_METHOD_EXCEPTION_HANDLERS;
+    private IncludeEventHandler[] includeHandlerArray = NO_INCLUDE_HANDLERS;
+    private InvalidReferenceEventHandler[] invalidReferenceHandlerArray = NO_INVALID_REFERENCE_HANDLERS;
+
     /**
      * Ensure that handlers are not initialized more than once.
      */
     Set initializedHandlers = new HashSet();
 
+    /**
+     * The runtime all current handlers have been initialized with, or null
+     * if a handler was added since the last call to initialize.
+     */
+    private RuntimeServices initializedRuntime = null;
+
     /**
      *  Adds an event handler(s) to the Cartridge.  This method
      *  will find all possible event handler interfaces supported
@@ -123,6 +151,9 @@ public class EventCartridge
      public void addReferenceInsertionEventHandler( ReferenceInsertionEventHandler ev )
      {
          referenceHandlers.add( ev );
+         referenceHandlerArray = (ReferenceInsertionEventHandler[])
+             referenceHandlers.toArray(NO_REFERENCE_HANDLERS);
+         initializedRuntime = null;
      }
 
     /**
@@ -134,6 +165,9 @@ public class EventCartridge
      public void addNullSetEventHandler( NullSetEventHandler ev )
      {
          nullSetHandlers.add( ev );
+         nullSetHandlerArray = (NullSetEventHandler[])
+             nullSetHandlers.toArray(NO_NULL_SET_HANDLERS);
+         initializedRuntime = null;
      }
 
     /**
@@ -145,6 +179,9 @@ public class EventCartridge
     public void addMethodExceptionHandler( MethodExceptionEventHandler ev )
     {
         methodExceptionHandlers.add( ev );
+        methodExceptionHandlerArray = (MethodExceptionEventHandler[])
+            methodExceptionHandlers.toArray(NO_METHOD_EXCEPTION_HANDLERS);
+        initializedRuntime = null;
     }
 
     /**
@@ -156,6 +193,9 @@ public class EventCartridge
     public void addIncludeEventHandler( IncludeEventHandler ev )
     {
         includeHandlers.add( ev );
+        includeHandlerArray = (IncludeEventHandler[])
+            includeHandlers.toArray(NO_INCLUDE_HANDLERS);
+        initializedRuntime = null;
     }
 
     /**
@@ -167,6 +207,9 @@ public class EventCartridge
     public void addInvalidReferenceEventHandler( InvalidReferenceEventHandler ev )
     {
         invalidReferenceHandlers.add( ev );
+        invalidReferenceHandlerArray = (InvalidReferenceEventHandler[])
+            invalidReferenceHandlers.toArray(NO_INVALID_REFERENCE_HANDLERS);
+        initializedRuntime = null;
     }
 
 
@@ -189,19 +232,44 @@ public class EventCartridge
         boolean found = false;
 
         if ( ev instanceof ReferenceInsertionEventHandler )
-            return referenceHandlers.remove( ev );
+        {
+            found = referenceHandlers.remove( ev );
+            referenceHandlerArray = (ReferenceInsertionEventHandler[])
+                referenceHandlers.toArray(NO_REFERENCE_HANDLERS);
+            return found;
+        }
 
         if ( ev instanceof NullSetEventHandler )
-            return nullSetHandlers.remove( ev );
+        {
+            found = nullSetHandlers.remove( ev );
+            nullSetHandlerArray = (NullSetEventHandler[])
+                nullSetHandlers.toArray(NO_NULL_SET_HANDLERS);
+            return found;
+        }
 
         if ( ev instanceof MethodExceptionEventHandler )
-            return methodExceptionHandlers.remove(ev );
+        {
+            found = methodExceptionHandlers.remove( ev );
+            methodExceptionHandlerArray = (MethodExceptionEventHandler[])
+                methodExceptionHandlers.toArray(NO_METHOD_EXCEPTION_HANDLERS);
+            return found;
+        }
 
         if ( ev instanceof IncludeEventHandler )
-            return includeHandlers.remove( ev );
+        {
+            found = includeHandlers.remove( ev );
+            includeHandlerArray = (IncludeEventHandler[])
+                includeHandlers.toArray(NO_INCLUDE_HANDLERS);
+            return found;
+        }
 
         if ( ev instanceof InvalidReferenceEventHandler )
-            return invalidReferenceHandlers.remove( ev );
+        {
+            found = invalidReferenceHandlers.remove( ev );
+            invalidReferenceHandlerArray = (InvalidReferenceEventHandler[])
+                invalidReferenceHandlers.toArray(NO_INVALID_REFERENCE_HANDLERS);
+            return found;
+        }
 
         return found;
     }
@@ -260,6 +328,51 @@ public class EventCartridge
         return invalidReferenceHandlers.iterator();
     }
 
+    /**
+     * @return the stored ReferenceInsertionEventHandler objects, never null
+     * @since 1.8
+     */
+    ReferenceInsertionEventHandler[] getReferenceInsertionEventHandlerArray()
+    {
+        return referenceHandlerArray;
+    }
+
+    /**
+     * @return the stored NullSetEventHandler objects, never null
+     * @since 1.8
+     */
+    NullSetEventHandler[] getNullSetEventHandlerArray()
+    {
+        return nullSetHandlerArray;
+    }
+
+    /**
+     * @return the stored MethodExceptionEventHandler objects, never null
+     * @since 1.8
+     */
+    MethodExceptionEventHandler[] getMethodExceptionEventHandlerArray()
+    {
+        return methodExceptionHandlerArray;
+    }
+
+    /**
+     * @return the stored IncludeEventHandler objects, never null
+     * @since 1.8
+     */
+    IncludeEventHandler[] getIncludeEventHandlerArray()
+    {
+        return includeHandlerArray;
+    }
+
+    /**
+     * @return the stored InvalidReferenceEventHandler objects, never null
+     * @since 1.8
+     */
+    InvalidReferenceEventHandler[] getInvalidReferenceEventHandlerArray()
+    {
+        return invalidReferenceHandlerArray;
+    }
+
     /**
      *  Attached the EventCartridge to the context
      *
@@ -302,6 +415,14 @@ public class EventCartridge
      */
     public void initialize (RuntimeServices rs) throws Exception
     {
+        /*
+         * context cartridges get here for every event, so skip the
+         * handler scan unless something was added since the last one
+         */
+        if (rs == initializedRuntime)
+        {
+            return;
+        }
 
         for ( Iterator i = referenceHandlers.iterator(); i.hasNext(); )
         {
@@ -358,6 +479,7 @@ public class EventCartridge
             }
         }
 
+        initializedRuntime = rs;
     }
 
 
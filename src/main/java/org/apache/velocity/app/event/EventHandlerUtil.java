@@ -23,6 +23,7 @@ import java.util.Iterator;
 
 import org.apache.velocity.context.InternalContextAdapter;
 import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.util.ContextAware;
 import org.apache.velocity.util.ExceptionUtils;
 import org.apache.velocity.util.introspection.Info;
 
@@ -56,58 +57,50 @@ public class EventHandlerUtil {
     public static Object referenceInsert(RuntimeServices rsvc,
             InternalContextAdapter context, String reference, Object value)
     {
-        // app level cartridges have already been initialized
-        
         /*
-         * Performance modification: EventCartridge.getReferenceInsertionEventHandlers
-         * now returns a null if there are no handlers. Thus we can avoid creating the
-         * Iterator object.
+         * Performance modification: the cartridges keep their handlers in
+         * arrays, so the common case of no handlers at all costs a couple
+         * of field reads, and no Iterator or executor is ever created.
          */
         EventCartridge ev1 = rsvc.getApplicationEventCartridge();
-        Iterator applicationEventHandlerIterator = 
-            (ev1 == null) ? null: ev1.getReferenceInsertionEventHandlers();              
-        
         EventCartridge ev2 = context.getEventCartridge();
-        initializeEventCartridge(rsvc, ev2);
-        Iterator contextEventHandlerIterator = 
-            (ev2 == null) ? null: ev2.getReferenceInsertionEventHandlers();              
-        
-        try 
+        if (ev2 == null && (ev1 == null || ev1.getReferenceInsertionEventHandlerArray().length == 0))
         {
-            /*
-             * Performance modification: methodExecutor is created only if one of the
-             * iterators is not null.
-             */
-            
-            EventHandlerMethodExecutor methodExecutor = null; 
-
-            if( applicationEventHandlerIterator != null )
-            {
-                methodExecutor = 
-                    new ReferenceInsertionEventHandler.referenceInsertExecutor(context, reference, value);
-                iterateOverEventHandlers(applicationEventHandlerIterator, methodExecutor);
-            }
-
-            if( contextEventHandlerIterator != null )
-            {
-                if( methodExecutor == null )
-                    methodExecutor = 
-                        new ReferenceInsertionEventHandler.referenceInsertExecutor(context, reference, value);
-                    
-                iterateOverEventHandlers(contextEventHandlerIterator, methodExecutor);
-            }
+            return value;
+        }
 
-            
-            return methodExecutor != null ? methodExecutor.getReturnValue() : value;   
+        // app level cartridges have already been initialized
+        if (ev1 != null)
+        {
+            value = referenceInsert(ev1.getReferenceInsertionEventHandlerArray(),
+                                    context, reference, value);
         }
-        catch (RuntimeException e)
+        if (ev2 != null)
         {
-            throw e;
+            initializeEventCartridge(rsvc, ev2);
+            value = referenceInsert(ev2.getReferenceInsertionEventHandlerArray(),
+                                    context, reference, value);
         }
-        catch (Exception e)
+        return value;
+    }
+
+    private static Object referenceInsert(ReferenceInsertionEventHandler[] handlers,
+            InternalContextAdapter context, String reference, Object value)
+    {
+        for (int i = 0; i < handlers.length; i++)
         {
-            throw ExceptionUtils.createRuntimeException("Exception in event handler.",e);
+            ReferenceInsertionEventHandler eh = handlers[i];
+            if (eh instanceof ContextAware)
+            {
+                ((ContextAware) eh).setContext(context);
+            }
+
+            /**
+             * Every successive call will alter the same value
+             */
+            value = eh.referenceInsert(reference, value);
         }
+        return value;
     }
 
     /**
@@ -126,33 +119,37 @@ public class EventHandlerUtil {
     {
         // app level cartridges have already been initialized
         EventCartridge ev1 = rsvc.getApplicationEventCartridge();
-        Iterator applicationEventHandlerIterator = 
-            (ev1 == null) ? null: ev1.getNullSetEventHandlers();              
-        
-        EventCartridge ev2 = context.getEventCartridge();
-        initializeEventCartridge(rsvc, ev2);
-        Iterator contextEventHandlerIterator = 
-            (ev2 == null) ? null: ev2.getNullSetEventHandlers();              
-                
-        try 
+        if (ev1 != null && !shouldLogOnNullSet(ev1.getNullSetEventHandlerArray(),
+                                               context, lhs, rhs))
         {
-            EventHandlerMethodExecutor methodExecutor = 
-                new NullSetEventHandler.ShouldLogOnNullSetExecutor(context, lhs, rhs);
-
-            callEventHandlers(
-                    applicationEventHandlerIterator, 
-                    contextEventHandlerIterator, methodExecutor);
-            
-            return ((Boolean) methodExecutor.getReturnValue()).booleanValue();    
+            return false;
         }
-        catch (RuntimeException e)
+
+        EventCartridge ev2 = context.getEventCartridge();
+        if (ev2 != null)
         {
-            throw e;
+            initializeEventCartridge(rsvc, ev2);
+            return shouldLogOnNullSet(ev2.getNullSetEventHandlerArray(), context, lhs, rhs);
         }
-        catch (Exception e)
+        return true;
+    }
+
+    private static boolean shouldLogOnNullSet(NullSetEventHandler[] handlers,
+            InternalContextAdapter context, String lhs, String rhs)
+    {
+        for (int i = 0; i < handlers.length; i++)
         {
-            throw ExceptionUtils.createRuntimeException("Exception in event handler.",e);
+            NullSetEventHandler eh = handlers[i];
+            if (eh instanceof ContextAware)
+            {
+                ((ContextAware) eh).setContext(context);
+            }
+            if (!eh.shouldLogOnNullSet(lhs, rhs))
+            {
+                return false;
+            }
         }
+        return true;
     }
     
     /**
@@ -178,28 +175,27 @@ public class EventHandlerUtil {
     {
         // app level cartridges have already been initialized
         EventCartridge ev1 = rsvc.getApplicationEventCartridge();
-        Iterator applicationEventHandlerIterator = 
-            (ev1 == null) ? null: ev1.getMethodExceptionEventHandlers();              
-        
-        EventCartridge ev2 = context.getEventCartridge();
-        initializeEventCartridge(rsvc, ev2);
-        Iterator contextEventHandlerIterator = 
-            (ev2 == null) ? null: ev2.getMethodExceptionEventHandlers();              
-        
-        EventHandlerMethodExecutor methodExecutor = 
-            new MethodExceptionEventHandler.MethodExceptionExecutor(context, claz, method, e);
-        
-        if ( ((applicationEventHandlerIterator == null) || !applicationEventHandlerIterator.hasNext()) &&
-                ((contextEventHandlerIterator == null) || !contextEventHandlerIterator.hasNext()) )
+        MethodExceptionEventHandler[] handlers =
+            (ev1 == null) ? null : ev1.getMethodExceptionEventHandlerArray();
+
+        if (handlers == null || handlers.length == 0)
         {
-            throw e;
+            EventCartridge ev2 = context.getEventCartridge();
+            initializeEventCartridge(rsvc, ev2);
+            handlers = (ev2 == null) ? null : ev2.getMethodExceptionEventHandlerArray();
+
+            if (handlers == null || handlers.length == 0)
+            {
+                throw e;
+            }
         }
-            
-        callEventHandlers(
-                applicationEventHandlerIterator, 
-                contextEventHandlerIterator, methodExecutor);
-        
-        return methodExecutor.getReturnValue();
+
+        MethodExceptionEventHandler eh = handlers[0];
+        if (eh instanceof ContextAware)
+        {
+            ((ContextAware) eh).setContext(context);
+        }
+        return eh.methodException(claz, method, e);
     }
     
     /**
@@ -228,35 +224,51 @@ public class EventHandlerUtil {
     {
         // app level cartridges have already been initialized
         EventCartridge ev1 = rsvc.getApplicationEventCartridge();
-        Iterator applicationEventHandlerIterator = 
-            (ev1 == null) ? null: ev1.getIncludeEventHandlers();              
-        
-        EventCartridge ev2 = context.getEventCartridge();
-        initializeEventCartridge(rsvc, ev2);
-        Iterator contextEventHandlerIterator = 
-            (ev2 == null) ? null: ev2.getIncludeEventHandlers();              
-        
-        try 
+        if (ev1 != null && ev1.getIncludeEventHandlerArray().length > 0)
         {
-            EventHandlerMethodExecutor methodExecutor = 
-                new IncludeEventHandler.IncludeEventExecutor(
-                        context, includeResourcePath, 
-                        currentResourcePath, directiveName);
-            
-            callEventHandlers(
-                    applicationEventHandlerIterator, 
-                    contextEventHandlerIterator, methodExecutor);
-            
-            return (String) methodExecutor.getReturnValue();
+            includeResourcePath = includeEvent(ev1.getIncludeEventHandlerArray(), context,
+                    includeResourcePath, currentResourcePath, directiveName);
+            if (includeResourcePath == null)
+            {
+                // blocked by an application level handler
+                return null;
+            }
         }
-        catch (RuntimeException e)
+
+        EventCartridge ev2 = context.getEventCartridge();
+        if (ev2 != null)
         {
-            throw e;
+            initializeEventCartridge(rsvc, ev2);
+            includeResourcePath = includeEvent(ev2.getIncludeEventHandlerArray(), context,
+                    includeResourcePath, currentResourcePath, directiveName);
         }
-        catch (Exception e)
+        return includeResourcePath;
+    }
+
+    private static String includeEvent(IncludeEventHandler[] handlers,
+            InternalContextAdapter context, String includeResourcePath,
+            String currentResourcePath, String directiveName)
+    {
+        for (int i = 0; i < handlers.length; i++)
         {
-            throw ExceptionUtils.createRuntimeException("Exception in event handler.",e);
+            IncludeEventHandler eh = handlers[i];
+            if (eh instanceof ContextAware)
+            {
+                ((ContextAware) eh).setContext(context);
+            }
+
+            /*
+             * the first handler always gets called, even for a null path,
+             * so that it may substitute one
+             */
+            includeResourcePath =
+                eh.includeEvent(includeResourcePath, currentResourcePath, directiveName);
+            if (includeResourcePath == null)
+            {
+                break;
+            }
         }
+        return includeResourcePath;
     }
    
 
@@ -275,12 +287,30 @@ public class EventHandlerUtil {
             InternalContextAdapter context, String reference, 
             Object object, String property, Info info)
     {
-        return  
-        invalidReferenceHandlerCall (
-                new InvalidReferenceEventHandler.InvalidGetMethodExecutor
-                (context, reference, object, property, info),
-                rsvc, 
-                context);       
+        Object result = null;
+
+        // app level cartridges have already been initialized
+        EventCartridge ev1 = rsvc.getApplicationEventCartridge();
+        if (ev1 != null)
+        {
+            InvalidReferenceEventHandler[] handlers = ev1.getInvalidReferenceEventHandlerArray();
+            for (int i = 0; i < handlers.length && result == null; i++)
+            {
+                result = handlers[i].invalidGetMethod(context, reference, object, property, info);
+            }
+        }
+
+        EventCartridge ev2 = context.getEventCartridge();
+        if (ev2 != null && result == null)
+        {
+            initializeEventCartridge(rsvc, ev2);
+            InvalidReferenceEventHandler[] handlers = ev2.getInvalidReferenceEventHandlerArray();
+            for (int i = 0; i < handlers.length && result == null; i++)
+            {
+                result = handlers[i].invalidGetMethod(context, reference, object, property, info);
+            }
+        }
+        return result;
     }
         
         
@@ -297,14 +327,29 @@ public class EventHandlerUtil {
             InternalContextAdapter context, String leftreference, 
             String rightreference, Info info)
     {
-        /**
-         * ignore return value
-         */
-        invalidReferenceHandlerCall (
-                new InvalidReferenceEventHandler.InvalidSetMethodExecutor
-                (context, leftreference, rightreference, info),
-                rsvc, 
-                context);   
+        boolean done = false;
+
+        // app level cartridges have already been initialized
+        EventCartridge ev1 = rsvc.getApplicationEventCartridge();
+        if (ev1 != null)
+        {
+            InvalidReferenceEventHandler[] handlers = ev1.getInvalidReferenceEventHandlerArray();
+            for (int i = 0; i < handlers.length && !done; i++)
+            {
+                done = handlers[i].invalidSetMethod(context, leftreference, rightreference, info);
+            }
+        }
+
+        EventCartridge ev2 = context.getEventCartridge();
+        if (ev2 != null && !done)
+        {
+            initializeEventCartridge(rsvc, ev2);
+            InvalidReferenceEventHandler[] handlers = ev2.getInvalidReferenceEventHandlerArray();
+            for (int i = 0; i < handlers.length && !done; i++)
+            {
+                done = handlers[i].invalidSetMethod(context, leftreference, rightreference, info);
+            }
+        }
     }
     
     /**
@@ -322,12 +367,30 @@ public class EventHandlerUtil {
             InternalContextAdapter context,  String reference,
             Object object, String method, Info info)
     {
-        return 
-        invalidReferenceHandlerCall (
-                new InvalidReferenceEventHandler.InvalidMethodExecutor
-                (context, reference, object, method, info),
-                rsvc, 
-                context);       
+        Object result = null;
+
+        // app level cartridges have already been initialized
+        EventCartridge ev1 = rsvc.getApplicationEventCartridge();
+        if (ev1 != null)
+        {
+            InvalidReferenceEventHandler[] handlers = ev1.getInvalidReferenceEventHandlerArray();
+            for (int i = 0; i < handlers.length && result == null; i++)
+            {
+                result = handlers[i].invalidMethod(context, reference, object, method, info);
+            }
+        }
+
+        EventCartridge ev2 = context.getEventCartridge();
+        if (ev2 != null && result == null)
+        {
+            initializeEventCartridge(rsvc, ev2);
+            InvalidReferenceEventHandler[] handlers = ev2.getInvalidReferenceEventHandlerArray();
+            for (int i = 0; i < handlers.length && result == null; i++)
+            {
+                result = handlers[i].invalidMethod(context, reference, object, method, info);
+            }
+        }
+        return result;
     }
     
     
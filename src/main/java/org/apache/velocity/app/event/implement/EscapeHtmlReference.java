@@ -19,6 +19,9 @@ package org.apache.velocity.app.event.implement;
  * under the License.    
  */
 
+import java.io.IOException;
+import java.io.Writer;
+
 import org.apache.commons.lang.StringEscapeUtils;
 
 /**
@@ -42,6 +45,53 @@ public class EscapeHtmlReference extends EscapeReference
         return StringEscapeUtils.escapeHtml(text.toString());
     }
 
+    /**
+     * @return true
+     * @since 1.8
+     */
+    protected boolean supportsStreaming()
+    {
+        return true;
+    }
+
+    /**
+     * @param c
+     * @return whether c is turned into an entity
+     * @since 1.8
+     */
+    protected boolean needsEscape(char c)
+    {
+        return c == '<' || c == '>' || c == '&' || c == '"' || c > 0x7F;
+    }
+
+    /**
+     * @param c
+     * @param writer
+     * @throws IOException
+     * @since 1.8
+     */
+    protected void escape(char c, Writer writer) throws IOException
+    {
+        switch (c)
+        {
+            case '<':
+                writer.write("&lt;");
+                break;
+            case '>':
+                writer.write("&gt;");
+                break;
+            case '&':
+                writer.write("&amp;");
+                break;
+            case '"':
+                writer.write("&quot;");
+                break;
+            default:
+                // named or numeric entity
+                StringEscapeUtils.escapeHtml(writer, String.valueOf(c));
+        }
+    }
+
     /**
      * @return attribute "eventhandler.escape.html.match"
      */
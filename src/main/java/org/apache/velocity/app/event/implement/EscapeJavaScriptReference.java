@@ -19,6 +19,10 @@ package org.apache.velocity.app.event.implement;
  * under the License.    
  */
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
 import org.apache.commons.lang.StringEscapeUtils;
 
 /**
@@ -42,6 +46,69 @@ public class EscapeJavaScriptReference extends EscapeReference
         return StringEscapeUtils.escapeJavaScript(text.toString());
     }
 
+    /**
+     * @return true
+     * @since 1.8
+     */
+    protected boolean supportsStreaming()
+    {
+        return true;
+    }
+
+    /**
+     * @param c
+     * @return whether c gets a backslash escape
+     * @since 1.8
+     */
+    protected boolean needsEscape(char c)
+    {
+        return c < 32 || c > 0x7F || c == '\'' || c == '"' || c == '\\' || c == '/';
+    }
+
+    /**
+     * @param c
+     * @param writer
+     * @throws IOException
+     * @since 1.8
+     */
+    protected void escape(char c, Writer writer) throws IOException
+    {
+        switch (c)
+        {
+            case '\b':
+                writer.write("\\b");
+                break;
+            case '\n':
+                writer.write("\\n");
+                break;
+            case '\t':
+                writer.write("\\t");
+                break;
+            case '\f':
+                writer.write("\\f");
+                break;
+            case '\r':
+                writer.write("\\r");
+                break;
+            case '\'':
+            case '"':
+            case '\\':
+            case '/':
+                writer.write('\\');
+                writer.write(c);
+                break;
+            default:
+                // unicode escape, upper case hex digits
+                String hex = Integer.toHexString(c).toUpperCase(Locale.ENGLISH);
+                writer.write("\\u");
+                for (int i = hex.length(); i < 4; i++)
+                {
+                    writer.write('0');
+                }
+                writer.write(hex);
+        }
+    }
+
     /**
      * @return attribute "eventhandler.escape.javascript.match"
      */
@@ -19,9 +19,19 @@ package org.apache.velocity.app.event.implement;
  * under the License.    
  */
 
-import org.apache.oro.text.perl.MalformedPerl5PatternException;
-import org.apache.oro.text.perl.Perl5Util;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
 import org.apache.velocity.app.event.ReferenceInsertionEventHandler;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.Renderable;
+import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.util.RuntimeServicesAware;
 import org.apache.velocity.util.StringUtils;
@@ -49,9 +59,17 @@ import org.slf4j.LoggerFactory;
  * </PRE>
  * <!-- note: ignore empty HTML comment above - breaks up star slash avoiding javadoc end -->
  *
- * Regular expressions should follow the "Perl5" format used by the ORO regular expression
- * library.  More info is at
- * <a href="http://jakarta.apache.org/oro/api/org/apache/oro/text/perl/package-summary.html">http://jakarta.apache.org/oro/api/org/apache/oro/text/perl/package-summary.html</a>.
+ * <P>Escapers may also override <code>supportsStreaming()</code>, <code>needsEscape(char)</code>
+ * and <code>escape(char, Writer)</code>.  When <code>eventhandler.escape.streaming</code> is
+ * set to true, values without any character to escape are then inserted as is, and the others
+ * are handed back as a {@link Renderable} which escapes them straight into the output writer
+ * instead of going through an intermediate escaped String.
+ *
+ * Regular expressions keep the Perl5 <code>/pattern/flags</code> form (flags being any of
+ * <code>i</code>, <code>m</code>, <code>s</code> and <code>x</code>), and the pattern itself
+ * follows the {@link java.util.regex.Pattern} syntax.  A reference is escaped when the
+ * pattern is found anywhere in its literal.  The outcome only depends on the literal,
+ * so it is computed once per reference and remembered.
  *
  * @author <a href="mailto:wglass@forio.com">Will Glass-Husain </a>
  * @version $Id: EscapeReference.java 685685 2008-08-13 21:43:27Z nbubna $
@@ -61,12 +79,22 @@ public abstract class EscapeReference implements ReferenceInsertionEventHandler,
 {
     Logger logger = LoggerFactory.getLogger( EscapeReference.class );
 
-    private Perl5Util perl = new Perl5Util();
+    /**
+     * Upper bound on the number of remembered match outcomes, in case
+     * references are generated on the fly (e.g. with #evaluate).
+     */
+    private static final int MAX_CACHED_MATCHES = 10000;
 
     private RuntimeServices rs;
 
     private String matchRegExp = null;
 
+    private Pattern matchPattern = null;
+
+    private boolean streaming = false;
+
+    private final Map matches = new ConcurrentHashMap();
+
     /**
      * Escape the given text.  Override this in a subclass to do the actual
      * escaping.
@@ -100,14 +128,14 @@ public abstract class EscapeReference implements ReferenceInsertionEventHandler,
             return value;
         }
 
-        if (matchRegExp == null)
+        if (matchPattern == null)
         {
-            return escape(value);
+            return escapeValue(value);
         }
 
-        else if (perl.match(matchRegExp,reference))
+        else if (matches(reference))
         {
-            return escape(value);
+            return escapeValue(value);
         }
 
         else
@@ -116,6 +144,195 @@ public abstract class EscapeReference implements ReferenceInsertionEventHandler,
         }
     }
 
+    /**
+     * Whether {@link #needsEscape(char)} and {@link #escape(char, Writer)}
+     * are implemented, so that values can be escaped while being written out.
+     *
+     * @return false by default
+     * @since 1.8
+     */
+    protected boolean supportsStreaming()
+    {
+        return false;
+    }
+
+    /**
+     * Only used when streaming.
+     *
+     * @param c a character of the inserted value
+     * @return whether the character is changed by the escaping
+     * @since 1.8
+     */
+    protected boolean needsEscape(char c)
+    {
+        return true;
+    }
+
+    /**
+     * Write the escaped form of a character for which {@link #needsEscape(char)}
+     * returned true. Only used when streaming.
+     *
+     * @param c the character to escape
+     * @param writer the output writer
+     * @throws IOException
+     * @since 1.8
+     */
+    protected void escape(char c, Writer writer) throws IOException
+    {
+        writer.write(escape(String.valueOf(c)));
+    }
+
+    private Object escapeValue(Object value)
+    {
+        if (!streaming)
+        {
+            return escape(value);
+        }
+
+        String text = value.toString();
+        if (text == null)
+        {
+            return null;
+        }
+        int len = text.length();
+        for (int i = 0; i < len; i++)
+        {
+            if (needsEscape(text.charAt(i)))
+            {
+                return new EscapedText(text, i);
+            }
+        }
+
+        /* nothing to escape, keep the very same string */
+        return text;
+    }
+
+    /**
+     * Writes the text starting at the given index (the first character to
+     * escape), copying unchanged runs in bulk.
+     */
+    private void write(String text, int from, Writer writer) throws IOException
+    {
+        writer.write(text, 0, from);
+        int len = text.length();
+        int start = from;
+        for (int i = from; i < len; i++)
+        {
+            char c = text.charAt(i);
+            if (needsEscape(c))
+            {
+                if (i > start)
+                {
+                    writer.write(text, start, i - start);
+                }
+                escape(c, writer);
+                start = i + 1;
+            }
+        }
+        if (len > start)
+        {
+            writer.write(text, start, len - start);
+        }
+    }
+
+    /**
+     * Value handed back to the reference for it to render straight into the
+     * output writer. Later handlers in the chain see the escaped string
+     * through toString().
+     */
+    private class EscapedText implements Renderable
+    {
+        private final String text;
+        private final int from;
+
+        EscapedText(String text, int from)
+        {
+            this.text = text;
+            this.from = from;
+        }
+
+        public boolean render(InternalContextAdapter context, Writer writer) throws IOException
+        {
+            write(text, from, writer);
+            return true;
+        }
+
+        public String toString()
+        {
+            StringWriter writer = new StringWriter(text.length() + 16);
+            try
+            {
+                write(text, from, writer);
+            }
+            catch (IOException ioe)
+            {
+                // cannot happen with a StringWriter
+                throw new VelocityException("Could not escape value", ioe);
+            }
+            return writer.toString();
+        }
+    }
+
+    /**
+     * @param reference reference literal
+     * @return whether the configured pattern is found in the reference
+     */
+    private boolean matches(String reference)
+    {
+        Boolean match = (Boolean) matches.get(reference);
+        if (match == null)
+        {
+            match = Boolean.valueOf(matchPattern.matcher(reference).find());
+            if (matches.size() < MAX_CACHED_MATCHES)
+            {
+                matches.put(reference, match);
+            }
+        }
+        return match.booleanValue();
+    }
+
+    /**
+     * Compiles a Perl5 style <code>/pattern/flags</code> expression. An
+     * expression without delimiters is taken as the pattern itself.
+     *
+     * @param regexp the configured expression
+     * @return the compiled pattern
+     * @throws PatternSyntaxException if the pattern is malformed
+     */
+    static Pattern compile(String regexp)
+    {
+        int start = regexp.startsWith("m/") ? 2 : regexp.startsWith("/") ? 1 : 0;
+        int end = regexp.lastIndexOf('/');
+        if (start == 0 || end < start)
+        {
+            return Pattern.compile(regexp);
+        }
+
+        int flags = 0;
+        for (int i = end + 1; i < regexp.length(); i++)
+        {
+            char c = regexp.charAt(i);
+            switch (c)
+            {
+                case 'i':
+                    flags |= Pattern.CASE_INSENSITIVE;
+                    break;
+                case 'm':
+                    flags |= Pattern.MULTILINE;
+                    break;
+                case 's':
+                    flags |= Pattern.DOTALL;
+                    break;
+                case 'x':
+                    flags |= Pattern.COMMENTS;
+                    break;
+                default:
+                    throw new PatternSyntaxException("Unknown flag '" + c + "'", regexp, i);
+            }
+        }
+        return Pattern.compile(regexp.substring(start, end), flags);
+    }
+
     /**
      * Called automatically when event cartridge is initialized.
      * 
@@ -137,13 +354,18 @@ public abstract class EscapeReference implements ReferenceInsertionEventHandler,
         /**
          * Test the regular expression for a well formed pattern
          */
+        streaming = supportsStreaming()
+            && rs.getBoolean(RuntimeConstants.EVENTHANDLER_ESCAPE_STREAMING, false);
+
+        matchPattern = null;
+        matches.clear();
         if (matchRegExp != null)
         {
             try
             {
-                perl.match(matchRegExp,"");
+                matchPattern = compile(matchRegExp);
             }
-            catch (MalformedPerl5PatternException E)
+            catch (PatternSyntaxException E)
             {
                 logger.error( "Invalid regular expression '" + matchRegExp
                         + "'.  No escaping will be performed.", E );
@@ -19,6 +19,9 @@ package org.apache.velocity.app.event.implement;
  * under the License.    
  */
 
+import java.io.IOException;
+import java.io.Writer;
+
 import org.apache.commons.lang.StringEscapeUtils;
 
 /**
@@ -42,6 +45,36 @@ public class EscapeSqlReference extends EscapeReference
         return StringEscapeUtils.escapeSql(text.toString());
     }
 
+    /**
+     * @return true
+     * @since 1.8
+     */
+    protected boolean supportsStreaming()
+    {
+        return true;
+    }
+
+    /**
+     * @param c
+     * @return whether c is a single quote
+     * @since 1.8
+     */
+    protected boolean needsEscape(char c)
+    {
+        return c == '\'';
+    }
+
+    /**
+     * @param c
+     * @param writer
+     * @throws IOException
+     * @since 1.8
+     */
+    protected void escape(char c, Writer writer) throws IOException
+    {
+        writer.write("''");
+    }
+
     /**
      * @return attribute "eventhandler.escape.sql.match"
      */
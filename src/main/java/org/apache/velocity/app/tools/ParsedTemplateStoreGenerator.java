@@ -0,0 +1,179 @@
+package org.apache.velocity.app.tools;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.FileResourceLoader;
+
+/**
+ * Build-time tool filling a parsed template store (see
+ * {@link org.apache.velocity.runtime.resource.ParsedTemplateStore}) with
+ * all the templates of a directory, so that a freshly started engine does
+ * not have to parse them.
+ *
+ * <p>The entries are only used by engines configured like the one given to
+ * the generator (resource loader settings aside), loading the templates
+ * with a {@link FileResourceLoader} named <code>file</code> under the same names,
+ * i.e. their paths relative to the template directory.</p>
+ *
+ * <pre>
+ * java org.apache.velocity.app.tools.ParsedTemplateStoreGenerator \
+ *     &lt;template directory&gt; &lt;store directory&gt; [&lt;velocity.properties&gt; [&lt;extension&gt;]]
+ * </pre>
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class ParsedTemplateStoreGenerator
+{
+    private final VelocityEngine engine;
+
+    private final File templateDirectory;
+
+    private int failures = 0;
+
+    /**
+     * @param configuration configuration of the engines which will use the store
+     * @param templateDirectory root directory of the templates
+     * @param storeDirectory directory of the store
+     */
+    public ParsedTemplateStoreGenerator(Properties configuration, File templateDirectory, File storeDirectory)
+    {
+        this.templateDirectory = templateDirectory;
+
+        Properties properties = new Properties();
+        properties.putAll(configuration);
+        properties.setProperty(RuntimeConstants.RESOURCE_LOADER, "file");
+        properties.setProperty("file.resource.loader.class", FileResourceLoader.class.getName());
+        properties.setProperty(RuntimeConstants.FILE_RESOURCE_LOADER_PATH, templateDirectory.getAbsolutePath());
+        properties.setProperty(RuntimeConstants.FILE_RESOURCE_LOADER_CACHE, "false");
+        properties.setProperty(RuntimeConstants.RESOURCE_MANAGER_PARSED_STORE, storeDirectory.getAbsolutePath());
+        properties.setProperty(RuntimeConstants.RESOURCE_MANAGER_PARSED_STORE_UPDATE, "true");
+
+        engine = new VelocityEngine();
+        engine.init(properties);
+    }
+
+    /**
+     * Parses all the templates of the template directory and its
+     * subdirectories, writing them to the store.
+     *
+     * @param extension extension of the template files, or null for all files
+     * @return number of templates stored
+     */
+    public int generate(String extension)
+    {
+        return generate(templateDirectory, "", extension);
+    }
+
+    /**
+     * @return number of templates which could not be parsed
+     */
+    public int getFailures()
+    {
+        return failures;
+    }
+
+    private int generate(File directory, String prefix, String extension)
+    {
+        int stored = 0;
+        File[] files = directory.listFiles();
+        if (files == null)
+        {
+            return 0;
+        }
+        for (int i = 0; i < files.length; i++)
+        {
+            String name = prefix + files[i].getName();
+            if (files[i].isDirectory())
+            {
+                stored += generate(files[i], name + '/', extension);
+            }
+            else if (extension == null || name.endsWith(extension))
+            {
+                try
+                {
+                    engine.getTemplate(name);
+                    stored++;
+                }
+                catch (VelocityException ve)
+                {
+                    failures++;
+                    System.err.println(name + ": " + ve.getMessage());
+                }
+            }
+        }
+        return stored;
+    }
+
+    private static final void usage()
+    {
+        System.err.println("Usage: ParsedTemplateStoreGenerator <template directory> <store directory>"
+                           + " [<velocity.properties> [<extension>]]");
+    }
+
+    /**
+     * Command line entry point.
+     * @param args
+     * @throws IOException if the properties file can not be read
+     */
+    public static void main(String[] args)
+        throws IOException
+    {
+        if (args.length < 2 || args.length > 4)
+        {
+            usage();
+            return;
+        }
+
+        Properties configuration = new Properties();
+        if (args.length > 2)
+        {
+            InputStream is = new FileInputStream(args[2]);
+            try
+            {
+                configuration.load(is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+
+        ParsedTemplateStoreGenerator generator =
+            new ParsedTemplateStoreGenerator(configuration, new File(args[0]), new File(args[1]));
+        int stored = generator.generate(args.length > 3 ? args[3] : null);
+        System.out.println("Stored " + stored + " template(s) in " + args[1]);
+        if (generator.getFailures() > 0)
+        {
+            System.err.println(generator.getFailures() + " template(s) could not be parsed");
+            System.exit(1);
+        }
+    }
+}
@@ -23,7 +23,10 @@ import org.apache.velocity.app.event.EventCartridge;
 import org.apache.velocity.runtime.resource.Resource;
 import org.apache.velocity.util.introspection.IntrospectionCacheData;
 
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  *  This adapter class is the container for all context types for internal
@@ -84,6 +87,23 @@ public final class InternalContextAdapterImpl implements InternalContextAdapter
      */
     InternalEventContext iec = null;
 
+    /**
+     *  Slots of the template-local references of the merged tree, and
+     *  their values and names during this merge, when slots are enabled.
+     *  The arrays are allocated when the first slot is set.  Null entries
+     *  are unset slots; null values are kept as NULL.
+     */
+    private SlotTable slots = null;
+    private Object[] slotValues = null;
+    private String[] slotNames = null;
+
+    /**
+     *  Number of slots set during this merge.
+     */
+    private int slotCount = 0;
+
+    private static final Object NULL = new Object();
+
     /**
      *  CTOR takes a Context and wraps it, delegating all 'data' calls
      *  to it.
@@ -240,6 +260,176 @@ public final class InternalContextAdapterImpl implements InternalContextAdapter
         return icb.getMacroLibraries();
     }
 
+    /* --- template-local reference slots --- */
+
+    /**
+     *  Keeps the values of the references numbered by the given table in
+     *  this adapter until {@link #flushSlots()} writes them back into the
+     *  user context.
+     *
+     * @param table slots of the template-local references of the merged tree
+     * @since 1.8
+     */
+    public void enableSlots(SlotTable table)
+    {
+        slots = table;
+    }
+
+    /**
+     *  Gets the value of a template-local reference.
+     *
+     * @param table slots of the tree of the reference
+     * @param slot slot of the reference
+     * @param key name of the reference
+     * @return value of the reference, looked up in the user context
+     *         if it has not been set during this merge
+     * @since 1.8
+     */
+    public Object getSlot(SlotTable table, int slot, String key)
+    {
+        if (table != slots)
+        {
+            /* #parse'd template: its slots are not the ones of this merge */
+            return get( key );
+        }
+        if (slotValues != null && slot < slotValues.length)
+        {
+            Object value = slotValues[slot];
+            if (value != null)
+            {
+                return value == NULL ? null : value;
+            }
+        }
+        return context.get( key );
+    }
+
+    /**
+     *  Gets the value of a reference that is not assigned in its template,
+     *  and so never kept in a slot of that template.
+     *
+     * @param table slots of the tree of the reference
+     * @param key name of the reference
+     * @return value of the reference
+     * @since 1.8
+     */
+    public Object getExternal(SlotTable table, String key)
+    {
+        if (table != slots)
+        {
+            /* #parse'd template: the reference may be a slot of this merge */
+            return get( key );
+        }
+        return context.get( key );
+    }
+
+    /**
+     *  Sets the value of a template-local reference.
+     *
+     * @param table slots of the tree of the reference
+     * @param slot slot of the reference
+     * @param key name of the reference
+     * @param value value of the reference
+     * @return the previous value of the reference
+     * @since 1.8
+     */
+    public Object putSlot(SlotTable table, int slot, String key, Object value)
+    {
+        if (table != slots)
+        {
+            return put( key, value );
+        }
+        if (slotValues == null)
+        {
+            int size = Math.max(slot + 1, slots.size());
+            slotValues = new Object[size];
+            slotNames = new String[size];
+        }
+        else if (slot >= slotValues.length)
+        {
+            int size = Math.max(slot + 1, slotValues.length * 2);
+            Object[] values = new Object[size];
+            System.arraycopy(slotValues, 0, values, 0, slotValues.length);
+            slotValues = values;
+            String[] names = new String[size];
+            System.arraycopy(slotNames, 0, names, 0, slotNames.length);
+            slotNames = names;
+        }
+        Object previous = slotValues[slot];
+        slotValues[slot] = value == null ? NULL : value;
+        slotNames[slot] = key;
+        if (previous == null)
+        {
+            slotCount++;
+            return context.get( key );
+        }
+        return previous == NULL ? null : previous;
+    }
+
+    /**
+     *  Removes a template-local reference, from this merge and from the
+     *  user context.
+     *
+     * @param table slots of the tree of the reference
+     * @param slot slot of the reference
+     * @param key name of the reference
+     * @return the previous value of the reference
+     * @since 1.8
+     */
+    public Object removeSlot(SlotTable table, int slot, String key)
+    {
+        if (table != slots)
+        {
+            return remove( key );
+        }
+        if (slotValues != null && slot < slotValues.length && slotValues[slot] != null)
+        {
+            Object previous = slotValues[slot];
+            slotValues[slot] = null;
+            slotNames[slot] = null;
+            slotCount--;
+            context.remove( key );
+            return previous == NULL ? null : previous;
+        }
+        return context.remove( key );
+    }
+
+    /**
+     *  Writes the template-local references set during this merge into
+     *  the user context, and stops keeping them in slots.
+     *
+     * @since 1.8
+     */
+    public void flushSlots()
+    {
+        if (slotCount > 0)
+        {
+            for (int i = 0; i < slotValues.length; i++)
+            {
+                Object value = slotValues[i];
+                if (value != null)
+                {
+                    context.put( slotNames[i], value == NULL ? null : value );
+                }
+            }
+        }
+        slots = null;
+        slotValues = null;
+        slotNames = null;
+        slotCount = 0;
+    }
+
+    /**
+     * @return the slot of the key if it is kept in this adapter, or -1
+     */
+    private int slotOf(Object key)
+    {
+        if (slots != null && key instanceof String)
+        {
+            return slots.getSlot((String) key);
+        }
+        return -1;
+    }
+
     /* ---  Context interface methods --- */
 
     /**
@@ -247,6 +437,11 @@ public final class InternalContextAdapterImpl implements InternalContextAdapter
      */
     public Object put(String key, Object value)
     {
+        int slot = slotOf(key);
+        if (slot >= 0)
+        {
+            return putSlot(slots, slot, key, value);
+        }
         return context.put( key , value );
     }
 
@@ -264,6 +459,12 @@ public final class InternalContextAdapterImpl implements InternalContextAdapter
      */
     public Object get(String key)
     {
+        /* no slot to look at until one is set */
+        int slot = slotCount > 0 ? slotOf(key) : -1;
+        if (slot >= 0)
+        {
+            return getSlot(slots, slot, key);
+        }
         return context.get( key );
     }
 
@@ -272,6 +473,11 @@ public final class InternalContextAdapterImpl implements InternalContextAdapter
      */
     public boolean containsKey(Object key)
     {
+        int slot = slotCount > 0 ? slotOf(key) : -1;
+        if (slot >= 0 && slot < slotValues.length && slotValues[slot] != null)
+        {
+            return true;
+        }
         return context.containsKey( key );
     }
 
@@ -280,7 +486,20 @@ public final class InternalContextAdapterImpl implements InternalContextAdapter
      */
     public Object[] getKeys()
     {
-        return context.getKeys();
+        Object[] keys = context.getKeys();
+        if (slotCount == 0)
+        {
+            return keys;
+        }
+        Set all = new LinkedHashSet(Arrays.asList(keys));
+        for (int i = 0; i < slotValues.length; i++)
+        {
+            if (slotValues[i] != null)
+            {
+                all.add(slotNames[i]);
+            }
+        }
+        return all.toArray();
     }
 
     /**
@@ -288,6 +507,11 @@ public final class InternalContextAdapterImpl implements InternalContextAdapter
      */
     public Object remove(Object key)
     {
+        int slot = slotCount > 0 ? slotOf(key) : -1;
+        if (slot >= 0)
+        {
+            return removeSlot(slots, slot, (String) key);
+        }
         return context.remove( key );
     }
 
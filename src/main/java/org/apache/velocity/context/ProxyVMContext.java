@@ -19,12 +19,13 @@ package org.apache.velocity.context;
  * under the License.    
  */
 
-import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.io.CaptureWriter;
 import org.apache.velocity.runtime.Renderable;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.parser.ParserTreeConstants;
@@ -41,6 +42,11 @@ import org.slf4j.LoggerFactory;
  * reduces memory allocation upon macro invocations.
  * Since the macro AST is now shared and RuntimeMacro directive is used,
  * the earlier implementation of precalculating VMProxyArgs would not work.
+ *
+ * The macro arguments are kept in a compact frame of arrays, indexed like
+ * the argument names of the macro, so that no map is created for them.
+ * Any other local reference goes to a map created on demand. Frames can
+ * be reused for another call of the same macro through {@link #recycle(InternalContextAdapter)}.
  * 
  * See <a href="http://issues.apache.org/jira/browse/VELOCITY-607">Issue 607</a>
  * for more info on this class.
@@ -52,15 +58,38 @@ public class ProxyVMContext extends ChainedInternalContextAdapter
 {
     Logger logger = LoggerFactory.getLogger( ProxyVMContext.class );
 
-    /** container for our macro AST node arguments. Size must be power of 2. */
-    Map vmproxyhash = new HashMap(8, 0.8f);
+    private static final String[] NO_NAMES = new String[0];
+
+    /** names of the frame entries, possibly shared with the macro */
+    private String[] names;
+
+    /** ".literal.$" names of the frame entries, possibly shared with the macro */
+    private String[] literalNames;
+
+    /** whether the name arrays are shared, and must be copied before growing */
+    private boolean sharedNames;
+
+    /** number of frame entries */
+    private int size;
+
+    /** local or constant values of the frame entries */
+    private Object[] values;
 
-    /** container for any local or constant macro arguments. Size must be power of 2. */
-    Map localcontext = new HashMap(8, 0.8f);
+    /** AST nodes of the dynamic macro arguments */
+    private Node[] nodes;
+
+    /** whether the frame entries are defined */
+    private boolean[] bound;
+
+    /** container for any other local reference, created on demand */
+    private Map localcontext;
 
     /** support for local context scope feature, where all references are local */
     private boolean localContextScope;
 
+    /** whether this context may be used after the macro call, and so cannot be recycled */
+    private boolean captured = false;
+
     /** needed for writing log entries. */
     private RuntimeServices rsvc;
 
@@ -72,11 +101,37 @@ public class ProxyVMContext extends ChainedInternalContextAdapter
     public ProxyVMContext(InternalContextAdapter inner,
                           RuntimeServices rsvc,
                           boolean localContextScope)
+    {
+        this(inner, rsvc, localContextScope, NO_NAMES, NO_NAMES);
+    }
+
+    /**
+     * Creates a context whose frame holds the given macro arguments,
+     * which are then set by index.
+     *
+     * @param inner Velocity context for processing
+     * @param rsvc RuntimeServices provides logging reference
+     * @param localContextScope if true, all references are set to be local
+     * @param names names of the macro arguments (without the macro name)
+     * @param literalNames ".literal.$" + the names of the macro arguments
+     * @since 1.8
+     */
+    public ProxyVMContext(InternalContextAdapter inner,
+                          RuntimeServices rsvc,
+                          boolean localContextScope,
+                          String[] names, String[] literalNames)
     {
         super(inner);
 
         this.localContextScope = localContextScope;
         this.rsvc = rsvc;
+        this.names = names;
+        this.literalNames = literalNames;
+        sharedNames = true;
+        size = names.length;
+        values = new Object[size];
+        nodes = new Node[size];
+        bound = new boolean[size];
     }
 
     /**
@@ -94,15 +149,7 @@ public class ProxyVMContext extends ChainedInternalContextAdapter
                               String literalMacroArgumentName,
                               Node argumentValue) throws MethodInvocationException
     {
-        if (isConstant(argumentValue))
-        {
-            localcontext.put(macroArgumentName, argumentValue.value(context));
-        }
-        else
-        {
-            vmproxyhash.put(macroArgumentName, argumentValue);
-            localcontext.put(literalMacroArgumentName, argumentValue);
-        }
+        setVMProxyArg(context, indexOf(macroArgumentName, literalMacroArgumentName), argumentValue);
     }
 
     /**
@@ -120,13 +167,180 @@ public class ProxyVMContext extends ChainedInternalContextAdapter
                               String literalMacroArgumentName,
                               Renderable argumentValue) throws MethodInvocationException
     {
-        localcontext.put(macroArgumentName, argumentValue);
+        setVMProxyValue(indexOf(macroArgumentName, literalMacroArgumentName), argumentValue);
+    }
+
+    /**
+     * Used to put the value of a Velocity macro argument into this context,
+     * when the macro is invoked directly rather than from a macro call.
+     * A null value is bound as well, so that it hides any reference of
+     * the same name in the calling context.
+     *
+     * @param macroArgumentName name of the macro argument
+     * @param value value of the macro argument
+     * @since 1.8
+     */
+    public void addVMProxyValue(String macroArgumentName, Object value)
+    {
+        setVMProxyValue(indexOf(macroArgumentName, ".literal.$" + macroArgumentName), value);
+    }
+
+    /**
+     * Sets the macro argument at the given index of the frame.
+     *
+     * @param context rendering context
+     * @param index index of the macro argument in the names of the frame
+     * @param argumentValue actual value of the macro argument
+     * @throws MethodInvocationException
+     * @since 1.8
+     */
+    public void setVMProxyArg(InternalContextAdapter context, int index,
+                              Node argumentValue) throws MethodInvocationException
+    {
+        if (isConstant(argumentValue))
+        {
+            values[index] = argumentValue.value(context);
+        }
+        else
+        {
+            nodes[index] = argumentValue;
+        }
+        bound[index] = true;
+    }
+
+    /**
+     * Sets the value of the macro argument at the given index of the frame.
+     * A null value is bound as well, and hides the calling context.
+     *
+     * @param index index of the macro argument in the names of the frame
+     * @param value value of the macro argument
+     * @since 1.8
+     */
+    public void setVMProxyValue(int index, Object value)
+    {
+        values[index] = value;
+        bound[index] = true;
+    }
+
+    /**
+     * Prepares this context for another call of the same macro, by
+     * clearing its frame and local references.
+     *
+     * @param inner Velocity context for processing
+     * @return false if this context may still be used by the previous call,
+     * and cannot be recycled
+     * @since 1.8
+     */
+    public boolean recycle(InternalContextAdapter inner)
+    {
+        if (captured)
+        {
+            return false;
+        }
+        innerContext = inner;
+        for (int i = 0; i < size; i++)
+        {
+            values[i] = null;
+            nodes[i] = null;
+            bound[i] = false;
+        }
+        if (localcontext != null)
+        {
+            localcontext.clear();
+        }
+        return true;
+    }
+
+    /**
+     * Marks the macro contexts wrapped by the given context as used beyond
+     * the current macro call, as by a #define or a block macro body, so
+     * that they are never recycled.
+     *
+     * @param context context which is kept for later use
+     * @since 1.8
+     */
+    public static void capture(InternalContextAdapter context)
+    {
+        while (context instanceof ChainedInternalContextAdapter)
+        {
+            if (context instanceof ProxyVMContext)
+            {
+                ((ProxyVMContext) context).captured = true;
+            }
+            context = ((ChainedInternalContextAdapter) context).innerContext;
+        }
+    }
+
+    /**
+     * Finds the frame entry of a name, adding it if needed.
+     */
+    private int indexOf(String name, String literalName)
+    {
+        int index = indexOf(name);
+        if (index < 0)
+        {
+            if (sharedNames || size == names.length)
+            {
+                int length = Math.max(size * 2, 4);
+                names = (String[]) copyOf(names, new String[length]);
+                literalNames = (String[]) copyOf(literalNames, new String[length]);
+                values = copyOf(values, new Object[length]);
+                nodes = (Node[]) copyOf(nodes, new Node[length]);
+                boolean[] flags = new boolean[length];
+                System.arraycopy(bound, 0, flags, 0, size);
+                bound = flags;
+                sharedNames = false;
+            }
+            index = size++;
+            names[index] = name;
+            literalNames[index] = literalName;
+        }
+        return index;
+    }
+
+    private Object[] copyOf(Object[] array, Object[] copy)
+    {
+        System.arraycopy(array, 0, copy, 0, size);
+        return copy;
+    }
+
+    /**
+     * @return the index of the frame entry of a name, or -1
+     */
+    private int indexOf(String name)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (name.equals(names[i]))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the frame entry of a ".literal.$" name, or -1
+     */
+    private int literalIndexOf(String name)
+    {
+        if (name.startsWith(".literal."))
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (name.equals(literalNames[i]))
+                {
+                    return i;
+                }
+            }
+        }
+        return -1;
     }
 
     /**
      * AST nodes that are considered constants can be directly
-     * saved into the context. Dynamic values are stored in
-     * another argument hashmap.
+     * saved into the context. Dynamic values are kept as
+     * AST nodes in the frame, and evaluated on each access.
      * 
      * @param node macro argument as AST node
      * @return true if the node is a constant value
@@ -182,7 +396,22 @@ public class ProxyVMContext extends ChainedInternalContextAdapter
      */
     protected Object put(final String key, final Object value, final boolean forceLocal)
     {
-        Object old = localcontext.put(key, value);
+        Object old;
+        int index = indexOf(key);
+        if (index >= 0)
+        {
+            old = values[index];
+            values[index] = value;
+            bound[index] = true;
+        }
+        else
+        {
+            if (localcontext == null)
+            {
+                localcontext = new HashMap(8, 0.8f);
+            }
+            old = localcontext.put(key, value);
+        }
         if (!forceLocal)
         {
             old = super.put(key, value);
@@ -192,78 +421,116 @@ public class ProxyVMContext extends ChainedInternalContextAdapter
 
     /**
      * Implementation of the Context.get() method.  First checks
-     * localcontext, then arguments, then global context.
+     * local values, then arguments, then global context.
      * 
      * @param key name of item to get
      * @return stored object or null
      */
     public Object get(String key)
     {
-        Object o = localcontext.get(key);
-        if (o != null)
+        int index = indexOf(key);
+        if (index >= 0)
         {
-            return o;
+            if (bound[index])
+            {
+                Object o = values[index];
+                if (o != null)
+                {
+                    return o;
+                }
+                Node astNode = nodes[index];
+                if (astNode != null)
+                {
+                    return getArgument(key, astNode);
+                }
+                /* bound to null: never fall through to the caller */
+                return null;
+            }
+        }
+        else
+        {
+            if (localcontext != null)
+            {
+                Object o = localcontext.get(key);
+                if (o != null)
+                {
+                    return o;
+                }
+            }
+            index = literalIndexOf(key);
+            if (index >= 0 && nodes[index] != null)
+            {
+                return nodes[index];
+            }
         }
 
-        Node astNode = (Node) vmproxyhash.get(key);
+        return super.get(key);
+    }
+
+    /**
+     * Evaluates a dynamic macro argument.
+     */
+    private Object getArgument(String key, Node astNode)
+    {
+        int type = astNode.getType();
 
-        if (astNode != null)
+        // if the macro argument (astNode) is a reference, we need to evaluate it
+        // in case it is a multilevel node
+        if (type == ParserTreeConstants.JJTREFERENCE)
         {
-            int type = astNode.getType();
+            ASTReference ref = (ASTReference) astNode;
 
-            // if the macro argument (astNode) is a reference, we need to evaluate it
-            // in case it is a multilevel node
-            if (type == ParserTreeConstants.JJTREFERENCE)
+            if (ref.jjtGetNumChildren() > 0)
             {
-                ASTReference ref = (ASTReference) astNode;
-
-                if (ref.jjtGetNumChildren() > 0)
-                {
-                    return ref.execute(null, innerContext);
-                }
-                else
+                return ref.execute(null, innerContext);
+            }
+            else
+            {
+                Object obj = innerContext.get(ref.getRootString());
+                if (obj == null && ref.strictRef)
                 {
-                    Object obj = innerContext.get(ref.getRootString());
-                    if (obj == null && ref.strictRef)
+                    if (!innerContext.containsKey(ref.getRootString()))
                     {
-                        if (!innerContext.containsKey(ref.getRootString()))
-                        {
-                            throw new MethodInvocationException("Parameter '" + ref.getRootString() 
-                                + "' not defined", null, key, ref.getTemplateName(), 
-                                ref.getLine(), ref.getColumn());
-                        }
+                        throw new MethodInvocationException("Parameter '" + ref.getRootString() 
+                            + "' not defined", null, key, ref.getTemplateName(), 
+                            ref.getLine(), ref.getColumn());
                     }
-                    return obj;
                 }
+                return obj;
             }
-            else if (type == ParserTreeConstants.JJTTEXT)
+        }
+        else if (type == ParserTreeConstants.JJTTEXT)
+        {
+            // this really shouldn't happen. text is just a throwaway arg for #foreach()
+            try
             {
-                // this really shouldn't happen. text is just a throwaway arg for #foreach()
+                CaptureWriter writer = CaptureWriter.acquire(0);
                 try
                 {
-                    StringWriter writer = new StringWriter();
                     astNode.render(innerContext, writer);
                     return writer.toString();
                 }
-                catch (RuntimeException e)
-                {
-                    throw e;
-                }
-                catch (Exception e)
+                finally
                 {
-                    String msg = "ProxyVMContext.get() : error rendering reference";
-                    logger.error( msg, e );
-                    throw new VelocityException(msg, e);
+                    CaptureWriter.release(writer);
                 }
             }
-            else
+            catch (RuntimeException e)
+            {
+                throw e;
+            }
+            catch (Exception e)
             {
-                // use value method to render other dynamic nodes
-                return astNode.value(innerContext);
+                String msg = "ProxyVMContext.get() : error rendering reference";
+                logger.error( msg, e );
+                throw new VelocityException(msg, e);
             }
         }
-
-        return super.get(key);
+        else
+        {
+            // use value method to render other dynamic nodes
+            return astNode.value(innerContext);
+        }
     }
 
     /**
@@ -271,9 +538,27 @@ public class ProxyVMContext extends ChainedInternalContextAdapter
      */
     public boolean containsKey(Object key)
     {
-      return vmproxyhash.containsKey(key)
-          || localcontext.containsKey(key)
-          || super.containsKey(key);
+        if (key instanceof String)
+        {
+            int index = indexOf((String) key);
+            if (index >= 0)
+            {
+                if (bound[index])
+                {
+                    return true;
+                }
+            }
+            else
+            {
+                index = literalIndexOf((String) key);
+                if (index >= 0 && nodes[index] != null)
+                {
+                    return true;
+                }
+            }
+        }
+        return (localcontext != null && localcontext.containsKey(key))
+            || super.containsKey(key);
     }
 
     /**
@@ -281,17 +566,18 @@ public class ProxyVMContext extends ChainedInternalContextAdapter
      */
     public Object[] getKeys()
     {
-        if (localcontext.isEmpty())
+        Set keys = localcontext == null ? new HashSet() : new HashSet(localcontext.keySet());
+        for (int i = 0; i < size; i++)
         {
-            return vmproxyhash.keySet().toArray();
-        }
-        else if (vmproxyhash.isEmpty())
-        {
-            return localcontext.keySet().toArray();
+            if (bound[i])
+            {
+                keys.add(names[i]);
+            }
+            if (nodes[i] != null)
+            {
+                keys.add(literalNames[i]);
+            }
         }
-
-        HashSet keys = new HashSet(localcontext.keySet());
-        keys.addAll(vmproxyhash.keySet());
         return keys.toArray();
     }
 
@@ -300,11 +586,21 @@ public class ProxyVMContext extends ChainedInternalContextAdapter
      */
     public Object remove(Object key)
     {
-        Object loc = localcontext.remove(key);
+        Object loc = null;
         Object glo = null;
-        
-        vmproxyhash.remove(key);
-        
+
+        int index = key instanceof String ? indexOf((String) key) : -1;
+        if (index >= 0)
+        {
+            loc = values[index];
+            values[index] = null;
+            bound[index] = false;
+        }
+        else if (localcontext != null)
+        {
+            loc = localcontext.remove(key);
+        }
+
         if (!localContextScope)
         {
             glo = super.remove(key);
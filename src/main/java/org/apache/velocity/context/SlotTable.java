@@ -0,0 +1,88 @@
+package org.apache.velocity.context;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Numbers the names of the references assigned inside templates (by #set
+ * and #foreach), so that their values can be kept during a merge in an
+ * array indexed by these numbers rather than in the context map.
+ *
+ * <p>There is one table per template tree, filled when the tree is
+ * initialized, so its size only depends on that template. Names are only
+ * ever added, so a number resolved at init time stays valid. The values
+ * themselves are kept by the {@link InternalContextAdapterImpl} of each
+ * merge of the tree, which writes them back into the user context when
+ * the merge ends.</p>
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public final class SlotTable
+{
+    private final ConcurrentMap slots = new ConcurrentHashMap();
+
+    private int size = 0;
+
+    /**
+     * Returns the slot of a name, numbering it if needed.
+     *
+     * @param name reference name
+     * @return slot of the name
+     */
+    public int register(String name)
+    {
+        Integer slot = (Integer) slots.get(name);
+        if (slot == null)
+        {
+            synchronized (this)
+            {
+                slot = (Integer) slots.get(name);
+                if (slot == null)
+                {
+                    slot = Integer.valueOf(size++);
+                    slots.put(name, slot);
+                }
+            }
+        }
+        return slot.intValue();
+    }
+
+    /**
+     * @param name reference name
+     * @return slot of the name, or -1 if it has none
+     */
+    public int getSlot(String name)
+    {
+        Integer slot = (Integer) slots.get(name);
+        return slot == null ? -1 : slot.intValue();
+    }
+
+    /**
+     * @return number of slots
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+}
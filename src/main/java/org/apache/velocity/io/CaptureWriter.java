@@ -0,0 +1,199 @@
+package org.apache.velocity.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unsynchronized replacement for StringWriter, used where rendered output
+ * is captured as a String (block references, interpolated string
+ * literals...). Instances are recycled per thread through
+ * {@link #acquire(int)} and {@link #release(CaptureWriter)}, and callers
+ * pass the size of their previous capture so that the buffer rarely has
+ * to grow. Only small buffers are recycled, and the pool of each thread
+ * is softly referenced, so that it can be reclaimed along with the class
+ * loader of Velocity when the thread outlives it.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public final class CaptureWriter extends Writer
+{
+    /** Buffers larger than this are left to the garbage collector */
+    private static final int MAX_POOLED_CAPACITY = 8 * 1024;
+
+    /** Captures nest, so each thread keeps a few writers */
+    private static final int MAX_POOLED_WRITERS = 4;
+
+    /** soft references to the free writers of each thread */
+    private static final ThreadLocal pool = new ThreadLocal();
+
+    private char[] buf;
+    private int count;
+
+    /**
+     * @param capacity initial capacity
+     */
+    public CaptureWriter(int capacity)
+    {
+        buf = new char[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Gets an empty writer, recycled if possible.
+     *
+     * @param sizeHint expected size of the output, 0 if unknown
+     * @return an empty writer
+     */
+    public static CaptureWriter acquire(int sizeHint)
+    {
+        List free = getPool();
+        if (free.isEmpty())
+        {
+            return new CaptureWriter(sizeHint);
+        }
+        CaptureWriter writer = (CaptureWriter) free.remove(free.size() - 1);
+        writer.ensureCapacity(sizeHint);
+        return writer;
+    }
+
+    /**
+     * Gives a writer obtained from {@link #acquire(int)} back. It must not
+     * be used afterwards.
+     *
+     * @param writer writer to recycle
+     */
+    public static void release(CaptureWriter writer)
+    {
+        if (writer.buf.length <= MAX_POOLED_CAPACITY)
+        {
+            List free = getPool();
+            if (free.size() < MAX_POOLED_WRITERS)
+            {
+                writer.count = 0;
+                free.add(writer);
+            }
+        }
+    }
+
+    /**
+     * @return the free writers of the current thread
+     */
+    private static List getPool()
+    {
+        SoftReference ref = (SoftReference) pool.get();
+        List free = ref == null ? null : (List) ref.get();
+        if (free == null)
+        {
+            free = new ArrayList(MAX_POOLED_WRITERS);
+            pool.set(new SoftReference(free));
+        }
+        return free;
+    }
+
+    /**
+     * @see java.io.Writer#write(int)
+     */
+    public void write(int c)
+    {
+        ensureCapacity(count + 1);
+        buf[count++] = (char) c;
+    }
+
+    /**
+     * @see java.io.Writer#write(char[], int, int)
+     */
+    public void write(char[] cbuf, int off, int len)
+    {
+        ensureCapacity(count + len);
+        System.arraycopy(cbuf, off, buf, count, len);
+        count += len;
+    }
+
+    /**
+     * @see java.io.Writer#write(java.lang.String)
+     */
+    public void write(String str)
+    {
+        write(str, 0, str.length());
+    }
+
+    /**
+     * @see java.io.Writer#write(java.lang.String, int, int)
+     */
+    public void write(String str, int off, int len)
+    {
+        ensureCapacity(count + len);
+        str.getChars(off, off + len, buf, count);
+        count += len;
+    }
+
+    /**
+     * Does nothing.
+     */
+    public void flush()
+    {
+    }
+
+    /**
+     * Does nothing, the writer stays usable.
+     */
+    public void close()
+    {
+    }
+
+    /**
+     * @return the number of chars written
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * @param length number of leading chars to return
+     * @return the first chars written
+     */
+    public String toString(int length)
+    {
+        return new String(buf, 0, length);
+    }
+
+    /**
+     * @return everything written
+     */
+    public String toString()
+    {
+        return new String(buf, 0, count);
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > buf.length)
+        {
+            char[] larger = new char[Math.max(capacity, buf.length * 2)];
+            System.arraycopy(buf, 0, larger, 0, count);
+            buf = larger;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package org.apache.velocity.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Writer encoding its output straight to an OutputStream, which also
+ * accepts text already encoded in its charset. Static template text is
+ * handed to it as cached bytes, so that only dynamic values go through
+ * the (reused) CharsetEncoder.
+ *
+ * Encoded text can only be concatenated in charsets without state or
+ * byte order mark, see {@link #supports(Charset)}: others, such as
+ * UTF-16 or ISO-2022-JP, are rejected.
+ *
+ * Like OutputStreamWriter, malformed or unmappable characters are
+ * replaced. Before encoded text is written, the encoding of the buffered
+ * chars is completed, so a surrogate pair split between chars and the
+ * encoded text that follows them is not joined, and its high surrogate
+ * is replaced.
+ *
+ * This class is not thread safe. The caller owns the stream: it calls
+ * {@link #finish()} to complete the output without closing it.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public final class EncodingWriter extends Writer
+{
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final OutputStream out;
+    private final Charset charset;
+    private final CharsetEncoder encoder;
+
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private WritableByteChannel channel = null;
+
+    /** whether chars were written since the encoder was last reset */
+    private boolean encoding = false;
+
+    private boolean closed = false;
+
+    /**
+     * @param out stream to write to
+     * @param charset output charset
+     * @throws IllegalArgumentException if the charset is not supported
+     */
+    public EncodingWriter(OutputStream out, Charset charset)
+    {
+        if (!supports(charset))
+        {
+            throw new IllegalArgumentException("Encoded text cannot be concatenated in " + charset);
+        }
+        this.out = out;
+        this.charset = charset;
+        this.encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Tells whether text encoded in a charset can be concatenated, that is
+     * whether the charset is UTF-8 or a single-byte charset, which have
+     * neither state nor byte order mark.
+     *
+     * @param charset charset to check
+     * @return true if this writer can write in the charset
+     */
+    public static boolean supports(Charset charset)
+    {
+        return UTF_8.equals(charset)
+            || (charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1.0f);
+    }
+
+    /**
+     * @return the charset text is written in
+     */
+    public Charset getCharset()
+    {
+        return charset;
+    }
+
+    /**
+     * Writes text already encoded in {@link #getCharset()}.
+     *
+     * @param b encoded text
+     * @throws IOException
+     */
+    public void writeBytes(byte[] b) throws IOException
+    {
+        ensureOpen();
+        endEncoding();
+        if (b.length <= bytes.remaining())
+        {
+            bytes.put(b);
+        }
+        else
+        {
+            flushBytes();
+            out.write(b);
+        }
+    }
+
+    /**
+     * Writes the remaining content of a buffer holding text already encoded
+     * in {@link #getCharset()}. Large buffers, possibly memory-mapped, are
+     * handed to a channel on the stream rather than copied.
+     *
+     * @param b encoded text, consumed
+     * @throws IOException
+     */
+    public void writeBytes(ByteBuffer b) throws IOException
+    {
+        ensureOpen();
+        endEncoding();
+        if (b.remaining() <= bytes.remaining())
+        {
+            bytes.put(b);
+        }
+        else
+        {
+            flushBytes();
+            if (b.hasArray())
+            {
+                out.write(b.array(), b.arrayOffset() + b.position(), b.remaining());
+                b.position(b.limit());
+            }
+            else
+            {
+                if (channel == null)
+                {
+                    channel = out instanceof FileOutputStream ?
+                        ((FileOutputStream) out).getChannel() : Channels.newChannel(out);
+                }
+                while (b.hasRemaining())
+                {
+                    channel.write(b);
+                }
+            }
+        }
+    }
+
+    /**
+     * @see java.io.Writer#write(int)
+     */
+    public void write(int c) throws IOException
+    {
+        ensureOpen();
+        if (!chars.hasRemaining())
+        {
+            encodeChars(false);
+        }
+        chars.put((char) c);
+        encoding = true;
+    }
+
+    /**
+     * @see java.io.Writer#write(char[], int, int)
+     */
+    public void write(char[] cbuf, int off, int len) throws IOException
+    {
+        ensureOpen();
+        while (len > 0)
+        {
+            if (!chars.hasRemaining())
+            {
+                encodeChars(false);
+            }
+            int n = Math.min(len, chars.remaining());
+            chars.put(cbuf, off, n);
+            off += n;
+            len -= n;
+            encoding = true;
+        }
+    }
+
+    /**
+     * @see java.io.Writer#write(java.lang.String, int, int)
+     */
+    public void write(String str, int off, int len) throws IOException
+    {
+        ensureOpen();
+        while (len > 0)
+        {
+            if (!chars.hasRemaining())
+            {
+                encodeChars(false);
+            }
+            int n = Math.min(len, chars.remaining());
+            chars.put(str, off, off + n);
+            off += n;
+            len -= n;
+            encoding = true;
+        }
+    }
+
+    /**
+     * Encodes and writes out any buffered text, then flushes the stream.
+     *
+     * @see java.io.Writer#flush()
+     */
+    public void flush() throws IOException
+    {
+        ensureOpen();
+        encodeChars(false);
+        flushBytes();
+        out.flush();
+    }
+
+    /**
+     * Completes the encoding of the buffered text, writes it out and flushes
+     * the stream, without closing it. The writer can still be used.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException
+    {
+        ensureOpen();
+        endEncoding();
+        flushBytes();
+        out.flush();
+    }
+
+    /**
+     * Completes the encoding, then closes the stream.
+     *
+     * @see java.io.Writer#close()
+     */
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        endEncoding();
+        flushBytes();
+        closed = true;
+        out.close();
+    }
+
+    /**
+     * Encodes the buffered chars as the end of the input, and resets the
+     * encoder.
+     */
+    private void endEncoding() throws IOException
+    {
+        if (!encoding)
+        {
+            return;
+        }
+        encodeChars(true);
+        for (;;)
+        {
+            CoderResult result = encoder.flush(bytes);
+            if (!result.isOverflow())
+            {
+                break;
+            }
+            flushBytes();
+        }
+        encoder.reset();
+        encoding = false;
+    }
+
+    /**
+     * Encodes the buffered chars into the byte buffer. Unless at end of
+     * input, a trailing high surrogate stays buffered until its pair shows up.
+     */
+    private void encodeChars(boolean endOfInput) throws IOException
+    {
+        chars.flip();
+        for (;;)
+        {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (!result.isOverflow())
+            {
+                break;
+            }
+            flushBytes();
+        }
+        chars.compact();
+    }
+
+    private void flushBytes() throws IOException
+    {
+        if (bytes.position() > 0)
+        {
+            out.write(bytes.array(), 0, bytes.position());
+            bytes.clear();
+        }
+    }
+
+    private void ensureOpen() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Writer is closed");
+        }
+    }
+}
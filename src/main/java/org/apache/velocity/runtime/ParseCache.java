@@ -0,0 +1,189 @@
+package org.apache.velocity.runtime;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.collections.map.LRUMap;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+/**
+ * Bounded LRU cache of parsed and initialized trees of evaluated strings,
+ * keyed by their source text and the log tag (template name) they were
+ * parsed under, with hit and miss counters.
+ *
+ * <p>Trees defining macros should not be cached, since their macros are
+ * registered when they are initialized: see {@link #isCacheable(Node)}.</p>
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class ParseCache
+{
+    private final Map cache;
+
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize maximum number of cached trees
+     */
+    public ParseCache(int maxSize)
+    {
+        this.maxSize = maxSize;
+        this.cache = Collections.synchronizedMap(new LRUMap(maxSize));
+    }
+
+    /**
+     * @param logTag name the source was parsed under
+     * @param source source text
+     * @return the cached tree, or null
+     */
+    public SimpleNode get(String logTag, String source)
+    {
+        SimpleNode tree = (SimpleNode) cache.get(new Key(logTag, source));
+        if (tree == null)
+        {
+            misses.incrementAndGet();
+        }
+        else
+        {
+            hits.incrementAndGet();
+        }
+        return tree;
+    }
+
+    /**
+     * @param logTag name the source was parsed under
+     * @param source source text
+     * @param tree parsed and initialized tree of the source
+     */
+    public void put(String logTag, String source, SimpleNode tree)
+    {
+        cache.put(new Key(logTag, source), tree);
+    }
+
+    /**
+     * Tells whether a parsed tree can be cached, i.e. whether it does
+     * not define any macro.
+     *
+     * @param tree parsed tree
+     * @return true if the tree can be cached
+     */
+    public static boolean isCacheable(Node tree)
+    {
+        if (tree instanceof ASTDirective
+            && "macro".equals(((ASTDirective) tree).getDirectiveName()))
+        {
+            return false;
+        }
+        for (int i = 0; i < tree.jjtGetNumChildren(); i++)
+        {
+            if (!isCacheable(tree.jjtGetChild(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of lookups which found a tree
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups which did not find a tree
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return number of cached trees
+     */
+    public int size()
+    {
+        return cache.size();
+    }
+
+    /**
+     * @return maximum number of cached trees
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Empties the cache. The counters are kept.
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    /**
+     * Cache key: log tag and source text.
+     */
+    private static final class Key
+    {
+        private final String logTag;
+
+        private final String source;
+
+        private final int hash;
+
+        Key(String logTag, String source)
+        {
+            this.logTag = logTag;
+            this.source = source;
+            this.hash = 31 * (logTag == null ? 0 : logTag.hashCode()) + source.hashCode();
+        }
+
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && source.equals(other.source)
+                && (logTag == null ? other.logTag == null : logTag.equals(other.logTag));
+        }
+    }
+}
@@ -62,6 +62,13 @@ public interface RuntimeConstants
      * Indicates we are going to use modifed escape behavior in strict mode
      */
     String RUNTIME_REFERENCES_STRICT_ESCAPE = "runtime.references.strict.escape";
+
+    /**
+     * Keep the references assigned inside templates in numbered slots during a merge,
+     * instead of in the context.
+     * @since 1.8
+     */
+    String RUNTIME_REFERENCES_SLOTS = "runtime.references.slots";
        
     /**
      * @deprecated  This appears to have always been meaningless.
@@ -149,6 +156,19 @@ public interface RuntimeConstants
      */
     String EVALUATE_CONTEXT_CLASS = "directive.evaluate.context.class";
 
+    /**
+     * Maximum number of parsed strings cached by RuntimeInstance.evaluate(), 0 to disable the cache.
+     * @since 1.8
+     */
+    String EVALUATE_CACHE_SIZE = "runtime.evaluate.cache.size";
+
+    /**
+     * Maximum number of parsed strings shared between all #evaluate() directives, 0 to disable
+     * the caching of #evaluate() trees.
+     * @since 1.8
+     */
+    String EVALUATE_DIRECTIVE_CACHE_SIZE = "directive.evaluate.cache.size";
+
     /**
      * Used to suppress various scope control objects.
      * @since 1.7
@@ -173,6 +193,43 @@ public interface RuntimeConstants
     /** The <code>resource.manager.cache.size</code> property specifies the cache upper bound (if relevant). */
     String RESOURCE_MANAGER_DEFAULTCACHE_SIZE = "resource.manager.defaultcache.size";
 
+    /**
+     * The <code>resource.manager.refresh.background</code> property, when true, makes the
+     * modification checks and reloads of cached resources run on background threads, the
+     * current resource being served until its replacement is ready.
+     * @since 1.8
+     */
+    String RESOURCE_MANAGER_BACKGROUND_REFRESH = "resource.manager.refresh.background";
+
+    /**
+     * The <code>resource.manager.refresh.threads</code> property specifies the number of
+     * background refresh threads.
+     * @since 1.8
+     */
+    String RESOURCE_MANAGER_REFRESH_THREADS = "resource.manager.refresh.threads";
+
+    /**
+     * The <code>resource.manager.parsed.store</code> property specifies a directory where
+     * parsed templates are stored, to be reused instead of parsing them again after a restart.
+     * @since 1.8
+     */
+    String RESOURCE_MANAGER_PARSED_STORE = "resource.manager.parsed.store";
+
+    /**
+     * The <code>resource.manager.parsed.store.update</code> property specifies whether
+     * templates parsed at runtime are written to the parsed template store.
+     * @since 1.8
+     */
+    String RESOURCE_MANAGER_PARSED_STORE_UPDATE = "resource.manager.parsed.store.update";
+
+    /**
+     * The <code>resource.content.map.threshold</code> property specifies the size in bytes
+     * from which files #included through the FileResourceLoader are memory-mapped instead
+     * of being read in memory. A negative value (the default) disables mapping.
+     * @since 1.8
+     */
+    String RESOURCE_CONTENT_MAP_THRESHOLD = "resource.content.map.threshold";
+
     /*
      * ----------------------------------------------------------------------
      * R E S O U R C E  L O A D E R  C O N F I G U R A T I O N
@@ -255,6 +312,14 @@ public interface RuntimeConstants
      */
     String EVENTHANDLER_INVALIDREFERENCES = "eventhandler.invalidreferences.class";
 
+    /**
+     * When true, the built-in escaping reference insertion handlers pass values without
+     * special characters through untouched and escape the others straight into the
+     * output writer, instead of returning an escaped String (default false).
+     * @since 1.8
+     */
+    String EVENTHANDLER_ESCAPE_STREAMING = "eventhandler.escape.streaming";
+
 
     /*
      * ----------------------------------------------------------------------
@@ -271,6 +336,14 @@ public interface RuntimeConstants
     /** switch for autoloading library-sourced VMs (for development). */
     String VM_LIBRARY_AUTORELOAD = "velocimacro.library.autoreload";
 
+    /**
+     * minimal number of seconds between two checks of a VM library
+     * for changes, when they are autoloaded (default 0, at each lookup
+     * of one of its macros).
+     * @since 1.8
+     */
+    String VM_LIBRARY_AUTORELOAD_INTERVAL = "velocimacro.library.autoreload.interval";
+
     /** boolean (true/false) default true : allow inline (in-template) macro definitions. */
     String VM_PERM_ALLOW_INLINE = "velocimacro.permissions.allow.inline";
 
@@ -300,6 +373,12 @@ public interface RuntimeConstants
      * @since 1.7
      */
     String VM_BODY_REFERENCE = "velocimacro.body.reference";
+
+    /**
+     * If true, the argument frames of macro calls are recycled across the calls on a same thread.
+     * @since 1.8
+     */
+    String VM_RECYCLE_FRAMES = "velocimacro.frames.recycle";
     
     /*
      * ----------------------------------------------------------------------
@@ -322,6 +401,14 @@ public interface RuntimeConstants
     /** key name for uberspector. Multiple classnames can be specified,in which case uberspectors will be chained. */
     String UBERSPECT_CLASSNAME = "runtime.introspector.uberspect";
 
+    /**
+     * Switch for keeping introspection results in per-node inline caches that
+     * survive across merges, instead of only in the per-merge context cache.
+     * Default is false.
+     * @since 1.8
+     */
+    String UBERSPECT_INLINE_CACHE = "runtime.introspector.inline.cache";
+
     /** A comma separated list of packages to restrict access to in the SecureIntrospector. */
     String INTROSPECTOR_RESTRICT_PACKAGES = "introspector.restrict.packages";
 
@@ -331,6 +418,23 @@ public interface RuntimeConstants
     /** Switch for ignoring nulls in math equations vs throwing exceptions. */
     String STRICT_MATH = "runtime.strict.math";
 
+    /**
+     * Switch for flattening parsed templates into JVM classes (static text,
+     * #if chains and directive bodies); references, #set and conditions
+     * are still interpreted, and so are templates that cannot be compiled.
+     * Default is false.
+     * @since 1.8
+     */
+    String RUNTIME_TEMPLATE_COMPILE = "runtime.template.compile";
+
+    /**
+     * Switch for simplifying initialized template trees : adjacent static
+     * text is merged, comments dropped, and #if statements and #set values
+     * made of literals only are decided once. Default is false.
+     * @since 1.8
+     */
+    String RUNTIME_TEMPLATE_OPTIMIZE = "runtime.template.optimize";
+
     /**
      * The <code>parser.pool.class</code> property specifies the name of the {@link org.apache.velocity.util.SimplePool}
      * implementation to use.
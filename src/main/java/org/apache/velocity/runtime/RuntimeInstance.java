@@ -44,6 +44,7 @@ import org.apache.velocity.app.event.NullSetEventHandler;
 import org.apache.velocity.app.event.ReferenceInsertionEventHandler;
 import org.apache.velocity.context.Context;
 import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.context.SlotTable;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
@@ -52,12 +53,15 @@ import org.apache.velocity.exception.VelocityException;
 import org.apache.velocity.runtime.directive.Directive;
 import org.apache.velocity.runtime.directive.Scope;
 import org.apache.velocity.runtime.directive.StopCommand;
+import org.apache.velocity.runtime.directive.VelocimacroProxy;
 import org.apache.velocity.runtime.parser.ParseException;
 import org.apache.velocity.runtime.parser.Parser;
+import org.apache.velocity.runtime.parser.node.ASTprocess;
 import org.apache.velocity.runtime.parser.node.Node;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
 import org.apache.velocity.runtime.resource.ContentResource;
 import org.apache.velocity.runtime.resource.ResourceManager;
+import org.apache.velocity.runtime.resource.ResourceManagerImpl;
 import org.apache.velocity.util.ClassUtils;
 import org.apache.velocity.util.RuntimeServicesAware;
 import org.apache.velocity.util.StringUtils;
@@ -196,6 +200,21 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
     private String evaluateScopeName = "evaluate";
     private boolean provideEvaluateScope = false;
 
+    /*
+     * Cache of the parsed trees of evaluated strings, null if disabled
+     */
+    private ParseCache evaluateCache = null;
+
+    /*
+     * Trees parsed by #evaluate(), shared by all its instances
+     */
+    private ParseCache evaluateDirectiveCache = null;
+
+    /*
+     * Whether template-local references are kept in slots
+     */
+    private boolean referenceSlots = false;
+
     /*
      *  Opaque reference to something specificed by the
      *  application for use in application supplied/specified
@@ -260,6 +279,7 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
 
             initializeIntrospection();
             initializeEvaluateScopeSettings();
+            initializeSlots();
             /*
              *  initialize the VM Factory.  It will use the properties
              * accessable from Runtime, so keep this here at the end.
@@ -329,6 +349,22 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
         return initialized;
     }
 
+    /**
+     * Releases the threads and file system watches started by the
+     * resource management (background refresh, watched file resource
+     * loader paths). Applications creating engines dynamically, like
+     * redeployed webapps, should call it once an engine is not used
+     * anymore; the engine must not be used afterwards.
+     * @since 1.8
+     */
+    public synchronized void shutdown()
+    {
+        if (resourceManager instanceof ResourceManagerImpl)
+        {
+            ((ResourceManagerImpl) resourceManager).close();
+        }
+    }
+
     /**
      * Init or die! (with some logger.help, of course)
      */
@@ -1022,6 +1058,16 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
     {
         Map tmp = new HashMap(runtimeDirectives);
         runtimeDirectivesShared = tmp;
+
+        /* trees parsed with the former directives are stale */
+        if (evaluateCache != null)
+        {
+            evaluateCache.clear();
+        }
+        if (evaluateDirectiveCache != null)
+        {
+            evaluateDirectiveCache.clear();
+        }
     }
 
     /**
@@ -1252,6 +1298,76 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
     {
         String property = evaluateScopeName+'.'+PROVIDE_SCOPE_CONTROL;
         provideEvaluateScope = getBoolean(property, provideEvaluateScope);
+
+        int cacheSize = getInt(EVALUATE_CACHE_SIZE, 0);
+        if (cacheSize > 0)
+        {
+            evaluateCache = new ParseCache(cacheSize);
+        }
+
+        cacheSize = getInt(EVALUATE_DIRECTIVE_CACHE_SIZE, 0);
+        if (cacheSize > 0)
+        {
+            evaluateDirectiveCache = new ParseCache(cacheSize);
+        }
+    }
+
+    /**
+     * Returns the cache of the trees parsed by {@link #evaluate(Context, Writer, String, String)},
+     * which holds its hit and miss counters.
+     *
+     * @return the cache, or null if <code>runtime.evaluate.cache.size</code> is not set
+     * @since 1.8
+     */
+    public ParseCache getEvaluateCache()
+    {
+        requireInitialization();
+        return evaluateCache;
+    }
+
+    private void initializeSlots()
+    {
+        referenceSlots = getBoolean(RUNTIME_REFERENCES_SLOTS, false);
+    }
+
+    /**
+     * Creates the table numbering the references assigned inside a
+     * template tree.
+     *
+     * @return a new table, or null if <code>runtime.references.slots</code> is false
+     * @since 1.8
+     */
+    public SlotTable createSlotTable()
+    {
+        if (!referenceSlots)
+        {
+            return null;
+        }
+        SlotTable slots = new SlotTable();
+
+        /* set by each #foreach iteration */
+        String[] loopNames = { getString(COUNTER_NAME), getString(HAS_NEXT_NAME) };
+        for (int i = 0; i < loopNames.length; i++)
+        {
+            if (loopNames[i] != null)
+            {
+                slots.register(loopNames[i]);
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the cache of parsed trees shared by all #evaluate() directives,
+     * which holds its hit and miss counters.
+     *
+     * @return the cache, or null if <code>directive.evaluate.cache.size</code> is 0
+     * @since 1.8
+     */
+    public ParseCache getEvaluateDirectiveCache()
+    {
+        requireInitialization();
+        return evaluateDirectiveCache;
     }
 
     /**
@@ -1275,7 +1391,40 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
     public boolean evaluate(Context context,  Writer out,
                             String logTag, String instring)
     {
-        return evaluate(context, out, logTag, new StringReader(instring));
+        if (evaluateCache == null || logTag == null)
+        {
+            return evaluate(context, out, logTag, new StringReader(instring));
+        }
+
+        SimpleNode nodeTree = evaluateCache.get(logTag, instring);
+        if (nodeTree != null)
+        {
+            return render(context, out, logTag, nodeTree, false);
+        }
+
+        nodeTree = parseEvaluated(new StringReader(instring), logTag);
+        if (nodeTree == null)
+        {
+            return false;
+        }
+        if (!ParseCache.isCacheable(nodeTree))
+        {
+            /* macros are registered on init, parse and init them each time */
+            return render(context, out, logTag, nodeTree, true);
+        }
+
+        InternalContextAdapterImpl ica = new InternalContextAdapterImpl(context);
+        ica.pushCurrentTemplateName(logTag);
+        try
+        {
+            initTree(ica, logTag, nodeTree);
+        }
+        finally
+        {
+            ica.popCurrentTemplateName();
+        }
+        evaluateCache.put(logTag, instring, nodeTree);
+        return render(context, out, logTag, nodeTree, false);
     }
 
     /**
@@ -1304,10 +1453,26 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
             throw new NullPointerException("logTag (i.e. template name) cannot be null, you must provide an identifier for the content being evaluated");
         }
 
-        SimpleNode nodeTree = null;
+        SimpleNode nodeTree = parseEvaluated(reader, logTag);
+
+        if (nodeTree == null)
+        {
+            return false;
+        }
+        else
+        {
+            return render(context, writer, logTag, nodeTree);
+        }
+    }
+
+    /**
+     * Parses evaluated content, converting parse exceptions.
+     */
+    private SimpleNode parseEvaluated(Reader reader, String logTag)
+    {
         try
         {
-            nodeTree = parse(reader, logTag);
+            return parse(reader, logTag);
         }
         catch (ParseException pex)
         {
@@ -1317,15 +1482,6 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
         {
             throw new ParseErrorException(pex, null);
         }
-
-        if (nodeTree == null)
-        {
-            return false;
-        }
-        else
-        {
-            return render(context, writer, logTag, nodeTree);
-        }
     }
 
 
@@ -1349,36 +1505,61 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
     public boolean render(Context context, Writer writer,
                           String logTag, SimpleNode nodeTree)
     {
-        /*
-         * we want to init then render
+        return render(context, writer, logTag, nodeTree, true);
+    }
+
+    /**
+     * Initializes the AST, converting init exceptions.
+     */
+    private void initTree(InternalContextAdapterImpl ica, String logTag, SimpleNode nodeTree)
+    {
+        try
+        {
+            nodeTree.init(ica, this);
+        }
+        catch (TemplateInitException pex)
+        {
+            throw new ParseErrorException(pex, null);
+        }
+        /**
+         * pass through application level runtime exceptions
          */
+        catch(RuntimeException e)
+        {
+            throw e;
+        }
+        catch(Exception e)
+        {
+            String msg = "RuntimeInstance.render(): init exception for tag = "+logTag;
+            logger.error(msg, e);
+            throw new VelocityException(msg, e);
+        }
+    }
+
+    /**
+     * Renders the AST, initializing it first if asked to.
+     */
+    private boolean render(Context context, Writer writer,
+                           String logTag, SimpleNode nodeTree, boolean initialize)
+    {
         InternalContextAdapterImpl ica =
             new InternalContextAdapterImpl(context);
+        if (nodeTree instanceof ASTprocess)
+        {
+            SlotTable slots = ((ASTprocess) nodeTree).getSlotTable();
+            if (slots != null)
+            {
+                ica.enableSlots(slots);
+            }
+        }
 
         ica.pushCurrentTemplateName(logTag);
 
         try
         {
-            try
+            if (initialize)
             {
-                nodeTree.init(ica, this);
-            }
-            catch (TemplateInitException pex)
-            {
-                throw new ParseErrorException(pex, null);
-            }
-            /**
-             * pass through application level runtime exceptions
-             */
-            catch(RuntimeException e)
-            {
-                throw e;
-            }
-            catch(Exception e)
-            {
-                String msg = "RuntimeInstance.render(): init exception for tag = "+logTag;
-                logger.error(msg, e);
-                throw new VelocityException(msg, e);
+                initTree(ica, logTag, nodeTree);
             }
 
             try
@@ -1429,6 +1610,7 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
                     }
                 }
             }
+            ica.flushSlots();
         }
 
         return true;
@@ -1495,6 +1677,116 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
         return evaluate(context, writer, logTag, template.toString());
     }
 
+    /**
+     * Invokes a currently registered Velocimacro with the given argument
+     * values and places the rendered stream into the writer. Unlike
+     * invokeVelocimacro(), no VTL is built nor parsed: the values are bound
+     * directly to the macro arguments and the macro tree is rendered.
+     *
+     * @param vmName name of Velocimacro to call
+     * @param logTag string to be used for template name in case of error. if null,
+     *               the vmName will be used
+     * @param args values of the macro arguments, in declaration order
+     * @param context Context object containing data/objects used for rendering.
+     * @param writer  Writer for output stream
+     * @return true if Velocimacro exists and successfully invoked, false otherwise.
+     * @since 1.8
+     */
+    public boolean renderVelocimacro(String vmName, String logTag,
+                                     Object[] args, Context context,
+                                     Writer writer)
+    {
+        return renderVelocimacro(vmName, logTag, args, null, context, writer);
+    }
+
+    /**
+     * Invokes a currently registered Velocimacro with the given argument
+     * values and places the rendered stream into the writer. Unlike
+     * invokeVelocimacro(), no VTL is built nor parsed: the values are bound
+     * directly to the macro arguments and the macro tree is rendered.
+     *
+     * @param vmName name of Velocimacro to call
+     * @param logTag string to be used for template name in case of error. if null,
+     *               the vmName will be used
+     * @param args values of the macro arguments, keyed by argument name
+     *               (eg "foo" rather than "$foo")
+     * @param context Context object containing data/objects used for rendering.
+     * @param writer  Writer for output stream
+     * @return true if Velocimacro exists and successfully invoked, false otherwise.
+     * @since 1.8
+     */
+    public boolean renderVelocimacro(String vmName, String logTag,
+                                     Map args, Context context,
+                                     Writer writer)
+    {
+        return renderVelocimacro(vmName, logTag, null, args, context, writer);
+    }
+
+    /**
+     * Looks up the Velocimacro through the factory and renders it with
+     * either argument values.
+     */
+    private boolean renderVelocimacro(String vmName, String logTag,
+                                      Object[] args, Map namedArgs,
+                                      Context context, Writer writer)
+    {
+        requireInitialization();
+
+        /* check necessary parameters */
+        if (vmName == null || context == null || writer == null)
+        {
+            String msg = "RuntimeInstance.renderVelocimacro() : invalid call : vmName, context, and writer must not be null";
+            logger.error(msg);
+            throw new NullPointerException(msg);
+        }
+
+        /* handle easily corrected parameters */
+        if (logTag == null)
+        {
+            logTag = vmName;
+        }
+
+        VelocimacroProxy vm = (VelocimacroProxy) vmFactory.getVelocimacro(vmName, logTag, logTag);
+        if (vm == null)
+        {
+            String msg = "RuntimeInstance.renderVelocimacro() : VM '" + vmName
+                         + "' is not registered.";
+            logger.error(msg);
+            throw new VelocityException(msg);
+        }
+
+        InternalContextAdapterImpl ica = new InternalContextAdapterImpl(context);
+        ica.pushCurrentTemplateName(logTag);
+        try
+        {
+            if (namedArgs != null)
+            {
+                return vm.invoke(ica, writer, namedArgs);
+            }
+            return vm.invoke(ica, writer, args == null ? new Object[0] : args);
+        }
+        catch (StopCommand stop)
+        {
+            if (!stop.isFor(this))
+            {
+                throw stop;
+            }
+            else if (logger.isDebugEnabled())
+            {
+                logger.debug(stop.getMessage());
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            throw new VelocityException("IO Error in writer: " + e.getMessage(), e);
+        }
+        finally
+        {
+            ica.popCurrentTemplateName();
+        }
+    }
+
     /**
      * Retrieves and caches the configured default encoding
      * for better performance. (VELOCITY-606)
@@ -1654,6 +1946,20 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
     {
         return vmFactory.getVelocimacro( vmName, templateName, renderingTemplate );
     }
+
+    /**
+     * Returns a stamp of the Velocimacros, which changes whenever a
+     * Velocimacro is added or a namespace is dumped, so that macro
+     * resolutions can be cached while it stays the same.
+     *
+     * @return The current stamp of the Velocimacros, or -1 when
+     *    resolutions must not be cached.
+     * @since 1.8
+     */
+    public int getVelocimacroVersion()
+    {
+        return vmFactory.getVersion();
+    }
     
     
    /**
@@ -21,6 +21,7 @@ package org.apache.velocity.runtime;
 
 import java.io.Reader;
 import java.io.Writer;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.collections.ExtendedProperties;
@@ -250,6 +251,45 @@ public interface RuntimeServices
                                      String[] params, final Context context,
                                      final Writer writer);
 
+    /**
+     * Invokes a currently registered Velocimacro with the given argument
+     * values and places the rendered stream into the writer. Unlike
+     * invokeVelocimacro(), no VTL is built nor parsed: the values are bound
+     * directly to the macro arguments and the macro tree is rendered.
+     *
+     * @param vmName name of Velocimacro to call
+     * @param logTag string to be used for template name in case of error. if null,
+     *               the vmName will be used
+     * @param args values of the macro arguments, in declaration order
+     * @param context Context object containing data/objects used for rendering.
+     * @param writer  Writer for output stream
+     * @return true if Velocimacro exists and successfully invoked, false otherwise.
+     * @since 1.8
+     */
+    public boolean renderVelocimacro(String vmName, String logTag,
+                                     Object[] args, Context context,
+                                     Writer writer);
+
+    /**
+     * Invokes a currently registered Velocimacro with the given argument
+     * values and places the rendered stream into the writer. Unlike
+     * invokeVelocimacro(), no VTL is built nor parsed: the values are bound
+     * directly to the macro arguments and the macro tree is rendered.
+     *
+     * @param vmName name of Velocimacro to call
+     * @param logTag string to be used for template name in case of error. if null,
+     *               the vmName will be used
+     * @param args values of the macro arguments, keyed by argument name
+     *               (eg "foo" rather than "$foo")
+     * @param context Context object containing data/objects used for rendering.
+     * @param writer  Writer for output stream
+     * @return true if Velocimacro exists and successfully invoked, false otherwise.
+     * @since 1.8
+     */
+    public boolean renderVelocimacro(String vmName, String logTag,
+                                     Map args, Context context,
+                                     Writer writer);
+
     /**
      * Returns a <code>Template</code> from the resource manager.
      * This method assumes that the character encoding of the
@@ -22,15 +22,16 @@ package org.apache.velocity.runtime;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.commons.lang.StringUtils;
 import org.apache.velocity.Template;
 import org.apache.velocity.exception.VelocityException;
 import org.apache.velocity.runtime.directive.Directive;
 import org.apache.velocity.runtime.directive.Macro;
-import org.apache.velocity.runtime.directive.VelocimacroProxy;
 import org.apache.velocity.runtime.parser.ParseException;
 import org.apache.velocity.runtime.parser.node.Node;
 import org.slf4j.Logger;
@@ -100,6 +101,15 @@ public class VelocimacroFactory
      */
     private Map libModMap;
 
+    /**
+     *  earliest time at which a library is due for a check for changes,
+     *  minimal time between two checks of a library, and whether a thread
+     *  is checking them
+     */
+    private volatile long nextLibraryCheck = 0;
+    private long libraryCheckInterval = 0;
+    private final AtomicBoolean checkingLibraries = new AtomicBoolean(false);
+
     /**
      *  C'tor for the VelociMacro factory.
      *
@@ -111,8 +121,9 @@ public class VelocimacroFactory
 //        this.log = new LogDisplayWrapper( "Velocimacro : ", rsvc.getBoolean(RuntimeConstants.VM_MESSAGES_ON, true));
 
         /*
-         *  we always access in a synchronized(), so we
-         *  can use an unsynchronized hashmap
+         *  we only write to it in a synchronized() at init, and then
+         *  access it from one thread at a time, so we can use an
+         *  unsynchronized hashmap
          */
         libModMap = new HashMap();
         vmManager = new VelocimacroManager(rsvc);
@@ -301,6 +312,7 @@ public class VelocimacroFactory
 
             if (getAutoload())
             {
+                libraryCheckInterval = 1000L * rsvc.getInt(RuntimeConstants.VM_LIBRARY_AUTORELOAD_INTERVAL, 0);
                 logger.debug("autoload on : VM system will automatically reload global library macros");
             }
             else
@@ -558,92 +570,170 @@ public class VelocimacroFactory
       */
      public Directive getVelocimacro(String vmName, String sourceTemplate, String renderingTemplate)
      {
-        VelocimacroProxy vp = null;
-
-        vp = vmManager.get(vmName, sourceTemplate, renderingTemplate);
+        Directive vp = vmManager.get(vmName, sourceTemplate, renderingTemplate);
 
         /*
-         * if this exists, and autoload is on, we need to check where this VM came from
+         * if autoload is on, the library of the macro may have to be
+         * reloaded first
          */
 
-        if (vp != null && autoReloadLibrary )
+        if (autoReloadLibrary && vp != null)
         {
-            synchronized (this)
+            String lib = vmManager.getLibraryName(vmName, sourceTemplate);
+            if (lib != null && checkLibraries(lib))
             {
-                /*
-                 * see if this VM came from a library. Need to pass sourceTemplate in the event
-                 * namespaces are set, as it could be masked by local
-                 */
+                vp = vmManager.get(vmName, sourceTemplate, renderingTemplate);
+            }
+        }
+
+        return vp;
+    }
 
-                String lib = vmManager.getLibraryName(vmName, sourceTemplate);
+    /**
+     * Reloads the VM libraries which have changed, among the given one or
+     * all of them, if they are due for a check and no other thread is
+     * checking them. Other threads do not wait, and go on with the macros
+     * they already have.
+     *
+     * @param name name of the library to check, or null for all of them
+     * @return true if a library has been reloaded
+     */
+    private boolean checkLibraries(String name)
+    {
+        long now = System.currentTimeMillis();
+        Twonk single = null;
+        if (name == null)
+        {
+            if (now < nextLibraryCheck)
+            {
+                return false;
+            }
+        }
+        else
+        {
+            /* the map is only written at init */
+            single = (Twonk) libModMap.get(name);
+            if (single == null || now < single.nextCheck)
+            {
+                return false;
+            }
+        }
+        if (!checkingLibraries.compareAndSet(false, true))
+        {
+            return false;
+        }
 
-                if (lib != null)
+        boolean reloaded = false;
+        try
+        {
+            if (single != null)
+            {
+                /* nextLibraryCheck may now be early, which only costs a check */
+                if (now >= single.nextCheck)
                 {
-                    try
-                    {
-                        /*
-                         * get the template from our map
-                         */
-
-                        Twonk tw = (Twonk) libModMap.get(lib);
-
-                        if (tw != null)
-                        {
-                            Template template = tw.template;
-
-                            /*
-                             * now, compare the last modified time of the resource with the last
-                             * modified time of the template if the file has changed, then reload.
-                             * Otherwise, we should be ok.
-                             */
-
-                            long tt = tw.modificationTime;
-                            long ft = template.getResourceLoader().getLastModified(template);
-
-                            if (ft > tt)
-                            {
-                                logger.debug("auto-reloading VMs from VM library : " + lib);
-
-                                /*
-                                 * when there are VMs in a library that invoke each other, there are
-                                 * calls into getVelocimacro() from the init() process of the VM
-                                 * directive. To stop the infinite loop we save the current time
-                                 * reported by the resource loader and then be honest when the
-                                 * reload is complete
-                                 */
-
-                                tw.modificationTime = ft;
-
-                                template = rsvc.getTemplate(lib);
-
-                                /*
-                                 * and now we be honest
-                                 */
-
-                                tw.template = template;
-                                tw.modificationTime = template.getLastModified();
-
-                                /*
-                                 * note that we don't need to put this twonk
-                                 * back into the map, as we can just use the
-                                 * same reference and this block is synchronized
-                                 */
-                            }
-                        }
-                    }
-                    catch (Exception e)
+                    single.nextCheck = now + libraryCheckInterval;
+                    reloaded = reloadLibrary(name, single);
+                }
+            }
+            else
+            {
+                long next = Long.MAX_VALUE;
+                for (Iterator i = libModMap.entrySet().iterator(); i.hasNext(); )
+                {
+                    Map.Entry entry = (Map.Entry) i.next();
+                    Twonk tw = (Twonk) entry.getValue();
+                    if (now >= tw.nextCheck)
                     {
-                        String msg = "Velocimacro : Error using VM library : " + lib;
-                        logger.error( msg, e);
-                        throw new VelocityException(msg, e);
+                        tw.nextCheck = now + libraryCheckInterval;
+                        reloaded |= reloadLibrary((String) entry.getKey(), tw);
                     }
-
-                    vp = vmManager.get(vmName, sourceTemplate, renderingTemplate);
+                    next = Math.min(next, tw.nextCheck);
                 }
+                nextLibraryCheck = next;
             }
         }
+        finally
+        {
+            checkingLibraries.set(false);
+        }
+        return reloaded;
+    }
 
-        return vp;
+    /**
+     * Reloads a VM library if it has changed.
+     *
+     * @return true if the library has been reloaded
+     */
+    private boolean reloadLibrary(String lib, Twonk tw)
+    {
+        try
+        {
+            Template template = tw.template;
+
+            /*
+             * now, compare the last modified time of the resource with the last
+             * modified time of the template if the file has changed, then reload.
+             * Otherwise, we should be ok.
+             */
+
+            long tt = tw.modificationTime;
+            long ft = template.getResourceLoader().getLastModified(template);
+
+            if (ft > tt)
+            {
+                logger.debug("auto-reloading VMs from VM library : " + lib);
+
+                /*
+                 * when there are VMs in a library that invoke each other, there are
+                 * calls into getVelocimacro() from the init() process of the VM
+                 * directive. They do not check the libraries again, as this thread
+                 * is the checking one. We also save the current time reported by
+                 * the resource loader and then be honest when the reload is complete
+                 */
+
+                tw.modificationTime = ft;
+
+                template = rsvc.getTemplate(lib);
+
+                /*
+                 * and now we be honest
+                 */
+
+                tw.template = template;
+                tw.modificationTime = template.getLastModified();
+                return true;
+            }
+            return false;
+        }
+        catch (Exception e)
+        {
+            String msg = "Velocimacro : Error using VM library : " + lib;
+            logger.error( msg, e);
+            throw new VelocityException(msg, e);
+        }
+    }
+
+    /**
+     * Returns a stamp of the macros, which changes whenever a macro is added
+     * or a namespace is dumped, or -1 when macro resolutions must not be
+     * cached because the macro libraries are checked for changes on each
+     * lookup. When they are checked at intervals, the libraries due for a
+     * check are checked first, so that reloading them changes the stamp.
+     *
+     * @return The current stamp of the macros, or -1.
+     * @since 1.8
+     */
+    public int getVersion()
+    {
+        if (autoReloadLibrary)
+        {
+            if (libraryCheckInterval <= 0)
+            {
+                return -1;
+            }
+            checkLibraries(null);
+        }
+        return vmManager.getVersion();
     }
 
     /**
@@ -726,6 +816,9 @@ public class VelocimacroFactory
 
         /** modification time of the template. */
         public long modificationTime;
+
+        /** time of the next check of the template for changes, read without locking. */
+        public volatile long nextCheck;
     }
 }
 
@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.velocity.exception.VelocityException;
 import org.apache.velocity.runtime.directive.VelocimacroProxy;
@@ -71,6 +72,9 @@ public class VelocimacroManager
     private boolean inlineLocalMode = false;
     private boolean inlineReplacesGlobal = false;
 
+    /** bumped after each change of the macros, so that resolutions can be cached */
+    private final AtomicInteger version = new AtomicInteger();
+
     /**
      * Adds the global namespace to the hash.
      */
@@ -146,6 +150,7 @@ public class VelocimacroManager
 
             Map local = getNamespace(namespace, true);
             local.put(vmName, me);
+            version.incrementAndGet();
             
             return true;
         }
@@ -167,6 +172,7 @@ public class VelocimacroManager
              */
 
             globalNamespace.put(vmName, me);
+            version.incrementAndGet();
 
             return true;
         }
@@ -271,6 +277,7 @@ public class VelocimacroManager
                 }
 
                 h.clear();
+                version.incrementAndGet();
 
                 return true;
             }
@@ -278,6 +285,19 @@ public class VelocimacroManager
         return false;
     }
 
+    /**
+     * Returns a stamp of the macros, which changes whenever a macro is
+     * added or a namespace is dumped. A macro resolution can be cached as
+     * long as the stamp stays the same.
+     *
+     * @return The current stamp of the macros.
+     * @since 1.8
+     */
+    public int getVersion()
+    {
+        return version.get();
+    }
+
     /**
      *  public switch to let external user of manager to control namespace
      *  usage indep of properties.  That way, for example, at startup the
@@ -288,6 +308,7 @@ public class VelocimacroManager
     public void setNamespaceUsage(final boolean namespaceOn)
     {
         this.namespacesOn = namespaceOn;
+        version.incrementAndGet();
     }
 
     /**
@@ -307,6 +328,7 @@ public class VelocimacroManager
     public void setTemplateLocalInlineVM(final boolean inlineLocalMode)
     {
         this.inlineLocalMode = inlineLocalMode;
+        version.incrementAndGet();
     }
 
     /**
@@ -439,6 +461,7 @@ public class VelocimacroManager
     public void setInlineReplacesGlobal(boolean is)
     {
         inlineReplacesGlobal = is;
+        version.incrementAndGet();
     }
 
 
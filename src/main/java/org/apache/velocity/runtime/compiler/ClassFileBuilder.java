@@ -0,0 +1,433 @@
+package org.apache.velocity.runtime.compiler;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal class file writer used by the {@link TemplateCompiler}. It only
+ * knows about the handful of constant pool entries and instructions the
+ * compiler needs, and emits class files of major version 49 so that no
+ * StackMapTable has to be computed for the generated branches.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+class ClassFileBuilder
+{
+    static final int ALOAD = 0x19;
+    static final int ASTORE = 0x3a;
+    static final int ALOAD_0 = 0x2a;
+    static final int ALOAD_1 = 0x2b;
+    static final int ALOAD_2 = 0x2c;
+    static final int ALOAD_3 = 0x2d;
+    static final int ILOAD_1 = 0x1b;
+    static final int AALOAD = 0x32;
+    static final int POP = 0x57;
+    static final int IFEQ = 0x99;
+    static final int GOTO = 0xa7;
+    static final int TABLESWITCH = 0xaa;
+    static final int RETURN = 0xb1;
+    static final int GETFIELD = 0xb4;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKEINTERFACE = 0xb9;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACEMETHODREF = 11;
+    private static final int CONSTANT_NAMEANDTYPE = 12;
+
+    /* maximum branch offset of the 16 bit jump instructions */
+    private static final int MAX_CODE_LENGTH = Short.MAX_VALUE;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map poolIndex = new HashMap();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    private final DataOutputStream methods = new DataOutputStream(methodBytes);
+    private int methodCount = 0;
+
+    private final String className;
+    private final String superName;
+
+    /**
+     * @param className internal name of the class to build
+     * @param superName internal name of its superclass
+     */
+    ClassFileBuilder(String className, String superName)
+    {
+        this.className = className;
+        this.superName = superName;
+    }
+
+    /**
+     * @return internal name of the class being built
+     */
+    String getClassName()
+    {
+        return className;
+    }
+
+    /**
+     * Starts a new method body.
+     * @return the code buffer for the method
+     */
+    Code newCode()
+    {
+        return new Code();
+    }
+
+    /**
+     * Adds a method to the class.
+     *
+     * @param access access flags
+     * @param name method name
+     * @param descriptor method descriptor
+     * @param code method body
+     * @param maxStack maximum operand stack depth
+     * @param maxLocals number of local variable slots
+     * @throws IOException
+     */
+    void addMethod(int access, String name, String descriptor, Code code, int maxStack, int maxLocals)
+        throws IOException
+    {
+        byte[] bytecode = code.toByteArray();
+        methods.writeShort(access);
+        methods.writeShort(utf8(name));
+        methods.writeShort(utf8(descriptor));
+        methods.writeShort(1);
+        methods.writeShort(utf8("Code"));
+        methods.writeInt(12 + bytecode.length);
+        methods.writeShort(maxStack);
+        methods.writeShort(maxLocals);
+        methods.writeInt(bytecode.length);
+        methods.write(bytecode);
+        methods.writeShort(0);
+        methods.writeShort(0);
+        methodCount++;
+    }
+
+    /**
+     * @param access access flags of the class
+     * @return the class file
+     * @throws IOException
+     */
+    byte[] toByteArray(int access) throws IOException
+    {
+        int thisClass = classRef(className);
+        int superClass = classRef(superName);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49);
+        out.writeShort(poolCount);
+        pool.flush();
+        poolBytes.writeTo(out);
+        out.writeShort(access);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(methodCount);
+        methods.flush();
+        methodBytes.writeTo(out);
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    int fieldRef(String owner, String name, String descriptor) throws IOException
+    {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) throws IOException
+    {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) throws IOException
+    {
+        return memberRef(CONSTANT_INTERFACEMETHODREF, owner, name, descriptor);
+    }
+
+    private int utf8(String value) throws IOException
+    {
+        String key = "U" + value;
+        Integer index = (Integer) poolIndex.get(key);
+        if (index == null)
+        {
+            pool.writeByte(CONSTANT_UTF8);
+            pool.writeUTF(value);
+            index = newEntry(key);
+        }
+        return index.intValue();
+    }
+
+    private int integer(int value) throws IOException
+    {
+        String key = "I" + value;
+        Integer index = (Integer) poolIndex.get(key);
+        if (index == null)
+        {
+            pool.writeByte(CONSTANT_INTEGER);
+            pool.writeInt(value);
+            index = newEntry(key);
+        }
+        return index.intValue();
+    }
+
+    private int classRef(String name) throws IOException
+    {
+        String key = "C" + name;
+        Integer index = (Integer) poolIndex.get(key);
+        if (index == null)
+        {
+            int nameIndex = utf8(name);
+            pool.writeByte(CONSTANT_CLASS);
+            pool.writeShort(nameIndex);
+            index = newEntry(key);
+        }
+        return index.intValue();
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) throws IOException
+    {
+        String key = "M" + tag + owner + '.' + name + descriptor;
+        Integer index = (Integer) poolIndex.get(key);
+        if (index == null)
+        {
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+
+            String ntKey = "N" + name + descriptor;
+            Integer nameAndType = (Integer) poolIndex.get(ntKey);
+            if (nameAndType == null)
+            {
+                pool.writeByte(CONSTANT_NAMEANDTYPE);
+                pool.writeShort(nameIndex);
+                pool.writeShort(descriptorIndex);
+                nameAndType = newEntry(ntKey);
+            }
+
+            pool.writeByte(tag);
+            pool.writeShort(ownerIndex);
+            pool.writeShort(nameAndType.intValue());
+            index = newEntry(key);
+        }
+        return index.intValue();
+    }
+
+    private Integer newEntry(String key)
+    {
+        if (poolCount >= 0xffff)
+        {
+            throw new IllegalStateException("constant pool overflow in " + className);
+        }
+        Integer index = Integer.valueOf(poolCount++);
+        poolIndex.put(key, index);
+        return index;
+    }
+
+    /**
+     * Bytecode buffer of a single method.
+     */
+    class Code
+    {
+        private byte[] buf = new byte[256];
+        private int length = 0;
+
+        /**
+         * @return current offset in the method body
+         */
+        int offset()
+        {
+            return length;
+        }
+
+        void op(int opcode)
+        {
+            u1(opcode);
+        }
+
+        void op(int opcode, int u2operand)
+        {
+            u1(opcode);
+            u2(u2operand);
+        }
+
+        void local(int opcode, int slot)
+        {
+            u1(opcode);
+            u1(slot);
+        }
+
+        void invokeInterface(int methodRef, int argSlots)
+        {
+            u1(INVOKEINTERFACE);
+            u2(methodRef);
+            u1(argSlots);
+            u1(0);
+        }
+
+        /**
+         * Pushes an int constant with the shortest encoding.
+         * @param value
+         * @throws IOException
+         */
+        void push(int value) throws IOException
+        {
+            if (value >= -1 && value <= 5)
+            {
+                u1(ICONST_0 + value);
+            }
+            else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+            {
+                u1(BIPUSH);
+                u1(value);
+            }
+            else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+            {
+                u1(SIPUSH);
+                u2(value);
+            }
+            else
+            {
+                op(LDC_W, integer(value));
+            }
+        }
+
+        /**
+         * Emits a forward jump.
+         * @param opcode the jump instruction
+         * @return the offset of the instruction, to be passed to {@link #patch(int)}
+         */
+        int jump(int opcode)
+        {
+            int at = length;
+            u1(opcode);
+            u2(0);
+            return at;
+        }
+
+        /**
+         * Emits a tableswitch over the keys 0 to count - 1.
+         * @param count number of cases, at least 1
+         * @return the offset of the instruction, to be passed to {@link #patchCase(int, int)}
+         */
+        int tableSwitch(int count)
+        {
+            int at = length;
+            u1(TABLESWITCH);
+            while (length % 4 != 0)
+            {
+                u1(0);
+            }
+            u4(0);
+            u4(0);
+            u4(count - 1);
+            for (int i = 0; i < count; i++)
+            {
+                u4(0);
+            }
+            return at;
+        }
+
+        /**
+         * Points a case of a tableswitch previously emitted by
+         * {@link #tableSwitch(int)} at the current offset.
+         * @param at
+         * @param key the case, or -1 for the default
+         */
+        void patchCase(int at, int key)
+        {
+            int pos = ((at + 4) & ~3) + (key < 0 ? 0 : 12 + 4 * key);
+            int delta = length - at;
+            buf[pos] = (byte) (delta >> 24);
+            buf[pos + 1] = (byte) (delta >> 16);
+            buf[pos + 2] = (byte) (delta >> 8);
+            buf[pos + 3] = (byte) delta;
+        }
+
+        /**
+         * Points a jump previously emitted by {@link #jump(int)} at the current offset.
+         * @param at
+         */
+        void patch(int at)
+        {
+            int delta = length - at;
+            buf[at + 1] = (byte) (delta >> 8);
+            buf[at + 2] = (byte) delta;
+        }
+
+        byte[] toByteArray()
+        {
+            if (length > MAX_CODE_LENGTH)
+            {
+                throw new IllegalStateException("method too large in " + className);
+            }
+            byte[] bytes = new byte[length];
+            System.arraycopy(buf, 0, bytes, 0, length);
+            return bytes;
+        }
+
+        private void u1(int value)
+        {
+            if (length == buf.length)
+            {
+                byte[] grown = new byte[buf.length * 2];
+                System.arraycopy(buf, 0, grown, 0, length);
+                buf = grown;
+            }
+            buf[length++] = (byte) value;
+        }
+
+        private void u2(int value)
+        {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        private void u4(int value)
+        {
+            u2(value >> 16);
+            u2(value);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.apache.velocity.runtime.compiler;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.exception.MethodInvocationException;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.io.EncodingWriter;
+import org.apache.velocity.runtime.Renderable;
+import org.apache.velocity.runtime.parser.node.Node;
+
+/**
+ * Base class of the classes generated by the {@link TemplateCompiler}.
+ * A subclass renders one template as straight-line code : static text
+ * is written directly from {@link #texts} (see {@link #writeText}), #if/#elseif/#else chains are
+ * turned into branches, and every other node is rendered by calling
+ * into the interpreter through {@link #nodes}. The bodies of the
+ * directives are rendered the same way by {@link #renderBlock}.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public abstract class CompiledTemplate implements Renderable
+{
+    /**
+     * Static text chunks, indexed by the generated code.
+     */
+    protected final char[][] texts;
+
+    /**
+     * Nodes rendered or evaluated by the generated code.
+     */
+    protected final Node[] nodes;
+
+    /**
+     * The texts encoded in the last charset they were written in.
+     */
+    private volatile Encoded encoded;
+
+    /**
+     * @param texts static text chunks
+     * @param nodes nodes left to the interpreter
+     */
+    protected CompiledTemplate(char[][] texts, Node[] nodes)
+    {
+        this.texts = texts;
+        this.nodes = nodes;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.Renderable#render(org.apache.velocity.context.InternalContextAdapter, java.io.Writer)
+     */
+    public boolean render(InternalContextAdapter context, Writer writer)
+        throws IOException, MethodInvocationException, ParseErrorException, ResourceNotFoundException
+    {
+        renderCompiled(context, writer);
+        return true;
+    }
+
+    /**
+     * Writes a static text chunk, already encoded when the output is an
+     * {@link EncodingWriter}.
+     *
+     * @param writer
+     * @param index index of the chunk in {@link #texts}
+     * @throws IOException
+     */
+    protected final void writeText(Writer writer, int index) throws IOException
+    {
+        if (writer instanceof EncodingWriter)
+        {
+            EncodingWriter out = (EncodingWriter) writer;
+            out.writeBytes(getEncodedTexts(out.getCharset())[index]);
+        }
+        else
+        {
+            writer.write(texts[index]);
+        }
+    }
+
+    private byte[][] getEncodedTexts(Charset charset)
+    {
+        Encoded e = encoded;
+        if (e == null || !e.charset.equals(charset))
+        {
+            byte[][] bytes = new byte[texts.length][];
+            for (int i = 0; i < texts.length; i++)
+            {
+                bytes[i] = new String(texts[i]).getBytes(charset);
+            }
+            e = new Encoded(charset, bytes);
+            encoded = e;
+        }
+        return e.bytes;
+    }
+
+    /**
+     * Implemented by the generated code.
+     *
+     * @param context
+     * @param writer
+     * @throws IOException
+     * @throws MethodInvocationException
+     * @throws ParseErrorException
+     * @throws ResourceNotFoundException
+     */
+    protected abstract void renderCompiled(InternalContextAdapter context, Writer writer)
+        throws IOException, MethodInvocationException, ParseErrorException, ResourceNotFoundException;
+
+    /**
+     * Implemented by the generated code.
+     *
+     * @param block index of the directive body
+     * @param context
+     * @param writer
+     * @throws IOException
+     * @throws MethodInvocationException
+     * @throws ParseErrorException
+     * @throws ResourceNotFoundException
+     */
+    protected abstract void renderBlock(int block, InternalContextAdapter context, Writer writer)
+        throws IOException, MethodInvocationException, ParseErrorException, ResourceNotFoundException;
+
+    /**
+     * @param block index of a directive body
+     * @return the compiled form of the body
+     */
+    Renderable getBlock(int block)
+    {
+        return new Block(this, block);
+    }
+
+    /**
+     * Compiled form of a directive body.
+     */
+    private static final class Block implements Renderable
+    {
+        private final CompiledTemplate template;
+        private final int block;
+
+        Block(CompiledTemplate template, int block)
+        {
+            this.template = template;
+            this.block = block;
+        }
+
+        public boolean render(InternalContextAdapter context, Writer writer)
+            throws IOException, MethodInvocationException, ParseErrorException, ResourceNotFoundException
+        {
+            template.renderBlock(block, context, writer);
+            return true;
+        }
+    }
+
+    private static final class Encoded
+    {
+        final Charset charset;
+        final byte[][] bytes;
+
+        Encoded(Charset charset, byte[][] bytes)
+        {
+            this.charset = charset;
+            this.bytes = bytes;
+        }
+    }
+}
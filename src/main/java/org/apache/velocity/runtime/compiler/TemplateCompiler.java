@@ -0,0 +1,359 @@
+package org.apache.velocity.runtime.compiler;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.velocity.runtime.parser.node.ASTBlock;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.ASTElseIfStatement;
+import org.apache.velocity.runtime.parser.node.ASTElseStatement;
+import org.apache.velocity.runtime.parser.node.ASTIfStatement;
+import org.apache.velocity.runtime.parser.node.ASTText;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles an initialized AST into a {@link CompiledTemplate} subclass.
+ * The generated render method writes static text directly, turns
+ * #if/#elseif/#else chains into branches and inlines the blocks they
+ * guard.  The bodies of directives (#foreach loops, #macro, #define...)
+ * are compiled the same way into methods of their own, which their
+ * {@link ASTBlock} then renders with; the directives themselves still
+ * drive them.  References, #set and the conditions are left to the
+ * interpreter and called through their own render and evaluate methods,
+ * so the compiled form always produces the same output as the tree.
+ *
+ * Only JDK classes are used : the class file is written by hand and
+ * defined in a dedicated class loader, so it can be collected along
+ * with its template.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class TemplateCompiler
+{
+    private static Logger logger = LoggerFactory.getLogger(TemplateCompiler.class);
+
+    private static final String SUPER_CLASS = "org/apache/velocity/runtime/compiler/CompiledTemplate";
+    private static final String CLASS_PREFIX = "org/apache/velocity/runtime/compiler/CompiledTemplate$";
+
+    private static final String NODE = "org/apache/velocity/runtime/parser/node/Node";
+    private static final String CONTEXT_DESC = "Lorg/apache/velocity/context/InternalContextAdapter;";
+    private static final String WRITER_DESC = "Ljava/io/Writer;";
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int ACC_PROTECTED = 0x0004;
+
+    /* locals of the generated render method */
+    private static final int NODES = 4;
+
+    private static int classCounter = 0;
+
+    private static final String RENDER_DESC = "(" + CONTEXT_DESC + WRITER_DESC + ")V";
+
+    private final ClassFileBuilder cf;
+    private final List texts = new ArrayList();
+    private final List nodes = new ArrayList();
+
+    /* directive bodies, compiled into the methods block0, block1... */
+    private final List blocks = new ArrayList();
+
+    /* code of the method being generated */
+    private ClassFileBuilder.Code code;
+
+    private final int writeText;
+    private final int renderNode;
+    private final int evaluateNode;
+
+    private TemplateCompiler(String className) throws IOException
+    {
+        cf = new ClassFileBuilder(className, SUPER_CLASS);
+        writeText = cf.methodRef(SUPER_CLASS, "writeText", "(" + WRITER_DESC + "I)V");
+        renderNode = cf.interfaceMethodRef(NODE, "render", "(" + CONTEXT_DESC + WRITER_DESC + ")Z");
+        evaluateNode = cf.interfaceMethodRef(NODE, "evaluate", "(" + CONTEXT_DESC + ")Z");
+    }
+
+    /**
+     * Compiles the given initialized template tree.
+     *
+     * @param root root node of an initialized template
+     * @param templateName name used for logging
+     * @return the compiled template, or null if the tree could not be
+     *         compiled and must stay interpreted
+     */
+    public static CompiledTemplate compile(Node root, String templateName)
+    {
+        try
+        {
+            TemplateCompiler compiler = new TemplateCompiler(nextClassName());
+            return compiler.generate(root);
+        }
+        catch (Exception e)
+        {
+            logger.debug("Template '" + templateName + "' can not be compiled, it will be interpreted", e);
+        }
+        catch (LinkageError e)
+        {
+            logger.debug("Template '" + templateName + "' can not be compiled, it will be interpreted", e);
+        }
+        return null;
+    }
+
+    private static synchronized String nextClassName()
+    {
+        return CLASS_PREFIX + (++classCounter);
+    }
+
+    private CompiledTemplate generate(Node root) throws Exception
+    {
+        emitConstructor();
+        emitMethod(ACC_PROTECTED, "renderCompiled", root);
+
+        /* the bodies found while compiling a body are appended to the list */
+        for (int i = 0; i < blocks.size(); i++)
+        {
+            emitMethod(ACC_PRIVATE, "block" + i, (Node) blocks.get(i));
+        }
+        emitRenderBlock();
+
+        byte[] bytes = cf.toByteArray(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+
+        char[][] textArray = (char[][]) texts.toArray(new char[texts.size()][]);
+        Node[] nodeArray = (Node[]) nodes.toArray(new Node[nodes.size()]);
+
+        Class type = new CompiledTemplateLoader().define(cf.getClassName().replace('/', '.'), bytes);
+        CompiledTemplate compiled = (CompiledTemplate) type
+            .getConstructor(new Class[] { char[][].class, Node[].class })
+            .newInstance(new Object[] { textArray, nodeArray });
+
+        for (int i = 0; i < blocks.size(); i++)
+        {
+            ((ASTBlock) blocks.get(i)).setCompiled(compiled.getBlock(i));
+        }
+        return compiled;
+    }
+
+    /**
+     * Generates a method rendering the children of a node.
+     */
+    private void emitMethod(int access, String name, Node node) throws IOException
+    {
+        code = cf.newCode();
+        code.op(ClassFileBuilder.ALOAD_0);
+        code.op(ClassFileBuilder.GETFIELD, cf.fieldRef(SUPER_CLASS, "nodes", "[L" + NODE + ";"));
+        code.local(ClassFileBuilder.ASTORE, NODES);
+
+        emitChildren(node);
+
+        code.op(ClassFileBuilder.RETURN);
+        cf.addMethod(access, name, RENDER_DESC, code, 3, 5);
+    }
+
+    /**
+     * switch (block) { case i: blocki(context, writer); }
+     */
+    private void emitRenderBlock() throws IOException
+    {
+        code = cf.newCode();
+        int count = blocks.size();
+        if (count > 0)
+        {
+            code.op(ClassFileBuilder.ILOAD_1);
+            int at = code.tableSwitch(count);
+            for (int i = 0; i < count; i++)
+            {
+                code.patchCase(at, i);
+                code.op(ClassFileBuilder.ALOAD_0);
+                code.op(ClassFileBuilder.ALOAD_2);
+                code.op(ClassFileBuilder.ALOAD_3);
+                code.op(ClassFileBuilder.INVOKESPECIAL, cf.methodRef(cf.getClassName(), "block" + i, RENDER_DESC));
+                code.op(ClassFileBuilder.RETURN);
+            }
+            code.patchCase(at, -1);
+        }
+        code.op(ClassFileBuilder.RETURN);
+        cf.addMethod(ACC_PROTECTED, "renderBlock", "(I" + CONTEXT_DESC + WRITER_DESC + ")V", code, 3, 4);
+    }
+
+    private void emitConstructor() throws IOException
+    {
+        String descriptor = "([[C[L" + NODE + ";)V";
+        ClassFileBuilder.Code init = cf.newCode();
+        init.op(ClassFileBuilder.ALOAD_0);
+        init.op(ClassFileBuilder.ALOAD_1);
+        init.op(ClassFileBuilder.ALOAD_2);
+        init.op(ClassFileBuilder.INVOKESPECIAL, cf.methodRef(SUPER_CLASS, "<init>", descriptor));
+        init.op(ClassFileBuilder.RETURN);
+        cf.addMethod(ACC_PUBLIC, "<init>", descriptor, init, 3, 3);
+    }
+
+    private void emitChildren(Node node) throws IOException
+    {
+        int k = node.jjtGetNumChildren();
+        for (int i = 0; i < k; i++)
+        {
+            emit(node.jjtGetChild(i));
+        }
+    }
+
+    private void emit(Node node) throws IOException
+    {
+        if (node instanceof ASTText)
+        {
+            emitText(((ASTText) node).getText());
+        }
+        else if (node instanceof ASTBlock)
+        {
+            emitChildren(node);
+        }
+        else if (node instanceof ASTIfStatement)
+        {
+            emitIf(node);
+        }
+        else
+        {
+            emitRender(node);
+        }
+    }
+
+    /**
+     * writeText(writer, i)
+     */
+    private void emitText(char[] text) throws IOException
+    {
+        if (text.length == 0)
+        {
+            return;
+        }
+        code.op(ClassFileBuilder.ALOAD_0);
+        code.op(ClassFileBuilder.ALOAD_2);
+        code.push(texts.size());
+        code.op(ClassFileBuilder.INVOKEVIRTUAL, writeText);
+        texts.add(text);
+    }
+
+    /**
+     * nodes[i].render(context, writer), the bodies of a directive being
+     * compiled separately
+     */
+    private void emitRender(Node node) throws IOException
+    {
+        if (node instanceof ASTDirective)
+        {
+            int k = node.jjtGetNumChildren();
+            for (int i = 0; i < k; i++)
+            {
+                if (node.jjtGetChild(i) instanceof ASTBlock)
+                {
+                    blocks.add(node.jjtGetChild(i));
+                }
+            }
+        }
+        pushNode(node);
+        code.op(ClassFileBuilder.ALOAD_1);
+        code.op(ClassFileBuilder.ALOAD_2);
+        code.invokeInterface(renderNode, 3);
+        code.op(ClassFileBuilder.POP);
+    }
+
+    /**
+     * if (nodes[i].evaluate(context)) { block } else if ... else { block }
+     */
+    private void emitIf(Node node) throws IOException
+    {
+        List exits = new ArrayList();
+        int k = node.jjtGetNumChildren();
+
+        int skip = emitCondition(node.jjtGetChild(0));
+        emit(node.jjtGetChild(1));
+        exits.add(Integer.valueOf(code.jump(ClassFileBuilder.GOTO)));
+        code.patch(skip);
+
+        for (int i = 2; i < k; i++)
+        {
+            Node branch = node.jjtGetChild(i);
+            if (branch instanceof ASTElseIfStatement)
+            {
+                skip = emitCondition(branch.jjtGetChild(0));
+                emit(branch.jjtGetChild(1));
+                exits.add(Integer.valueOf(code.jump(ClassFileBuilder.GOTO)));
+                code.patch(skip);
+            }
+            else if (branch instanceof ASTElseStatement)
+            {
+                emitChildren(branch);
+            }
+            else
+            {
+                /* not produced by the parser, keep the interpreter's semantics */
+                skip = emitCondition(branch);
+                emitRender(branch);
+                exits.add(Integer.valueOf(code.jump(ClassFileBuilder.GOTO)));
+                code.patch(skip);
+            }
+        }
+
+        for (int i = 0; i < exits.size(); i++)
+        {
+            code.patch(((Integer) exits.get(i)).intValue());
+        }
+    }
+
+    private int emitCondition(Node condition) throws IOException
+    {
+        pushNode(condition);
+        code.op(ClassFileBuilder.ALOAD_1);
+        code.invokeInterface(evaluateNode, 2);
+        return code.jump(ClassFileBuilder.IFEQ);
+    }
+
+    private void pushNode(Node node) throws IOException
+    {
+        code.local(ClassFileBuilder.ALOAD, NODES);
+        code.push(nodes.size());
+        code.op(ClassFileBuilder.AALOAD);
+        nodes.add(node);
+    }
+
+    /**
+     * One loader per compiled template, so that the generated class
+     * can be unloaded once its template is discarded.
+     */
+    private static class CompiledTemplateLoader extends ClassLoader
+    {
+        CompiledTemplateLoader()
+        {
+            super(CompiledTemplate.class.getClassLoader());
+        }
+
+        Class define(String name, byte[] bytes)
+        {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -20,11 +20,12 @@ package org.apache.velocity.runtime.directive;
  */
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
 import org.apache.commons.lang.text.StrBuilder;
 import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.context.ProxyVMContext;
 import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.io.CaptureWriter;
 import org.apache.velocity.runtime.Renderable;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.parser.node.Node;
@@ -51,6 +52,12 @@ public abstract class Block extends Directive
     protected int maxDepth;
     protected String key;
 
+    /**
+     * length of the last rendering captured by a {@link Reference}, used
+     * to size the next capture buffer
+     */
+    private int captureSize;
+
     /**
      * Return type of this directive.
      */
@@ -136,6 +143,9 @@ public abstract class Block extends Directive
         {
             this.context = context;
             this.parent = parent;
+
+            // the context may be used after the current macro call
+            ProxyVMContext.capture(context);
         }
         
         /**
@@ -169,12 +179,20 @@ public abstract class Block extends Directive
 
         public String toString()
         {
-            Writer writer = new StringWriter();
-            if (render(context, writer))
+            CaptureWriter writer = CaptureWriter.acquire(parent.captureSize);
+            try
+            {
+                if (render(context, writer))
+                {
+                    parent.captureSize = writer.size();
+                    return writer.toString();
+                }
+                return null;
+            }
+            finally
             {
-                return writer.toString();
+                CaptureWriter.release(writer);
             }
-            return null;
         }
     }
 }
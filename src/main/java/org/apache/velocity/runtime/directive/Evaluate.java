@@ -28,6 +28,8 @@ import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.runtime.ParseCache;
+import org.apache.velocity.runtime.RuntimeInstance;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.parser.ParseException;
 import org.apache.velocity.runtime.parser.ParserTreeConstants;
@@ -49,6 +51,16 @@ public class Evaluate extends Directive
 {
     Logger logger = LoggerFactory.getLogger( Evaluate.class );
 
+    /**
+     * Shared cache of parsed trees, null if caching is disabled
+     */
+    private ParseCache cache = null;
+
+    /**
+     * Tree of the last string evaluated by this instance
+     */
+    private volatile CachedTree lastTree = null;
+
     /**
      * Return name of this directive.
      * @return The name of this directive.
@@ -116,6 +128,12 @@ public class Evaluate extends Directive
                    childNode.getColumn(),
                    childNode.getLine());
         }
+
+        /* the cache is engine plumbing, not part of RuntimeServices */
+        if (rs instanceof RuntimeInstance)
+        {
+            cache = ((RuntimeInstance) rs).getEvaluateDirectiveCache();
+        }
     }
     
     /**
@@ -155,22 +173,48 @@ public class Evaluate extends Directive
          * The new string needs to be parsed since the text has been dynamically generated.
          */
         String templateName = context.getCurrentTemplateName();
+        boolean initialized = false;
         SimpleNode nodeTree = null;
 
-        try
-        {
-            nodeTree = rsvc.parse(new StringReader(sourceText), templateName, false);
-        }
-        catch (ParseException pex)
+        /*
+         * The same string is often evaluated again, within a #foreach or
+         * on the next merge: reuse its tree if it is cached.
+         */
+        if (cache != null)
         {
-            // use the line/column from the template
-            Info info = new Info( templateName, node.getLine(), node.getColumn() );
-            throw  new ParseErrorException( pex.getMessage(), info );
+            CachedTree cached = lastTree;
+            if (cached != null && cached.matches(templateName, sourceText))
+            {
+                nodeTree = cached.tree;
+            }
+            else
+            {
+                nodeTree = cache.get(templateName, sourceText);
+                if (nodeTree != null)
+                {
+                    lastTree = new CachedTree(templateName, sourceText, nodeTree);
+                }
+            }
+            initialized = nodeTree != null;
         }
-        catch (TemplateInitException pex)
+
+        if (nodeTree == null)
         {
-            Info info = new Info( templateName, node.getLine(), node.getColumn() );
-            throw  new ParseErrorException( pex.getMessage(), info );
+            try
+            {
+                nodeTree = rsvc.parse(new StringReader(sourceText), templateName, false);
+            }
+            catch (ParseException pex)
+            {
+                // use the line/column from the template
+                Info info = new Info( templateName, node.getLine(), node.getColumn() );
+                throw  new ParseErrorException( pex.getMessage(), info );
+            }
+            catch (TemplateInitException pex)
+            {
+                Info info = new Info( templateName, node.getLine(), node.getColumn() );
+                throw  new ParseErrorException( pex.getMessage(), info );
+            }
         }
 
         /*
@@ -186,14 +230,27 @@ public class Evaluate extends Directive
 
             try
             {
-                try
-                {
-                    nodeTree.init( ica, rsvc );
-                }
-                catch (TemplateInitException pex)
+                if (!initialized)
                 {
-                    Info info = new Info( templateName, node.getLine(), node.getColumn() );
-                    throw  new ParseErrorException( pex.getMessage(), info );
+                    try
+                    {
+                        nodeTree.init( ica, rsvc );
+                    }
+                    catch (TemplateInitException pex)
+                    {
+                        Info info = new Info( templateName, node.getLine(), node.getColumn() );
+                        throw  new ParseErrorException( pex.getMessage(), info );
+                    }
+
+                    /*
+                     * trees defining macros are initialized on each call,
+                     * so that their macros get registered
+                     */
+                    if (cache != null && ParseCache.isCacheable(nodeTree))
+                    {
+                        cache.put(templateName, sourceText, nodeTree);
+                        lastTree = new CachedTree(templateName, sourceText, nodeTree);
+                    }
                 }
 
                 try 
@@ -234,4 +291,29 @@ public class Evaluate extends Directive
         return false;
     }
 
+    /**
+     * Parsed and initialized tree of a string, with the name of the
+     * template it was evaluated in.
+     */
+    private static final class CachedTree
+    {
+        final String templateName;
+
+        final String source;
+
+        final SimpleNode tree;
+
+        CachedTree(String templateName, String source, SimpleNode tree)
+        {
+            this.templateName = templateName;
+            this.source = source;
+            this.tree = tree;
+        }
+
+        boolean matches(String templateName, String source)
+        {
+            return this.source.equals(source)
+                && (this.templateName == null ? templateName == null : this.templateName.equals(templateName));
+        }
+    }
 }
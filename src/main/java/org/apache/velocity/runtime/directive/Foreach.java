@@ -21,9 +21,17 @@ package org.apache.velocity.runtime.directive;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import org.apache.velocity.context.ChainedInternalContextAdapter;
 import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.context.SlotTable;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
@@ -31,10 +39,16 @@ import org.apache.velocity.exception.TemplateInitException;
 import org.apache.velocity.exception.VelocityException;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.ASTprocess;
 import org.apache.velocity.runtime.parser.node.ASTReference;
+import org.apache.velocity.runtime.parser.node.ASTStringLiteral;
 import org.apache.velocity.runtime.parser.node.Node;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
+import org.apache.velocity.util.ArrayIterator;
 import org.apache.velocity.util.Formatter;
+import org.apache.velocity.util.IntegerRange;
+import org.apache.velocity.util.RandomAccessIterator;
 import org.apache.velocity.util.introspection.Info;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -187,6 +201,33 @@ public class Foreach extends Directive
      */
     private String elementKey;
 
+    /**
+     * Slots of the counter, hasNext and element references, and the slots
+     * of the template, when template-local references are kept in slots
+     * and put() is not overridden.
+     */
+    private int counterSlot = -1;
+    private int hasNextSlot = -1;
+    private int elementSlot = -1;
+    private SlotTable slots = null;
+
+    /**
+     * Whether the loop body may read the counter and hasNext references.
+     * When it provably cannot, they are neither computed nor put in the
+     * context on each pass.
+     */
+    private boolean counterReferenced = true;
+    private boolean hasNextReferenced = true;
+
+    /**
+     * Directives which cannot reach a reference other than through
+     * their own arguments and body. Any other directive (macro calls,
+     * #parse, #evaluate, custom directives...) may read anything
+     * in the context.
+     */
+    private static final Set TRANSPARENT_DIRECTIVES = new HashSet(Arrays.asList(
+        new String[] { "foreach", "break", "stop", "define", "literal", "include", "macro" }));
+
     // track if we've done the deprecation warning thing already
     private boolean warned = false;
 
@@ -279,6 +320,21 @@ public class Foreach extends Directive
             elementKey = sn.getFirstToken().image.substring(1);
         }
 
+        slots = ASTprocess.getSlotTable(node);
+        if (slots != null && getClass() == Foreach.class)
+        {
+            counterSlot = slots.getSlot(counterName);
+            hasNextSlot = slots.getSlot(hasNextName);
+            elementSlot = slots.getSlot(elementKey);
+        }
+
+        if (getClass() == Foreach.class && node.jjtGetNumChildren() > 3)
+        {
+            Node body = node.jjtGetChild(3);
+            counterReferenced = mayReference(body, counterName);
+            hasNextReferenced = mayReference(body, hasNextName);
+        }
+
         /*
          * make an uberinfo - saves new's later on
          */
@@ -287,6 +343,45 @@ public class Foreach extends Directive
                 getLine(),getColumn());
     }
 
+    /**
+     * Conservatively tells whether a template subtree may read
+     * the given reference.
+     */
+    private static boolean mayReference(Node node, String name)
+    {
+        if (node instanceof ASTReference)
+        {
+            if (name.equals(((ASTReference) node).getRootString()))
+            {
+                return true;
+            }
+        }
+        else if (node instanceof ASTDirective)
+        {
+            if (!TRANSPARENT_DIRECTIVES.contains(((ASTDirective) node).getDirectiveName()))
+            {
+                return true;
+            }
+        }
+        else if (node instanceof ASTStringLiteral)
+        {
+            // an interpolated string literal may be re-parsed at render time
+            if (node.literal().indexOf(name) >= 0)
+            {
+                return true;
+            }
+        }
+
+        for (int i = 0; i < node.jjtGetNumChildren(); i++)
+        {
+            if (mayReference(node.jjtGetChild(i), name))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Extension hook to allow subclasses to control whether loop vars
      * are set locally or not. So, those in favor of VELOCITY-285, can
@@ -298,6 +393,21 @@ public class Foreach extends Directive
         context.put(key, value);
     }
 
+    /**
+     * Puts a loop variable in its slot if it has one.
+     */
+    private void put(InternalContextAdapter context, int slot, String key, Object value)
+    {
+        if (slot >= 0 && context instanceof InternalContextAdapterImpl)
+        {
+            ((InternalContextAdapterImpl) context).putSlot(slots, slot, key, value);
+        }
+        else
+        {
+            put(context, key, value);
+        }
+    }
+
     /**
      *  renders the #foreach() block
      * @param context
@@ -368,8 +478,8 @@ public class Foreach extends Directive
          *  save the element key if there is one, and the loop counter
          */
         Object o = context.get(elementKey);
-        Object savedCounter = context.get(counterName);
-        Object nextFlag = context.get(hasNextName);
+        Object savedCounter = counterReferenced ? context.get(counterName) : null;
+        Object nextFlag = hasNextReferenced ? context.get(hasNextName) : null;
 
         /*
          * roll our own scope class instead of using preRender(ctx)'s
@@ -389,19 +499,103 @@ public class Foreach extends Directive
          */
         NullHolderContext nullHolderContext = null;
 
-        while (!maxNbrLoopsExceeded && i.hasNext())
+        /*
+         * arrays and the lists the uberspector hands out as a
+         * RandomAccessIterator are walked by index rather than through
+         * the iterator, and integer ranges with a primitive counter.
+         * The size of a list is recorded, and checked at each step
+         * like a fail-fast iterator would.
+         */
+        List list = null;
+        IntegerRange range = null;
+        Object array = null;
+        Object[] objects = null;
+        int length = 0;
+        if (i instanceof RandomAccessIterator)
         {
-            // TODO: JDK 1.5+ -> Integer.valueOf()
-            put(context, counterName , new Integer(counter));
-            Object value = i.next();
-            put(context, hasNextName, Boolean.valueOf(i.hasNext()));
-            put(context, elementKey, value);
+            list = ((RandomAccessIterator) i).getList();
+            if (list instanceof IntegerRange)
+            {
+                range = (IntegerRange) list;
+                list = null;
+                length = range.size();
+            }
+            else
+            {
+                length = list.size();
+            }
+        }
+        else if (i instanceof ArrayIterator)
+        {
+            array = ((ArrayIterator) i).getArray();
+            if (array instanceof Object[])
+            {
+                objects = (Object[]) array;
+            }
+            length = Array.getLength(array);
+        }
+        int index = 0;
+
+        while (!maxNbrLoopsExceeded)
+        {
+            Object value;
+            boolean hasNext;
+            if (range != null)
+            {
+                if (index >= length)
+                {
+                    break;
+                }
+                value = Integer.valueOf(range.getInt(index++));
+                hasNext = index < length;
+            }
+            else if (list != null)
+            {
+                if (list.size() != length)
+                {
+                    throw new ConcurrentModificationException();
+                }
+                if (index >= length)
+                {
+                    break;
+                }
+                value = list.get(index++);
+                hasNext = index < length;
+            }
+            else if (array != null)
+            {
+                if (index >= length)
+                {
+                    break;
+                }
+                value = objects != null ? objects[index++] : Array.get(array, index++);
+                hasNext = index < length;
+            }
+            else
+            {
+                if (!i.hasNext())
+                {
+                    break;
+                }
+                value = i.next();
+                hasNext = i.hasNext();
+            }
+
+            if (counterReferenced)
+            {
+                put(context, counterSlot, counterName, Integer.valueOf(counter));
+            }
+            if (hasNextReferenced)
+            {
+                put(context, hasNextSlot, hasNextName, Boolean.valueOf(hasNext));
+            }
+            put(context, elementSlot, elementKey, value);
 
             if (isScopeProvided())
             {
                 // update the scope control
                 foreach.index++;
-                foreach.hasNext = i.hasNext();
+                foreach.hasNext = hasNext;
             }
 
             try
@@ -465,27 +659,33 @@ public class Foreach extends Directive
 
         /*
          * restores the loop counter (if we were nested)
-         * if we have one, else just removes
+         * if we have one, else just removes, unless it was never put
          */
-        if (savedCounter != null)
-        {
-            context.put(counterName, savedCounter);
-        }
-        else
+        if (counterReferenced)
         {
-            context.remove(counterName);
+            if (savedCounter != null)
+            {
+                context.put(counterName, savedCounter);
+            }
+            else
+            {
+                context.remove(counterName);
+            }
         }
 
         /*
          * restores the "hasNext" boolean flag if it exists
          */         
-        if (nextFlag != null)
+        if (hasNextReferenced)
         {
-            context.put(hasNextName, nextFlag);
-        }
-        else
-        {
-            context.remove(hasNextName);
+            if (nextFlag != null)
+            {
+                context.put(hasNextName, nextFlag);
+            }
+            else
+            {
+                context.remove(hasNextName);
+            }
         }
 
         // clean up after the ForeachScope
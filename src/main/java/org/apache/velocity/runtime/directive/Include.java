@@ -31,7 +31,7 @@ import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.parser.ParserTreeConstants;
 import org.apache.velocity.runtime.parser.node.Node;
-import org.apache.velocity.runtime.resource.Resource;
+import org.apache.velocity.runtime.resource.ContentResource;
 import org.apache.velocity.util.Formatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -233,7 +233,7 @@ public class Include extends InputBase
         if (arg == null)
             blockinput = true;
 
-        Resource resource = null;
+        ContentResource resource = null;
 
         try
         {
@@ -281,7 +281,7 @@ public class Include extends InputBase
         else if ( resource == null )
             return false;
 
-        writer.write((String)resource.getData());
+        resource.merge(writer);
         return true;
     }
 
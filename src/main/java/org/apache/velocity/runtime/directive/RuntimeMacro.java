@@ -31,6 +31,7 @@ import org.apache.velocity.exception.TemplateInitException;
 import org.apache.velocity.exception.VelocityException;
 import org.apache.velocity.runtime.Renderable;
 import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.parser.ParserTreeConstants;
 import org.apache.velocity.runtime.parser.Token;
@@ -79,6 +80,27 @@ public class RuntimeMacro extends Directive
      * with this as the message.
      */
     private String badArgsErrorMsg = null;
+
+    /**
+     * The macro found for this call in its own template, cached along
+     * with the stamp of the macros and the rendering template it was
+     * found for.
+     */
+    private volatile Resolution resolution = null;
+
+    private static class Resolution
+    {
+        final int version;
+        final String renderingTemplate;
+        final VelocimacroProxy vmProxy;
+
+        Resolution(int version, String renderingTemplate, VelocimacroProxy vmProxy)
+        {
+            this.version = version;
+            this.renderingTemplate = renderingTemplate;
+            this.vmProxy = vmProxy;
+        }
+    }
     
     /**
      * Create a RuntimeMacro instance. Macro name and source
@@ -255,15 +277,34 @@ public class RuntimeMacro extends Directive
         String renderingTemplate = context.getCurrentTemplateName();
         
         /**
-         * first look in the source template
+         * first look in the source template, unless this has been done
+         * already for the current macros and rendering template; only
+         * RuntimeInstance tells when its macros change
          */
-        Object o = rsvc.getVelocimacro(macroName, getTemplateName(), renderingTemplate);
-
-        if( o != null )
+        int version = rsvc instanceof RuntimeInstance
+            ? ((RuntimeInstance) rsvc).getVelocimacroVersion() : -1;
+        Resolution cached = resolution;
+        if (cached != null && cached.version == version && version >= 0
+            && (renderingTemplate == null ? cached.renderingTemplate == null
+                : renderingTemplate.equals(cached.renderingTemplate)))
+        {
+            vmProxy = cached.vmProxy;
+        }
+        else
         {
-            // getVelocimacro can only return a VelocimacroProxy so we don't need the
-            // costly instanceof check
-            vmProxy = (VelocimacroProxy)o;
+            Object o = rsvc.getVelocimacro(macroName, getTemplateName(), renderingTemplate);
+
+            if( o != null )
+            {
+                // getVelocimacro can only return a VelocimacroProxy so we don't need the
+                // costly instanceof check
+                vmProxy = (VelocimacroProxy)o;
+            }
+
+            if (version >= 0)
+            {
+                resolution = new Resolution(version, renderingTemplate, vmProxy);
+            }
         }
 
         /**
@@ -276,7 +317,7 @@ public class RuntimeMacro extends Directive
             {
                 for (int i = macroLibraries.size() - 1; i >= 0; i--)
                 {
-                    o = rsvc.getVelocimacro(macroName,
+                    Object o = rsvc.getVelocimacro(macroName,
                             (String)macroLibraries.get(i), renderingTemplate);
 
                     // get the first matching macro
@@ -21,6 +21,9 @@ package org.apache.velocity.runtime.directive;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import org.apache.velocity.context.InternalContextAdapter;
 import org.apache.velocity.context.ProxyVMContext;
 import org.apache.velocity.exception.MacroOverflowException;
@@ -57,6 +60,22 @@ public class VelocimacroProxy extends Directive
     private boolean localContextScope = false;
     private int maxCallDepth;
     private String bodyReference;
+    private boolean provideScope = false;
+
+    /**
+     * Names of the entries in the argument frames of this macro: the
+     * arguments, then the body reference. Computed once at init.
+     */
+    private String[] frameNames;
+    private String[] frameLiteralNames;
+    private int bodyIndex;
+
+    /**
+     * Whether argument frames are recycled across the calls on a same
+     * thread, and the frames left free by the calls of each thread.
+     */
+    private boolean recycleFrames = false;
+    private final ThreadLocal freeFrames = new ThreadLocal();
 
     /**
      * Return name of this Velocimacro.
@@ -67,6 +86,25 @@ public class VelocimacroProxy extends Directive
         return  macroName;
     }
 
+    /**
+     * The scope of a macro invoked through {@link #invoke(InternalContextAdapter, Writer, Object[])}
+     * is named like the scope of macro calls.
+     * @return "macro"
+     */
+    public String getScopeName()
+    {
+        return "macro";
+    }
+
+    /**
+     * @return true if a scope control is provided to macros invoked through
+     * {@link #invoke(InternalContextAdapter, Writer, Object[])}
+     */
+    public boolean isScopeProvided()
+    {
+        return provideScope;
+    }
+
     /**
      * Velocimacros are always LINE type directives.
      * @return The type of this directive.
@@ -109,6 +147,74 @@ public class VelocimacroProxy extends Directive
          */
 
         numMacroArgs = argArray.length - 1;
+
+        if (bodyReference != null)
+        {
+            initFrame();
+        }
+    }
+
+    /**
+     * Computes the names of the entries in the argument frames.
+     */
+    private void initFrame()
+    {
+        bodyIndex = -1;
+        for (int i = 1; i < argArray.length; i++)
+        {
+            if (bodyReference.equals(argArray[i]))
+            {
+                bodyIndex = i - 1;
+            }
+        }
+
+        int size = bodyIndex < 0 ? argArray.length : numMacroArgs;
+        frameNames = new String[size];
+        frameLiteralNames = new String[size];
+        System.arraycopy(argArray, 1, frameNames, 0, numMacroArgs);
+        System.arraycopy(literalArgArray, 1, frameLiteralNames, 0, numMacroArgs);
+        if (bodyIndex < 0)
+        {
+            bodyIndex = numMacroArgs;
+            frameNames[bodyIndex] = bodyReference;
+            frameLiteralNames[bodyIndex] = "";
+        }
+    }
+
+    /**
+     * Gets an argument frame, recycled if possible.
+     */
+    private ProxyVMContext getFrame(InternalContextAdapter context)
+    {
+        if (recycleFrames)
+        {
+            List frames = (List) freeFrames.get();
+            if (frames != null && !frames.isEmpty())
+            {
+                ProxyVMContext vmc = (ProxyVMContext) frames.remove(frames.size() - 1);
+                vmc.recycle(context);
+                return vmc;
+            }
+        }
+        return new ProxyVMContext(context, rsvc, localContextScope, frameNames, frameLiteralNames);
+    }
+
+    /**
+     * Keeps an argument frame for the next calls on this thread, unless
+     * it may still be used.
+     */
+    private void releaseFrame(ProxyVMContext vmc)
+    {
+        if (recycleFrames && vmc.recycle(null))
+        {
+            List frames = (List) freeFrames.get();
+            if (frames == null)
+            {
+                frames = new ArrayList();
+                freeFrames.set(frames);
+            }
+            frames.add(vmc);
+        }
     }
 
     /**
@@ -151,36 +257,134 @@ public class VelocimacroProxy extends Directive
             throws IOException, MethodInvocationException, MacroOverflowException
     {
         // wrap the current context and add the macro arguments
+        final ProxyVMContext vmc = getFrame(context);
+        try
+        {
+            int callArguments = node.jjtGetNumChildren();
 
-        // the creation of this context is a major bottleneck (incl 2x HashMap)
-        final ProxyVMContext vmc = new ProxyVMContext(context, rsvc, localContextScope);
+            if (callArguments > 0)
+            {
+                // the 0th element is the macro name
+                for (int i = 1; i < argArray.length && i <= callArguments; i++)
+                {
+                    /*
+                     * The ".literal.$" names of the frame are needed for "render literal if null"
+                     * functionality. The value is used in ASTReference render-method.
+                     * 
+                     * The idea is to avoid generating the literal until absolutely necessary.
+                     * 
+                     * This makes VMReferenceMungeVisitor obsolete and it would not work anyway 
+                     * when the macro AST is shared
+                     */
+                    vmc.setVMProxyArg(context, i - 1, node.jjtGetChild(i - 1));
+                }
+            }
 
-        int callArguments = node.jjtGetNumChildren();
+            // if this macro was invoked by a call directive, we might have a body AST here. Put it into context.
+            if( body != null )
+            {
+                vmc.setVMProxyValue(bodyIndex, body);
+            }
 
-        if (callArguments > 0)
+            return render(vmc, writer);
+        }
+        finally
+        {
+            releaseFrame(vmc);
+        }
+    }
+
+    /**
+     * Renders the macro with the given argument values, which are bound
+     * directly instead of being evaluated from the nodes of a macro call.
+     * Null or missing values are bound as null, and so do not resolve to
+     * the references of the calling context.
+     *
+     * @param context Current rendering context
+     * @param writer Writer for output
+     * @param values values of the macro arguments, in declaration order
+     * @return True if the directive rendered successfully.
+     * @throws IOException
+     * @throws MethodInvocationException
+     * @throws MacroOverflowException
+     * @since 1.8
+     */
+    public boolean invoke(InternalContextAdapter context, Writer writer, Object[] values)
+            throws IOException, MethodInvocationException, MacroOverflowException
+    {
+        if (values.length != numMacroArgs)
         {
-            // the 0th element is the macro name
-            for (int i = 1; i < argArray.length && i <= callArguments; i++)
+            if (strictArguments)
             {
-                /*
-                 * literalArgArray[i] is needed for "render literal if null" functionality.
-                 * The value is used in ASTReference render-method.
-                 * 
-                 * The idea is to avoid generating the literal until absolutely necessary.
-                 * 
-                 * This makes VMReferenceMungeVisitor obsolete and it would not work anyway 
-                 * when the macro AST is shared
-                 */
-                vmc.addVMProxyArg(context, argArray[i], literalArgArray[i], node.jjtGetChild(i - 1));
+                throw new VelocityException(buildErrorMsg(null, values.length));
+            }
+            else if (logger.isDebugEnabled())
+            {
+                logger.debug(buildErrorMsg(null, values.length));
             }
         }
-        
-        // if this macro was invoked by a call directive, we might have a body AST here. Put it into context.
-        if( body != null )
+
+        final ProxyVMContext vmc = getFrame(context);
+        try
         {
-            vmc.addVMProxyArg(context, bodyReference, "", body);
+            /*
+             * every argument is bound, to null if it is null or missing, so
+             * that it never resolves to a same-named reference of the caller
+             */
+            for (int i = 0; i < numMacroArgs; i++)
+            {
+                vmc.setVMProxyValue(i, i < values.length ? values[i] : null);
+            }
+
+            preRender(vmc);
+            return render(vmc, writer);
         }
+        catch (StopCommand stop)
+        {
+            if (!stop.isFor(this))
+            {
+                throw stop;
+            }
+            return true;
+        }
+        finally
+        {
+            postRender(vmc);
+            releaseFrame(vmc);
+        }
+    }
 
+    /**
+     * Renders the macro with the given argument values, looked up by the
+     * names of the macro arguments (without the leading '$'). Missing
+     * values are bound as null.
+     *
+     * @param context Current rendering context
+     * @param writer Writer for output
+     * @param values values of the macro arguments, by name
+     * @return True if the directive rendered successfully.
+     * @throws IOException
+     * @throws MethodInvocationException
+     * @throws MacroOverflowException
+     * @since 1.8
+     */
+    public boolean invoke(InternalContextAdapter context, Writer writer, Map values)
+            throws IOException, MethodInvocationException, MacroOverflowException
+    {
+        Object[] array = new Object[numMacroArgs];
+        for (int i = 0; i < numMacroArgs; i++)
+        {
+            array[i] = values.get(argArray[i + 1]);
+        }
+        return invoke(context, writer, array);
+    }
+
+    /**
+     * Renders the macro tree with the context holding its arguments.
+     */
+    private boolean render(ProxyVMContext vmc, Writer writer)
+            throws IOException, MethodInvocationException, MacroOverflowException
+    {
         /*
          * check that we aren't already at the max call depth
          */
@@ -269,6 +473,12 @@ public class VelocimacroProxy extends Directive
 
         // get name of the reference that refers to AST block passed to block macro call
         bodyReference = rsvc.getString(RuntimeConstants.VM_BODY_REFERENCE, "bodyContent");
+
+        // scope control of the macros invoked directly, as for RuntimeMacro
+        provideScope = rsvc.getBoolean(getScopeName() + '.' + RuntimeConstants.PROVIDE_SCOPE_CONTROL, false);
+
+        recycleFrames = rsvc.getBoolean(RuntimeConstants.VM_RECYCLE_FRAMES, false);
+        initFrame();
     }
     
 
@@ -26,6 +26,7 @@ import org.apache.velocity.context.InternalContextAdapter;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.Renderable;
 import org.apache.velocity.runtime.parser.Parser;
 
 
@@ -34,6 +35,11 @@ import org.apache.velocity.runtime.parser.Parser;
  */
 public class ASTBlock extends SimpleNode
 {
+    /*
+     * compiled form of this block, if any
+     */
+    private Renderable compiled = null;
+
     /**
      * @param id
      */
@@ -59,6 +65,28 @@ public class ASTBlock extends SimpleNode
         return visitor.visit(this, data);
     }
 
+    /**
+     * Sets the compiled form of this block, which is then used by
+     * {@link #render(InternalContextAdapter, Writer)} instead of
+     * walking the children.
+     *
+     * @param compiled compiled form of this block, or null to interpret it
+     * @since 1.8
+     */
+    public void setCompiled(Renderable compiled)
+    {
+        this.compiled = compiled;
+    }
+
+    /**
+     * @return true if this block is rendered by compiled code
+     * @since 1.8
+     */
+    public boolean isCompiled()
+    {
+        return compiled != null;
+    }
+
     /**
      * @see org.apache.velocity.runtime.parser.node.SimpleNode#render(org.apache.velocity.context.InternalContextAdapter, java.io.Writer)
      */
@@ -66,6 +94,11 @@ public class ASTBlock extends SimpleNode
         throws IOException, MethodInvocationException,
         	ResourceNotFoundException, ParseErrorException
     {
+        if (compiled != null)
+        {
+            return compiled.render(context, writer);
+        }
+
         int i, k = jjtGetNumChildren();
 
         for (i = 0; i < k; i++)
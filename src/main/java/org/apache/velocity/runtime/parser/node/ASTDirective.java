@@ -98,27 +98,27 @@ public class ASTDirective extends SimpleNode
              *  only do things that are not context dependent
              */
     
-            if (parser.isDirective( directiveName ))
+            if (rsvc.getDirective( directiveName ) != null)
             {
                 isDirective = true;
     
                 try
                 {
-                    directive = (Directive) parser.getDirective( directiveName )
+                    directive = (Directive) rsvc.getDirective( directiveName )
                         .getClass().newInstance();
                 } 
                 catch (InstantiationException e)
                 {
                     throw ExceptionUtils.createRuntimeException("Couldn't initialize " +
                             "directive of class " +
-                            parser.getDirective(directiveName).getClass().getName(),
+                            rsvc.getDirective(directiveName).getClass().getName(),
                             e);
                 }
                 catch (IllegalAccessException e)
                 {
                     throw ExceptionUtils.createRuntimeException("Couldn't initialize " +
                             "directive of class " +
-                            parser.getDirective(directiveName).getClass().getName(),
+                            rsvc.getDirective(directiveName).getClass().getName(),
                             e);
                 }
                         
@@ -28,6 +28,7 @@ import org.apache.velocity.exception.VelocityException;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.parser.Parser;
 import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.InlineCache;
 import org.apache.velocity.util.introspection.IntrospectionCacheData;
 import org.apache.velocity.util.introspection.VelPropertyGet;
 import org.slf4j.Logger;
@@ -65,6 +66,12 @@ public class ASTIdentifier extends SimpleNode
      */
     protected boolean strictRef = false;
 
+    /**
+     * Cross-merge cache of property getters, null unless
+     * {@link RuntimeConstants#UBERSPECT_INLINE_CACHE} is on.
+     */
+    private InlineCache inlineCache = null;
+
     /**
      * @param id
      */
@@ -109,7 +116,12 @@ public class ASTIdentifier extends SimpleNode
         uberInfo = new Info(getTemplateName(), getLine(), getColumn());
 
         strictRef = rsvc.getBoolean(RuntimeConstants.RUNTIME_REFERENCES_STRICT, false);
-        
+
+        if (rsvc.getBoolean(RuntimeConstants.UBERSPECT_INLINE_CACHE, false))
+        {
+            inlineCache = new InlineCache();
+        }
+
         return data;
     }
 
@@ -124,40 +136,31 @@ public class ASTIdentifier extends SimpleNode
 
         try
         {
-            /*
-             *  first, see if we have this information cached.
-             */
-
-            IntrospectionCacheData icd = context.icacheGet(this);
-
-            /*
-             * if we have the cache data and the class of the object we are
-             * invoked with is the same as that in the cache, then we must
-             * be allright.  The last 'variable' is the method name, and
-             * that is fixed in the template :)
-             */
-
-            if ( icd != null && (o != null) && (icd.contextData == o.getClass()) )
-            {
-                vg = (VelPropertyGet) icd.thingy;
-            }
-            else
+            if (inlineCache != null && !inlineCache.isMegamorphic())
             {
                 /*
-                 *  otherwise, do the introspection, and cache it.  Use the
-                 *  uberspector
+                 *  the node-level cache is keyed by the exact class of
+                 *  the object, so a different class just misses.
                  */
+                if (o != null)
+                {
+                    vg = (VelPropertyGet) inlineCache.get(o.getClass(), null);
+                }
 
-                vg = rsvc.getUberspect().getPropertyGet(o,identifier, uberInfo);
-
-                if (vg != null && vg.isCacheable() && (o != null))
+                if (vg == null)
                 {
-                    icd = new IntrospectionCacheData();
-                    icd.contextData = o.getClass();
-                    icd.thingy = vg;
-                    context.icachePut(this,icd);
+                    vg = rsvc.getUberspect().getPropertyGet(o,identifier, uberInfo);
+
+                    if (vg != null && vg.isCacheable() && (o != null))
+                    {
+                        inlineCache.put(o.getClass(), null, vg);
+                    }
                 }
             }
+            else
+            {
+                vg = getCachedPropertyGet(o, context);
+            }
         }
 
         /**
@@ -267,4 +270,50 @@ public class ASTIdentifier extends SimpleNode
             throw new VelocityException(msg, e);
         }
     }
+
+    /**
+     * Looks up the property getter in the per-merge introspection cache
+     * of the context, doing the introspection on a miss.
+     */
+    private VelPropertyGet getCachedPropertyGet(Object o, InternalContextAdapter context)
+        throws Exception
+    {
+        VelPropertyGet vg = null;
+
+        /*
+         *  first, see if we have this information cached.
+         */
+
+        IntrospectionCacheData icd = context.icacheGet(this);
+
+        /*
+         * if we have the cache data and the class of the object we are
+         * invoked with is the same as that in the cache, then we must
+         * be allright.  The last 'variable' is the method name, and
+         * that is fixed in the template :)
+         */
+
+        if ( icd != null && (o != null) && (icd.contextData == o.getClass()) )
+        {
+            vg = (VelPropertyGet) icd.thingy;
+        }
+        else
+        {
+            /*
+             *  otherwise, do the introspection, and cache it.  Use the
+             *  uberspector
+             */
+
+            vg = rsvc.getUberspect().getPropertyGet(o,identifier, uberInfo);
+
+            if (vg != null && vg.isCacheable() && (o != null))
+            {
+                icd = new IntrospectionCacheData();
+                icd.contextData = o.getClass();
+                icd.thingy = vg;
+                context.icachePut(this,icd);
+            }
+        }
+        return vg;
+    }
 }
@@ -19,12 +19,11 @@ package org.apache.velocity.runtime.parser.node;
  * under the License.    
  */
 
-import java.util.ArrayList;
-import java.util.List;
 import org.apache.velocity.context.InternalContextAdapter;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.runtime.parser.Parser;
 import org.apache.velocity.util.Formatter;
+import org.apache.velocity.util.IntegerRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,11 +65,11 @@ public class ASTIntegerRange extends SimpleNode
     }
 
     /**
-     *  does the real work.  Creates an Vector of Integers with the
-     *  right value range
+     *  does the real work.  Creates a read-only List of Integers with
+     *  the right value range, computing its elements on demand
      *
      *  @param context  app context used if Left or Right of .. is a ref
-     *  @return Object array of Integers
+     *  @return List of Integers
      * @throws MethodInvocationException
      */
     public Object value( InternalContextAdapter context)
@@ -117,33 +116,15 @@ public class ASTIntegerRange extends SimpleNode
         int l = ((Number) left).intValue() ;
         int r = ((Number) right).intValue();
 
-        /*
-         *  find out how many there are
-         */
-
-        int nbrElements = Math.abs( l - r );
-        nbrElements += 1;
-
-        /*
-         *  Determine whether the increment is positive or negative.
-         */
-
-        int delta = ( l >= r ) ? -1 : 1;
-
-        /*
-         * Fill the range with the appropriate values.
-         */
-
-        List elements = new ArrayList(nbrElements);
-        int value = l;
-
-        for (int i = 0; i < nbrElements; i++)
+        try
         {
-            // TODO: JDK 1.4+ -> valueOf()
-            elements.add(new Integer(value));
-            value += delta;
+            return new IntegerRange(l, r);
+        }
+        catch (IllegalArgumentException iae)
+        {
+            logger.error(iae.getMessage() + ". Operation not possible. "
+                           + Formatter.formatFileString(this));
+            return null;
         }
-
-        return elements;
     }
 }
@@ -32,6 +32,7 @@ import org.apache.velocity.runtime.directive.StopCommand;
 import org.apache.velocity.runtime.parser.Parser;
 import org.apache.velocity.util.ClassUtils;
 import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.InlineCache;
 import org.apache.velocity.util.introspection.VelMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -66,6 +67,12 @@ public class ASTMethod extends SimpleNode
      */
     protected boolean strictRef = false;
 
+    /**
+     * Cross-merge cache of resolved methods, null unless
+     * {@link RuntimeConstants#UBERSPECT_INLINE_CACHE} is on.
+     */
+    private InlineCache inlineCache = null;
+
     /**
      * @param id
      */
@@ -118,7 +125,12 @@ public class ASTMethod extends SimpleNode
         paramCount = jjtGetNumChildren() - 1;
 
         strictRef = rsvc.getBoolean(RuntimeConstants.RUNTIME_REFERENCES_STRICT, false);
-        
+
+        if (rsvc.getBoolean(RuntimeConstants.UBERSPECT_INLINE_CACHE, false))
+        {
+            inlineCache = new InlineCache();
+        }
+
         return data;
     }
 
@@ -159,7 +171,7 @@ public class ASTMethod extends SimpleNode
         }
             
         VelMethod method = ClassUtils.getMethod(methodName, params, paramClasses, 
-            o, context, this, strictRef);
+            o, context, this, strictRef, inlineCache);
         if (method == null) return null;
 
         try
@@ -25,6 +25,8 @@ import java.lang.reflect.InvocationTargetException;
 import org.apache.velocity.app.event.EventHandlerUtil;
 import org.apache.velocity.context.Context;
 import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.context.SlotTable;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.TemplateInitException;
 import org.apache.velocity.exception.VelocityException;
@@ -76,6 +78,13 @@ public class ASTReference extends SimpleNode
 
     private String literal = null;
 
+    /**
+     * slot of the root of this reference if it is assigned inside its
+     * template, or -1, and the slots of that template
+     */
+    private int slot = -1;
+    private SlotTable slots = null;
+
     /**
      * Indicates if we are running in strict reference mode.
      */
@@ -151,6 +160,12 @@ public class ASTReference extends SimpleNode
 
         rootString = getRoot().intern();
 
+        slots = ASTprocess.getSlotTable(this);
+        if (slots != null)
+        {
+            slot = slots.getSlot(rootString);
+        }
+
         numChildren = jjtGetNumChildren();
         
         // This is an expensive call, so get it now.
@@ -596,7 +611,14 @@ public class ASTReference extends SimpleNode
     {
         if (jjtGetNumChildren() == 0)
         {
-            context.put(rootString, value);
+            if (slot >= 0 && context instanceof InternalContextAdapterImpl)
+            {
+                ((InternalContextAdapterImpl) context).putSlot(slots, slot, rootString, value);
+            }
+            else
+            {
+                context.put(rootString, value);
+            }
             return true;
         }
 
@@ -991,7 +1013,20 @@ public class ASTReference extends SimpleNode
         Object obj = null;
         try
         {
-            obj = context.get(variable);
+            if (slot >= 0 && variable == rootString && context instanceof InternalContextAdapterImpl)
+            {
+                /* template-local reference */
+                obj = ((InternalContextAdapterImpl) context).getSlot(slots, slot, variable);
+            }
+            else if (slots != null && variable == rootString && context instanceof InternalContextAdapterImpl)
+            {
+                /* not assigned in its template: straight to the user context */
+                obj = ((InternalContextAdapterImpl) context).getExternal(slots, variable);
+            }
+            else
+            {
+                obj = context.get(variable);
+            }
         }
         catch(RuntimeException e)
         {
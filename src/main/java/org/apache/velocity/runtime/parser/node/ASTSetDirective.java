@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.io.Writer;
 import org.apache.velocity.app.event.EventHandlerUtil;
 import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.context.SlotTable;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.TemplateInitException;
 import org.apache.velocity.runtime.EventSourceManager;
@@ -45,7 +47,11 @@ public class ASTSetDirective extends SimpleNode
     Logger logger = LoggerFactory.getLogger( ASTSetDirective.class );
 
     private String leftReference = "";
+    private int leftSlot = -1;
+    private SlotTable slots = null;
     private Node right = null;
+    private boolean rightIsConstant = false;
+    private Object rightValue = null;
     private ASTReference left = null;
     boolean logOnNull = false;
     private boolean allowNull = false;
@@ -123,6 +129,12 @@ public class ASTSetDirective extends SimpleNode
              *  grab this now.  No need to redo each time
              */
             leftReference = left.getFirstToken().image.substring(1);
+
+            slots = ASTprocess.getSlotTable(this);
+            if (slots != null && left.jjtGetNumChildren() == 0)
+            {
+                leftSlot = slots.getSlot(leftReference);
+            }
         
             isInitialized = true;
         }
@@ -130,6 +142,19 @@ public class ASTSetDirective extends SimpleNode
         return data;
     }
 
+    /**
+     * Makes this #set use a precomputed value instead of evaluating its
+     * right hand side. Only meant for a constant, immutable value.
+     *
+     * @param value value of the right hand side
+     * @since 1.8
+     */
+    public void setConstantValue(Object value)
+    {
+        rightValue = value;
+        rightIsConstant = true;
+    }
+
     /**
      *   puts the value of the RHS into the context under the key of the LHS
      * @param context
@@ -145,7 +170,7 @@ public class ASTSetDirective extends SimpleNode
          *  get the RHS node, and its value
          */
 
-        Object value = right.value(context);
+        Object value = rightIsConstant ? rightValue : right.value(context);
 
         /*
          * it's an error if we don't have a value of some sort AND
@@ -196,7 +221,14 @@ public class ASTSetDirective extends SimpleNode
              */
             if (left.jjtGetNumChildren() == 0)
             {
-                context.remove( leftReference );
+                if (leftSlot >= 0 && context instanceof InternalContextAdapterImpl)
+                {
+                    ((InternalContextAdapterImpl) context).removeSlot(slots, leftSlot, leftReference);
+                }
+                else
+                {
+                    context.remove( leftReference );
+                }
             }
             else
             {
@@ -216,7 +248,14 @@ public class ASTSetDirective extends SimpleNode
 
             if (left.jjtGetNumChildren() == 0)
             {
-                context.put( leftReference, value);
+                if (leftSlot >= 0 && context instanceof InternalContextAdapterImpl)
+                {
+                    ((InternalContextAdapterImpl) context).putSlot(slots, leftSlot, leftReference, value);
+                }
+                else
+                {
+                    context.put( leftReference, value);
+                }
             }
             else
             {
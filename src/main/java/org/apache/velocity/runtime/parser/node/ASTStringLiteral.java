@@ -19,11 +19,11 @@ package org.apache.velocity.runtime.parser.node;
 
 import java.io.IOException;
 import java.io.StringReader;
-import java.io.StringWriter;
 import org.apache.commons.lang.text.StrBuilder;
 import org.apache.velocity.context.InternalContextAdapter;
 import org.apache.velocity.exception.TemplateInitException;
 import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.io.CaptureWriter;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.parser.ParseException;
 import org.apache.velocity.runtime.parser.Parser;
@@ -55,6 +55,9 @@ public class ASTStringLiteral extends SimpleNode
     /** true if the string contains a line comment (##) */
     private boolean containsLineComment;
 
+    /** length of the last interpolation, used to size the next one */
+    private int renderedSize;
+
     /**
      * @param id
      */
@@ -329,26 +332,30 @@ public class ASTStringLiteral extends SimpleNode
                  * now render against the real context
                  */
 
-                StringWriter writer = new StringWriter();
-                nodeTree.render(context, writer);
-
-                /*
-                 * and return the result as a String
-                 */
-
-                String ret = writer.toString();
-
-                /*
-                 * if appropriate, remove the space from the end (dreaded <MORE>
-                 * kludge part deux)
-                 */
-                if (!containsLineComment && ret.length() > 0)
+                CaptureWriter writer = CaptureWriter.acquire(renderedSize);
+                try
                 {
-                    return ret.substring(0, ret.length() - 1);
+                    nodeTree.render(context, writer);
+                    int size = writer.size();
+                    renderedSize = size;
+
+                    /*
+                     * and return the result as a String, removing the space
+                     * from the end if appropriate (dreaded <MORE> kludge
+                     * part deux)
+                     */
+                    if (!containsLineComment && size > 0)
+                    {
+                        return writer.toString(size - 1);
+                    }
+                    else
+                    {
+                        return writer.toString();
+                    }
                 }
-                else
+                finally
                 {
-                    return ret;
+                    CaptureWriter.release(writer);
                 }
             }
 
@@ -21,9 +21,11 @@ package org.apache.velocity.runtime.parser.node;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.charset.Charset;
 
 import org.apache.velocity.context.InternalContextAdapter;
 import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.io.EncodingWriter;
 import org.apache.velocity.runtime.parser.Parser;
 import org.apache.velocity.runtime.parser.Token;
 
@@ -34,6 +36,11 @@ public class ASTText extends SimpleNode
 {
     private char[] ctext;
 
+    /**
+     * The text encoded in the last charset it was rendered with
+     */
+    private volatile Encoded encoded;
+
     /**
      * @param id
      */
@@ -80,14 +87,66 @@ public class ASTText extends SimpleNode
     public boolean render( InternalContextAdapter context, Writer writer)
         throws IOException
     {
-        writer.write(ctext);
+        if (writer instanceof EncodingWriter)
+        {
+            EncodingWriter out = (EncodingWriter) writer;
+            out.writeBytes(getBytes(out.getCharset()));
+        }
+        else
+        {
+            writer.write(ctext);
+        }
         return true;
     }
-}
-
-
-
 
+    /**
+     * @param charset output charset
+     * @return the text of this node encoded in the given charset. The
+     *         returned array must not be modified.
+     * @since 1.8
+     */
+    public byte[] getBytes(Charset charset)
+    {
+        Encoded e = encoded;
+        if (e == null || !e.charset.equals(charset))
+        {
+            e = new Encoded(charset, new String(ctext).getBytes(charset));
+            encoded = e;
+        }
+        return e.bytes;
+    }
 
+    /**
+     * Replaces the text of this node, once it is initialized.
+     *
+     * @param text the new text
+     * @since 1.8
+     */
+    public void setText(char[] text)
+    {
+        ctext = text;
+        encoded = null;
+    }
 
+    /**
+     * @return the text of this node, available once the node is initialized.
+     *         The returned array must not be modified.
+     * @since 1.8
+     */
+    public char[] getText()
+    {
+        return ctext;
+    }
 
+    private static final class Encoded
+    {
+        final Charset charset;
+        final byte[] bytes;
+
+        Encoded(Charset charset, byte[] bytes)
+        {
+            this.charset = charset;
+            this.bytes = bytes;
+        }
+    }
+}
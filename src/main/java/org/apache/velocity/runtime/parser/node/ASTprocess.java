@@ -19,6 +19,17 @@ package org.apache.velocity.runtime.parser.node;
  * under the License.    
  */
 
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.context.SlotTable;
+import org.apache.velocity.exception.MethodInvocationException;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.runtime.Renderable;
+import org.apache.velocity.runtime.RuntimeInstance;
 import org.apache.velocity.runtime.parser.Parser;
 
 /**
@@ -26,6 +37,16 @@ import org.apache.velocity.runtime.parser.Parser;
  */
 public class ASTprocess extends SimpleNode
 {
+    /*
+     * compiled form of this tree, if any
+     */
+    private Renderable compiled = null;
+
+    /*
+     * slots of the references assigned in this tree, if enabled
+     */
+    private SlotTable slots = null;
+
     /**
      * @param id
      */
@@ -50,4 +71,141 @@ public class ASTprocess extends SimpleNode
     {
         return visitor.visit(this, data);
     }
+
+    /**
+     * Numbers the references assigned in this tree before initializing it,
+     * when template-local references are kept in slots, so that the
+     * references reading them find their slot whatever their position.
+     *
+     * @see org.apache.velocity.runtime.parser.node.SimpleNode#init(org.apache.velocity.context.InternalContextAdapter, java.lang.Object)
+     */
+    public Object init(InternalContextAdapter context, Object data)
+        throws TemplateInitException
+    {
+        /* slots are engine plumbing, not part of RuntimeServices */
+        if (slots == null && data instanceof RuntimeInstance)
+        {
+            slots = ((RuntimeInstance) data).createSlotTable();
+            if (slots != null)
+            {
+                registerAssignments(this, slots);
+            }
+        }
+        return super.init(context, data);
+    }
+
+    /**
+     * @return the slots of the references assigned in this tree, or null
+     *         if they are not kept in slots
+     * @since 1.8
+     */
+    public SlotTable getSlotTable()
+    {
+        return slots;
+    }
+
+    /**
+     * Finds the slots of the tree a node belongs to.
+     *
+     * @param node node of an initialized tree
+     * @return the slots of its tree, or null
+     * @since 1.8
+     */
+    public static SlotTable getSlotTable(Node node)
+    {
+        while (node != null && !(node instanceof ASTprocess))
+        {
+            node = node.jjtGetParent();
+        }
+        return node == null ? null : ((ASTprocess) node).getSlotTable();
+    }
+
+    /**
+     * Registers the simple references on the left of #set and the loop
+     * variables of #foreach.
+     */
+    private static void registerAssignments(Node node, SlotTable slots)
+    {
+        Node assigned = null;
+        if (node instanceof ASTSetDirective)
+        {
+            assigned = node.jjtGetChild(0);
+        }
+        else if (node instanceof ASTDirective
+                 && "foreach".equals(((ASTDirective) node).getDirectiveName())
+                 && node.jjtGetNumChildren() > 0)
+        {
+            assigned = node.jjtGetChild(0);
+        }
+
+        if (assigned instanceof ASTReference && assigned.jjtGetNumChildren() == 0)
+        {
+            String image = assigned.getFirstToken().image;
+            if (isSimpleName(image))
+            {
+                slots.register(image.substring(1));
+            }
+        }
+
+        for (int i = 0; i < node.jjtGetNumChildren(); i++)
+        {
+            registerAssignments(node.jjtGetChild(i), slots);
+        }
+    }
+
+    /**
+     * @return true if the token is a plain $name reference
+     */
+    private static boolean isSimpleName(String image)
+    {
+        if (image.length() < 2 || image.charAt(0) != '$'
+            || !Character.isLetter(image.charAt(1)))
+        {
+            return false;
+        }
+        for (int i = 2; i < image.length(); i++)
+        {
+            char c = image.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the compiled form of this tree, which is then used by
+     * {@link #render(InternalContextAdapter, Writer)} instead of
+     * walking the children.
+     *
+     * @param compiled compiled form of this tree, or null to interpret it
+     * @since 1.8
+     */
+    public void setCompiled(Renderable compiled)
+    {
+        this.compiled = compiled;
+    }
+
+    /**
+     * @return true if this tree is rendered by compiled code
+     * @since 1.8
+     */
+    public boolean isCompiled()
+    {
+        return compiled != null;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.SimpleNode#render(org.apache.velocity.context.InternalContextAdapter, java.io.Writer)
+     */
+    public boolean render( InternalContextAdapter context, Writer writer)
+        throws IOException, MethodInvocationException, ParseErrorException, ResourceNotFoundException
+    {
+        if (compiled != null)
+        {
+            return compiled.render(context, writer);
+        }
+        return super.render(context, writer);
+    }
 }
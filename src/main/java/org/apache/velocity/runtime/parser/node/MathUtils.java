@@ -164,7 +164,12 @@ public abstract class MathUtils
      */
     public static boolean isInteger (Number n)
     {
-        return ints.containsKey (n.getClass());
+        Class type = n.getClass();
+        if (type == Integer.class || type == Long.class)
+        {
+            return true;
+        }
+        return ints.containsKey (type);
     }
 
     /**
@@ -220,6 +225,14 @@ public abstract class MathUtils
         return BigInteger.valueOf( value);
     }
 
+    /**
+     * Test, whether the given class is Integer or Long, without any lookup.
+     */
+    private static boolean isIntegerOrLong (Class type)
+    {
+        return type == Integer.class || type == Long.class;
+    }
+
     /**
      * Wrap the result in the object of the bigger type.
      * 
@@ -230,6 +243,17 @@ public abstract class MathUtils
      */
     private static Number wrapPrimitive (long value, Number op1, Number op2)
     {
+        Class type1 = op1.getClass();
+        Class type2 = op2.getClass();
+        if (isIntegerOrLong(type1) && isIntegerOrLong(type2))
+        {
+            if (type1 == Long.class || type2 == Long.class
+                || value > Integer.MAX_VALUE || value < Integer.MIN_VALUE)
+            {
+                return Long.valueOf(value);
+            }
+            return Integer.valueOf((int)value);
+        }
         if ( typesBySize.indexOf( op1.getClass()) > typesBySize.indexOf( op2.getClass()))
         {
             return wrapPrimitive( value, op1.getClass());
@@ -246,6 +270,21 @@ public abstract class MathUtils
      */
     private static int findCalculationBase (Number op1, Number op2)
     {
+        /*
+         * fast path for the common Integer, Long and Double operands
+         */
+        Class type1 = op1.getClass();
+        Class type2 = op2.getClass();
+        boolean op1Long = isIntegerOrLong(type1);
+        boolean op2Long = isIntegerOrLong(type2);
+        if (op1Long && op2Long)
+        {
+            return BASE_LONG;
+        }
+        if ((op1Long || type1 == Double.class) && (op2Long || type2 == Double.class))
+        {
+            return BASE_DOUBLE;
+        }
 
         boolean op1Int = isInteger(op1);
         boolean op2Int = isInteger(op2);
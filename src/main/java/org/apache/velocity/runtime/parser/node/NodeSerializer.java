@@ -0,0 +1,318 @@
+package org.apache.velocity.runtime.parser.node;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.velocity.runtime.parser.ParserTreeConstants;
+import org.apache.velocity.runtime.parser.Token;
+
+/**
+ * Writes and reads back freshly parsed (not yet initialized) ASTs, with
+ * their tokens, in a compact binary form. A tree read back is equivalent
+ * to the one the parser produced and can be <code>init()</code>-ed the
+ * same way.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public final class NodeSerializer
+{
+    /** Version of the serialized form, to be bumped on any change. */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final String NODE_PACKAGE = "org.apache.velocity.runtime.parser.node.AST";
+
+    private static final Constructor[] constructors =
+        new Constructor[ParserTreeConstants.jjtNodeName.length];
+
+    private NodeSerializer()
+    {
+    }
+
+    /**
+     * Writes a parsed tree.
+     *
+     * @param root root of the tree, as returned by the parser
+     * @param out where to write
+     * @throws IOException
+     */
+    public static void write(Node root, DataOutput out)
+        throws IOException
+    {
+        Map indexes = new IdentityHashMap();
+        List tokens = new ArrayList();
+        collectTokens(root, indexes, tokens);
+
+        out.writeInt(tokens.size());
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            Token t = (Token) tokens.get(i);
+            out.writeInt(t.kind);
+            out.writeInt(t.beginLine);
+            out.writeInt(t.beginColumn);
+            out.writeInt(t.endLine);
+            out.writeInt(t.endColumn);
+            writeString(t.image, out);
+            out.writeInt(indexOf(t.next, indexes));
+            out.writeInt(indexOf(t.specialToken, indexes));
+        }
+        writeNode(root, indexes, out);
+    }
+
+    /**
+     * Reads back a tree written by {@link #write(Node, DataOutput)}.
+     *
+     * @param in where to read from
+     * @param templateName name of the template the tree belongs to
+     * @return the root of the tree
+     * @throws IOException if the data is truncated or corrupt
+     */
+    public static Node read(DataInput in, String templateName)
+        throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0)
+        {
+            throw new IOException("corrupt token count " + count);
+        }
+        Token[] tokens = new Token[count];
+        int[] links = new int[count * 2];
+        for (int i = 0; i < count; i++)
+        {
+            Token t = new Token();
+            t.kind = in.readInt();
+            t.beginLine = in.readInt();
+            t.beginColumn = in.readInt();
+            t.endLine = in.readInt();
+            t.endColumn = in.readInt();
+            t.image = readString(in);
+            links[2 * i] = in.readInt();
+            links[2 * i + 1] = in.readInt();
+            tokens[i] = t;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            tokens[i].next = tokenAt(tokens, links[2 * i]);
+            tokens[i].specialToken = tokenAt(tokens, links[2 * i + 1]);
+        }
+        return readNode(in, tokens, templateName);
+    }
+
+    private static void collectTokens(Node root, Map indexes, List tokens)
+    {
+        List pending = new ArrayList();
+        List nodes = new ArrayList();
+        nodes.add(root);
+        while (!nodes.isEmpty())
+        {
+            Node node = (Node) nodes.remove(nodes.size() - 1);
+            pending.add(node.getFirstToken());
+            pending.add(node.getLastToken());
+            for (int i = 0; i < node.jjtGetNumChildren(); i++)
+            {
+                nodes.add(node.jjtGetChild(i));
+            }
+        }
+        while (!pending.isEmpty())
+        {
+            Token t = (Token) pending.remove(pending.size() - 1);
+            while (t != null && !indexes.containsKey(t))
+            {
+                indexes.put(t, new Integer(tokens.size()));
+                tokens.add(t);
+                if (t.specialToken != null)
+                {
+                    pending.add(t.specialToken);
+                }
+                t = t.next;
+            }
+        }
+    }
+
+    private static int indexOf(Token t, Map indexes)
+    {
+        return t == null ? -1 : ((Integer) indexes.get(t)).intValue();
+    }
+
+    private static Token tokenAt(Token[] tokens, int index)
+        throws IOException
+    {
+        if (index == -1)
+        {
+            return null;
+        }
+        if (index < 0 || index >= tokens.length)
+        {
+            throw new IOException("corrupt token index " + index);
+        }
+        return tokens[index];
+    }
+
+    private static void writeNode(Node node, Map indexes, DataOutput out)
+        throws IOException
+    {
+        SimpleNode simple = (SimpleNode) node;
+        out.writeInt(simple.id);
+        out.writeInt(indexOf(simple.first, indexes));
+        out.writeInt(indexOf(simple.last, indexes));
+        out.writeInt(simple.info);
+        out.writeBoolean(simple.invalid);
+
+        /* the only node state set by the parser besides tokens and children */
+        if (node instanceof ASTDirective)
+        {
+            writeString(((ASTDirective) node).getDirectiveName(), out);
+        }
+        else if (node instanceof ASTEscape)
+        {
+            writeString(((ASTEscape) node).val, out);
+        }
+
+        int children = node.jjtGetNumChildren();
+        out.writeInt(children);
+        for (int i = 0; i < children; i++)
+        {
+            writeNode(node.jjtGetChild(i), indexes, out);
+        }
+    }
+
+    private static Node readNode(DataInput in, Token[] tokens, String templateName)
+        throws IOException
+    {
+        SimpleNode node = createNode(in.readInt());
+        node.first = tokenAt(tokens, in.readInt());
+        node.last = tokenAt(tokens, in.readInt());
+        node.info = in.readInt();
+        node.invalid = in.readBoolean();
+        node.templateName = templateName;
+
+        if (node instanceof ASTDirective)
+        {
+            ((ASTDirective) node).setDirectiveName(readString(in));
+        }
+        else if (node instanceof ASTEscape)
+        {
+            ((ASTEscape) node).val = readString(in);
+        }
+
+        int children = in.readInt();
+        if (children < 0)
+        {
+            throw new IOException("corrupt child count " + children);
+        }
+        Node[] read = new Node[children];
+        for (int i = 0; i < children; i++)
+        {
+            read[i] = readNode(in, tokens, templateName);
+            read[i].jjtSetParent(node);
+        }
+        /* add the last child first, so that the array is only allocated once */
+        for (int i = children - 1; i >= 0; i--)
+        {
+            node.jjtAddChild(read[i], i);
+        }
+        return node;
+    }
+
+    private static SimpleNode createNode(int id)
+        throws IOException
+    {
+        if (id < 0 || id >= constructors.length)
+        {
+            throw new IOException("unknown node id " + id);
+        }
+        try
+        {
+            Constructor constructor;
+            synchronized (constructors)
+            {
+                constructor = constructors[id];
+                if (constructor == null)
+                {
+                    Class nodeClass = Class.forName(NODE_PACKAGE + ParserTreeConstants.jjtNodeName[id]);
+                    constructor = nodeClass.getConstructor(new Class[] { Integer.TYPE });
+                    constructors[id] = constructor;
+                }
+            }
+            return (SimpleNode) constructor.newInstance(new Object[] { new Integer(id) });
+        }
+        catch (Exception e)
+        {
+            IOException ioe = new IOException("cannot create node " + ParserTreeConstants.jjtNodeName[id]);
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
+    private static void writeString(String s, DataOutput out)
+        throws IOException
+    {
+        if (s == null)
+        {
+            out.writeByte(0);
+        }
+        else if (s.length() <= 65535 / 3)
+        {
+            out.writeByte(1);
+            out.writeUTF(s);
+        }
+        else
+        {
+            out.writeByte(2);
+            out.writeInt(s.length());
+            out.writeChars(s);
+        }
+    }
+
+    private static String readString(DataInput in)
+        throws IOException
+    {
+        switch (in.readByte())
+        {
+            case 0:
+                return null;
+            case 1:
+                return in.readUTF();
+            case 2:
+                int length = in.readInt();
+                if (length < 0)
+                {
+                    throw new IOException("corrupt string length " + length);
+                }
+                char[] chars = new char[length];
+                for (int i = 0; i < length; i++)
+                {
+                    chars[i] = in.readChar();
+                }
+                return new String(chars);
+            default:
+                throw new IOException("corrupt string");
+        }
+    }
+}
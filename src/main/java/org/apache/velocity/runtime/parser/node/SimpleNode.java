@@ -171,6 +171,22 @@ public class SimpleNode implements Node
         children[i] = n;
     }
 
+    /**
+     * Replaces the children of this node. Meant for passes rewriting the
+     * tree once it is initialized.
+     *
+     * @param nodes the new children
+     * @since 1.8
+     */
+    public void setChildren(Node[] nodes)
+    {
+        for (int i = 0; i < nodes.length; i++)
+        {
+            nodes[i].jjtSetParent(this);
+        }
+        children = nodes.length == 0 ? null : nodes;
+    }
+
     /**
      * @see org.apache.velocity.runtime.parser.node.Node#jjtGetChild(int)
      */
@@ -0,0 +1,278 @@
+package org.apache.velocity.runtime.resource;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resource cache with lock-free reads and single-flight loading of
+ * missing resources: when several threads request the same missing
+ * template, only one of them loads and parses it, the others wait for
+ * its result.
+ *
+ * <p>The cache is bounded by the <code>resource.manager.defaultcache.size</code>
+ * property (<code>0</code> or less for an unbounded cache). Eviction is
+ * an approximate LRU: reads only record an access time on the entry, and
+ * the least recently accessed entries are dropped once the cache grows
+ * past its maximum size.</p>
+ *
+ * <p>To use it:
+ * <pre>
+ * resource.manager.cache.class = org.apache.velocity.runtime.resource.ConcurrentResourceCache
+ * </pre></p>
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class ConcurrentResourceCache implements LoadingResourceCache
+{
+    Logger logger = LoggerFactory.getLogger( ConcurrentResourceCache.class );
+
+    /**
+     * Cache storage, key to {@link Entry}.
+     */
+    protected final ConcurrentMap cache = new ConcurrentHashMap(512, 0.5f, 30);
+
+    /**
+     * Loads in progress, key to FutureTask.
+     */
+    protected final ConcurrentMap loading = new ConcurrentHashMap();
+
+    /**
+     * Maximum number of entries, 0 or less for no limit.
+     */
+    protected int maxSize = 0;
+
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+    /**
+     * Runtime services, generally initialized by the
+     * <code>initialize()</code> method.
+     */
+    protected RuntimeServices rsvc = null;
+
+    /**
+     * Cached resource and the time it was last accessed.
+     */
+    protected static final class Entry
+    {
+        final Resource resource;
+
+        volatile long lastAccess;
+
+        Entry(Resource resource)
+        {
+            this.resource = resource;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.resource.ResourceCache#initialize(org.apache.velocity.runtime.RuntimeServices)
+     */
+    public void initialize( RuntimeServices rs )
+    {
+        rsvc = rs;
+        maxSize = rsvc.getInt(RuntimeConstants.RESOURCE_MANAGER_DEFAULTCACHE_SIZE, 89);
+        logger.debug("ResourceCache: initialized (" + this.getClass() + ") with " +
+                     (maxSize > 0 ? "a maximum size of " + maxSize : "no maximum size"));
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.resource.ResourceCache#get(java.lang.Object)
+     */
+    public Resource get( Object key )
+    {
+        Entry entry = (Entry) cache.get(key);
+        if (entry == null)
+        {
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        return entry.resource;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.resource.LoadingResourceCache#get(java.lang.Object, org.apache.velocity.runtime.resource.LoadingResourceCache.Loader)
+     */
+    public Resource get( Object key, final Loader loader )
+    {
+        Resource resource = get(key);
+        if (resource != null)
+        {
+            return resource;
+        }
+
+        FutureTask task = new FutureTask(new Callable()
+        {
+            public Object call()
+            {
+                return loader.load();
+            }
+        });
+
+        FutureTask running = (FutureTask) loading.putIfAbsent(key, task);
+        if (running == null)
+        {
+            try
+            {
+                /* another thread may have completed the load since our first look */
+                resource = get(key);
+                if (resource != null)
+                {
+                    return resource;
+                }
+                running = task;
+                task.run();
+            }
+            finally
+            {
+                loading.remove(key, task);
+            }
+        }
+        return waitFor(key, running);
+    }
+
+    /**
+     * Waits for a load to complete, rethrowing its exception if it failed.
+     */
+    private Resource waitFor(Object key, FutureTask task)
+    {
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    return (Resource) task.get();
+                }
+                catch (InterruptedException ie)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException ee)
+                {
+                    Throwable cause = ee.getCause();
+                    if (cause instanceof RuntimeException)
+                    {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error)
+                    {
+                        throw (Error) cause;
+                    }
+                    throw new VelocityException("Exception while loading resource '" + key + "'", cause);
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.resource.ResourceCache#put(java.lang.Object, org.apache.velocity.runtime.resource.Resource)
+     */
+    public Resource put( Object key, Resource value )
+    {
+        Entry previous = (Entry) cache.put(key, new Entry(value));
+        if (maxSize > 0 && cache.size() > maxSize)
+        {
+            evict();
+        }
+        return previous == null ? null : previous.resource;
+    }
+
+    /**
+     * Drops the least recently accessed entries until the cache is back
+     * to its maximum size. Only one thread evicts at a time; the others
+     * do not wait, so the cache may briefly hold a few more entries.
+     */
+    protected void evict()
+    {
+        if (!evicting.compareAndSet(false, true))
+        {
+            return;
+        }
+        try
+        {
+            while (cache.size() > maxSize)
+            {
+                Map.Entry oldest = null;
+                long oldestAccess = Long.MAX_VALUE;
+                for (Iterator it = cache.entrySet().iterator(); it.hasNext(); )
+                {
+                    Map.Entry candidate = (Map.Entry) it.next();
+                    long access = ((Entry) candidate.getValue()).lastAccess;
+                    if (oldest == null || access - oldestAccess < 0)
+                    {
+                        oldest = candidate;
+                        oldestAccess = access;
+                    }
+                }
+                if (oldest == null)
+                {
+                    break;
+                }
+                cache.remove(oldest.getKey(), oldest.getValue());
+            }
+        }
+        finally
+        {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.resource.ResourceCache#remove(java.lang.Object)
+     */
+    public Resource remove( Object key )
+    {
+        Entry previous = (Entry) cache.remove(key);
+        return previous == null ? null : previous.resource;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.resource.ResourceCache#enumerateKeys()
+     */
+    public Iterator enumerateKeys()
+    {
+        return cache.keySet().iterator();
+    }
+}
@@ -19,11 +19,25 @@ package org.apache.velocity.runtime.resource;
  * under the License.    
  */
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.StringWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.io.EncodingWriter;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.FileResourceLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +48,13 @@ import org.slf4j.LoggerFactory;
  * Also of interest is Velocity's {@link org.apache.velocity.Template}
  * <code>Resource</code>.
  *
+ * The content is kept encoded, in memory or memory-mapped (see
+ * {@link RuntimeConstants#RESOURCE_CONTENT_MAP_THRESHOLD}), and
+ * {@link #merge(Writer)} hands it to byte oriented writers as is when
+ * its charset allows it. Once it
+ * is needed as a String, it is decoded and only kept as a String. Content
+ * of loaders providing characters is kept as a String.
+ *
  * @author <a href="mailto:jvanzyl@apache.org">Jason van Zyl</a>
  * @author <a href="mailto:geirm@optonline.net">Geir Magnusson Jr.</a>
  * @version $Id: ContentResource.java 687177 2008-08-19 22:00:32Z nbubna $
@@ -42,6 +63,16 @@ public class ContentResource extends Resource
 {
     Logger logger = LoggerFactory.getLogger( ContentResource.class );
 
+    /** encoded content, until it is decoded */
+    private volatile ByteBuffer content = null;
+
+    /** charset of the content, and whether its bytes can be written as is */
+    private Charset charset = null;
+    private boolean concatenable = false;
+
+    /** whether the content decodes without malformed input, once checked */
+    private volatile Boolean wellFormed = null;
+
     /** Default empty constructor */
     public ContentResource()
     {
@@ -60,23 +91,28 @@ public class ContentResource extends Resource
     public void process()
         throws ResourceNotFoundException
     {
-        BufferedReader reader = null;
-
         try
         {
-            StringWriter sw = new StringWriter();
-
-            reader = new BufferedReader(
-                new InputStreamReader(resourceLoader.getResourceStream(name),
-                                      encoding));
-
-            char buf[] = new char[1024];
-            int len = 0;
-
-            while ( ( len = reader.read( buf, 0, 1024 )) != -1)
-                sw.write( buf, 0, len );
-
-            setData(sw.toString());
+            Charset charset = Charset.forName(encoding);
+            String text = null;
+            ByteBuffer content = map();
+            if (content == null)
+            {
+                Reader reader = resourceLoader.getResourceReader(name, encoding);
+                if (reader != null)
+                {
+                    text = read(reader);
+                }
+                else
+                {
+                    content = read();
+                }
+            }
+            this.charset = charset;
+            this.concatenable = EncodingWriter.supports(charset);
+            this.wellFormed = null;
+            this.data = text;
+            this.content = content;
         }
         catch ( ResourceNotFoundException e )
         {
@@ -90,18 +126,196 @@ public class ContentResource extends Resource
             logger.error( msg, e );
             throw new VelocityException(msg, e);
         }
+    }
+
+    /**
+     * @return the content, decoded on first use; the encoded content is
+     *         then released
+     * @see org.apache.velocity.runtime.resource.Resource#getData()
+     */
+    public Object getData()
+    {
+        ByteBuffer content = this.content;
+        if (content != null)
+        {
+            String text;
+            if (content.hasArray())
+            {
+                text = new String(content.array(), content.arrayOffset(),
+                                  content.limit(), charset);
+            }
+            else
+            {
+                text = charset.decode(content.duplicate()).toString();
+            }
+            data = text;
+            this.content = null;
+            return text;
+        }
+        return data;
+    }
+
+    /**
+     * Replaces the content.
+     * @param data the new content
+     * @see org.apache.velocity.runtime.resource.Resource#setData(java.lang.Object)
+     */
+    public void setData(Object data)
+    {
+        this.content = null;
+        super.setData(data);
+    }
+
+    /**
+     * Writes the content. Encoded content is passed as is to an
+     * {@link EncodingWriter} using the same charset, if it is well formed
+     * and in a charset without state or byte order mark, so that it can be
+     * concatenated with the surrounding text.
+     *
+     * @param writer writer to write to
+     * @throws IOException
+     * @since 1.8
+     */
+    public void merge(Writer writer) throws IOException
+    {
+        ByteBuffer content = this.content;
+        if (content != null && concatenable && writer instanceof EncodingWriter
+            && ((EncodingWriter) writer).getCharset().equals(charset)
+            && isWellFormed(content))
+        {
+            ((EncodingWriter) writer).writeBytes(content.duplicate());
+        }
+        else
+        {
+            writer.write((String) getData());
+        }
+    }
+
+    /**
+     * Memory-maps the content if it comes from a file large enough.
+     * @return mapped content or null
+     */
+    private ByteBuffer map() throws IOException
+    {
+        int threshold = rsvc.getInt(RuntimeConstants.RESOURCE_CONTENT_MAP_THRESHOLD, -1);
+        if (threshold < 0 || !(resourceLoader instanceof FileResourceLoader))
+        {
+            return null;
+        }
+        File file = ((FileResourceLoader) resourceLoader).getResourceFile(name);
+        if (file == null || file.length() < threshold)
+        {
+            return null;
+        }
+
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            FileChannel channel = in.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
         finally
         {
-            if (reader != null)
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the content in memory.
+     * @return read content
+     */
+    private ByteBuffer read() throws IOException
+    {
+        InputStream in = resourceLoader.getResourceStream(name);
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte buf[] = new byte[4096];
+            int len = 0;
+
+            while ( ( len = in.read( buf, 0, buf.length )) != -1)
+                out.write( buf, 0, len );
+
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+        finally
+        {
+            try
             {
-                try
-                {
-                    reader.close();
-                }
-                catch (Exception ignored)
-                {
-                }
+                in.close();
             }
+            catch (Exception ignored)
+            {
+            }
+        }
+    }
+
+    /**
+     * Reads the text of a loader providing characters.
+     * @return read text
+     */
+    private String read(Reader reader) throws IOException
+    {
+        try
+        {
+            StringBuffer text = new StringBuffer();
+            char buf[] = new char[1024];
+            int len = 0;
+
+            while ( ( len = reader.read( buf, 0, buf.length )) != -1)
+                text.append( buf, 0, len );
+
+            return text.toString();
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Checks the content the first time it is written as is.
+     */
+    private boolean isWellFormed(ByteBuffer content)
+    {
+        Boolean checked = wellFormed;
+        if (checked == null)
+        {
+            checked = Boolean.valueOf(isWellFormed(content, charset));
+            wellFormed = checked;
+        }
+        return checked.booleanValue();
+    }
+
+    /**
+     * Checks whether content decodes without replacement characters, so
+     * that writing it as is gives the same output as decoding it and
+     * encoding it again.
+     */
+    private static boolean isWellFormed(ByteBuffer content, Charset charset)
+    {
+        CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = content.duplicate();
+        CharBuffer out = CharBuffer.allocate(4096);
+        for (;;)
+        {
+            CoderResult result = decoder.decode(in, out, true);
+            if (result.isError())
+            {
+                return false;
+            }
+            out.clear();
+            if (result.isUnderflow())
+            {
+                break;
+            }
+        }
+        while (decoder.flush(out).isOverflow())
+        {
+            out.clear();
         }
+        return true;
     }
 }
@@ -0,0 +1,56 @@
+package org.apache.velocity.runtime.resource;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+/**
+ * A ResourceCache which can coordinate the loading of missing resources,
+ * so that concurrent requests for the same key share a single load.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public interface LoadingResourceCache extends ResourceCache
+{
+    /**
+     * Loads a missing resource on behalf of the cache.
+     */
+    public interface Loader
+    {
+        /**
+         * Loads the resource, and stores it in the cache if it may be cached.
+         *
+         * @return the loaded resource
+         */
+        public Resource load();
+    }
+
+    /**
+     *  retrieves a Resource from the cache, or runs the given loader
+     *  if it is not present. Concurrent calls for the same key while
+     *  a load is in progress wait for its result (or its exception)
+     *  instead of loading the resource again.
+     *
+     *  @param resourceKey key for Resource to be retrieved
+     *  @param loader loads the resource when missing
+     *  @return Resource specified
+     */
+    public Resource get( Object resourceKey, Loader loader );
+}
@@ -0,0 +1,351 @@
+package org.apache.velocity.runtime.resource;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.collections.ExtendedProperties;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.NodeSerializer;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+import org.apache.velocity.runtime.resource.loader.ResourceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk store of parsed templates, used to skip lexing and parsing of
+ * unchanged templates on a cold start.
+ *
+ * <p>There is one file per template, holding its parsed tree before
+ * initialization. An entry is only used if its template name, resource
+ * loader name and class, encoding and source modification time match those of the
+ * template being loaded, and if it was written by the same Velocity version
+ * with the same configuration (the resource loader and resource manager
+ * settings aside, which do not change the way templates parse). Any
+ * mismatch makes the template be parsed as usual, and the entry is then
+ * rewritten when the store is updatable.</p>
+ *
+ * <p>The store is enabled by setting <code>resource.manager.parsed.store</code>
+ * to a directory. It can be filled beforehand with
+ * {@link org.apache.velocity.app.tools.ParsedTemplateStoreGenerator}.</p>
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class ParsedTemplateStore
+{
+    Logger logger = LoggerFactory.getLogger( ParsedTemplateStore.class );
+
+    /** Identifies store entries. */
+    private static final int MAGIC = 0x56544c53;
+
+    /** File extension of the store entries. */
+    public static final String ENTRY_EXTENSION = ".vtree";
+
+    /** Directory holding the entries. */
+    protected final File directory;
+
+    /** Whether parsed templates are written back to the store. */
+    protected final boolean update;
+
+    /** Velocity version, entries written by another version are ignored. */
+    protected final String version;
+
+    /** Hash of the configuration, entries written with another configuration are ignored. */
+    protected final String configurationHash;
+
+    /** Configured names of the resource loaders, by loader. */
+    protected final Map loaderNames;
+
+    /**
+     * @param rsvc runtime services, used to compute the configuration hash
+     * @param directory directory holding the entries
+     * @param update whether parsed templates are written to the store
+     * @param loaderNames configured names of the resource loaders (like
+     *        <code>file</code>), by loader
+     */
+    public ParsedTemplateStore(RuntimeServices rsvc, File directory, boolean update, Map loaderNames)
+    {
+        this.directory = directory;
+        this.update = update;
+        this.loaderNames = loaderNames;
+        String implementationVersion = RuntimeInstance.class.getPackage() == null ? null
+            : RuntimeInstance.class.getPackage().getImplementationVersion();
+        this.version = (implementationVersion == null ? "unknown" : implementationVersion)
+            + '/' + NodeSerializer.FORMAT_VERSION;
+        this.configurationHash = getConfigurationHash(rsvc.getConfiguration());
+
+        if (update && !directory.isDirectory() && !directory.mkdirs())
+        {
+            logger.warn("ParsedTemplateStore : cannot create directory " + directory);
+        }
+        logger.debug("ParsedTemplateStore : using " + directory +
+                     (update ? "" : " (read only)"));
+    }
+
+    /**
+     * Hashes the configuration properties which may change the way a
+     * template is parsed, i.e. all of them except the resource loader
+     * and resource manager settings. Only plain values are considered.
+     *
+     * @param configuration
+     * @return hex digest of the configuration
+     */
+    public static String getConfigurationHash(ExtendedProperties configuration)
+    {
+        List keys = new ArrayList();
+        for (Iterator it = configuration.getKeys(); it.hasNext(); )
+        {
+            keys.add(it.next());
+        }
+        Collections.sort(keys);
+
+        StringBuffer properties = new StringBuffer();
+        for (Iterator it = keys.iterator(); it.hasNext(); )
+        {
+            String key = (String) it.next();
+            if (key.startsWith("resource.") || key.indexOf(".resource.loader.") >= 0)
+            {
+                continue;
+            }
+            Object value = configuration.getProperty(key);
+            if (value instanceof String || value instanceof Number
+                || value instanceof Boolean || value instanceof List)
+            {
+                properties.append(key).append('=').append(value).append('\n');
+            }
+        }
+        return digest(properties.toString());
+    }
+
+    /**
+     * Loads the parsed tree of a template, if the store holds an up to
+     * date entry for it.
+     *
+     * @param resource template being loaded
+     * @param lastModified modification time of its source
+     * @return uninitialized tree, or null if there is no valid entry
+     */
+    public SimpleNode load(Resource resource, long lastModified)
+    {
+        if (lastModified <= 0)
+        {
+            return null;
+        }
+        File file = getEntryFile(resource);
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 8192));
+            if (in.readInt() != MAGIC
+                || !version.equals(in.readUTF())
+                || !configurationHash.equals(in.readUTF())
+                || !getLoaderKey(resource).equals(in.readUTF())
+                || !resource.getName().equals(in.readUTF())
+                || !String.valueOf(resource.getEncoding()).equals(in.readUTF())
+                || lastModified != in.readLong())
+            {
+                logger.debug("ParsedTemplateStore : stale entry for '" + resource.getName() + "'");
+                return null;
+            }
+            return (SimpleNode) NodeSerializer.read(in, resource.getName());
+        }
+        catch (FileNotFoundException fnfe)
+        {
+            return null;
+        }
+        catch (IOException ioe)
+        {
+            logger.debug("ParsedTemplateStore : cannot read entry for '" + resource.getName() + "'", ioe);
+            return null;
+        }
+        finally
+        {
+            closeQuiet(in);
+        }
+    }
+
+    /**
+     * Serializes a freshly parsed tree, before it gets initialized.
+     *
+     * @param root tree returned by the parser
+     * @return the serialized tree, or null if the store is not updated
+     */
+    public byte[] serialize(Node root)
+    {
+        if (!update)
+        {
+            return null;
+        }
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+            DataOutputStream out = new DataOutputStream(bytes);
+            NodeSerializer.write(root, out);
+            out.flush();
+            return bytes.toByteArray();
+        }
+        catch (IOException ioe)
+        {
+            logger.debug("ParsedTemplateStore : cannot serialize tree", ioe);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the entry of a template, replacing any previous one.
+     *
+     * @param resource template successfully parsed and initialized
+     * @param lastModified modification time of its source
+     * @param tree serialized tree, from {@link #serialize(Node)}
+     */
+    public void store(Resource resource, long lastModified, byte[] tree)
+    {
+        if (!update || tree == null || lastModified <= 0)
+        {
+            return;
+        }
+        File file = getEntryFile(resource);
+        File temp = null;
+        DataOutputStream out = null;
+        try
+        {
+            temp = File.createTempFile("entry", ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 8192));
+            out.writeInt(MAGIC);
+            out.writeUTF(version);
+            out.writeUTF(configurationHash);
+            out.writeUTF(getLoaderKey(resource));
+            out.writeUTF(resource.getName());
+            out.writeUTF(String.valueOf(resource.getEncoding()));
+            out.writeLong(lastModified);
+            out.write(tree);
+            out.close();
+            out = null;
+
+            /* readers see either the old entry or the new one */
+            try
+            {
+                Files.move(temp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException amnse)
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        }
+        catch (IOException ioe)
+        {
+            logger.debug("ParsedTemplateStore : cannot write entry for '" + resource.getName() + "'", ioe);
+        }
+        finally
+        {
+            closeQuiet(out);
+            if (temp != null)
+            {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * @param resource
+     * @return the file holding the entry of this resource
+     */
+    protected File getEntryFile(Resource resource)
+    {
+        return new File(directory, digest(getLoaderKey(resource) + '\n' + resource.getName())
+                        + ENTRY_EXTENSION);
+    }
+
+    /**
+     * @param resource
+     * @return configured name and class of the loader of the resource
+     */
+    protected String getLoaderKey(Resource resource)
+    {
+        ResourceLoader loader = resource.getResourceLoader();
+        return String.valueOf(loaderNames.get(loader)) + ':' + loader.getClass().getName();
+    }
+
+    private static String digest(String value)
+    {
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] hash = md.digest(value.getBytes("UTF-8"));
+            StringBuffer hex = new StringBuffer(hash.length * 2);
+            for (int i = 0; i < hash.length; i++)
+            {
+                hex.append(Character.forDigit((hash[i] >> 4) & 0xf, 16))
+                   .append(Character.forDigit(hash[i] & 0xf, 16));
+            }
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException nsae)
+        {
+            throw new VelocityException("SHA-1 is not available", nsae);
+        }
+        catch (IOException ioe)
+        {
+            throw new VelocityException("UTF-8 is not available", ioe);
+        }
+    }
+
+    private static void closeQuiet(Closeable closeable)
+    {
+        if (closeable != null)
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch (IOException ioe)
+            {
+                // Ignore
+            }
+        }
+    }
+}
@@ -155,6 +155,15 @@ public abstract class Resource
            return false;
         }
 
+        /*
+         *  loaders watching their sources tell us when to check
+         */
+
+        if (resourceLoader != null && resourceLoader.isWatchingModifications())
+        {
+            return resourceLoader.isModificationPending(this);
+        }
+
         /*
          *  see if we need to check now
          */
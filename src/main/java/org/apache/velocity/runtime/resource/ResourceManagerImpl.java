@@ -19,11 +19,23 @@ package org.apache.velocity.runtime.resource;
  * under the License.
  */
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.collections.ExtendedProperties;
+import org.apache.velocity.Template;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.VelocityException;
@@ -85,6 +97,15 @@ public class ResourceManagerImpl implements ResourceManager
     /** The internal RuntimeServices object. */
     protected RuntimeServices rsvc = null;
 
+    /** Runs the background refreshes, null when resources are refreshed by the requesting thread. */
+    protected ExecutorService refreshExecutor = null;
+
+    /** Keys of the resources with a background refresh pending. */
+    private final ConcurrentMap refreshing = new ConcurrentHashMap();
+
+    /** Store of parsed templates, null if not configured. */
+    protected ParsedTemplateStore parsedStore = null;
+
     /**
      * Initialize the ResourceManager.
      *
@@ -99,6 +120,7 @@ public class ResourceManagerImpl implements ResourceManager
         }
 	
         ResourceLoader resourceLoader = null;
+        Map loaderNames = new HashMap();
 
         this.rsvc = rsvc;
 
@@ -138,6 +160,7 @@ public class ResourceManagerImpl implements ResourceManager
             resourceLoader.commonInit(rsvc, configuration);
             resourceLoader.init(configuration);
             resourceLoaders.add(resourceLoader);
+            loaderNames.put(resourceLoader, configuration.getString(RESOURCE_LOADER_IDENTIFIER));
         }
 
         /*
@@ -199,6 +222,33 @@ public class ResourceManagerImpl implements ResourceManager
 
         globalCache.initialize(rsvc);
 
+        if (rsvc.getBoolean(RuntimeConstants.RESOURCE_MANAGER_BACKGROUND_REFRESH, false))
+        {
+            int threads = Math.max(1, rsvc.getInt(RuntimeConstants.RESOURCE_MANAGER_REFRESH_THREADS, 1));
+            /* idle threads end, so that an engine dropped without shutdown() leaks none */
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue(), new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "velocity-resource-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            refreshExecutor = executor;
+            logger.debug("ResourceManager : resources will be refreshed by " + threads + " background thread(s)");
+        }
+
+        String storePath = StringUtils.nullTrim(rsvc.getString(RuntimeConstants.RESOURCE_MANAGER_PARSED_STORE));
+        if (org.apache.commons.lang.StringUtils.isNotEmpty(storePath))
+        {
+            parsedStore = new ParsedTemplateStore(rsvc, new File(storePath),
+                rsvc.getBoolean(RuntimeConstants.RESOURCE_MANAGER_PARSED_STORE_UPDATE, true),
+                loaderNames);
+        }
+
         logger.trace("Default ResourceManager initialization complete.");
     }
 
@@ -286,7 +336,7 @@ public class ResourceManagerImpl implements ResourceManager
          * (static content from #include) with a Template.
          */
 
-        String resourceKey = resourceType + resourceName;
+        final String resourceKey = resourceType + resourceName;
         Resource resource = globalCache.get(resourceKey);
 
         if (resource != null)
@@ -312,7 +362,14 @@ public class ResourceManagerImpl implements ResourceManager
                      *
                      * See VELOCITY-606, VELOCITY-595 and VELOCITY-24
                      */
-                    resource = refreshResource(resource, encoding);
+                    if (refreshExecutor != null)
+                    {
+                        scheduleRefresh(resourceKey, resource, encoding);
+                    }
+                    else
+                    {
+                        resource = refreshResource(resource, encoding);
+                    }
                 }
             }
             catch (ResourceNotFoundException rnfe)
@@ -344,12 +401,22 @@ public class ResourceManagerImpl implements ResourceManager
             {
                 /*
                  *  it's not in the cache, so load it.
-                 */    
-                resource = loadResource(resourceName, resourceType, encoding);
-
-                if (resource.getResourceLoader().isCachingOn())
+                 *  a loading cache makes sure only one thread does
+                 */
+                if (globalCache instanceof LoadingResourceCache)
+                {
+                    resource = ((LoadingResourceCache) globalCache).get(resourceKey,
+                        new LoadingResourceCache.Loader()
+                        {
+                            public Resource load()
+                            {
+                                return loadAndCacheResource(resourceKey, resourceName, resourceType, encoding);
+                            }
+                        });
+                }
+                else
                 {
-                    globalCache.put(resourceKey, resource);
+                    resource = loadAndCacheResource(resourceKey, resourceName, resourceType, encoding);
                 }
             }
             catch (ResourceNotFoundException rnfe)
@@ -373,6 +440,32 @@ public class ResourceManagerImpl implements ResourceManager
         return resource;
     }
 
+    /**
+     * Loads a resource and puts it in the global cache if its loader
+     * has caching turned on.
+     */
+    private Resource loadAndCacheResource(String resourceKey, String resourceName, int resourceType, String encoding)
+    {
+        Resource resource = loadResource(resourceName, resourceType, encoding);
+
+        if (resource.getResourceLoader().isCachingOn())
+        {
+            globalCache.put(resourceKey, resource);
+        }
+        return resource;
+    }
+
+    /**
+     * Lets templates use the parsed template store, if there is one.
+     */
+    private void setParsedStore(Resource resource)
+    {
+        if (parsedStore != null && resource instanceof Template)
+        {
+            ((Template) resource).setParsedTemplateStore(parsedStore);
+        }
+    }
+
     /**
      * Create a new Resource of the specified type.
      *
@@ -404,6 +497,7 @@ public class ResourceManagerImpl implements ResourceManager
     {
         Resource resource = createResource(resourceName, resourceType);
         resource.setRuntimeServices(rsvc);
+        setParsedStore(resource);
         resource.setName(resourceName);
         resource.setEncoding(encoding);
 
@@ -472,6 +566,83 @@ public class ResourceManagerImpl implements ResourceManager
         }
     }
 
+    /**
+     * Stops the background refresh threads and closes the resource loaders.
+     * The manager must not be used afterwards.
+     * @since 1.8
+     */
+    public void close()
+    {
+        if (refreshExecutor != null)
+        {
+            refreshExecutor.shutdownNow();
+        }
+        for (Iterator it = resourceLoaders.iterator(); it.hasNext(); )
+        {
+            ((ResourceLoader) it.next()).close();
+        }
+    }
+
+    /**
+     * Queues the refresh of a cached resource on the background refresh threads,
+     * unless one is already pending. The cached resource stays in use until the
+     * refreshed one, fully processed, replaces it in the cache.
+     *
+     * @param  resourceKey  cache key of the resource
+     * @param  resource  resource to refresh
+     * @param  encoding  character encoding of the resource to refresh.
+     * @since 1.8
+     */
+    protected void scheduleRefresh(final String resourceKey, final Resource resource, final String encoding)
+    {
+        if (refreshing.putIfAbsent(resourceKey, resource) != null)
+        {
+            return;
+        }
+
+        /* restart the check interval, so that other requests do not ask again */
+        resource.touch();
+
+        try
+        {
+            refreshExecutor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        Resource refreshed = refreshResource(resource, encoding);
+                        if (refreshed != resource && refreshed.getResourceLoader().isCachingOn())
+                        {
+                            globalCache.put(resourceKey, refreshed);
+                        }
+                    }
+                    catch (ResourceNotFoundException rnfe)
+                    {
+                        /* the next request will look for it again */
+                        logger.debug("ResourceManager : '" + resource.getName() +
+                                     "' disappeared, removing it from the cache");
+                        globalCache.remove(resourceKey);
+                    }
+                    catch (RuntimeException re)
+                    {
+                        logger.error("ResourceManager : background refresh of '" + resource.getName() +
+                                     "' failed, keeping the cached version", re);
+                    }
+                    finally
+                    {
+                        refreshing.remove(resourceKey);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException ree)
+        {
+            refreshing.remove(resourceKey);
+            logger.debug("ResourceManager : could not schedule the refresh of '" + resource.getName() + "'", ree);
+        }
+    }
+
     /**
      * Takes an existing resource, and 'refreshes' it. This generally means that the source of the resource is checked for changes
      * according to some cache/check algorithm and if the resource changed, then the resource data is reloaded and re-parsed.
@@ -547,6 +718,7 @@ public class ResourceManagerImpl implements ResourceManager
                 ResourceFactory.getResource(resource.getName(), resource.getType());
 
             newResource.setRuntimeServices(rsvc);
+            setParsedStore(newResource);
             newResource.setName(resource.getName());
             newResource.setEncoding(resource.getEncoding());
             newResource.setResourceLoader(loader);
@@ -25,11 +25,27 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.collections.ExtendedProperties;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.VelocityException;
@@ -69,6 +85,21 @@ public class FileResourceLoader extends ResourceLoader
     /** Shall we inspect unicode files to see what encoding they contain?. */
     private boolean unicode = false;
 
+    /** Is the WatchService notifying us of the changes in the paths? */
+    private volatile boolean watching = false;
+
+    private WatchService watchService = null;
+
+    /** Watched directories: WatchKey to the {root, directory} paths. */
+    private final Map watchedDirectories = new ConcurrentHashMap();
+
+    /** Names of the templates loaded while watching, to their normalized form. */
+    private final Map watchedTemplates = new ConcurrentHashMap();
+
+    /** Names of the loaded templates whose file changed since it was last checked. */
+    private final Set pendingModifications =
+        Collections.newSetFromMap(new ConcurrentHashMap());
+
     /**
      * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#init(org.apache.commons.collections.ExtendedProperties)
      */
@@ -91,6 +122,14 @@ public class FileResourceLoader extends ResourceLoader
             logger.debug("Do unicode file recognition:  " + unicode);
         }
 
+        // with the watch service, the files are only checked once
+        // the file system reports a change
+        if (configuration.getBoolean("watch", false))
+        {
+            StringUtils.trimStrings(paths);
+            startWatching();
+        }
+
         if (logger.isDebugEnabled())
         {
             // trim spaces from all paths
@@ -163,12 +202,7 @@ public class FileResourceLoader extends ResourceLoader
 
             if (inputStream != null)
             {
-                /*
-                 * Store the path that this template came
-                 * from so that we can check its modification
-                 * time.
-                 */
-                templatePaths.put(templateName, path);
+                found(templateName, path, template);
                 return inputStream;
             }
         }
@@ -181,6 +215,79 @@ public class FileResourceLoader extends ResourceLoader
          throw new ResourceNotFoundException("FileResourceLoader : cannot find " + template);
     }
 
+    /**
+     * Finds the file a resource is loaded from, for callers which can use
+     * it directly (memory mapping...) instead of reading its stream.
+     *
+     * @param templateName name of the resource
+     * @return the readable file, or null if there is none or if a byte order
+     *         mark may have to be stripped from it (unicode mode)
+     * @since 1.8
+     */
+    public File getResourceFile(String templateName)
+    {
+        if (unicode || templateName == null)
+        {
+            return null;
+        }
+        String template = StringUtils.normalizePath(templateName);
+        if (template == null || template.length() == 0)
+        {
+            return null;
+        }
+
+        int size = paths.size();
+        for (int i = 0; i < size; i++)
+        {
+            String path = (String) paths.get(i);
+            File file = getFile(path, template);
+            if (file.isFile() && file.canRead())
+            {
+                found(templateName, path, template);
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the path holding a resource, and remembers it.
+     * @return the path, or null if the resource can not be found
+     */
+    private String locate(String templateName)
+    {
+        String template = StringUtils.normalizePath(templateName);
+        if (template == null || template.length() == 0)
+        {
+            return null;
+        }
+
+        int size = paths.size();
+        for (int i = 0; i < size; i++)
+        {
+            String path = (String) paths.get(i);
+            if (getFile(path, template).canRead())
+            {
+                found(templateName, path, template);
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store the path that this template came from so that we can check its
+     * modification time.
+     */
+    private void found(String templateName, String path, String template)
+    {
+        templatePaths.put(templateName, path);
+        if (watching)
+        {
+            watchedTemplates.put(templateName, template);
+        }
+    }
+
     /**
      * Overrides superclass for better performance.
      * @since 1.6
@@ -321,6 +428,8 @@ public class FileResourceLoader extends ResourceLoader
         boolean modified = true;
 
         String fileName = resource.getName();
+        pendingModifications.remove(fileName);
+
         String path = (String) templatePaths.get(fileName);
         File currentFile = null;
 
@@ -362,12 +471,244 @@ public class FileResourceLoader extends ResourceLoader
         return modified;
     }
 
+    /**
+     * Stops watching the template paths, if they were watched.
+     *
+     * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#close()
+     * @since 1.8
+     */
+    public void close()
+    {
+        closeWatchService();
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#isWatchingModifications()
+     * @since 1.8
+     */
+    public boolean isWatchingModifications()
+    {
+        return watching;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#isModificationPending(org.apache.velocity.runtime.resource.Resource)
+     * @since 1.8
+     */
+    public boolean isModificationPending(Resource resource)
+    {
+        return pendingModifications.contains(resource.getName());
+    }
+
+    /**
+     * Registers all the directories under the paths with a WatchService,
+     * and starts the thread marking the templates whose files change.
+     * If any path can not be watched, modifications are polled as usual.
+     */
+    private void startWatching()
+    {
+        try
+        {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Iterator it = paths.iterator(); it.hasNext(); )
+            {
+                String path = (String) it.next();
+                if (path.length() == 0)
+                {
+                    throw new IOException("absolute template names can not be watched");
+                }
+                Path root = new File(path).toPath().toAbsolutePath().normalize();
+                registerTree(root, root);
+            }
+        }
+        catch (IOException ioe)
+        {
+            logger.warn("FileResourceLoader : cannot watch the template paths, " +
+                        "falling back to checking the modification times", ioe);
+            closeWatchService();
+            return;
+        }
+
+        watching = true;
+        Thread watcher = new Thread(new Watcher(this, watchService), "velocity-file-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.debug("FileResourceLoader : watching the template paths for changes");
+    }
+
+    /**
+     * Registers a directory and its subdirectories.
+     */
+    private void registerTree(final Path root, Path directory)
+        throws IOException
+    {
+        if (!Files.isDirectory(directory))
+        {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor()
+        {
+            public FileVisitResult preVisitDirectory(Object dir, BasicFileAttributes attrs)
+                throws IOException
+            {
+                WatchKey key = ((Path) dir).register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, new Path[] { root, (Path) dir });
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Watcher thread loop. The thread only holds the loader weakly, and
+     * closes the WatchService once the loader has been discarded without
+     * being closed.
+     */
+    private static class Watcher implements Runnable
+    {
+        /** how often the watcher checks that the loader is still in use */
+        private static final long CHECK_SECONDS = 10;
+
+        private final WeakReference loader;
+        private final WatchService watchService;
+
+        Watcher(FileResourceLoader loader, WatchService watchService)
+        {
+            this.loader = new WeakReference(loader);
+            this.watchService = watchService;
+        }
+
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    WatchKey key = watchService.poll(CHECK_SECONDS, TimeUnit.SECONDS);
+                    FileResourceLoader owner = (FileResourceLoader) loader.get();
+                    if (owner == null)
+                    {
+                        watchService.close();
+                        return;
+                    }
+                    if (key != null)
+                    {
+                        owner.processEvents(key);
+                    }
+                }
+            }
+            catch (InterruptedException ie)
+            {
+                // stop watching
+            }
+            catch (ClosedWatchServiceException cwse)
+            {
+                // the loader has been closed
+            }
+            catch (IOException ioe)
+            {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * Marks the templates changed according to the events of a key.
+     */
+    private void processEvents(WatchKey key)
+    {
+        Path[] directory = (Path[]) watchedDirectories.get(key);
+        if (directory != null)
+        {
+            for (Iterator it = key.pollEvents().iterator(); it.hasNext(); )
+            {
+                WatchEvent event = (WatchEvent) it.next();
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                {
+                    /* events were lost, check everything */
+                    pendingModifications.addAll(watchedTemplates.keySet());
+                    continue;
+                }
+
+                Path changed = directory[1].resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+                {
+                    try
+                    {
+                        registerTree(directory[0], changed);
+                    }
+                    catch (IOException ioe)
+                    {
+                        logger.warn("FileResourceLoader : cannot watch " + changed, ioe);
+                    }
+                }
+                markModified(directory[0].relativize(changed));
+            }
+        }
+
+        if (!key.reset())
+        {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    /**
+     * Marks the loaded templates at or under the changed path.
+     */
+    private void markModified(Path relative)
+    {
+        StringBuffer name = new StringBuffer();
+        for (Iterator it = relative.iterator(); it.hasNext(); )
+        {
+            name.append('/').append(it.next());
+        }
+        String changed = name.toString();
+        String prefix = changed + '/';
+
+        for (Iterator it = watchedTemplates.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry entry = (Map.Entry) it.next();
+            String template = (String) entry.getValue();
+            if (template.equals(changed) || template.startsWith(prefix))
+            {
+                pendingModifications.add(entry.getKey());
+            }
+        }
+    }
+
+    private void closeWatchService()
+    {
+        watching = false;
+        if (watchService != null)
+        {
+            try
+            {
+                watchService.close();
+            }
+            catch (IOException ioe)
+            {
+                // Ignore
+            }
+        }
+    }
+
     /**
      * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#getLastModified(org.apache.velocity.runtime.resource.Resource)
      */
     public long getLastModified(Resource resource)
     {
         String path = (String) templatePaths.get(resource.getName());
+        if (path == null)
+        {
+            /* asked before the resource was read, as by the parsed template store */
+            path = locate(resource.getName());
+            if (path == null)
+            {
+                return 0;
+            }
+        }
         File file = getFile(path, resource.getName());
 
         if (file.canRead())
@@ -20,6 +20,7 @@ package org.apache.velocity.runtime.resource.loader;
  */
 
 import java.io.InputStream;
+import java.io.Reader;
 import org.apache.commons.collections.ExtendedProperties;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.VelocityException;
@@ -136,6 +137,24 @@ public abstract class ResourceLoader
     public abstract InputStream getResourceStream( String source )
         throws ResourceNotFoundException;
 
+    /**
+     * Get a Reader on the text of the resource, for loaders holding it as
+     * characters : the Runtime then reads it without going through bytes.
+     * Loaders returning null, as this default implementation does, are
+     * read through {@link #getResourceStream(String)}.
+     *
+     * @param source name of the resource
+     * @param encoding encoding the stream of the resource would be decoded with
+     * @return Reader on the text of the resource, or null
+     * @throws ResourceNotFoundException
+     * @since 1.8
+     */
+    public Reader getResourceReader( String source, String encoding )
+        throws ResourceNotFoundException
+    {
+        return null;
+    }
+
     /**
      * Given a template, check to see if the source of InputStream
      * has been modified.
@@ -175,6 +194,17 @@ public abstract class ResourceLoader
         isCachingOn = value;
     }
 
+    /**
+     * Releases what the loader holds beyond its resources, like threads or
+     * file system watches. Called when the runtime is shut down, after
+     * which the loader is not used anymore. This default implementation
+     * does nothing.
+     * @since 1.8
+     */
+    public void close()
+    {
+    }
+
     /**
      * The Runtime uses this to find out whether this
      * template loader wants the Runtime to cache
@@ -207,6 +237,34 @@ public abstract class ResourceLoader
         return modificationCheckInterval;
     }
 
+    /**
+     * Tells whether this loader is notified of the changes made to the
+     * sources of its resources, in which case they are no longer polled
+     * every modification check interval: they are only checked once
+     * {@link #isModificationPending(Resource)} reports a change.
+     *
+     * @return True if this loader watches its resources.
+     * @since 1.8
+     */
+    public boolean isWatchingModifications()
+    {
+        return false;
+    }
+
+    /**
+     * For loaders watching their resources, tells whether a change of the
+     * source of the given resource has been notified since it was last
+     * checked with {@link #isSourceModified(Resource)}.
+     *
+     * @param resource
+     * @return True if the resource must be checked.
+     * @since 1.8
+     */
+    public boolean isModificationPending(Resource resource)
+    {
+        return true;
+    }
+
     /**
      * Check whether any given resource exists. This is not really
      * a very efficient test and it can and should be overridden in the
@@ -21,6 +21,8 @@ package org.apache.velocity.runtime.resource.loader;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -208,6 +210,9 @@ public class StringResourceLoader extends ResourceLoader
     // the repository used internally by this resource loader
     protected StringResourceRepository repository;
 
+    /** whether bodies can be read without the stream round trip */
+    private final boolean readsBody = !overridesStream();
+
 
     /**
      * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#init(org.apache.commons.collections.ExtendedProperties)
@@ -352,18 +357,8 @@ public class StringResourceLoader extends ResourceLoader
     public InputStream getResourceStream(final String name)
             throws ResourceNotFoundException
     {
-        if (StringUtils.isEmpty(name))
-        {
-            throw new ResourceNotFoundException("No template name provided");
-        }
+        StringResource resource = getResource(name);
 
-        StringResource resource = this.repository.getStringResource(name);
-        
-        if(resource == null)
-        {
-            throw new ResourceNotFoundException("Could not locate resource '" + name + "'");
-        }
-        
         byte [] byteArray = null;
     	
         try
@@ -377,6 +372,63 @@ public class StringResourceLoader extends ResourceLoader
         }
     }
 
+    /**
+     * Gives the body of the resource as is when decoding it from
+     * {@link #getResourceStream(String)} would give it back unchanged :
+     * the resource has the requested encoding and its body can be encoded
+     * in it, or the body is plain ASCII and both encodings are ASCII based.
+     * Characters the encoding cannot represent still come out replaced,
+     * as they do through the stream. Subclasses overriding
+     * getResourceStream() keep being read through it.
+     *
+     * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#getResourceReader(java.lang.String, java.lang.String)
+     * @since 1.8
+     */
+    public Reader getResourceReader(final String name, final String encoding)
+            throws ResourceNotFoundException
+    {
+        if (!readsBody)
+        {
+            return null;
+        }
+        StringResource resource = getResource(name);
+        if (resource.decodesUnchanged(encoding))
+        {
+            return new StringReader(resource.getBody());
+        }
+        return null;
+    }
+
+    private boolean overridesStream()
+    {
+        try
+        {
+            return getClass().getMethod("getResourceStream", new Class[] { String.class })
+                .getDeclaringClass() != StringResourceLoader.class;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return true;
+        }
+    }
+
+    private StringResource getResource(final String name)
+            throws ResourceNotFoundException
+    {
+        if (StringUtils.isEmpty(name))
+        {
+            throw new ResourceNotFoundException("No template name provided");
+        }
+
+        StringResource resource = this.repository.getStringResource(name);
+
+        if(resource == null)
+        {
+            throw new ResourceNotFoundException("Could not locate resource '" + name + "'");
+        }
+        return resource;
+    }
+
     /**
      * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#isSourceModified(org.apache.velocity.runtime.resource.Resource)
      */
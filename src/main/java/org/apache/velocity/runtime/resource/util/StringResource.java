@@ -19,6 +19,8 @@ package org.apache.velocity.runtime.resource.util;
  * under the License.
  */
 
+import java.nio.charset.Charset;
+
 /**
  * Wrapper for Strings containing templates, allowing to add additional meta
  * data like timestamps.
@@ -39,6 +41,9 @@ public final class StringResource
     /** last modified ts */
     private long lastModified;
 
+    /** last check of the body against an encoding, until the body changes */
+    private volatile Check check = null;
+
     /**
      * convenience constructor; sets body to 'body' and sets lastModified to now
      * @param body
@@ -75,6 +80,7 @@ public final class StringResource
     {
         this.body = body;
         this.lastModified = System.currentTimeMillis();
+        this.check = null;
     }
 
     /**
@@ -103,5 +109,135 @@ public final class StringResource
     public void setEncoding(final String encoding)
     {
         this.encoding = encoding;
+        this.check = null;
+    }
+
+    /**
+     * Tells whether the body, encoded in the encoding of this resource,
+     * decodes back unchanged in the given encoding: both encodings are the
+     * same and can represent the body, or the body is plain ASCII and both
+     * encodings are ASCII based. The answer is kept until the body or the
+     * encoding of this resource changes.
+     *
+     * @param encoding encoding the body is read in
+     * @return true if the body decodes unchanged
+     * @since 1.8
+     */
+    public boolean decodesUnchanged(final String encoding)
+    {
+        if (encoding == null)
+        {
+            return false;
+        }
+        Check checked = check;
+        if (checked == null || !checked.encoding.equals(encoding))
+        {
+            checked = new Check(encoding, decodesUnchanged(body, this.encoding, encoding));
+            check = checked;
+        }
+        return checked.unchanged;
+    }
+
+    private static boolean decodesUnchanged(String body, String from, String to)
+    {
+        Charset source;
+        Charset target;
+        try
+        {
+            if (body == null || from == null || to == null ||
+                !Charset.isSupported(from) || !Charset.isSupported(to))
+            {
+                return false;
+            }
+            source = Charset.forName(from);
+            target = Charset.forName(to);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false;
+        }
+
+        if (source.equals(target))
+        {
+            return canEncode(body, source);
+        }
+        if (!isAsciiBased(source) || !isAsciiBased(target))
+        {
+            return false;
+        }
+        for (int i = 0; i < body.length(); i++)
+        {
+            if (body.charAt(i) >= 0x80)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean canEncode(String body, Charset charset)
+    {
+        String name = charset.name();
+        if (name.startsWith("UTF-"))
+        {
+            /* Unicode encodings represent anything but unpaired surrogates */
+            return !hasUnpairedSurrogate(body);
+        }
+        int limit = "US-ASCII".equals(name) ? 0x80 : "ISO-8859-1".equals(name) ? 0x100 : 0;
+        if (limit == 0)
+        {
+            return charset.canEncode() && charset.newEncoder().canEncode(body);
+        }
+        for (int i = 0; i < body.length(); i++)
+        {
+            if (body.charAt(i) >= limit)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasUnpairedSurrogate(String body)
+    {
+        int length = body.length();
+        for (int i = 0; i < length; i++)
+        {
+            char c = body.charAt(i);
+            if (Character.isHighSurrogate(c))
+            {
+                if (i + 1 == length || !Character.isLowSurrogate(body.charAt(i + 1)))
+                {
+                    return true;
+                }
+                i++;
+            }
+            else if (Character.isLowSurrogate(c))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAsciiBased(Charset charset)
+    {
+        String name = charset.name();
+        return "UTF-8".equals(name) || "ISO-8859-1".equals(name) || "US-ASCII".equals(name);
+    }
+
+    /**
+     * Result of checking the body against an encoding.
+     */
+    private static final class Check
+    {
+        final String encoding;
+        final boolean unchanged;
+
+        Check(String encoding, boolean unchanged)
+        {
+            this.encoding = encoding;
+            this.unchanged = unchanged;
+        }
     }
 }
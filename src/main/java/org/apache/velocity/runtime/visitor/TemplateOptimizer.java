@@ -0,0 +1,344 @@
+package org.apache.velocity.runtime.visitor;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.velocity.runtime.parser.node.ASTAddNode;
+import org.apache.velocity.runtime.parser.node.ASTAndNode;
+import org.apache.velocity.runtime.parser.node.ASTBlock;
+import org.apache.velocity.runtime.parser.node.ASTComment;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.ASTDivNode;
+import org.apache.velocity.runtime.parser.node.ASTEQNode;
+import org.apache.velocity.runtime.parser.node.ASTElseStatement;
+import org.apache.velocity.runtime.parser.node.ASTEscapedDirective;
+import org.apache.velocity.runtime.parser.node.ASTExpression;
+import org.apache.velocity.runtime.parser.node.ASTFalse;
+import org.apache.velocity.runtime.parser.node.ASTFloatingPointLiteral;
+import org.apache.velocity.runtime.parser.node.ASTGENode;
+import org.apache.velocity.runtime.parser.node.ASTGTNode;
+import org.apache.velocity.runtime.parser.node.ASTIfStatement;
+import org.apache.velocity.runtime.parser.node.ASTIntegerLiteral;
+import org.apache.velocity.runtime.parser.node.ASTLENode;
+import org.apache.velocity.runtime.parser.node.ASTLTNode;
+import org.apache.velocity.runtime.parser.node.ASTModNode;
+import org.apache.velocity.runtime.parser.node.ASTMulNode;
+import org.apache.velocity.runtime.parser.node.ASTNENode;
+import org.apache.velocity.runtime.parser.node.ASTNotNode;
+import org.apache.velocity.runtime.parser.node.ASTOrNode;
+import org.apache.velocity.runtime.parser.node.ASTSetDirective;
+import org.apache.velocity.runtime.parser.node.ASTStringLiteral;
+import org.apache.velocity.runtime.parser.node.ASTSubtractNode;
+import org.apache.velocity.runtime.parser.node.ASTText;
+import org.apache.velocity.runtime.parser.node.ASTTrue;
+import org.apache.velocity.runtime.parser.node.ASTprocess;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+/**
+ * Simplifies an initialized template tree, so that rendering it takes
+ * fewer node dispatches and writes :
+ * <ul>
+ * <li>adjacent text, comments and escaped directives are merged into a
+ * single text node, and comments rendering nothing are dropped;</li>
+ * <li>#if/#elseif conditions made of literals only are evaluated once, and
+ * the statement replaced by the content of the branch taken;</li>
+ * <li>#set right hand sides made of literals only are evaluated once.</li>
+ * </ul>
+ * Constant expressions are evaluated with the same nodes as at render time,
+ * so their outcome does not change; one that fails is left alone. Macro
+ * definitions are not touched since their body is owned by the macro.
+ * The context given to {@link #setContext} is the one used to
+ * initialize the tree.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class TemplateOptimizer extends BaseVisitor
+{
+    /**
+     * @see org.apache.velocity.runtime.visitor.BaseVisitor#visit(org.apache.velocity.runtime.parser.node.ASTprocess, java.lang.Object)
+     */
+    public Object visit(ASTprocess node, Object data)
+    {
+        data = node.childrenAccept(this, data);
+        optimizeChildren(node);
+        return data;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.visitor.BaseVisitor#visit(org.apache.velocity.runtime.parser.node.ASTBlock, java.lang.Object)
+     */
+    public Object visit(ASTBlock node, Object data)
+    {
+        data = node.childrenAccept(this, data);
+        optimizeChildren(node);
+        return data;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.visitor.BaseVisitor#visit(org.apache.velocity.runtime.parser.node.ASTDirective, java.lang.Object)
+     */
+    public Object visit(ASTDirective node, Object data)
+    {
+        if ("macro".equals(node.getDirectiveName()))
+        {
+            return data;
+        }
+        return super.visit(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.visitor.BaseVisitor#visit(org.apache.velocity.runtime.parser.node.ASTSetDirective, java.lang.Object)
+     */
+    public Object visit(ASTSetDirective node, Object data)
+    {
+        Node right = node.jjtGetChild(1);
+        if (isConstant(right))
+        {
+            try
+            {
+                Object value = right.value(context);
+
+                /* only immutable values can be shared by all renderings */
+                if (value instanceof String || value instanceof Number || value instanceof Boolean)
+                {
+                    node.setConstantValue(value);
+                }
+            }
+            catch (RuntimeException e)
+            {
+                // left to fail at render time
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Folds the constant #if statements among the children of the given
+     * node, then merges runs of static nodes.
+     */
+    private void optimizeChildren(SimpleNode node)
+    {
+        int k = node.jjtGetNumChildren();
+        List nodes = new ArrayList(k);
+        boolean changed = false;
+
+        for (int i = 0; i < k; i++)
+        {
+            Node child = node.jjtGetChild(i);
+            if (child instanceof ASTIfStatement)
+            {
+                Node taken = foldIf((ASTIfStatement) child);
+                if (taken != child)
+                {
+                    changed = true;
+                    for (int j = 0; taken != null && j < taken.jjtGetNumChildren(); j++)
+                    {
+                        nodes.add(taken.jjtGetChild(j));
+                    }
+                    continue;
+                }
+            }
+            nodes.add(child);
+        }
+
+        List merged = new ArrayList(nodes.size());
+        List run = new ArrayList();
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            Node child = (Node) nodes.get(i);
+            if (child instanceof ASTComment && staticText(child).length() == 0)
+            {
+                changed = true;
+            }
+            else if (child instanceof ASTText || child instanceof ASTComment
+                     || child instanceof ASTEscapedDirective)
+            {
+                run.add(child);
+            }
+            else
+            {
+                changed |= flushRun(run, merged);
+                merged.add(child);
+            }
+        }
+        changed |= flushRun(run, merged);
+
+        if (changed)
+        {
+            node.setChildren((Node[]) merged.toArray(new Node[merged.size()]));
+        }
+    }
+
+    /**
+     * Replaces a run of static nodes by its first text node holding the
+     * text of the whole run.
+     *
+     * @return true if the run was merged
+     */
+    private boolean flushRun(List run, List merged)
+    {
+        ASTText host = null;
+        for (int i = 0; i < run.size() && host == null; i++)
+        {
+            if (run.get(i) instanceof ASTText)
+            {
+                host = (ASTText) run.get(i);
+            }
+        }
+
+        boolean changed = false;
+        if (host != null && run.size() > 1)
+        {
+            StringBuffer text = new StringBuffer();
+            for (int i = 0; i < run.size(); i++)
+            {
+                text.append(staticText((Node) run.get(i)));
+            }
+            host.setText(text.toString().toCharArray());
+            merged.add(host);
+            changed = true;
+        }
+        else
+        {
+            merged.addAll(run);
+        }
+        run.clear();
+        return changed;
+    }
+
+    private String staticText(Node node)
+    {
+        StringWriter writer = new StringWriter();
+        try
+        {
+            node.render(context, writer);
+        }
+        catch (IOException ioe)
+        {
+            // cannot happen with a StringWriter
+        }
+        return writer.toString();
+    }
+
+    /**
+     * @return the statement itself if the branch taken is only known at
+     *         render time, else the block of the branch taken, or null if
+     *         none is
+     */
+    private Node foldIf(ASTIfStatement node)
+    {
+        Boolean condition = constantCondition(node.jjtGetChild(0));
+        if (condition == null)
+        {
+            return node;
+        }
+        else if (condition.booleanValue())
+        {
+            return node.jjtGetChild(1);
+        }
+
+        int k = node.jjtGetNumChildren();
+        for (int i = 2; i < k; i++)
+        {
+            Node branch = node.jjtGetChild(i);
+            if (branch instanceof ASTElseStatement)
+            {
+                return branch.jjtGetChild(0);
+            }
+
+            condition = constantCondition(branch.jjtGetChild(0));
+            if (condition == null)
+            {
+                return node;
+            }
+            else if (condition.booleanValue())
+            {
+                return branch.jjtGetChild(1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the value of a constant condition, or null if not constant
+     */
+    private Boolean constantCondition(Node expression)
+    {
+        if (!isConstant(expression))
+        {
+            return null;
+        }
+        try
+        {
+            return Boolean.valueOf(expression.evaluate(context));
+        }
+        catch (RuntimeException e)
+        {
+            // left to fail at render time
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the value of the node only depends on literals
+     */
+    private static boolean isConstant(Node node)
+    {
+        if (node instanceof ASTTrue || node instanceof ASTFalse
+            || node instanceof ASTIntegerLiteral || node instanceof ASTFloatingPointLiteral)
+        {
+            return true;
+        }
+        else if (node instanceof ASTStringLiteral)
+        {
+            /* a string literal is never interpolated unless it could be */
+            String image = node.getFirstToken().image;
+            return image.startsWith("'")
+                || (image.indexOf('$') == -1 && image.indexOf('#') == -1);
+        }
+        else if (node instanceof ASTExpression
+                 || node instanceof ASTAndNode || node instanceof ASTOrNode
+                 || node instanceof ASTNotNode
+                 || node instanceof ASTEQNode || node instanceof ASTNENode
+                 || node instanceof ASTLTNode || node instanceof ASTGTNode
+                 || node instanceof ASTLENode || node instanceof ASTGENode
+                 || node instanceof ASTAddNode || node instanceof ASTSubtractNode
+                 || node instanceof ASTMulNode || node instanceof ASTDivNode
+                 || node instanceof ASTModNode)
+        {
+            int k = node.jjtGetNumChildren();
+            for (int i = 0; i < k; i++)
+            {
+                if (!isConstant(node.jjtGetChild(i)))
+                {
+                    return false;
+                }
+            }
+            return k > 0;
+        }
+        return false;
+    }
+}
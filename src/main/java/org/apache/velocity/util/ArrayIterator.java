@@ -107,6 +107,18 @@ public class ArrayIterator implements Iterator
         return (pos < size );
     }
 
+    /**
+     * Gives access to the iterated array, so that callers can loop
+     * with an index rather than through this iterator.
+     *
+     * @return The iterated array.
+     * @since 1.8
+     */
+    public Object getArray()
+    {
+        return array;
+    }
+
     /**
      * No op--merely added to satify the <code>Iterator</code> interface.
      */
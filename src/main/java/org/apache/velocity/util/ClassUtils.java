@@ -27,6 +27,7 @@ import org.apache.velocity.exception.VelocityException;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
 import org.apache.velocity.runtime.parser.node.ASTMethod.MethodCacheKey;
 import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.InlineCache;
 import org.apache.velocity.util.introspection.IntrospectionCacheData;
 import org.apache.velocity.util.introspection.VelMethod;
 
@@ -172,45 +173,54 @@ public class ClassUtils {
   public static VelMethod getMethod(String methodName, Object[] params,
                                     Class[] paramClasses, Object o, InternalContextAdapter context,
                                     SimpleNode node, boolean strictRef)
+  {
+    return getMethod(methodName, params, paramClasses, o, context, node, strictRef, null);
+  }
+
+  /**
+   * Lookup a VelMethod object given the method signature that is specified in
+   * the passed in parameters.  When an inline cache is given, it is searched
+   * first and filled on a miss, so the result is shared by all merges;
+   * otherwise the per-merge cache of the context is used.
+   * @param methodName Name of method
+   * @param params Array of objects that are parameters to the method
+   * @param paramClasses Array of Classes coresponding to the types in params.
+   * @param o Object to introspect for the given method.
+   * @param context Context from which the method cache is aquirred
+   * @param node ASTNode, used for error reporting.
+   * @param strictRef If no method is found, throw an exception, never return null in this case
+   * @param inlineCache call site cache of the node, or null
+   * @return VelMethod object if the object is found, null if not matching method is found
+   * @since 1.8
+   */
+  public static VelMethod getMethod(String methodName, Object[] params,
+                                    Class[] paramClasses, Object o, InternalContextAdapter context,
+                                    SimpleNode node, boolean strictRef, InlineCache inlineCache)
   {
     VelMethod method = null;
     try
     {
-      /*
-       * check the cache
-       */
-      MethodCacheKey mck = new MethodCacheKey(methodName, paramClasses);
-      IntrospectionCacheData icd = context.icacheGet(mck);
-
-      /*
-       * like ASTIdentifier, if we have cache information, and the Class of
-       * Object o is the same as that in the cache, we are safe.
-       */
-      if (icd != null && (o != null && icd.contextData == o.getClass()))
-      {
-
-        /*
-         * get the method from the cache
-         */
-        method = (VelMethod) icd.thingy;
-      } 
-      else
+      if (inlineCache != null && !inlineCache.isMegamorphic())
       {
-        /*
-         * otherwise, do the introspection, and then cache it
-         */
-        method = node.getRuntimeServices().getUberspect().getMethod(o, methodName, params,
-           new Info(node.getTemplateName(), node.getLine(), node.getColumn()));
-
-        if ((method != null) && (o != null))
+        if (o != null)
         {
-          icd = new IntrospectionCacheData();
-          icd.contextData = o.getClass();
-          icd.thingy = method;
+          method = (VelMethod) inlineCache.get(o.getClass(), paramClasses);
+        }
+        if (method == null)
+        {
+          method = node.getRuntimeServices().getUberspect().getMethod(o, methodName, params,
+             new Info(node.getTemplateName(), node.getLine(), node.getColumn()));
 
-          context.icachePut(mck, icd);
+          if (method != null && method.isCacheable() && o != null)
+          {
+            inlineCache.put(o.getClass(), paramClasses, method);
+          }
         }
       }
+      else
+      {
+        method = getContextCachedMethod(methodName, params, paramClasses, o, context, node);
+      }
 
       /*
        * if we still haven't gotten the method, either we are calling a method
@@ -269,5 +279,55 @@ public class ClassUtils {
 
     return method;
   }
+
+  /**
+   * Looks up a method in the per-merge introspection cache of the context,
+   * doing the introspection on a miss.
+   */
+  private static VelMethod getContextCachedMethod(String methodName, Object[] params,
+                                                  Class[] paramClasses, Object o,
+                                                  InternalContextAdapter context, SimpleNode node)
+    throws Exception
+  {
+    VelMethod method = null;
+
+    /*
+     * check the cache
+     */
+    MethodCacheKey mck = new MethodCacheKey(methodName, paramClasses);
+    IntrospectionCacheData icd = context.icacheGet(mck);
+
+    /*
+     * like ASTIdentifier, if we have cache information, and the Class of
+     * Object o is the same as that in the cache, we are safe.
+     */
+    if (icd != null && (o != null && icd.contextData == o.getClass()))
+    {
+
+      /*
+       * get the method from the cache
+       */
+      method = (VelMethod) icd.thingy;
+    } 
+    else
+    {
+      /*
+       * otherwise, do the introspection, and then cache it
+       */
+      method = node.getRuntimeServices().getUberspect().getMethod(o, methodName, params,
+         new Info(node.getTemplateName(), node.getLine(), node.getColumn()));
+
+      if ((method != null) && (o != null))
+      {
+        icd = new IntrospectionCacheData();
+        icd.contextData = o.getClass();
+        icd.thingy = method;
+
+        context.icachePut(mck, icd);
+      }
+    }
+
+    return method;
+  }
     
 }
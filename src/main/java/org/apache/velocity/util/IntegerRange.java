@@ -0,0 +1,132 @@
+package org.apache.velocity.util;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ *  <p>
+ *  A read-only List of the consecutive integers between two bounds,
+ *  as produced by the range operator [n..m]. Its elements are computed
+ *  on demand, so that a range takes the same memory whatever its size.
+ *  </p>
+ *  <p>
+ *  The #foreach() directive recognizes it and loops over it with
+ *  a primitive counter.
+ *  </p>
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class IntegerRange extends AbstractList implements RandomAccess
+{
+    /**
+     * The first element, the step (1 or -1) and the number of elements.
+     */
+    private final int first;
+    private final int delta;
+    private final int size;
+
+    /**
+     * Creates the range from <code>first</code> to <code>last</code>,
+     * both included, in increasing or decreasing order.
+     *
+     * @param first first element of the range
+     * @param last last element of the range
+     * @throws IllegalArgumentException if the range holds more than
+     *         Integer.MAX_VALUE elements
+     */
+    public IntegerRange(int first, int last)
+    {
+        long length = Math.abs((long) last - first) + 1;
+        if (length > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Range [" + first + ".." + last
+                + "] has more than " + Integer.MAX_VALUE + " elements");
+        }
+        this.first = first;
+        this.delta = (first >= last) ? -1 : 1;
+        this.size = (int) length;
+    }
+
+    /**
+     * @param index index of the element
+     * @return the element as a primitive int
+     * @throws IndexOutOfBoundsException if the index is out of the range
+     */
+    public int getInt(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return first + index * delta;
+    }
+
+    /**
+     * @see java.util.List#get(int)
+     */
+    public Object get(int index)
+    {
+        return Integer.valueOf(getInt(index));
+    }
+
+    /**
+     * @see java.util.Collection#size()
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @see java.util.List#indexOf(java.lang.Object)
+     */
+    public int indexOf(Object o)
+    {
+        if (o instanceof Integer)
+        {
+            long offset = ((long) ((Integer) o).intValue() - first) * delta;
+            if (offset >= 0 && offset < size)
+            {
+                return (int) offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @see java.util.List#lastIndexOf(java.lang.Object)
+     */
+    public int lastIndexOf(Object o)
+    {
+        return indexOf(o);
+    }
+
+    /**
+     * @see java.util.Collection#contains(java.lang.Object)
+     */
+    public boolean contains(Object o)
+    {
+        return indexOf(o) >= 0;
+    }
+}
@@ -0,0 +1,138 @@
+package org.apache.velocity.util;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ *  <p>
+ *  An Iterator over a {@link RandomAccess} List, walking it by index.
+ *  Like {@link ArrayIterator}, it gives access to the iterated list so
+ *  that the #foreach() directive can loop with an index rather than
+ *  through this iterator.
+ *  </p>
+ *  <p>
+ *  The size of the list is recorded when the iterator is created, and
+ *  a {@link ConcurrentModificationException} is thrown if it changes
+ *  other than through {@link #remove()}.  Changes which keep the size
+ *  are not detected, so this iterator should only be used on lists
+ *  which are not shared between threads.
+ *  </p>
+ *  <p>
+ *  WARNING : this class's operations are NOT synchronized.
+ *  It is meant to be used in a single thread, newly created
+ *  for each use in the #foreach() directive.
+ *  </p>
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class RandomAccessIterator implements Iterator
+{
+    /**
+     * The list to iterate.
+     */
+    private final List list;
+
+    /**
+     * The position of the next element, and of the last returned one.
+     */
+    private int pos = 0;
+    private int last = -1;
+
+    /**
+     * The expected size of the list.
+     */
+    private int size;
+
+    /**
+     * @param list list to iterate, which should implement RandomAccess
+     */
+    public RandomAccessIterator(List list)
+    {
+        this.list = list;
+        this.size = list.size();
+    }
+
+    /**
+     * @see java.util.Iterator#hasNext()
+     */
+    public boolean hasNext()
+    {
+        checkSize();
+        return pos < size;
+    }
+
+    /**
+     * @see java.util.Iterator#next()
+     */
+    public Object next()
+    {
+        checkSize();
+        if (pos < size)
+        {
+            last = pos;
+            return list.get(pos++);
+        }
+        throw new NoSuchElementException("No more elements: " + pos +
+                                         " / " + size);
+    }
+
+    /**
+     * @see java.util.Iterator#remove()
+     */
+    public void remove()
+    {
+        if (last < 0)
+        {
+            throw new IllegalStateException();
+        }
+        checkSize();
+        list.remove(last);
+        size--;
+        pos = last;
+        last = -1;
+    }
+
+    /**
+     * @throws ConcurrentModificationException if the size of the list
+     *         has changed
+     */
+    private void checkSize()
+    {
+        if (list.size() != size)
+        {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * @return The iterated list.
+     */
+    public List getList()
+    {
+        return list;
+    }
+}
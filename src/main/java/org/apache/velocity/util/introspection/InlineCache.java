@@ -0,0 +1,191 @@
+package org.apache.velocity.util.introspection;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+/**
+ * Thread-safe polymorphic inline cache, held by an AST node to remember
+ * the result of introspection (a {@link VelPropertyGet} or a
+ * {@link VelMethod}) across merges.
+ *
+ * Entries are keyed by the exact runtime class of the receiver and, for
+ * method calls, by the runtime classes of the arguments, so a call site
+ * that sees a new receiver class simply misses and resolves again. Once
+ * more than <code>maxEntries</code> distinct shapes have been seen, the
+ * call site is considered megamorphic and the cache stops accepting
+ * entries, leaving the caller on its regular lookup path.
+ *
+ * Reads are a volatile read plus a short identity scan and take no lock.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public final class InlineCache
+{
+    /**
+     * Default number of receiver shapes kept per call site.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 4;
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private final int maxEntries;
+
+    private volatile Entry[] entries = EMPTY;
+
+    private volatile boolean megamorphic = false;
+
+    /**
+     * Creates a cache holding at most {@link #DEFAULT_MAX_ENTRIES} shapes.
+     */
+    public InlineCache()
+    {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries maximum number of shapes cached before the call
+     *        site is treated as megamorphic
+     */
+    public InlineCache(int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param receiver class of the receiver
+     * @param argClasses classes of the arguments, or null for a property
+     * @return the cached introspection result, or null on a miss
+     */
+    public Object get(Class receiver, Class[] argClasses)
+    {
+        Entry[] current = entries;
+        for (int i = 0; i < current.length; i++)
+        {
+            Entry entry = current[i];
+            if (entry.receiver == receiver && sameClasses(entry.argClasses, argClasses))
+            {
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remembers an introspection result. The argument class array is
+     * copied, so the caller may reuse it.
+     *
+     * @param receiver class of the receiver
+     * @param argClasses classes of the arguments, or null for a property
+     * @param value the introspection result
+     */
+    public void put(Class receiver, Class[] argClasses, Object value)
+    {
+        if (megamorphic || receiver == null || value == null)
+        {
+            return;
+        }
+
+        Class[] key = argClasses == null ? null : (Class[]) argClasses.clone();
+
+        synchronized (this)
+        {
+            Entry[] current = entries;
+            for (int i = 0; i < current.length; i++)
+            {
+                if (current[i].receiver == receiver && sameClasses(current[i].argClasses, key))
+                {
+                    return;
+                }
+            }
+
+            if (current.length >= maxEntries)
+            {
+                megamorphic = true;
+                entries = EMPTY;
+                return;
+            }
+
+            Entry[] grown = new Entry[current.length + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            grown[current.length] = new Entry(receiver, key, value);
+            entries = grown;
+        }
+    }
+
+    /**
+     * @return true if this call site has seen too many shapes to be cached
+     */
+    public boolean isMegamorphic()
+    {
+        return megamorphic;
+    }
+
+    /**
+     * @return number of shapes currently cached
+     */
+    public int size()
+    {
+        return entries.length;
+    }
+
+    /**
+     * Drops all entries, and gives the call site a new chance to be cached.
+     */
+    public synchronized void clear()
+    {
+        entries = EMPTY;
+        megamorphic = false;
+    }
+
+    private static boolean sameClasses(Class[] a, Class[] b)
+    {
+        if (a == b)
+        {
+            return true;
+        }
+        if (a == null || b == null || a.length != b.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++)
+        {
+            if (a[i] != b[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry
+    {
+        final Class receiver;
+        final Class[] argClasses;
+        final Object value;
+
+        Entry(Class receiver, Class[] argClasses, Object value)
+        {
+            this.receiver = receiver;
+            this.argClasses = argClasses;
+            this.value = value;
+        }
+    }
+}
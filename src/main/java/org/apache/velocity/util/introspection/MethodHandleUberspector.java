@@ -0,0 +1,372 @@
+package org.apache.velocity.util.introspection;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.parser.node.AbstractExecutor;
+import org.apache.velocity.runtime.parser.node.BooleanPropertyExecutor;
+import org.apache.velocity.runtime.parser.node.GetExecutor;
+import org.apache.velocity.runtime.parser.node.PropertyExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chainable uberspector that binds the methods resolved by the wrapped
+ * uberspector to {@link MethodHandle}s once, at resolution time, so that
+ * property reads and method calls no longer go through
+ * {@link Method#invoke(Object, Object[])} and its access checks.
+ *
+ * <p>Only results of the default introspection ({@link UberspectImpl.VelMethodImpl}
+ * and {@link UberspectImpl.VelGetterImpl} over bean, <code>get("foo")</code> and
+ * boolean getters) are converted; anything else, or any method that is not
+ * accessible through the public lookup, is returned unchanged. Varargs and
+ * array-as-list handling are kept, since the converted methods still go
+ * through {@link UberspectImpl.VelMethodImpl#invoke(Object, Object[])}.</p>
+ *
+ * <p>To use it, chain it after the default uberspector:
+ * <pre>
+ * runtime.introspector.uberspect = org.apache.velocity.util.introspection.UberspectImpl,\
+ *     org.apache.velocity.util.introspection.MethodHandleUberspector
+ * </pre>
+ * When it is the only uberspector configured, it wraps a default
+ * {@link UberspectImpl} itself.</p>
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class MethodHandleUberspector extends AbstractChainableUberspector
+{
+    Logger logger = LoggerFactory.getLogger( MethodHandleUberspector.class );
+
+    private static final MethodType GETTER_TYPE =
+        MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType METHOD_TYPE =
+        MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private static final Class[] NUMERIC_TYPES = {
+        Byte.TYPE, Short.TYPE, Integer.TYPE, Long.TYPE, Float.TYPE, Double.TYPE
+    };
+
+    private static final Class[] NUMERIC_WRAPPERS = {
+        Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class
+    };
+
+    private final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+    /**
+     * @see org.apache.velocity.util.introspection.AbstractChainableUberspector#init(org.apache.velocity.runtime.RuntimeInstance)
+     */
+    public void init(RuntimeInstance ri)
+    {
+        if (inner == null)
+        {
+            inner = new UberspectImpl();
+        }
+        super.init(ri);
+    }
+
+    /**
+     * @see org.apache.velocity.util.introspection.AbstractChainableUberspector#getMethod(java.lang.Object, java.lang.String, java.lang.Object[], org.apache.velocity.util.introspection.Info)
+     */
+    public VelMethod getMethod(Object obj, String methodName, Object[] args, Info i)
+        throws Exception
+    {
+        VelMethod method = super.getMethod(obj, methodName, args, i);
+        if (method != null && method.getClass() == UberspectImpl.VelMethodImpl.class)
+        {
+            UberspectImpl.VelMethodImpl impl = (UberspectImpl.VelMethodImpl) method;
+            MethodHandle handle = methodHandle(impl.method);
+            if (handle != null)
+            {
+                return new VelMethodHandleImpl(impl.method, impl.wrapArray, handle);
+            }
+        }
+        return method;
+    }
+
+    /**
+     * @see org.apache.velocity.util.introspection.AbstractChainableUberspector#getPropertyGet(java.lang.Object, java.lang.String, org.apache.velocity.util.introspection.Info)
+     */
+    public VelPropertyGet getPropertyGet(Object obj, String identifier, Info i)
+        throws Exception
+    {
+        VelPropertyGet getter = super.getPropertyGet(obj, identifier, i);
+        if (getter != null && getter.getClass() == UberspectImpl.VelGetterImpl.class)
+        {
+            AbstractExecutor executor = ((UberspectImpl.VelGetterImpl) getter).getExecutor;
+            MethodHandle handle = null;
+
+            if (executor.getClass() == PropertyExecutor.class
+                || executor.getClass() == BooleanPropertyExecutor.class)
+            {
+                handle = getterHandle(executor.getMethod(), null);
+            }
+            else if (executor.getClass() == GetExecutor.class)
+            {
+                handle = getterHandle(executor.getMethod(), identifier);
+            }
+
+            if (handle != null)
+            {
+                return new VelGetterHandleImpl(executor.getMethod(), handle);
+            }
+        }
+        return getter;
+    }
+
+    /**
+     * @return a handle of type (Object, Object[])Object, or null if the
+     *         method can not be bound
+     */
+    private MethodHandle methodHandle(Method method)
+    {
+        try
+        {
+            MethodHandle handle = lookup.unreflect(method);
+            if (Modifier.isStatic(method.getModifiers()))
+            {
+                /* the receiver (the Class object) is ignored, as with reflection */
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return handle.asSpreader(Object[].class, method.getParameterTypes().length)
+                .asType(METHOD_TYPE);
+        }
+        catch (IllegalAccessException iae)
+        {
+            logger.debug("Could not bind a method handle to " + method + ", using reflection");
+            return null;
+        }
+    }
+
+    /**
+     * @return a handle of type (Object)Object, or null if the getter can
+     *         not be bound
+     */
+    private MethodHandle getterHandle(Method method, String property)
+    {
+        if (method == null || Modifier.isStatic(method.getModifiers()))
+        {
+            return null;
+        }
+        try
+        {
+            MethodHandle handle = lookup.unreflect(method);
+            if (property != null)
+            {
+                handle = MethodHandles.insertArguments(handle, 1, new Object[] { property });
+            }
+            return handle.asType(GETTER_TYPE);
+        }
+        catch (IllegalAccessException iae)
+        {
+            logger.debug("Could not bind a method handle to " + method + ", using reflection");
+            return null;
+        }
+    }
+
+    /**
+     * Checks the receiver of an instance method the way Method.invoke() does.
+     */
+    static void checkReceiver(Method method, Object o)
+    {
+        if (o == null)
+        {
+            throw new NullPointerException("null receiver for " + method);
+        }
+        if (!method.getDeclaringClass().isInstance(o))
+        {
+            throw new IllegalArgumentException("object is not an instance of declaring class "
+                                               + method.getDeclaringClass().getName());
+        }
+    }
+
+    /**
+     * Checks arguments the way Method.invoke() does, so that a mismatch is
+     * reported as an IllegalArgumentException and not as an exception thrown
+     * by the method : once they pass, the conversions of the handle cannot fail.
+     */
+    static void checkArguments(Class[] parameterTypes, Object[] actual)
+    {
+        int count = actual == null ? 0 : actual.length;
+        if (count != parameterTypes.length)
+        {
+            throw new IllegalArgumentException("wrong number of arguments");
+        }
+        for (int i = 0; i < count; i++)
+        {
+            Class type = parameterTypes[i];
+            Object arg = actual[i];
+            if (type.isPrimitive() ? !isConvertible(arg, type)
+                : arg != null && !type.isInstance(arg))
+            {
+                throw new IllegalArgumentException("argument type mismatch");
+            }
+        }
+    }
+
+    /**
+     * @return whether the argument unboxes to the primitive type, possibly
+     *         with a widening conversion
+     */
+    private static boolean isConvertible(Object arg, Class type)
+    {
+        if (arg == null)
+        {
+            return false;
+        }
+        Class c = arg.getClass();
+        if (type == Boolean.TYPE)
+        {
+            return c == Boolean.class;
+        }
+        int rank = rank(c);
+        int target = rank(type);
+        if (c == Character.class)
+        {
+            /* char only widens to int and above */
+            return type == Character.TYPE || target >= rank(Integer.TYPE);
+        }
+        if (type == Character.TYPE)
+        {
+            return false;
+        }
+        return rank >= 0 && rank <= target;
+    }
+
+    /**
+     * @return position of a numeric primitive type or wrapper in the byte,
+     *         short, int, long, float, double widening order, or -1
+     */
+    private static int rank(Class c)
+    {
+        for (int i = 0; i < NUMERIC_TYPES.length; i++)
+        {
+            if (c == NUMERIC_TYPES[i] || c == NUMERIC_WRAPPERS[i])
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * VelMethod invoking its method through a method handle, once array
+     * wrapping and varargs handling have been done by {@link UberspectImpl.VelMethodImpl}.
+     */
+    public static class VelMethodHandleImpl extends UberspectImpl.VelMethodImpl
+    {
+        private final MethodHandle handle;
+        private final Class[] parameterTypes;
+
+        /**
+         * @param method the resolved method
+         * @param wrapArray whether the receiver is an array seen as a list
+         * @param handle handle of type (Object, Object[])Object bound to the method
+         */
+        public VelMethodHandleImpl(Method method, boolean wrapArray, MethodHandle handle)
+        {
+            super(method, wrapArray);
+            this.handle = handle;
+            this.parameterTypes = method.getParameterTypes();
+        }
+
+        /**
+         * @see org.apache.velocity.util.introspection.UberspectImpl.VelMethodImpl#doInvoke(java.lang.Object, java.lang.Object[])
+         */
+        protected Object doInvoke(Object o, Object[] actual) throws Exception
+        {
+            if (!Modifier.isStatic(method.getModifiers()))
+            {
+                checkReceiver(method, o);
+            }
+            checkArguments(parameterTypes, actual);
+            try
+            {
+                return (Object) handle.invokeExact(o, actual);
+            }
+            catch (Throwable t)
+            {
+                /* same contract as Method.invoke() */
+                throw new InvocationTargetException(t);
+            }
+        }
+    }
+
+    /**
+     * VelPropertyGet invoking a getter through a method handle.
+     */
+    public static class VelGetterHandleImpl implements VelPropertyGet
+    {
+        private final Method method;
+        private final MethodHandle handle;
+
+        /**
+         * @param method the getter method
+         * @param handle handle of type (Object)Object bound to the getter
+         */
+        public VelGetterHandleImpl(Method method, MethodHandle handle)
+        {
+            this.method = method;
+            this.handle = handle;
+        }
+
+        /**
+         * @see org.apache.velocity.util.introspection.VelPropertyGet#invoke(java.lang.Object)
+         */
+        public Object invoke(Object o) throws Exception
+        {
+            checkReceiver(method, o);
+            try
+            {
+                return (Object) handle.invokeExact(o);
+            }
+            catch (Throwable t)
+            {
+                /* same contract as Method.invoke() */
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        /**
+         * @see org.apache.velocity.util.introspection.VelPropertyGet#isCacheable()
+         */
+        public boolean isCacheable()
+        {
+            return true;
+        }
+
+        /**
+         * @see org.apache.velocity.util.introspection.VelPropertyGet#getMethodName()
+         */
+        public String getMethodName()
+        {
+            return method.getName();
+        }
+    }
+}
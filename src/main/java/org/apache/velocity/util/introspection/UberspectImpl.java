@@ -21,9 +21,12 @@ package org.apache.velocity.util.introspection;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import org.apache.velocity.exception.VelocityException;
 import org.apache.velocity.runtime.RuntimeInstance;
@@ -39,6 +42,8 @@ import org.apache.velocity.runtime.parser.node.SetPropertyExecutor;
 import org.apache.velocity.util.ArrayIterator;
 import org.apache.velocity.util.ArrayListWrapper;
 import org.apache.velocity.util.EnumerationIterator;
+import org.apache.velocity.util.IntegerRange;
+import org.apache.velocity.util.RandomAccessIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -88,6 +93,10 @@ public class UberspectImpl implements Uberspect
         {
             return new ArrayIterator(obj);
         }
+        else if (isIndexed(obj))
+        {
+            return new RandomAccessIterator((List) obj);
+        }
         else if (obj instanceof Collection)
         {
             return ((Collection) obj).iterator();
@@ -159,6 +168,22 @@ public class UberspectImpl implements Uberspect
         return null;
     }
 
+    /**
+     * The class of the lists returned by {@link Arrays#asList(Object[])}.
+     */
+    private static final Class ARRAYS_LIST = Arrays.asList(new Object[0]).getClass();
+
+    /**
+     *  Tells whether a list can be walked by index: integer ranges, and the
+     *  JDK lists which are not meant to be shared between threads.  Other
+     *  lists keep their own, possibly fail-fast, iterator.
+     */
+    private static boolean isIndexed(Object obj)
+    {
+        Class type = obj.getClass();
+        return obj instanceof IntegerRange || type == ArrayList.class || type == ARRAYS_LIST;
+    }
+
     /**
      *  Method
      * @param obj
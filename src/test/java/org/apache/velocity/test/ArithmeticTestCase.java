@@ -157,6 +157,34 @@ public class ArithmeticTestCase extends TestCase
         assertEquals ("ResultType does not match.", expectedResultType, result.getClass());
     }
 
+    public void testIntegerLongAndDouble()
+    {
+        addHelper (new Integer(10), new Integer(20), 30, Integer.class);
+        addHelper (new Integer(10), new Long(20), 30, Long.class);
+        addHelper (new Long(10), new Double(20), 30, Double.class);
+        addHelper (new Double(10), new Double(20), 30, Double.class);
+        subtractHelper (new Long(100), new Integer(20), 80, Long.class);
+        subtractHelper (new Double(100), new Integer(20), 80, Double.class);
+        multiplyHelper (new Integer(100), new Integer(20), 2000, Integer.class);
+        multiplyHelper (new Integer(100), new Double(0.5), 50, Double.class);
+        divideHelper (new Long(10), new Integer(4), 2, Long.class);
+        divideHelper (new Double(10), new Integer(4), 2.5, Double.class);
+        moduloHelper (new Integer(10), new Long(3), 1, Long.class);
+        moduloHelper (new Double(10), new Integer(4), 2, Double.class);
+
+        // Test overflow
+        addHelper (new Integer(Integer.MAX_VALUE), new Integer(1), (double)Integer.MAX_VALUE+1, Long.class);
+        subtractHelper (new Integer(Integer.MIN_VALUE), new Integer(1), (double)Integer.MIN_VALUE-1, Long.class);
+        multiplyHelper (new Integer(Integer.MAX_VALUE), new Integer(Integer.MAX_VALUE), (double)Integer.MAX_VALUE*Integer.MAX_VALUE, Long.class);
+        addHelper (new Long(Long.MAX_VALUE), new Long(1), (double)Long.MAX_VALUE+1, BigInteger.class);
+        multiplyHelper (new Long(Long.MAX_VALUE), new Integer(2), (double)Long.MAX_VALUE*2, BigInteger.class);
+
+        assertEquals(-1, MathUtils.compare(new Integer(1), new Long(2)));
+        assertEquals(1, MathUtils.compare(new Long(Long.MAX_VALUE), new Integer(Integer.MAX_VALUE)));
+        assertEquals(0, MathUtils.compare(new Integer(2), new Double(2.0)));
+        assertEquals(-1, MathUtils.compare(new Double(1.5), new Long(2)));
+    }
+
     public void testCompare()
     {
         compareHelper (new Integer(10), new Short( (short)10), 0);
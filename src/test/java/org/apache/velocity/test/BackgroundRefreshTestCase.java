@@ -0,0 +1,145 @@
+package org.apache.velocity.test;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.StringWriter;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.RuntimeConstants;
+
+/**
+ * Tests the background refresh of modified templates.
+ */
+public class BackgroundRefreshTestCase extends BaseTestCase
+{
+    public BackgroundRefreshTestCase(String name)
+    {
+       super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.RESOURCE_MANAGER_BACKGROUND_REFRESH, Boolean.TRUE);
+        engine.setProperty("string.resource.loader.cache", "true");
+        engine.setProperty("string.resource.loader.modificationCheckInterval", "1");
+    }
+
+    public void tearDown()
+    {
+        engine.shutdown();
+        super.tearDown();
+    }
+
+    protected String merge(Template template)
+    {
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer);
+        return writer.toString();
+    }
+
+    public void testStaleWhileRevalidate() throws Exception
+    {
+        addTemplate("refreshed", "one");
+        Template first = engine.getTemplate("refreshed");
+        assertEquals("one", merge(first));
+
+        /* string resources are stamped with the current time */
+        Thread.sleep(10);
+        addTemplate("refreshed", "two");
+        Thread.sleep(1100);
+
+        /* the request triggering the check still gets the cached template */
+        assertSame(first, engine.getTemplate("refreshed"));
+
+        Template second = first;
+        for (int i = 0; i < 50 && second == first; i++)
+        {
+            Thread.sleep(100);
+            second = engine.getTemplate("refreshed");
+        }
+        assertNotSame(first, second);
+        assertEquals("two", merge(second));
+        assertEquals("one", merge(first));
+    }
+
+    public void testShutdown() throws Exception
+    {
+        addTemplate("stopped", "one");
+        engine.getTemplate("stopped");
+        Thread.sleep(10);
+        addTemplate("stopped", "two");
+        Thread.sleep(1100);
+        engine.getTemplate("stopped");
+
+        /* the refresh has started a thread */
+        int threads = countThreads("velocity-resource-refresh");
+        assertTrue(threads > 0);
+        engine.shutdown();
+        for (int i = 0; i < 50 && countThreads("velocity-resource-refresh") == threads; i++)
+        {
+            Thread.sleep(100);
+        }
+        assertEquals(threads - 1, countThreads("velocity-resource-refresh"));
+    }
+
+    static int countThreads(String name)
+    {
+        Thread[] threads = new Thread[Thread.activeCount() + 10];
+        int count = Thread.enumerate(threads);
+        int found = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (name.equals(threads[i].getName()) && threads[i].isAlive())
+            {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    public void testRemovedTemplate() throws Exception
+    {
+        addTemplate("removed", "here");
+        assertEquals("here", merge(engine.getTemplate("removed")));
+
+        removeTemplate("removed");
+        Thread.sleep(1100);
+        assertEquals("here", merge(engine.getTemplate("removed")));
+
+        boolean gone = false;
+        for (int i = 0; i < 50 && !gone; i++)
+        {
+            Thread.sleep(100);
+            try
+            {
+                engine.getTemplate("removed");
+            }
+            catch (ResourceNotFoundException rnfe)
+            {
+                /* the refresh noticed the removal */
+                gone = true;
+            }
+        }
+        assertTrue(gone);
+    }
+}
@@ -30,6 +30,7 @@ import java.util.List;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
@@ -42,7 +43,9 @@ import org.apache.velocity.app.event.implement.EscapeXmlReference;
 import org.apache.velocity.app.event.implement.InvalidReferenceInfo;
 import org.apache.velocity.app.event.implement.ReportInvalidReferences;
 import org.apache.velocity.context.Context;
+import org.apache.velocity.runtime.Renderable;
 import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
 
 /**
  * Tests the operation of the built in event handlers.
@@ -307,6 +310,104 @@ public class BuiltInEventHandlerTestCase extends BaseTestCase {
 
     }
 
+    /**
+     * test that match expressions keep the Perl5 /pattern/flags form
+     * @throws Exception
+     */
+    public void testEscapeReferenceMatchFlags() throws Exception
+    {
+        VelocityEngine ve = new VelocityEngine();
+        ve.setProperty(RuntimeConstants.EVENTHANDLER_REFERENCEINSERTION, "org.apache.velocity.app.event.implement.EscapeHtmlReference");
+        ve.setProperty("eventhandler.escape.html.match", "/_JS/i");
+        ve.init();
+
+        Writer writer;
+
+        // no match, so no escaping
+        for (int i = 0; i < 2; i++)
+        {
+            writer = new StringWriter();
+            ve.evaluate(newEscapeContext(),writer,"test","$test1");
+            assertEquals("Jimmy's <b>pizza</b>",writer.toString());
+        }
+
+        // case insensitive match anywhere in the reference
+        for (int i = 0; i < 2; i++)
+        {
+            writer = new StringWriter();
+            ve.evaluate(newEscapeContext(),writer,"test","$test1_js_test");
+            assertEquals("Jimmy's &lt;b&gt;pizza&lt;/b&gt;",writer.toString());
+        }
+    }
+
+    /**
+     * test that the streaming escapers give the same output as
+     * StringEscapeUtils and leave clean values alone
+     * @throws Exception
+     */
+    public void testStreamingEscape() throws Exception
+    {
+        RuntimeInstance rs = new RuntimeInstance();
+        rs.setProperty(RuntimeConstants.EVENTHANDLER_ESCAPE_STREAMING, "true");
+        rs.init();
+
+        String[] values = {
+            "Jimmy's <b>pizza</b> & \"fries\"",
+            "caf\u00E9 \u20AC \u03B1 \u0001 \t\r\n/\\ '",
+            "<",
+            "x'"
+        };
+        for (int i = 0; i < values.length; i++)
+        {
+            String value = values[i];
+            assertStreamingEscape(streaming(new EscapeHtmlReference(), rs), value, StringEscapeUtils.escapeHtml(value));
+            assertStreamingEscape(streaming(new EscapeXmlReference(), rs), value, StringEscapeUtils.escapeXml(value));
+            assertStreamingEscape(streaming(new EscapeJavaScriptReference(), rs), value, StringEscapeUtils.escapeJavaScript(value));
+            assertStreamingEscape(streaming(new EscapeSqlReference(), rs), value, StringEscapeUtils.escapeSql(value));
+        }
+
+        String clean = "nothing to escape";
+        assertSame(clean, streaming(new EscapeHtmlReference(), rs).referenceInsert("$clean", clean));
+        assertSame(clean, streaming(new EscapeJavaScriptReference(), rs).referenceInsert("$clean", clean));
+
+        // chained escapers see the escaped text
+        Object escaped = streaming(new EscapeHtmlReference(), rs).referenceInsert("$x", "<'>");
+        assertEquals("&lt;\\'&gt;", streaming(new EscapeJavaScriptReference(), rs).referenceInsert("$x", escaped).toString());
+
+        // and through a template
+        VelocityEngine ve = new VelocityEngine();
+        ve.setProperty(RuntimeConstants.EVENTHANDLER_REFERENCEINSERTION, "org.apache.velocity.app.event.implement.EscapeHtmlReference");
+        ve.setProperty(RuntimeConstants.EVENTHANDLER_ESCAPE_STREAMING, "true");
+        ve.init();
+        Writer writer = new StringWriter();
+        ve.evaluate(newEscapeContext(),writer,"test","#set($s = \"$test1\")$test1|$s");
+        assertEquals("Jimmy's &lt;b&gt;pizza&lt;/b&gt;|Jimmy's &amp;lt;b&amp;gt;pizza&amp;lt;/b&amp;gt;",writer.toString());
+    }
+
+    private EscapeReference streaming(EscapeReference handler, RuntimeInstance rs)
+    {
+        handler.setRuntimeServices(rs);
+        return handler;
+    }
+
+    private void assertStreamingEscape(EscapeReference handler, String value, String expected)
+        throws Exception
+    {
+        Object result = handler.referenceInsert("$x", value);
+        assertEquals(expected, result.toString());
+
+        if (expected.equals(value))
+        {
+            assertSame(value, result);
+        }
+        else
+        {
+            Writer writer = new StringWriter();
+            ((Renderable) result).render(null, writer);
+            assertEquals(expected, writer.toString());
+        }
+    }
+
     private Context newEscapeContext()
     {
         Context context = new VelocityContext();
@@ -0,0 +1,93 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+
+import org.apache.velocity.io.CaptureWriter;
+
+/**
+ * Tests the recycled writer used to capture block references and
+ * interpolated string literals.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class CaptureWriterTestCase extends BaseTestCase
+{
+    public CaptureWriterTestCase(String name)
+    {
+        super(name);
+    }
+
+    public void testWrites()
+    {
+        CaptureWriter writer = new CaptureWriter(0);
+        writer.write('a');
+        writer.write("bcdef");
+        writer.write("xghx", 1, 2);
+        writer.write(new char[] { 'i', 'j' }, 0, 2);
+        for (int i = 0; i < 100; i++)
+        {
+            writer.write("0123456789");
+        }
+        assertEquals(1010, writer.size());
+        assertTrue(writer.toString().startsWith("abcdefghij0123"));
+        assertEquals("abcde", writer.toString(5));
+    }
+
+    public void testRecycling()
+    {
+        CaptureWriter outer = CaptureWriter.acquire(10);
+        outer.write("outer");
+        CaptureWriter inner = CaptureWriter.acquire(10);
+        assertNotSame(outer, inner);
+        assertEquals(0, inner.size());
+        inner.write("inner");
+        CaptureWriter.release(inner);
+        assertEquals("outer", outer.toString());
+        CaptureWriter.release(outer);
+
+        CaptureWriter again = CaptureWriter.acquire(0);
+        assertSame(outer, again);
+        assertEquals(0, again.size());
+        CaptureWriter.release(again);
+    }
+
+    public void testLargeNotRecycled()
+    {
+        CaptureWriter large = CaptureWriter.acquire(0);
+        large.write(new char[16 * 1024], 0, 16 * 1024);
+        CaptureWriter.release(large);
+        CaptureWriter again = CaptureWriter.acquire(0);
+        assertNotSame(large, again);
+        CaptureWriter.release(again);
+    }
+
+    public void testNestedCaptures()
+    {
+        assertEvalEquals("[a-b-c][a-b-c]",
+            "#define($inner)b#end#define($outer)a-${inner}-c#end" +
+            "#set($s = \"[$outer]\")$s#set($s = \"[$outer]\")$s");
+        assertEvalEquals("<x 1><x 22><x 333>",
+            "#foreach($i in ['1', '22', '333'])#set($s = \"<x $i>\")$s#end");
+        assertEvalEquals("a1b a22b a333b ",
+            "#macro(m $t)a${t}b #end#m('1')#m(\"22\")#set($n = 333)#m(\"$n\")");
+    }
+}
@@ -0,0 +1,151 @@
+package org.apache.velocity.test;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.ConcurrentResourceCache;
+import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
+
+/**
+ * Tests the concurrent, single-flight resource cache.
+ */
+public class ConcurrentResourceCacheTestCase extends BaseTestCase
+{
+    public ConcurrentResourceCacheTestCase(String name)
+    {
+       super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.RESOURCE_MANAGER_CACHE_CLASS, ConcurrentResourceCache.class.getName());
+        engine.setProperty(RuntimeConstants.RESOURCE_MANAGER_DEFAULTCACHE_SIZE, "2");
+        engine.setProperty("string.resource.loader.class", SlowLoader.class.getName());
+        engine.setProperty("string.resource.loader.cache", "true");
+        SlowLoader.loads = 0;
+    }
+
+    public void testSingleFlight() throws Exception
+    {
+        addTemplate("shared", "shared $foo");
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final Template[] templates = new Template[8];
+        Thread[] threads = new Thread[templates.length];
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int index = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        templates[index] = engine.getTemplate("shared");
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        /* leave the template null */
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i].join();
+        }
+
+        assertEquals(1, SlowLoader.loads);
+        for (int i = 0; i < templates.length; i++)
+        {
+            assertNotNull(templates[i]);
+            assertSame(templates[0], templates[i]);
+        }
+    }
+
+    public void testEviction()
+    {
+        addTemplate("a", "a");
+        addTemplate("b", "b");
+        addTemplate("c", "c");
+
+        engine.getTemplate("a");
+        engine.getTemplate("b");
+        engine.getTemplate("a");
+        assertEquals(2, SlowLoader.loads);
+
+        /* b is the least recently used one */
+        engine.getTemplate("c");
+        assertEquals(3, SlowLoader.loads);
+        engine.getTemplate("a");
+        assertEquals(3, SlowLoader.loads);
+        engine.getTemplate("b");
+        assertEquals(4, SlowLoader.loads);
+    }
+
+    public void testFailedLoad()
+    {
+        getStringRepository();
+        try
+        {
+            engine.getTemplate("missing");
+            fail("expected a ResourceNotFoundException");
+        }
+        catch (ResourceNotFoundException rnfe)
+        {
+            /* expected */
+        }
+
+        addTemplate("missing", "found");
+        assertEvalEquals("found", "#parse('missing')");
+    }
+
+    public static class SlowLoader extends StringResourceLoader
+    {
+        static volatile int loads = 0;
+
+        public InputStream getResourceStream(String name)
+        {
+            synchronized (SlowLoader.class)
+            {
+                loads++;
+            }
+            try
+            {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return super.getResourceStream(name);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.apache.velocity.test;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.StringWriter;
+
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.ParseCache;
+import org.apache.velocity.runtime.RuntimeConstants;
+
+/**
+ * Tests the parse cache of evaluate().
+ */
+public class EvaluateCacheTestCase extends BaseTestCase
+{
+    public EvaluateCacheTestCase(String name)
+    {
+       super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.EVALUATE_CACHE_SIZE, "2");
+        engine.setProperty(RuntimeConstants.EVALUATE_DIRECTIVE_CACHE_SIZE, "100");
+    }
+
+    public void testHits()
+    {
+        ParseCache cache = engine.getEvaluateCache();
+        assertNotNull(cache);
+
+        context.put("foo", "a");
+        assertEvalEquals("foo a", "foo $foo");
+        context.put("foo", "b");
+        assertEvalEquals("foo b", "foo $foo");
+        assertEvalEquals("foo b", "foo $foo");
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    public void testLogTag() throws Exception
+    {
+        ParseCache cache = engine.getEvaluateCache();
+        StringWriter writer = new StringWriter();
+        engine.evaluate(context, writer, "one", "#set($x = 1)$x");
+        engine.evaluate(context, writer, "two", "#set($x = 1)$x");
+        engine.evaluate(context, writer, "two", "#set($x = 1)$x");
+        assertEquals("111", writer.toString());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    public void testMaxSize()
+    {
+        ParseCache cache = engine.getEvaluateCache();
+        assertEvalEquals("a", "a");
+        assertEvalEquals("b", "b");
+        assertEvalEquals("c", "c");
+        assertEquals(2, cache.size());
+        assertEvalEquals("a", "a");
+        assertEquals(4, cache.getMisses());
+    }
+
+    public void testMacrosNotCached()
+    {
+        ParseCache cache = engine.getEvaluateCache();
+        String template = "#macro(m $a)[$a]#end#m('x')";
+        assertEvalEquals("[x]", template);
+        assertEvalEquals("[x]", template);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    public void testParseError()
+    {
+        ParseCache cache = engine.getEvaluateCache();
+        assertEvalException("#if(", ParseErrorException.class);
+        assertEvalException("#if(", ParseErrorException.class);
+        assertEquals(0, cache.size());
+    }
+
+    public void testDirectiveChanges()
+    {
+        ParseCache cache = engine.getEvaluateCache();
+        String s = "#include('doesnotexist.vm')";
+        engine.removeDirective("include");
+        assertEvalEquals(s, s);
+        assertEvalEquals(s, s);
+        assertEquals(1, cache.getHits());
+
+        engine.loadDirective("org.apache.velocity.runtime.directive.Include");
+        assertEquals(0, cache.size());
+        assertEvalException(s, ResourceNotFoundException.class);
+    }
+
+    public void testEvaluateDirective() throws Exception
+    {
+        ParseCache cache = engine.getEvaluateDirectiveCache();
+        assertNotNull(cache);
+
+        context.put("body", "#set($x = $i)[$x]");
+        StringWriter writer = new StringWriter();
+        engine.evaluate(context, writer, "evaluate", "#foreach($i in [1..3])#evaluate($body)#end");
+        assertEquals("[1][2][3]", writer.toString());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+
+        /* another directive instance falls back on the shared cache */
+        writer = new StringWriter();
+        engine.evaluate(context, writer, "evaluate", "#set($i = 4)#evaluate($body)");
+        assertEquals("[4]", writer.toString());
+        assertEquals(1, cache.getHits());
+    }
+
+    public void testEvaluateDirectiveMacros()
+    {
+        ParseCache cache = engine.getEvaluateDirectiveCache();
+        context.put("body", "#macro(m)m#end#m()");
+        assertEvalEquals("mm", "#foreach($i in [1..2])#evaluate($body)#end");
+        assertEquals(0, cache.size());
+    }
+
+    public void testDisabledByDefault()
+    {
+        VelocityEngine other = new VelocityEngine();
+        other.init();
+        assertNull(other.getEvaluateCache());
+        assertNull(other.getEvaluateDirectiveCache());
+    }
+}
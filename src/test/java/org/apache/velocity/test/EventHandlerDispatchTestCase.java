@@ -0,0 +1,122 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.app.event.EventCartridge;
+import org.apache.velocity.app.event.IncludeEventHandler;
+import org.apache.velocity.app.event.ReferenceInsertionEventHandler;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.util.ContextAware;
+
+/**
+ * Tests the chaining of application and context level event handlers, and
+ * that handlers added to or removed from a cartridge already in use are seen
+ * by later renderings.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class EventHandlerDispatchTestCase extends BaseTestCase
+{
+    public EventHandlerDispatchTestCase(String name)
+    {
+        super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.EVENTHANDLER_REFERENCEINSERTION,
+                           AppHandler.class.getName());
+    }
+
+    public void testApplicationThenContext()
+    {
+        context.put("x", "v");
+        assertEvalEquals("[v]", "$x");
+
+        EventCartridge ec = new EventCartridge();
+        ec.attachToContext(context);
+        assertEvalEquals("[v]", "$x");
+
+        ContextHandler handler = new ContextHandler();
+        ec.addEventHandler(handler);
+        assertEvalEquals("{[v]}", "$x");
+        assertNotNull(handler.context);
+
+        ec.removeEventHandler(handler);
+        assertEvalEquals("[v]", "$x");
+    }
+
+    public void testIncludeChainStopsOnNull()
+    {
+        addTemplate("included", "in");
+        assertEvalEquals("in", "#parse('included')");
+
+        EventCartridge ec = new EventCartridge();
+        ec.addEventHandler(new BlockingHandler());
+        ec.addEventHandler(new ContextHandler());
+        ec.attachToContext(context);
+        assertEvalEquals("", "#parse('included')");
+    }
+
+    public static class AppHandler implements ReferenceInsertionEventHandler
+    {
+        public Object referenceInsert(String reference, Object value)
+        {
+            return "[" + value + "]";
+        }
+    }
+
+    public static class ContextHandler
+        implements ReferenceInsertionEventHandler, IncludeEventHandler, ContextAware
+    {
+        Context context;
+
+        public void setContext(Context context)
+        {
+            this.context = context;
+        }
+
+        public Object referenceInsert(String reference, Object value)
+        {
+            return "{" + value + "}";
+        }
+
+        public String includeEvent(String includeResourcePath,
+                                   String currentResourcePath, String directiveName)
+        {
+            fail("include chain should have stopped");
+            return includeResourcePath;
+        }
+    }
+
+    public static class BlockingHandler implements IncludeEventHandler
+    {
+        public String includeEvent(String includeResourcePath,
+                                   String currentResourcePath, String directiveName)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.apache.velocity.test;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ResourceNotFoundException;
+
+/**
+ * Tests the WatchService driven invalidation of the FileResourceLoader.
+ */
+public class FileWatchTestCase extends BaseTestCase
+{
+    private final static String WATCH_DIR = TEST_RESULT_DIR + "/watch";
+
+    private File directory;
+
+    public FileWatchTestCase(String name)
+    {
+       super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        assureResultsDirectoryExists(WATCH_DIR);
+        directory = new File(WATCH_DIR);
+        new File(directory, "sub").mkdirs();
+        write("watched.vm", "one", 0);
+        write("sub/nested.vm", "nested", 0);
+
+        engine = new VelocityEngine();
+        engine.setProperty("file.resource.loader.path", directory.getAbsolutePath());
+        engine.setProperty("file.resource.loader.cache", "true");
+        engine.setProperty("file.resource.loader.modificationCheckInterval", "1");
+        engine.setProperty("file.resource.loader.watch", "true");
+        engine.init();
+    }
+
+    public void tearDown()
+    {
+        engine.shutdown();
+        super.tearDown();
+    }
+
+    private void write(String name, String content, long delay) throws IOException
+    {
+        File file = new File(directory, name);
+        long previous = file.lastModified();
+        Writer writer = new FileWriter(file);
+        writer.write(content);
+        writer.close();
+        if (previous != 0)
+        {
+            /* make sure the modification time moves on */
+            file.setLastModified(previous + delay);
+        }
+    }
+
+    private String merge(String name)
+    {
+        StringWriter writer = new StringWriter();
+        engine.getTemplate(name).merge(new VelocityContext(), writer);
+        return writer.toString();
+    }
+
+    private String awaitChange(String name, String previous) throws InterruptedException
+    {
+        String result = previous;
+        for (int i = 0; i < 100 && previous.equals(result); i++)
+        {
+            Thread.sleep(100);
+            result = merge(name);
+        }
+        return result;
+    }
+
+    public void testShutdown() throws Exception
+    {
+        int watchers = BackgroundRefreshTestCase.countThreads("velocity-file-watcher");
+        assertTrue(watchers > 0);
+        engine.shutdown();
+        for (int i = 0; i < 50 && BackgroundRefreshTestCase.countThreads("velocity-file-watcher") == watchers; i++)
+        {
+            Thread.sleep(100);
+        }
+        assertEquals(watchers - 1, BackgroundRefreshTestCase.countThreads("velocity-file-watcher"));
+    }
+
+    public void testUnchanged() throws Exception
+    {
+        Template template = engine.getTemplate("watched.vm");
+        Thread.sleep(1100);
+        assertSame(template, engine.getTemplate("watched.vm"));
+    }
+
+    public void testModified() throws Exception
+    {
+        assertEquals("one", merge("watched.vm"));
+        write("watched.vm", "two", 2000);
+        assertEquals("two", awaitChange("watched.vm", "one"));
+
+        assertEquals("nested", merge("sub/nested.vm"));
+        write("sub/nested.vm", "changed", 2000);
+        assertEquals("changed", awaitChange("sub/nested.vm", "nested"));
+    }
+
+    public void testDeleted() throws Exception
+    {
+        assertEquals("one", merge("watched.vm"));
+        new File(directory, "watched.vm").delete();
+
+        boolean gone = false;
+        for (int i = 0; i < 100 && !gone; i++)
+        {
+            Thread.sleep(100);
+            try
+            {
+                engine.getTemplate("watched.vm");
+            }
+            catch (ResourceNotFoundException rnfe)
+            {
+                gone = true;
+            }
+        }
+        assertTrue(gone);
+    }
+}
@@ -0,0 +1,209 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.util.ArrayIterator;
+import org.apache.velocity.util.IntegerRange;
+import org.apache.velocity.util.RandomAccessIterator;
+import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.UberspectImpl;
+
+/**
+ * Tests the index-based #foreach() over arrays, JDK array lists
+ * and integer ranges.
+ */
+public class ForeachIndexedTestCase extends BaseTestCase
+{
+    public ForeachIndexedTestCase(String name)
+    {
+       super(name);
+    }
+
+    public void testUberspectIterators() throws Exception
+    {
+        UberspectImpl uberspect = new UberspectImpl();
+        Info info = new Info("test", 1, 1);
+        assertTrue(uberspect.getIterator(new ArrayList(), info) instanceof RandomAccessIterator);
+        assertTrue(uberspect.getIterator(new int[0], info) instanceof ArrayIterator);
+        assertFalse(uberspect.getIterator(new LinkedList(), info) instanceof RandomAccessIterator);
+        assertFalse(uberspect.getIterator(new Vector(), info) instanceof RandomAccessIterator);
+        assertFalse(uberspect.getIterator(new CopyOnWriteArrayList(), info) instanceof RandomAccessIterator);
+    }
+
+    public void testConcurrentModification()
+    {
+        List list = new ArrayList(Arrays.asList(new String[] { "a", "b" }));
+        context.put("list", list);
+        try
+        {
+            evaluate("#foreach($i in $list)$list.add($i)#end");
+            fail("expected a ConcurrentModificationException");
+        }
+        catch (ConcurrentModificationException e)
+        {
+        }
+
+        Iterator i = new RandomAccessIterator(list);
+        i.next();
+        i.remove();
+        assertTrue(i.hasNext());
+        list.add("c");
+        try
+        {
+            i.next();
+            fail("expected a ConcurrentModificationException");
+        }
+        catch (ConcurrentModificationException e)
+        {
+        }
+    }
+
+    public void testArrays()
+    {
+        context.put("objects", new String[] { "a", "b", "c" });
+        context.put("ints", new int[] { 1, 2, 3 });
+        context.put("empty", new Object[0]);
+        assertEvalEquals("abc", "#foreach($i in $objects)$i#end");
+        assertEvalEquals("123", "#foreach($i in $ints)$i#end");
+        assertEvalEquals("", "#foreach($i in $empty)$i#end");
+    }
+
+    public void testLists()
+    {
+        List list = new ArrayList(Arrays.asList(new String[] { "a", "b", "c" }));
+        context.put("list", list);
+        context.put("linked", new LinkedList(list));
+        assertEvalEquals("abc", "#foreach($i in $list)$i#end");
+        assertEvalEquals("abc", "#foreach($i in $linked)$i#end");
+    }
+
+    public void testNulls()
+    {
+        context.put("list", Arrays.asList(new String[] { "a", null, "c" }));
+        assertEvalEquals("a$ic", "#foreach($i in $list)$i#end");
+    }
+
+    public void testLoopVariables()
+    {
+        context.put("list", Arrays.asList(new String[] { "a", "b", "c" }));
+        assertEvalEquals("1a,2b,3c", "#foreach($i in $list)$velocityCount$i#if($velocityHasNext),#end#end");
+        assertEvalEquals("0a,1b,2c", "#foreach($i in $list)$foreach.index$i#if($foreach.hasNext),#end#end");
+        assertEvalEquals("1,2,3", "#foreach($i in $list)#set($c = \"$velocityCount\")$c#if($foreach.hasNext),#end#end");
+    }
+
+    public void testNestedLoops()
+    {
+        context.put("list", Arrays.asList(new String[] { "a", "b" }));
+        assertEvalEquals("1:aa 2:bb ", "#foreach($i in $list)$velocityCount:#foreach($j in [1])$i#end$i #end");
+        assertEvalEquals("1:a 2:b ", "#foreach($i in $list)#foreach($j in [1])#end$velocityCount:$i #end");
+        assertEvalEquals("1112", "#foreach($i in $list)#foreach($j in [1])$velocityCount#end$velocityCount#end");
+    }
+
+    public void testMacros()
+    {
+        context.put("list", Arrays.asList(new String[] { "a", "b" }));
+        assertEvalEquals("1a2b", "#macro(m $v)$velocityCount$v#end#foreach($i in $list)#m($i)#end");
+    }
+
+    public void testLoopVariablesRestored()
+    {
+        context.put("list", Arrays.asList(new String[] { "a", "b" }));
+        context.put("velocityCount", "outer");
+        assertEvalEquals("ab outer", "#foreach($i in $list)$i#end outer");
+        assertEquals("outer", context.get("velocityCount"));
+        assertEvalEquals("12 outer", "#foreach($i in $list)$velocityCount#end $velocityCount");
+        assertEquals("outer", context.get("velocityCount"));
+    }
+
+    public void testMaxLoops()
+    {
+        engine.setProperty(RuntimeConstants.MAX_NUMBER_LOOPS, new Integer(2));
+        context.put("list", Arrays.asList(new String[] { "a", "b", "c" }));
+        context.put("array", new int[] { 1, 2, 3 });
+        assertEvalEquals("ab", "#foreach($i in $list)$i#end");
+        assertEvalEquals("12", "#foreach($i in $array)$i#end");
+    }
+
+    public void testBreak()
+    {
+        context.put("array", new int[] { 1, 2, 3 });
+        assertEvalEquals("12", "#foreach($i in $array)$i#if($i == 2)#break#end#end");
+    }
+
+    public void testRanges()
+    {
+        assertEvalEquals("123", "#foreach($i in [1..3])$i#end");
+        assertEvalEquals("3210", "#foreach($i in [3..0])$i#end");
+        assertEvalEquals("1 2 3 ", "#foreach($i in [1..2147483647])$i #if($foreach.count == 3)#break#end#end");
+        assertEvalEquals("1000000 true false", "#set($r = [1..1000000])$r.size() $r.contains(500000) $r.contains(0)");
+        assertEvalEquals("[-1, 0, 1]", "#set($r = [-1..1])$r");
+    }
+
+    public void testIntegerRange()
+    {
+        IntegerRange range = new IntegerRange(5, 2);
+        assertEquals(Arrays.asList(new Integer[] { new Integer(5), new Integer(4), new Integer(3), new Integer(2) }), range);
+        assertEquals(2, range.indexOf(new Integer(3)));
+        assertEquals(-1, range.indexOf(new Integer(6)));
+        try
+        {
+            range.getInt(4);
+            fail("expected an IndexOutOfBoundsException");
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+        }
+    }
+
+    public void testIntegerRangeOverflow()
+    {
+        IntegerRange range = new IntegerRange(Integer.MAX_VALUE, 1);
+        assertEquals(Integer.MAX_VALUE, range.size());
+        assertEquals(1, range.getInt(Integer.MAX_VALUE - 1));
+        try
+        {
+            new IntegerRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+            fail("expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        try
+        {
+            new IntegerRange(0, Integer.MAX_VALUE);
+            fail("expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        context.put("min", new Integer(Integer.MIN_VALUE));
+        assertEvalEquals("$r", "#set($r = [$min..1])$r");
+    }
+}
@@ -0,0 +1,179 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.resource.ContentResource;
+
+/**
+ * Tests #include of content kept encoded, read in memory or memory-mapped.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class IncludeContentTestCase extends BaseTestCase
+{
+    private static final String DIR = TEST_RESULT_DIR + "/includecontent";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    private String large;
+
+    public IncludeContentTestCase(String name)
+    {
+        super(name);
+    }
+
+    protected void setUp() throws Exception
+    {
+        assureResultsDirectoryExists(DIR);
+
+        StringBuffer text = new StringBuffer();
+        for (int i = 0; i < 20000; i++)
+        {
+            text.append("caf\u00E9 \u20AC ").append(i).append('\n');
+        }
+        large = text.toString();
+        write("large.txt", large.getBytes(UTF8));
+        write("small.txt", "sm\u00E0ll".getBytes(UTF8));
+        // not valid UTF-8
+        write("malformed.txt", new byte[] { 'a', (byte) 0xFF, 'b' });
+
+        super.setUp();
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.FILE_RESOURCE_LOADER_PATH, DIR);
+        engine.setProperty(RuntimeConstants.INPUT_ENCODING, "UTF-8");
+    }
+
+    public void testInMemory() throws Exception
+    {
+        assertIncludes();
+    }
+
+    public void testMapped() throws Exception
+    {
+        engine.setProperty(RuntimeConstants.RESOURCE_CONTENT_MAP_THRESHOLD, "1024");
+        assertIncludes();
+    }
+
+    public void testBytesFirst() throws Exception
+    {
+        engine.setProperty(RuntimeConstants.RESOURCE_CONTENT_MAP_THRESHOLD, "1024");
+        addTemplate("page", "<#include('large.txt')|#include('small.txt')|#include('malformed.txt')>");
+        Template template = engine.getTemplate("page");
+        String expected = "<" + large + "|sm\u00E0ll|a\uFFFDb>";
+
+        // written as is, then decoded once needed as text
+        assertEquals(expected, merge(template, UTF8));
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer);
+        assertEquals(expected, writer.toString());
+        assertEquals(expected, merge(template, UTF8));
+    }
+
+    public void testByteOrderMark() throws Exception
+    {
+        Charset utf16 = Charset.forName("UTF-16");
+        write("page16.vm", "<#include('small16.txt')>".getBytes(utf16));
+        write("small16.txt", "sm\u00E0ll".getBytes(utf16));
+        Template template = engine.getTemplate("page16.vm", "UTF-16");
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(expected, utf16);
+        writer.write("<sm\u00E0ll>");
+        writer.close();
+
+        // a single byte order mark, whatever the number of chunks
+        for (int i = 0; i < 2; i++)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            template.merge(context, out, utf16);
+            assertTrue(Arrays.equals(expected.toByteArray(), out.toByteArray()));
+        }
+    }
+
+    public void testData() throws Exception
+    {
+        RuntimeInstance runtime = new RuntimeInstance();
+        runtime.setProperty(RuntimeConstants.FILE_RESOURCE_LOADER_PATH, DIR);
+        runtime.setProperty(RuntimeConstants.RESOURCE_CONTENT_MAP_THRESHOLD, "0");
+        ContentResource resource = runtime.getContent("large.txt", "UTF-8");
+        assertEquals(large, resource.getData());
+        assertEquals(large, resource.getData());
+        resource.setData("replaced");
+        StringWriter writer = new StringWriter();
+        resource.merge(writer);
+        assertEquals("replaced", writer.toString());
+    }
+
+    private void assertIncludes() throws Exception
+    {
+        addTemplate("page", "<#include('large.txt')|#include('small.txt')|#include('malformed.txt')>");
+        Template template = engine.getTemplate("page");
+
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer);
+        String expected = writer.toString();
+        assertEquals("<" + large + "|sm\u00E0ll|a\uFFFDb>", expected);
+
+        for (int i = 0; i < 2; i++)
+        {
+            assertEquals(expected, merge(template, UTF8));
+            assertEquals(new String(expected.getBytes(LATIN1), LATIN1), merge(template, LATIN1));
+        }
+    }
+
+    private String merge(Template template, Charset charset)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.merge(context, out, charset);
+        return new String(out.toByteArray(), charset);
+    }
+
+    private void write(String name, byte[] content) throws Exception
+    {
+        FileOutputStream out = new FileOutputStream(new File(DIR, name));
+        try
+        {
+            out.write(content);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
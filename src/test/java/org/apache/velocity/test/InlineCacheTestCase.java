@@ -0,0 +1,176 @@
+package org.apache.velocity.test;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.StringWriter;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.InlineCache;
+import org.apache.velocity.util.introspection.UberspectImpl;
+import org.apache.velocity.util.introspection.VelMethod;
+import org.apache.velocity.util.introspection.VelPropertyGet;
+
+/**
+ * Tests the cross-merge inline caches of property and method lookups.
+ */
+public class InlineCacheTestCase extends BaseTestCase
+{
+    public InlineCacheTestCase(String name)
+    {
+       super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.UBERSPECT_INLINE_CACHE, Boolean.TRUE);
+        engine.setProperty(RuntimeConstants.UBERSPECT_CLASSNAME, CountingUberspect.class.getName());
+        CountingUberspect.lookups = 0;
+    }
+
+    protected String merge(Template template, Object obj)
+    {
+        VelocityContext fresh = new VelocityContext();
+        fresh.put("obj", obj);
+        StringWriter writer = new StringWriter();
+        template.merge(fresh, writer);
+        return writer.toString();
+    }
+
+    public void testSharedAcrossMerges()
+    {
+        addTemplate("ic", "$obj.name $obj.greet('you')");
+        Template template = engine.getTemplate("ic");
+
+        assertEquals("one hello you", merge(template, new One()));
+        assertEquals(2, CountingUberspect.lookups);
+
+        assertEquals("one hello you", merge(template, new One()));
+        assertEquals("one hello you", merge(template, new One()));
+        assertEquals(2, CountingUberspect.lookups);
+    }
+
+    public void testReceiverClassChange()
+    {
+        addTemplate("ic", "$obj.name $obj.greet('you')");
+        Template template = engine.getTemplate("ic");
+
+        assertEquals("one hello you", merge(template, new One()));
+        assertEquals("two hi you", merge(template, new Two()));
+        assertEquals(4, CountingUberspect.lookups);
+
+        assertEquals("one hello you", merge(template, new One()));
+        assertEquals("two hi you", merge(template, new Two()));
+        assertEquals(4, CountingUberspect.lookups);
+    }
+
+    public void testArgumentClassChange()
+    {
+        addTemplate("ic", "$obj.greet($arg)");
+        Template template = engine.getTemplate("ic");
+
+        VelocityContext ctx = new VelocityContext();
+        ctx.put("obj", new One());
+        ctx.put("arg", "you");
+        StringWriter writer = new StringWriter();
+        template.merge(ctx, writer);
+        assertEquals("hello you", writer.toString());
+
+        ctx.put("arg", new Integer(3));
+        writer = new StringWriter();
+        template.merge(ctx, writer);
+        assertEquals("hello #3", writer.toString());
+    }
+
+    public void testMegamorphic()
+    {
+        InlineCache cache = new InlineCache(2);
+        cache.put(String.class, null, "s");
+        cache.put(Integer.class, null, "i");
+        assertEquals("s", cache.get(String.class, null));
+        assertEquals("i", cache.get(Integer.class, null));
+        assertNull(cache.get(Long.class, null));
+        assertNull(cache.get(String.class, new Class[0]));
+
+        cache.put(Long.class, null, "l");
+        assertTrue(cache.isMegamorphic());
+        assertNull(cache.get(String.class, null));
+
+        cache.clear();
+        assertFalse(cache.isMegamorphic());
+        cache.put(Long.class, new Class[] { String.class }, "l");
+        assertEquals("l", cache.get(Long.class, new Class[] { String.class }));
+        assertNull(cache.get(Long.class, new Class[] { Integer.class }));
+    }
+
+    public static class CountingUberspect extends UberspectImpl
+    {
+        static int lookups = 0;
+
+        public VelPropertyGet getPropertyGet(Object obj, String identifier, Info i)
+            throws Exception
+        {
+            lookups++;
+            return super.getPropertyGet(obj, identifier, i);
+        }
+
+        public VelMethod getMethod(Object obj, String method, Object[] args, Info i)
+            throws Exception
+        {
+            lookups++;
+            return super.getMethod(obj, method, args, i);
+        }
+    }
+
+    public static class One
+    {
+        public String getName()
+        {
+            return "one";
+        }
+
+        public String greet(String who)
+        {
+            return "hello " + who;
+        }
+
+        public String greet(Integer who)
+        {
+            return "hello #" + who;
+        }
+    }
+
+    public static class Two
+    {
+        public String getName()
+        {
+            return "two";
+        }
+
+        public String greet(String who)
+        {
+            return "hi " + who;
+        }
+    }
+}
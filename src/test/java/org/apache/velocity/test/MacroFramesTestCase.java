@@ -0,0 +1,87 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.util.Arrays;
+
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.context.ProxyVMContext;
+import org.apache.velocity.runtime.RuntimeConstants;
+
+/**
+ * Tests macro calls with recycled argument frames.
+ */
+public class MacroFramesTestCase extends BaseTestCase
+{
+    public MacroFramesTestCase(String name)
+    {
+       super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.VM_RECYCLE_FRAMES, Boolean.TRUE);
+    }
+
+    public void testArguments()
+    {
+        context.put("x", "X");
+        assertEvalEquals("[1 X][2 a][3 $y]", "#macro(m $a $b)[$a $b]#end#m(1 $x)#m(2 'a')#m(3 $y)");
+    }
+
+    public void testRecursion()
+    {
+        assertEvalEquals("3 2 1 ", "#macro(count $n)$n #if($n > 1)#set($m = $n - 1)#count($m)#end#end#count(3)");
+    }
+
+    public void testNestedCalls()
+    {
+        assertEvalEquals("<[a]><[b]>", "#macro(inner $v)[$v]#end#macro(outer $v)<#inner($v)>#end#outer('a')#outer('b')");
+    }
+
+    public void testLocalReferences()
+    {
+        assertEvalEquals("a", "#macro(m $v)#set($w = $v)#end#m('a')$w");
+        context.put("list", Arrays.asList(new Integer[] { new Integer(1), new Integer(2) }));
+        assertEvalEquals("12", "#macro(loop $v)#foreach($i in $v)$i#end#end#loop($list)");
+    }
+
+    public void testBlockMacro()
+    {
+        assertEvalEquals("<body:1><body:2>", "#macro(wrap $n)<$bodyContent:$n>#end#@wrap(1)body#end#@wrap(2)body#end");
+    }
+
+    public void testCapturedFrames()
+    {
+        assertEvalEquals("[a][b]", "#macro(d $v)#define($block)[$v]#end$block#end#d('a')#d('b')");
+
+        ProxyVMContext vmc = new ProxyVMContext(new InternalContextAdapterImpl(context), null,
+            false, new String[] { "v" }, new String[] { ".literal.$v" });
+        vmc.setVMProxyValue(0, "a");
+        assertEquals("a", vmc.get("v"));
+        assertTrue(vmc.recycle(new InternalContextAdapterImpl(context)));
+        assertNull(vmc.get("v"));
+
+        // a frame wrapped by a captured context is never recycled
+        ProxyVMContext.capture(new ProxyVMContext(vmc, null, false));
+        assertFalse(vmc.recycle(new InternalContextAdapterImpl(context)));
+    }
+}
@@ -0,0 +1,236 @@
+package org.apache.velocity.test;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.MethodInvocationException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.MethodHandleUberspector;
+import org.apache.velocity.util.introspection.UberspectImpl;
+import org.apache.velocity.util.introspection.VelMethod;
+import org.apache.velocity.util.introspection.VelPropertyGet;
+
+/**
+ * Tests the method handle based uberspector.
+ */
+public class MethodHandleUberspectorTestCase extends BaseTestCase
+{
+    public MethodHandleUberspectorTestCase(String name)
+    {
+       super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.UBERSPECT_CLASSNAME,
+                           UberspectImpl.class.getName() + "," + MethodHandleUberspector.class.getName());
+    }
+
+    protected void setUpContext(VelocityContext context)
+    {
+        context.put("bean", new Bean());
+        context.put("bean_class", Bean.class);
+        context.put("getter", new Getter());
+        context.put("strings", new String[] { "one", "two" });
+        context.put("ints", new int[] { 1, 2, 3 });
+    }
+
+    public void testBound() throws Exception
+    {
+        MethodHandleUberspector uberspect = new MethodHandleUberspector();
+        RuntimeInstance ri = new RuntimeInstance();
+        ri.init();
+        uberspect.init(ri);
+        Info info = new Info("test", 1, 1);
+        Bean bean = new Bean();
+
+        VelMethod method = uberspect.getMethod(bean, "concat", new Object[] { "a", "b" }, info);
+        assertTrue(method instanceof MethodHandleUberspector.VelMethodHandleImpl);
+        assertEquals("ab", method.invoke(bean, new Object[] { "a", "b" }));
+
+        VelPropertyGet getter = uberspect.getPropertyGet(bean, "name", info);
+        assertTrue(getter instanceof MethodHandleUberspector.VelGetterHandleImpl);
+        assertEquals("getName", getter.getMethodName());
+        assertEquals("bean", getter.invoke(bean));
+    }
+
+    /**
+     * Call site mismatches are reported as by Method.invoke(), and only
+     * exceptions of the method itself are wrapped.
+     */
+    public void testInvocationContract() throws Exception
+    {
+        MethodHandleUberspector uberspect = new MethodHandleUberspector();
+        RuntimeInstance ri = new RuntimeInstance();
+        ri.init();
+        uberspect.init(ri);
+        Info info = new Info("test", 1, 1);
+        Bean bean = new Bean();
+
+        VelMethod concat = uberspect.getMethod(bean, "concat", new Object[] { "a", "b" }, info);
+        assertMismatch(concat, bean, new Object[] { new Integer(1), "b" });
+        assertMismatch(concat, bean, new Object[] { "a" });
+        assertMismatch(concat, "not a bean", new Object[] { "a", "b" });
+        assertEquals("anull", concat.invoke(bean, new Object[] { "a", null }));
+
+        VelMethod plus = uberspect.getMethod(bean, "plus", new Object[] { new Long(1), new Long(2) }, info);
+        assertEquals(new Long(3), plus.invoke(bean, new Object[] { new Integer(1), new Byte((byte) 2) }));
+        assertEquals(new Long(98), plus.invoke(bean, new Object[] { new Long(1), new Character('a') }));
+        assertMismatch(plus, bean, new Object[] { null, new Long(2) });
+        assertMismatch(plus, bean, new Object[] { new Double(1), new Long(2) });
+        assertMismatch(plus, bean, new Object[] { Boolean.TRUE, new Long(2) });
+
+        VelMethod cast = uberspect.getMethod(bean, "cast", new Object[] { "a" }, info);
+        try
+        {
+            cast.invoke(bean, new Object[] { "a" });
+            fail("expected an InvocationTargetException");
+        }
+        catch (InvocationTargetException ite)
+        {
+            assertTrue(ite.getCause() instanceof ClassCastException);
+        }
+
+        VelPropertyGet getter = uberspect.getPropertyGet(bean, "name", info);
+        try
+        {
+            getter.invoke(new Getter());
+            fail("expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException iae)
+        {
+        }
+    }
+
+    private void assertMismatch(VelMethod method, Object o, Object[] args) throws Exception
+    {
+        try
+        {
+            method.invoke(o, args);
+            fail("expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException iae)
+        {
+        }
+    }
+
+    public void testProperties()
+    {
+        assertEvalEquals("bean", "$bean.name");
+        assertEvalEquals("true", "$bean.valid");
+        assertEvalEquals("got foo", "$getter.foo");
+        assertEvalEquals("2", "$strings.size()");
+    }
+
+    public void testMethods()
+    {
+        assertEvalEquals("ab", "$bean.concat('a', 'b')");
+        assertEvalEquals("3", "$bean.plus(1, 2)");
+        assertEvalEquals("static", "$bean_class.stat()");
+        assertEvalEquals("two", "$strings.get(1)");
+        assertEvalEquals("3", "$ints.get(2)");
+    }
+
+    public void testVarArgs()
+    {
+        assertEvalEquals("3", "$bean.count()");
+        assertEvalEquals("onetwo", "$bean.var($strings)");
+        assertEvalEquals("onetwo", "$bean.var('one', 'two')");
+        assertEvalEquals("", "$bean.var()");
+    }
+
+    public void testExceptions()
+    {
+        assertEvalException("$bean.fail()", MethodInvocationException.class);
+        assertEvalException("$bean.broken", MethodInvocationException.class);
+    }
+
+    public static class Bean
+    {
+        public String getName()
+        {
+            return "bean";
+        }
+
+        public boolean isValid()
+        {
+            return true;
+        }
+
+        public String concat(String a, String b)
+        {
+            return a + b;
+        }
+
+        public long plus(long a, long b)
+        {
+            return a + b;
+        }
+
+        public static String stat()
+        {
+            return "static";
+        }
+
+        public int count()
+        {
+            return 3;
+        }
+
+        public String var(String[] strings)
+        {
+            StringBuilder result = new StringBuilder();
+            for (int i = 0; i < strings.length; i++)
+            {
+                result.append(strings[i]);
+            }
+            return result.toString();
+        }
+
+        public Integer cast(Object o)
+        {
+            return (Integer) o;
+        }
+
+        public String fail()
+        {
+            throw new IllegalStateException("fail");
+        }
+
+        public String getBroken()
+        {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    public static class Getter
+    {
+        public String get(String key)
+        {
+            return "got " + key;
+        }
+    }
+}
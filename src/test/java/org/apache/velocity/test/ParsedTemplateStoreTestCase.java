@@ -0,0 +1,239 @@
+package org.apache.velocity.test;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Properties;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.app.tools.ParsedTemplateStoreGenerator;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.FileResourceLoader;
+import org.apache.velocity.runtime.resource.loader.URLResourceLoader;
+
+/**
+ * Tests the parsed template store and its generator.
+ */
+public class ParsedTemplateStoreTestCase extends BaseTestCase
+{
+    private final static String STORE_DIR = TEST_RESULT_DIR + "/parsedstore";
+
+    private final static String[][] TEMPLATES =
+    {
+        { "text.vm", "just text\n" },
+        { "refs.vm", "$name ${name}s $!missing $list.get(0) $map.key \\$name $name.length()\n" },
+        { "control.vm", "#if($list.size() > 1)many#elseif($list)one#{else}none#end\n"
+                        + "#foreach($i in $list)$i#if($foreach.hasNext),#end#end\n"
+                        + "#set($x = \"a $name\")$x #set($y = [1..3])$y #set($z = {'k' : 1})$z.k\n" },
+        { "macro.vm", "#macro(greet $who)Hello $who!#end#greet($name) #greet('you')\n" },
+        { "misc.vm", "## comment\n#* block *#text #[[$raw #if]]# \\#if #break\n" },
+        { "sub/nested.vm", "#parse('text.vm')nested $name\n" },
+    };
+
+    private File templates;
+
+    private File store;
+
+    public ParsedTemplateStoreTestCase(String name)
+    {
+       super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        assureResultsDirectoryExists(STORE_DIR);
+        templates = new File(STORE_DIR, "templates");
+        store = new File(STORE_DIR, "store");
+        new File(templates, "sub").mkdirs();
+        for (int i = 0; i < TEMPLATES.length; i++)
+        {
+            write(TEMPLATES[i][0], TEMPLATES[i][1]);
+        }
+        StringBuffer big = new StringBuffer();
+        for (int i = 0; i < 5000; i++)
+        {
+            big.append("static text ");
+        }
+        write("big.vm", big.append("$name").toString());
+
+        File[] entries = store.listFiles();
+        for (int i = 0; entries != null && i < entries.length; i++)
+        {
+            entries[i].delete();
+        }
+    }
+
+    private void write(String name, String content) throws IOException
+    {
+        Writer writer = new FileWriter(new File(templates, name));
+        writer.write(content);
+        writer.close();
+    }
+
+    private VelocityEngine createEngine(boolean withStore, Properties extra)
+    {
+        VelocityEngine ve = new VelocityEngine();
+        ve.setProperty(RuntimeConstants.FILE_RESOURCE_LOADER_PATH, templates.getAbsolutePath());
+        if (withStore)
+        {
+            ve.setProperty(RuntimeConstants.RESOURCE_MANAGER_PARSED_STORE, store.getAbsolutePath());
+            ve.setProperty(RuntimeConstants.RESOURCE_MANAGER_PARSED_STORE_UPDATE, "false");
+        }
+        if (extra != null)
+        {
+            ve.init(extra);
+        }
+        else
+        {
+            ve.init();
+        }
+        return ve;
+    }
+
+    private String merge(VelocityEngine ve, String name)
+    {
+        VelocityContext ctx = new VelocityContext();
+        ctx.put("name", "velocity");
+        ctx.put("list", java.util.Arrays.asList(new String[] { "a", "b" }));
+        ctx.put("map", java.util.Collections.singletonMap("key", "value"));
+        StringWriter writer = new StringWriter();
+        ve.getTemplate(name).merge(ctx, writer);
+        return writer.toString();
+    }
+
+    private int generate(Properties configuration)
+    {
+        ParsedTemplateStoreGenerator generator =
+            new ParsedTemplateStoreGenerator(configuration, templates, store);
+        int stored = generator.generate(".vm");
+        assertEquals(0, generator.getFailures());
+        return stored;
+    }
+
+    public void testSameOutput() throws Exception
+    {
+        assertEquals(TEMPLATES.length + 1, generate(new Properties()));
+
+        VelocityEngine parsing = createEngine(false, null);
+        VelocityEngine stored = createEngine(true, null);
+        for (int i = 0; i < TEMPLATES.length; i++)
+        {
+            String name = TEMPLATES[i][0];
+            assertEquals(name, merge(parsing, name), merge(stored, name));
+        }
+        assertEquals(merge(parsing, "big.vm"), merge(stored, "big.vm"));
+    }
+
+    public void testStoreUsed() throws Exception
+    {
+        generate(new Properties());
+
+        /* same modification time, other content: the stored tree wins */
+        File file = new File(templates, "text.vm");
+        long modified = file.lastModified();
+        write("text.vm", "changed\n");
+        file.setLastModified(modified);
+        assertEquals("just text\n", merge(createEngine(true, null), "text.vm"));
+
+        /* other modification time */
+        file.setLastModified(modified + 2000);
+        assertEquals("changed\n", merge(createEngine(true, null), "text.vm"));
+    }
+
+    public void testSourceNotRead() throws Exception
+    {
+        Properties counting = new Properties();
+        counting.setProperty("file.resource.loader.class", CountingLoader.class.getName());
+        counting.setProperty(RuntimeConstants.RESOURCE_MANAGER_PARSED_STORE_UPDATE, "true");
+        CountingLoader.opened = 0;
+        assertEquals("just text\n", merge(createEngine(true, counting), "text.vm"));
+        assertEquals(1, CountingLoader.opened);
+
+        /* stored entry: the source is not read */
+        assertEquals("just text\n", merge(createEngine(true, counting), "text.vm"));
+        assertEquals(1, CountingLoader.opened);
+
+        /* stale entry: it is */
+        File file = new File(templates, "text.vm");
+        file.setLastModified(file.lastModified() + 2000);
+        assertEquals("just text\n", merge(createEngine(true, counting), "text.vm"));
+        assertEquals(2, CountingLoader.opened);
+    }
+
+    public static class CountingLoader extends FileResourceLoader
+    {
+        static int opened;
+
+        public InputStream getResourceStream(String name)
+        {
+            opened++;
+            return super.getResourceStream(name);
+        }
+    }
+
+    public void testUrlLoader() throws Exception
+    {
+        Properties url = new Properties();
+        url.setProperty(RuntimeConstants.RESOURCE_LOADER, "url");
+        url.setProperty("url.resource.loader.class", URLResourceLoader.class.getName());
+        url.setProperty("url.resource.loader.root", templates.toURI().toString());
+        url.setProperty(RuntimeConstants.RESOURCE_MANAGER_PARSED_STORE_UPDATE, "true");
+        assertEquals("just text\n", merge(createEngine(true, url), "text.vm"));
+        assertEquals(1, store.listFiles().length);
+
+        /* the loader knows the source once it is open, and the stored tree wins */
+        File file = new File(templates, "text.vm");
+        long modified = file.lastModified();
+        write("text.vm", "changed\n");
+        file.setLastModified(modified);
+        assertEquals("just text\n", merge(createEngine(true, url), "text.vm"));
+    }
+
+    public void testConfigurationMismatch() throws Exception
+    {
+        generate(new Properties());
+
+        File file = new File(templates, "text.vm");
+        long modified = file.lastModified();
+        write("text.vm", "changed\n");
+        file.setLastModified(modified);
+
+        Properties other = new Properties();
+        other.setProperty(RuntimeConstants.SET_NULL_ALLOWED, "true");
+        assertEquals("changed\n", merge(createEngine(true, other), "text.vm"));
+    }
+
+    public void testUpdate() throws Exception
+    {
+        VelocityEngine ve = new VelocityEngine();
+        ve.setProperty(RuntimeConstants.FILE_RESOURCE_LOADER_PATH, templates.getAbsolutePath());
+        ve.setProperty(RuntimeConstants.RESOURCE_MANAGER_PARSED_STORE, store.getAbsolutePath());
+        ve.init();
+        assertEquals("just text\n", merge(ve, "text.vm"));
+        assertEquals(1, store.listFiles().length);
+    }
+}
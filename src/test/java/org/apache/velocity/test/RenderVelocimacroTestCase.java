@@ -0,0 +1,148 @@
+package org.apache.velocity.test;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeConstants;
+
+/**
+ * Tests the direct invocation of Velocimacros from Java.
+ */
+public class RenderVelocimacroTestCase extends BaseTestCase
+{
+    public RenderVelocimacroTestCase(String name)
+    {
+       super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.VM_ARGUMENTS_STRICT, Boolean.TRUE);
+        engine.setProperty("macro." + RuntimeConstants.PROVIDE_SCOPE_CONTROL, Boolean.TRUE);
+    }
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        evaluate("#macro(bold $s)<b>$s</b>#end"
+                 + "#macro(greet $name $count)#bold($name) x$count#end"
+                 + "#macro(scoped)#set($macro.s = 'local')$macro.s#end");
+    }
+
+    public void testArray()
+    {
+        StringWriter writer = new StringWriter();
+        assertTrue(engine.renderVelocimacro("greet", "test", new Object[] { "Joe", new Integer(3) }, context, writer));
+        assertEquals("<b>Joe</b> x3", writer.toString());
+    }
+
+    public void testMap()
+    {
+        Map args = new HashMap();
+        args.put("name", "Ann");
+        args.put("count", new Integer(2));
+        StringWriter writer = new StringWriter();
+        engine.renderVelocimacro("greet", null, args, context, writer);
+        assertEquals("<b>Ann</b> x2", writer.toString());
+    }
+
+    public void testSameAsInvoke()
+    {
+        context.put("a", "Joe");
+        context.put("b", new Integer(3));
+        StringWriter invoked = new StringWriter();
+        engine.invokeVelocimacro("greet", "test", new String[] { "a", "b" }, context, invoked);
+        StringWriter rendered = new StringWriter();
+        engine.renderVelocimacro("greet", "test", new Object[] { "Joe", new Integer(3) }, context, rendered);
+        assertEquals(invoked.toString(), rendered.toString());
+    }
+
+    public void testValuesAreNotParsed()
+    {
+        context.put("foo", "bar");
+        StringWriter writer = new StringWriter();
+        engine.renderVelocimacro("bold", null, new Object[] { "$foo #if(" }, context, writer);
+        assertEquals("<b>$foo #if(</b>", writer.toString());
+    }
+
+    public void testArgumentsStayLocal()
+    {
+        context.put("s", "outer");
+        StringWriter writer = new StringWriter();
+        engine.renderVelocimacro("bold", null, new Object[] { "inner" }, context, writer);
+        assertEquals("<b>inner</b>", writer.toString());
+        assertEquals("outer", context.get("s"));
+    }
+
+    public void testNullArguments()
+    {
+        context.put("s", "outer");
+        StringWriter writer = new StringWriter();
+        engine.renderVelocimacro("bold", null, new Object[] { null }, context, writer);
+        assertEquals("<b>$s</b>", writer.toString());
+
+        context.put("name", "caller");
+        Map args = new HashMap();
+        args.put("count", new Integer(2));
+        writer = new StringWriter();
+        engine.renderVelocimacro("greet", null, args, context, writer);
+        assertEquals("<b>$name</b> x2", writer.toString());
+    }
+
+    public void testScope()
+    {
+        StringWriter writer = new StringWriter();
+        engine.renderVelocimacro("scoped", null, new Object[0], context, writer);
+        assertEquals("local", writer.toString());
+        assertNull(context.get("macro"));
+    }
+
+    public void testUnknownMacro()
+    {
+        try
+        {
+            engine.renderVelocimacro("nosuch", null, new Object[0], context, new StringWriter());
+            fail("should have thrown VelocityException");
+        }
+        catch (VelocityException ve)
+        {
+            // expected
+        }
+    }
+
+    public void testStrictArguments()
+    {
+        try
+        {
+            engine.renderVelocimacro("greet", null, new Object[] { "Joe" }, context, new StringWriter());
+            fail("should have thrown VelocityException");
+        }
+        catch (VelocityException ve)
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.StringWriter;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+
+/**
+ * Tests that the macro resolutions cached by macro calls follow the
+ * changes of the macros.
+ */
+public class RuntimeMacroCacheTestCase extends BaseTestCase
+{
+    public RuntimeMacroCacheTestCase(String name)
+    {
+       super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.VM_PERM_ALLOW_INLINE_REPLACE_GLOBAL, Boolean.TRUE);
+    }
+
+    private String merge(Template template)
+    {
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer);
+        return writer.toString();
+    }
+
+    public void testRedefinition()
+    {
+        addTemplate("caller", "#m()");
+        Template template = engine.getTemplate("caller");
+        assertEquals("#m()", merge(template));
+        assertEquals("#m()", merge(template));
+
+        evaluate("#macro(m)one#end");
+        assertEquals("one", merge(template));
+        assertEquals("one", merge(template));
+
+        evaluate("#macro(m)two#end");
+        assertEquals("two", merge(template));
+    }
+
+    public void testVersion()
+    {
+        RuntimeInstance instance = new RuntimeInstance();
+        instance.init();
+        int version = instance.getVelocimacroVersion();
+        assertTrue(version >= 0);
+        instance.evaluate(context, new StringWriter(), "test", "#macro(m)one#end");
+        assertTrue(version != instance.getVelocimacroVersion());
+    }
+}
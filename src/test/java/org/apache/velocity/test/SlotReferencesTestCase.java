@@ -0,0 +1,143 @@
+package org.apache.velocity.test;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.context.SlotTable;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.parser.node.ASTprocess;
+
+/**
+ * Tests the template-local references kept in slots.
+ */
+public class SlotReferencesTestCase extends BaseTestCase
+{
+    public SlotReferencesTestCase(String name)
+    {
+       super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.RUNTIME_REFERENCES_SLOTS, Boolean.TRUE);
+        engine.setProperty(RuntimeConstants.SET_NULL_ALLOWED, Boolean.TRUE);
+    }
+
+    public void testSetAndForeach()
+    {
+        context.put("list", Arrays.asList(new String[] { "a", "b", "c" }));
+        assertEvalEquals("0:a1:b2:c3", "#set($n = 0)#foreach($i in $list)$n:$i#set($n = $n + 1)#end$n");
+    }
+
+    public void testWrittenBackToContext()
+    {
+        context.put("x", "external");
+        assertEvalEquals("external|local", "$x|#set($x = 'local')$x");
+        assertEquals("local", context.get("x"));
+    }
+
+    public void testLoopVariablesRestored()
+    {
+        context.put("i", "outer");
+        assertEvalEquals("1 2 outer", "#foreach($i in [1, 2])$i #end$i");
+        assertEquals("outer", context.get("i"));
+        assertEvalEquals("12$velocityCount", "#foreach($i in [1, 2])$velocityCount#end$velocityCount");
+        assertNull(context.get("velocityCount"));
+    }
+
+    public void testSetNull()
+    {
+        context.put("x", "external");
+        assertEvalEquals("$x", "#set($x = 'local')#set($x = $null)$x");
+        assertNull(context.get("x"));
+    }
+
+    public void testMacros()
+    {
+        assertEvalEquals("[1][2]", "#macro(m $v)[$v]#set($last = $v)#end#foreach($i in [1, 2])#m($i)#end");
+        assertEquals(new Integer(2), context.get("last"));
+    }
+
+    public void testParse()
+    {
+        addTemplate("child", "$x#set($y = 'child')");
+        addTemplate("parent", "#set($x = 'parent')#parse('child') $y");
+        Template template = engine.getTemplate("parent");
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer);
+        assertEquals("parent child", writer.toString());
+        assertEquals("child", context.get("y"));
+    }
+
+    public void testTablePerTemplate()
+    {
+        addTemplate("one", "#set($a = 1)#foreach($b in [1])#end");
+        addTemplate("two", "#set($c = 1)");
+        SlotTable one = ((ASTprocess) engine.getTemplate("one").getData()).getSlotTable();
+        SlotTable two = ((ASTprocess) engine.getTemplate("two").getData()).getSlotTable();
+        assertNotSame(one, two);
+        assertTrue(one.getSlot("a") >= 0);
+        assertTrue(one.getSlot("b") >= 0);
+        assertEquals(-1, one.getSlot("c"));
+        assertEquals(-1, two.getSlot("a"));
+        assertTrue(two.getSlot("c") >= 0);
+    }
+
+    public void testAdapter()
+    {
+        SlotTable slots = new SlotTable();
+        int x = slots.register("x");
+        assertEquals(x, slots.register("x"));
+        assertEquals(-1, slots.getSlot("y"));
+
+        context.put("x", "external");
+        InternalContextAdapterImpl ica = new InternalContextAdapterImpl(context);
+        ica.enableSlots(slots);
+        assertEquals("external", ica.get("x"));
+        ica.put("x", null);
+        assertTrue(ica.containsKey("x"));
+        assertNull(ica.get("x"));
+        assertEquals("external", context.get("x"));
+        ica.put("x", "local");
+        assertEquals("local", ica.getSlot(slots, x, "x"));
+
+        /* slots of another tree go through the names */
+        SlotTable other = new SlotTable();
+        other.register("y");
+        int otherX = other.register("x");
+        assertEquals("local", ica.getSlot(other, otherX, "x"));
+        ica.putSlot(other, other.getSlot("y"), "y", "other");
+        assertEquals("other", context.get("y"));
+
+        /* names without a slot of this merge are read from the user context */
+        assertEquals("other", ica.getExternal(slots, "y"));
+        assertEquals("local", ica.getExternal(other, "x"));
+
+        assertTrue(Arrays.asList(ica.getKeys()).contains("x"));
+        ica.flushSlots();
+        assertEquals("local", context.get("x"));
+    }
+}
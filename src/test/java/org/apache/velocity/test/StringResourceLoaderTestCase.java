@@ -22,6 +22,7 @@ package org.apache.velocity.test;
 import java.io.BufferedWriter;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
 
 import junit.framework.Test;
@@ -32,6 +33,8 @@ import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
+import org.apache.velocity.runtime.resource.util.StringResource;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
 
 /**
  * Multiple paths in the file resource loader.
@@ -207,4 +210,59 @@ public class StringResourceLoaderTestCase extends BaseTestCase
         }
     }
 
+    /**
+     * Templates read as characters must come out as if read from the
+     * encoded stream.
+     */
+    public void testResourceReader()
+            throws Exception
+    {
+        StringResourceRepository repo = StringResourceLoader.getRepository();
+        String text = "caf\u00E9 $first";
+        repo.putStringResource("utf8.vm", text, "UTF-8");
+        repo.putStringResource("ascii.vm", "plain $first", "UTF-8");
+
+        assertEquals("caf\u00E9 1", merge("utf8.vm", "UTF-8"));
+        assertEquals("plain 1", merge("ascii.vm", "ISO-8859-1"));
+        // decoded with another encoding, as the stream would be
+        assertEquals(new String(text.getBytes("UTF-8"), "ISO-8859-1").replace("$first", "1"),
+                     merge("utf8.vm", "ISO-8859-1"));
+
+        repo.putStringResource("include.vm", "#include('utf8.vm')", "UTF-8");
+        assertEquals(text, merge("include.vm", "UTF-8"));
+
+        // characters the encoding cannot represent are replaced, as through the stream
+        repo.putStringResource("latin1.vm", "caf\u00E9 \u20AC $first", "ISO-8859-1");
+        assertEquals("caf\u00E9 ? 1", merge("latin1.vm", "ISO-8859-1"));
+        repo.putStringResource("surrogate.vm", "a\uD800 $first", "UTF-8");
+        assertEquals("a? 1", merge("surrogate.vm", "UTF-8"));
+        repo.putStringResource("low.vm", "\uDC00b \uD83D\uDE00 $first", "UTF-8");
+        assertEquals("?b \uD83D\uDE00 1", merge("low.vm", "UTF-8"));
+    }
+
+    public void testDecodesUnchanged()
+    {
+        StringResource resource = new StringResource("\uD83D\uDE00", "UTF-16");
+        assertTrue(resource.decodesUnchanged("UTF-16"));
+        assertFalse(resource.decodesUnchanged("UTF-8"));
+        assertFalse(resource.decodesUnchanged(null));
+
+        // the answer follows the body and the encoding
+        resource.setBody("\uD83D");
+        assertFalse(resource.decodesUnchanged("UTF-16"));
+        resource.setBody("caf\u00E9");
+        resource.setEncoding("UTF-8");
+        assertTrue(resource.decodesUnchanged("UTF-8"));
+        assertFalse(resource.decodesUnchanged("ISO-8859-1"));
+    }
+
+    private String merge(String name, String encoding)
+            throws Exception
+    {
+        VelocityContext context = new VelocityContext();
+        context.put("first", new Integer(1));
+        StringWriter writer = new StringWriter();
+        engine.getTemplate(name, encoding).merge(context, writer);
+        return writer.toString();
+    }
 }
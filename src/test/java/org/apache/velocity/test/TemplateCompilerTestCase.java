@@ -0,0 +1,117 @@
+package org.apache.velocity.test;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.StringWriter;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.parser.node.ASTBlock;
+import org.apache.velocity.runtime.parser.node.Node;
+
+/**
+ * Checks that compiled templates render exactly like interpreted ones.
+ */
+public class TemplateCompilerTestCase extends BaseTestCase
+{
+    public TemplateCompilerTestCase(String name)
+    {
+       super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.RUNTIME_TEMPLATE_COMPILE, Boolean.TRUE);
+    }
+
+    protected void setUpContext(VelocityContext context)
+    {
+        context.put("yes", Boolean.TRUE);
+        context.put("no", Boolean.FALSE);
+        context.put("n", new Integer(2));
+    }
+
+    /**
+     * Renders the template compiled, and interpreted through evaluate().
+     */
+    protected void assertCompiled(String expected, String template)
+    {
+        addTemplate("compiled", template);
+        Template compiled = engine.getTemplate("compiled");
+        assertTrue(compiled.isCompiled());
+        StringWriter writer = new StringWriter();
+        compiled.merge(context, writer);
+        assertEquals(expected, writer.toString());
+
+        assertEvalEquals(expected, template);
+    }
+
+    public void testText()
+    {
+        assertCompiled("", "");
+        assertCompiled("plain text\n", "plain text\n");
+        assertCompiled("a  b", "a #* comment *# b");
+    }
+
+    public void testReferences()
+    {
+        assertCompiled("x true y 2 $nope", "x $yes y $n $nope");
+    }
+
+    public void testIf()
+    {
+        assertCompiled("a", "#if($yes)a#end");
+        assertCompiled("", "#if($no)a#end");
+        assertCompiled("2b", "#if($no)a#else${n}b#end");
+        assertCompiled("c", "#if($no)a#elseif($no)b#elseif($yes)c#else d#end");
+        assertCompiled(" d", "#if($no)a#elseif($no)b#else d#end");
+        assertCompiled("[in]", "[#if($yes)#if($no)x#elseif($n == 2)in#end#end]");
+    }
+
+    public void testInterpretedNodes()
+    {
+        assertCompiled("1,2,3,", "#foreach($i in [1..3])$i,#end");
+        assertCompiled("set 5", "#set($x = $n + 3)set $x");
+        assertCompiled("<m>2</m>", "#macro(m $a)<m>$a</m>#end#m($n)");
+        assertCompiled("before", "before#stop after");
+    }
+
+    public void testDirectiveBodies()
+    {
+        assertCompiled("[1:a,b][2:a,b]", "#foreach($i in [1..2])[$i:#foreach($j in ['a', 'b'])$j#if($foreach.hasNext),#end#end]#end");
+        Node loop = ((Node) engine.getTemplate("compiled").getData()).jjtGetChild(0);
+        assertTrue(((ASTBlock) loop.jjtGetChild(3)).isCompiled());
+        assertCompiled("1 2 ", "#foreach($i in [1..5])#if($i == 3)#break#end$i #end");
+        assertCompiled("<b>2</b>|<b>2</b>", "#define($d)<b>$n</b>#end$d|$d");
+        assertCompiled("(x 2)", "#macro(wrap)($bodyContent)#end#@wrap()x $n#end");
+
+        StringBuffer many = new StringBuffer();
+        StringBuffer expected = new StringBuffer();
+        for (int i = 0; i < 300; i++)
+        {
+            many.append("#foreach($i in [").append(i).append("])$i.#end");
+            expected.append(i).append('.');
+        }
+        assertCompiled(expected.toString(), many.toString());
+    }
+}
@@ -0,0 +1,130 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+
+import java.io.StringWriter;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.parser.node.ASTText;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+
+/**
+ * Tests that optimized template trees are smaller and render the same
+ * output as the plain ones.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class TemplateOptimizerTestCase extends BaseTestCase
+{
+    public TemplateOptimizerTestCase(String name)
+    {
+        super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.RUNTIME_TEMPLATE_OPTIMIZE, "true");
+    }
+
+    public void testMergeStaticText() throws Exception
+    {
+        Node tree = assertSameOutput("static",
+            "Hello ## comment\nworld #* block *# \\#if( and\n\\#end done");
+        assertEquals(1, tree.jjtGetNumChildren());
+        assertTrue(tree.jjtGetChild(0) instanceof ASTText);
+    }
+
+    public void testConstantIf() throws Exception
+    {
+        Node tree = assertSameOutput("if",
+            "a #if( true && 1 < 2 )b#else c#end d" +
+            "#if( 'x' == 'y' )e#elseif( false )f#end g" +
+            "#if( 1 + 1 == 3 )h#elseif( !false )i#{else}j#end k");
+        assertEquals(1, tree.jjtGetNumChildren());
+        assertEquals("a b d gi k", render("if"));
+    }
+
+    public void testVariableIf() throws Exception
+    {
+        context.put("flag", Boolean.TRUE);
+        Node tree = assertSameOutput("var",
+            "#if( false )a#elseif( $flag )b#else c#end #if( $flag && false )d#end");
+        assertEquals(3, tree.jjtGetNumChildren());
+    }
+
+    public void testNested() throws Exception
+    {
+        context.put("list", new Integer[] { Integer.valueOf(1), Integer.valueOf(2) });
+        assertSameOutput("nested",
+            "#foreach( $i in $list )[#if( true )x#end $i ## c\n#if( 2 > 1 )y#end]#end");
+        assertEquals("[x 1 y][x 2 y]", render("nested"));
+    }
+
+    public void testConstantSet() throws Exception
+    {
+        assertSameOutput("set",
+            "#set( $a = 2 * 3 + 1 )#set( $b = \"x$a\" )#set( $c = 'y' + 1 )" +
+            "#set( $d = 1 / 0 )#foreach( $i in [1..2] )$a $b $c $!d #end");
+        assertEquals("7 x7 y1  7 x7 y1  ", render("set"));
+    }
+
+    public void testMacroUntouched() throws Exception
+    {
+        assertSameOutput("macro",
+            "#macro( optimizerMacro $x )#if( true )a#end ## c\n$x#end#optimizerMacro( 1 )");
+    }
+
+    /**
+     * Renders the template with and without optimization, and returns the
+     * optimized tree.
+     */
+    private Node assertSameOutput(String name, String template) throws Exception
+    {
+        addTemplate(name, template);
+
+        VelocityEngine plain = new VelocityEngine();
+        plain.setProperty(RuntimeConstants.RESOURCE_LOADER, "string");
+        plain.setProperty("string.resource.loader.class", StringResourceLoader.class.getName());
+        plain.init();
+        StringResourceRepository repo = StringResourceLoader.getRepository();
+        repo.putStringResource(name, template);
+        StringWriter expected = new StringWriter();
+        plain.getTemplate(name).merge(new VelocityContext(context), expected);
+        repo.removeStringResource(name);
+
+        assertEquals(expected.toString(), render(name));
+        return (Node) engine.getTemplate(name).getData();
+    }
+
+    private String render(String name) throws Exception
+    {
+        Template template = engine.getTemplate(name);
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer);
+        return writer.toString();
+    }
+}
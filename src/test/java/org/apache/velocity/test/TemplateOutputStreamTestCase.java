@@ -0,0 +1,208 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.io.EncodingWriter;
+import org.apache.velocity.runtime.RuntimeConstants;
+
+/**
+ * Tests merging templates to an OutputStream, with static text
+ * written pre-encoded.
+ *
+ * @version $Id$
+ * @since 1.8
+ */
+public class TemplateOutputStreamTestCase extends BaseTestCase
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    private static final String TEMPLATE =
+        "<p>Caf\u00E9 \u20AC</p>#if($flag)<b>$name</b>#else none#end\n" +
+        "#foreach($i in [1..3])\u00E0$i#end #parse('inner')";
+
+    public TemplateOutputStreamTestCase(String name)
+    {
+        super(name);
+    }
+
+    protected void setUpContext(VelocityContext context)
+    {
+        context.put("flag", Boolean.TRUE);
+        context.put("name", "\u00FCber \uD83D\uDE00");
+    }
+
+    public void testInterpreted() throws Exception
+    {
+        assertMerges(engine);
+    }
+
+    public void testCompiled() throws Exception
+    {
+        engine.setProperty(RuntimeConstants.RUNTIME_TEMPLATE_COMPILE, "true");
+        assertMerges(engine);
+    }
+
+    private void assertMerges(VelocityEngine engine) throws Exception
+    {
+        addTemplate("outer", TEMPLATE);
+        addTemplate("inner", "inn\u00E9r $name");
+        Template template = engine.getTemplate("outer");
+
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer);
+        String expected = writer.toString();
+
+        // twice per charset, the second time from the cached bytes
+        for (int i = 0; i < 2; i++)
+        {
+            assertEquals(expected, merge(template, UTF8));
+            assertEquals(new String(expected.getBytes(LATIN1), LATIN1), merge(template, LATIN1));
+        }
+    }
+
+    private String merge(Template template, Charset charset)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.merge(context, out, charset);
+        return new String(out.toByteArray(), charset);
+    }
+
+    public void testEncodingWriter() throws Exception
+    {
+        StringBuffer text = new StringBuffer();
+        for (int i = 0; i < 5000; i++)
+        {
+            // surrogate pairs end up split across the char buffer boundary
+            text.append("a\uD83D\uDE00");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodingWriter writer = new EncodingWriter(out, UTF8);
+        writer.write(text.toString());
+        writer.writeBytes("\u00E9".getBytes(UTF8));
+        writer.write('z');
+        writer.close();
+
+        assertEquals(text + "\u00E9z", new String(out.toByteArray(), UTF8));
+    }
+
+    public void testStatefulCharset() throws Exception
+    {
+        Charset jis = Charset.forName("ISO-2022-JP");
+        engine.setProperty(RuntimeConstants.INPUT_ENCODING, "UTF-8");
+        context.put("name", "\u6771\u4EAC");
+        addTemplate("jis", "\u3053\u3093\u306B\u3061\u306F $name \u3055\u3093#if($flag)\u3002#end");
+        Template template = engine.getTemplate("jis");
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer);
+        String expected = writer.toString();
+        assertTrue(expected.indexOf("\u6771\u4EAC") > 0);
+
+        for (int i = 0; i < 2; i++)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            template.merge(context, out, jis);
+            assertEquals(expected, new String(out.toByteArray(), jis));
+        }
+
+        // ends with a dynamic value: the encoder must get back to ASCII
+        addTemplate("jisend", "$name");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        engine.getTemplate("jisend").merge(context, out, jis);
+        assertTrue(Arrays.equals("\u6771\u4EAC".getBytes(jis), out.toByteArray()));
+    }
+
+    public void testByteOrderMark() throws Exception
+    {
+        Charset utf16 = Charset.forName("UTF-16");
+        assertTrue(EncodingWriter.supports(UTF8));
+        assertTrue(EncodingWriter.supports(LATIN1));
+        assertFalse(EncodingWriter.supports(utf16));
+        assertFalse(EncodingWriter.supports(Charset.forName("ISO-2022-JP")));
+        try
+        {
+            new EncodingWriter(new ByteArrayOutputStream(), utf16);
+            fail("expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(expected, utf16);
+        writer.write("abZ cd");
+        writer.close();
+
+        final boolean[] closed = new boolean[1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        {
+            public void close()
+            {
+                closed[0] = true;
+            }
+        };
+        context.put("x", "Z");
+        addTemplate("bom", "ab$x cd");
+        engine.getTemplate("bom").merge(context, out, utf16);
+        assertFalse(closed[0]);
+        assertTrue(Arrays.equals(expected.toByteArray(), out.toByteArray()));
+        assertEquals("abZ cd", new String(out.toByteArray(), utf16));
+    }
+
+    public void testFinish() throws Exception
+    {
+        final boolean[] closed = new boolean[1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        {
+            public void close()
+            {
+                closed[0] = true;
+            }
+        };
+        EncodingWriter writer = new EncodingWriter(out, UTF8);
+        writer.write("a\uD83D");
+        writer.finish();
+        assertFalse(closed[0]);
+        // a trailing high surrogate cannot be paired any more
+        assertEquals("a?", new String(out.toByteArray(), UTF8));
+        writer.write("b");
+        writer.finish();
+        assertEquals("a?b", new String(out.toByteArray(), UTF8));
+
+        context.put("name", "\uD83D");
+        addTemplate("surrogate", "x$name");
+        out.reset();
+        engine.getTemplate("surrogate").merge(context, out, UTF8);
+        assertFalse(closed[0]);
+        assertEquals("x?", new String(out.toByteArray(), UTF8));
+    }
+}
@@ -0,0 +1,141 @@
+package org.apache.velocity.test;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+
+/**
+ * Tests the time-bucketed reload of the VM libraries.
+ */
+public class VelocimacroAutoreloadTestCase extends BaseTestCase
+{
+    private final static String LIBRARY_DIR = TEST_RESULT_DIR + "/vmautoreload";
+
+    private File directory;
+
+    public VelocimacroAutoreloadTestCase(String name)
+    {
+       super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        assureResultsDirectoryExists(LIBRARY_DIR);
+        directory = new File(LIBRARY_DIR);
+        new File(directory, "lib.vm").delete();
+        write("#macro(m)one#end", 0);
+    }
+
+    private VelocityEngine createEngine(int interval)
+    {
+        VelocityEngine engine = new VelocityEngine();
+        engine.setProperty("file.resource.loader.path", directory.getAbsolutePath());
+        engine.setProperty("file.resource.loader.cache", "false");
+        engine.setProperty(RuntimeConstants.VM_LIBRARY, "lib.vm");
+        engine.setProperty(RuntimeConstants.VM_LIBRARY_AUTORELOAD, "true");
+        engine.setProperty(RuntimeConstants.VM_LIBRARY_AUTORELOAD_INTERVAL, String.valueOf(interval));
+        engine.init();
+        return engine;
+    }
+
+    private RuntimeInstance createRuntime(int interval)
+    {
+        RuntimeInstance ri = new RuntimeInstance();
+        ri.setProperty("file.resource.loader.path", directory.getAbsolutePath());
+        ri.setProperty("file.resource.loader.cache", "false");
+        ri.setProperty(RuntimeConstants.VM_LIBRARY, "lib.vm");
+        ri.setProperty(RuntimeConstants.VM_LIBRARY_AUTORELOAD, "true");
+        ri.setProperty(RuntimeConstants.VM_LIBRARY_AUTORELOAD_INTERVAL, String.valueOf(interval));
+        ri.init();
+        return ri;
+    }
+
+    private void write(String content, long delay) throws IOException
+    {
+        File file = new File(directory, "lib.vm");
+        long previous = file.lastModified();
+        Writer writer = new FileWriter(file);
+        writer.write(content);
+        writer.close();
+        if (previous != 0)
+        {
+            /* make sure the modification time moves on */
+            file.setLastModified(previous + delay);
+        }
+    }
+
+    private String evaluate(VelocityEngine engine, String template)
+    {
+        StringWriter writer = new StringWriter();
+        engine.evaluate(new VelocityContext(), writer, "test", template);
+        return writer.toString();
+    }
+
+    public void testReloadOnEachLookup() throws Exception
+    {
+        VelocityEngine engine = createEngine(0);
+        assertEquals("one", evaluate(engine, "#m()"));
+        write("#macro(m)two#end", 2000);
+        assertEquals("two", evaluate(engine, "#m()"));
+    }
+
+    public void testReloadInterval() throws Exception
+    {
+        VelocityEngine engine = createEngine(3600);
+        assertEquals("one", evaluate(engine, "#m()"));
+        write("#macro(m)two#end", 2000);
+        assertEquals("one", evaluate(engine, "#m()"));
+    }
+
+    public void testReloadAfterInterval() throws Exception
+    {
+        VelocityEngine engine = createEngine(1);
+        assertEquals("one", evaluate(engine, "#m()"));
+        write("#macro(m)two#end", 2000);
+
+        /* the library is not due for a check yet */
+        assertEquals("one", evaluate(engine, "#m()"));
+        Thread.sleep(1100);
+        assertEquals("two", evaluate(engine, "#m()"));
+    }
+
+    public void testVersion() throws Exception
+    {
+        assertEquals(-1, createRuntime(0).getVelocimacroVersion());
+
+        RuntimeInstance ri = createRuntime(1);
+        int version = ri.getVelocimacroVersion();
+        assertTrue(version >= 0);
+        assertEquals(version, ri.getVelocimacroVersion());
+        write("#macro(m)two#end", 2000);
+        Thread.sleep(1100);
+        assertTrue(ri.getVelocimacroVersion() != version);
+    }
+}